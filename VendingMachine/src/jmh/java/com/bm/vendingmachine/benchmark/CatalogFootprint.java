@@ -0,0 +1,75 @@
+package com.bm.vendingmachine.benchmark;
+
+import com.bm.vendingmachine.dao.VendingMachineDao;
+import com.bm.vendingmachine.dao.VendingMachineDaoCompactImpl;
+import com.bm.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Measures the heap each SKU of a loaded catalog costs in the file DAO and
+ * in the compact DAO
+ *
+ * This is not a JMH benchmark, as JMH measures time rather than retained
+ * heap. It loads the same items file into each DAO and reports the growth
+ * of the used heap after a full collection, divided by the number of
+ * SKUs. Run it after the JMH sources are compiled with
+ *     mvn -P jmh test-compile exec:java -Dexec.classpathScope=test
+ *         -Dexec.mainClass=com.bm.vendingmachine.benchmark.CatalogFootprint
+ * and give a catalog size as the only argument to change the default of
+ * 1,000,000 SKUs, with -Dexec.args=...
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class CatalogFootprint {
+    private static final int DEFAULT_CATALOG_SIZE = 1_000_000;
+    private static final long UNITS = 1_000;
+
+    private CatalogFootprint() {
+    }
+
+    public static void main(String[] args) throws FailedLoadOfVendingItemsException {
+        int catalogSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CATALOG_SIZE;
+        Path itemsFile = Catalogs.writeItemsFile(catalogSize, UNITS);
+        try {
+            report("file", catalogSize, itemsFile, VendingMachineDaoFileImpl::new);
+            report("compact", catalogSize, itemsFile, VendingMachineDaoCompactImpl::new);
+        } finally {
+            Catalogs.delete(itemsFile);
+        }
+    }
+
+    private static void report(
+        String store,
+        int catalogSize,
+        Path itemsFile,
+        Function<String, VendingMachineDao> daoFactory) throws FailedLoadOfVendingItemsException {
+
+        VendingMachineDao dao = daoFactory.apply(itemsFile.toString());
+        long before = usedHeapAfterGc();
+        dao.loadItems();
+        long after = usedHeapAfterGc();
+        System.out.printf(
+            "%-8s %,d SKUs: %,d bytes of heap, %,d bytes per SKU%n",
+            store,
+            catalogSize,
+            after - before,
+            (after - before) / catalogSize
+        );
+        // keep the catalog reachable until the heap has been measured
+        dao.close();
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,87 @@
+package com.bm.vendingmachine.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Builds the items files the benchmarks load their catalogs from
+ *
+ * Item i of a catalog is named "Item" followed by i and costs $1.25, with
+ * enough units that no benchmark run can sell out of it.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+final class Catalogs {
+    static final long UNITS = 1_000_000_000_000L;
+
+    private Catalogs() {
+    }
+
+    static String itemName(int index) {
+        return "Item" + index;
+    }
+
+    /**
+     * @return The names of the items of a catalog, by index
+     */
+    static String[] itemNames(int size) {
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = itemName(i);
+        }
+        return names;
+    }
+
+    /**
+     * Writes a catalog into the items file of a new temporary directory
+     *
+     * @return The path of the items file
+     */
+    static Path writeItemsFile(int size) {
+        return writeItemsFile(size, UNITS);
+    }
+
+    /**
+     * Writes a catalog with the given units of every item into the items
+     * file of a new temporary directory
+     *
+     * @return The path of the items file
+     */
+    static Path writeItemsFile(int size, long units) {
+        try {
+            Path directory = Files.createTempDirectory("vending-bench");
+            Path itemsFile = directory.resolve("items.txt");
+            try (BufferedWriter writer = Files.newBufferedWriter(itemsFile, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < size; i++) {
+                    writer.write(itemName(i));
+                    writer.write("::1.25::");
+                    writer.write(Long.toString(units));
+                    writer.newLine();
+                }
+            }
+            return itemsFile;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Deletes the directory of an items file along with everything the DAO
+     * wrote next to it
+     */
+    static void delete(Path itemsFile) {
+        try (Stream<Path> paths = Files.walk(itemsFile.getParent())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
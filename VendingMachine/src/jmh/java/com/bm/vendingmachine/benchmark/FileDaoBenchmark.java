@@ -0,0 +1,114 @@
+package com.bm.vendingmachine.benchmark;
+
+import com.bm.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures looking up and removing single items in the file-backed DAO, for
+ * catalogs of ten up to ten million items
+ *
+ * The uniform benchmarks pick every item as often as any other, from a
+ * single thread. The Zipf benchmarks pick them by Zipf-skewed popularity
+ * from four threads at once, which is how the units of the best sellers
+ * come to be contended; the number of threads can be changed with -t.
+ *
+ * The journal is left out unless the syncPolicy parameter names one, in
+ * which case every removal is journalled with that policy.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FileDaoBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+        @Param({"10", "1000", "100000", "10000000"})
+        public int catalogSize;
+
+        @Param({"0.99"})
+        public double skew;
+
+        @Param({"NONE"})
+        public String syncPolicy;
+
+        public VendingMachineDaoFileImpl dao;
+        public String[] names;
+        public ZipfSampler sampler;
+        private Path itemsFile;
+
+        @Setup(Level.Trial)
+        public void setup() throws FailedLoadOfVendingItemsException {
+            itemsFile = Catalogs.writeItemsFile(catalogSize);
+            dao = new VendingMachineDaoFileImpl(
+                itemsFile.toString(),
+                Persistence.syncPolicy(syncPolicy)
+            );
+            dao.loadItems();
+            names = Catalogs.itemNames(catalogSize);
+            sampler = new ZipfSampler(catalogSize, skew);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            dao.close();
+            Catalogs.delete(itemsFile);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picker {
+        public SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            random = new SplittableRandom(Thread.currentThread().getId());
+        }
+    }
+
+    @Benchmark
+    public Optional<VendingMachineItem> getItemByName(Catalog catalog, Picker picker) {
+        return catalog.dao.getItemByName(catalog.names[picker.random.nextInt(catalog.catalogSize)]);
+    }
+
+    @Benchmark
+    public Optional<VendingMachineItem> removeOneOfItem(Catalog catalog, Picker picker) {
+        return catalog.dao.removeOneOfItem(catalog.names[picker.random.nextInt(catalog.catalogSize)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<VendingMachineItem> getItemByNameZipf(Catalog catalog, Picker picker) {
+        return catalog.dao.getItemByName(catalog.names[catalog.sampler.next(picker.random)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<VendingMachineItem> removeOneOfItemZipf(Catalog catalog, Picker picker) {
+        return catalog.dao.removeOneOfItem(catalog.names[catalog.sampler.next(picker.random)]);
+    }
+}
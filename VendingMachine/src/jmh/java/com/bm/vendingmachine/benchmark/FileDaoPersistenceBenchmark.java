@@ -0,0 +1,110 @@
+package com.bm.vendingmachine.benchmark;
+
+import com.bm.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading a catalog of ten up to ten million items from its items
+ * file into the file-backed DAO, and saving it back
+ *
+ * Each load starts from a new DAO, since loading is done once in the life
+ * of one, and each measurement is a single call timed on its own.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FileDaoPersistenceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ItemsFile {
+        @Param({"10", "1000", "100000", "10000000"})
+        public int catalogSize;
+
+        public Path path;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            path = Catalogs.writeItemsFile(catalogSize);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Catalogs.delete(path);
+        }
+    }
+
+    /**
+     * A DAO which has yet to load its items
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyDao {
+        public VendingMachineDaoFileImpl dao;
+
+        @Setup(Level.Iteration)
+        public void setup(ItemsFile itemsFile) {
+            dao = new VendingMachineDaoFileImpl(itemsFile.path.toString(), null);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            dao.close();
+        }
+    }
+
+    /**
+     * A DAO holding the whole catalog
+     */
+    @State(Scope.Benchmark)
+    public static class LoadedDao {
+        public VendingMachineDaoFileImpl dao;
+
+        @Setup(Level.Iteration)
+        public void setup(ItemsFile itemsFile) throws FailedLoadOfVendingItemsException {
+            dao = new VendingMachineDaoFileImpl(itemsFile.path.toString(), null);
+            dao.loadItems();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            dao.close();
+        }
+    }
+
+    @Benchmark
+    public VendingMachineDaoFileImpl loadItems(EmptyDao empty) throws
+        FailedLoadOfVendingItemsException {
+        
+        empty.dao.loadItems();
+        return empty.dao;
+    }
+
+    @Benchmark
+    public VendingMachineDaoFileImpl saveItems(LoadedDao loaded) throws
+        FailedSaveOfVendingItemsException {
+        
+        loaded.dao.saveItems();
+        return loaded.dao;
+    }
+}
@@ -0,0 +1,69 @@
+package com.bm.vendingmachine.benchmark;
+
+import com.bm.vendingmachine.dto.Money;
+import com.bm.vendingmachine.service.Coin;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the money arithmetic of a purchase, in BigDecimal as it used to
+ * be done and in long cents as it is done now
+ *
+ * Run with -prof gc to see the allocation per purchase as well.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private final BigDecimal cost = new BigDecimal("2.99");
+    private final long costCents = 299;
+    private final BigInteger quarters = BigInteger.valueOf(12);
+    private final long quarterCount = 12;
+
+    /**
+     * Deposits twelve quarters and buys an item the way the service used to
+     */
+    @Benchmark
+    public long bigDecimalArithmetic() {
+        BigDecimal credit = BigDecimal.ZERO;
+        BigDecimal added = Coin.QUARTER.getValue().multiply(new BigDecimal(quarters));
+        credit = credit.add(added);
+        long auditedDeposit = added.movePointRight(2).longValue();
+        if (credit.compareTo(cost) < 0) {
+            return -1;
+        }
+        BigDecimal change = credit.subtract(cost);
+        return auditedDeposit + change.movePointRight(2).longValue();
+    }
+
+    /**
+     * Does the same in long cents
+     */
+    @Benchmark
+    public long centsArithmetic() {
+        long creditCents = 0;
+        long addedCents = Money.multiply(Coin.QUARTER.getCents(), quarterCount);
+        creditCents = Money.add(creditCents, addedCents);
+        if (creditCents < costCents) {
+            return -1;
+        }
+        return addedCents + Money.subtract(creditCents, costCents);
+    }
+}
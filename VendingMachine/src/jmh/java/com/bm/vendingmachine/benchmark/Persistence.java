@@ -0,0 +1,23 @@
+package com.bm.vendingmachine.benchmark;
+
+import com.bm.vendingmachine.dao.InventoryJournal;
+
+/**
+ * Reads the journal settings given to the benchmarks as parameters
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+final class Persistence {
+    private Persistence() {
+    }
+
+    /**
+     * @param name The name of a SyncPolicy, or NONE for no journal at all
+     * @return The policy, or null for no journal
+     */
+    static InventoryJournal.SyncPolicy syncPolicy(String name) {
+        return "NONE".equals(name) ? null : InventoryJournal.SyncPolicy.valueOf(name);
+    }
+}
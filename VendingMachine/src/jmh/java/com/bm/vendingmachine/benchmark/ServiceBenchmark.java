@@ -0,0 +1,148 @@
+package com.bm.vendingmachine.benchmark;
+
+import com.bm.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.service.Coin;
+import com.bm.vendingmachine.service.PurchaseResult;
+import com.bm.vendingmachine.service.VendingMachineAuditDaoStubImpl;
+import com.bm.vendingmachine.service.VendingMachineService;
+import com.bm.vendingmachine.service.VendingSession;
+import com.bm.vendingmachine.service.exceptions.InsufficientFundsException;
+import com.bm.vendingmachine.service.exceptions.NoItemInventoryException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the purchase path of the service: depositing coins and buying an
+ * item, over a file-backed catalog without a journal and an audit trail
+ * which keeps nothing
+ *
+ * The single-threaded benchmarks buy the same item every time, in one
+ * session. The refused benchmarks try to buy it with no credit at all, as
+ * a flood of failed attempts would, through the exception API and through
+ * the result API. The Zipf benchmarks run four customers at once, each in a
+ * session of their own, buying items picked by Zipf-skewed popularity, so
+ * the most popular items are contended; the number of customers can be
+ * changed with -t.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Machine {
+        @Param({"10", "10000", "1000000", "10000000"})
+        public int catalogSize;
+
+        @Param({"0.99"})
+        public double skew;
+
+        public VendingMachineService service;
+        public String[] names;
+        public ZipfSampler sampler;
+        private Path itemsFile;
+
+        @Setup(Level.Trial)
+        public void setup() throws FailedLoadOfVendingItemsException {
+            itemsFile = Catalogs.writeItemsFile(catalogSize);
+            service = new VendingMachineService(
+                new VendingMachineDaoFileImpl(itemsFile.toString(), null),
+                new VendingMachineAuditDaoStubImpl()
+            );
+            service.loadItems();
+            names = Catalogs.itemNames(catalogSize);
+            sampler = new ZipfSampler(catalogSize, skew);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            service.close();
+            Catalogs.delete(itemsFile);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Customer {
+        public VendingSession session;
+        public SplittableRandom random;
+        public final BigInteger quarters = BigInteger.valueOf(12);
+
+        @Setup(Level.Trial)
+        public void setup(Machine machine) {
+            session = machine.service.openSession();
+            random = new SplittableRandom(session.getId());
+        }
+    }
+
+    @Benchmark
+    public void addCoins(Machine machine, Customer customer) {
+        machine.service.addCoins(customer.session, Coin.QUARTER, customer.quarters);
+    }
+
+    @Benchmark
+    public BigDecimal transactItem(Machine machine, Customer customer) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
+        
+        machine.service.addCoins(customer.session, Coin.QUARTER, customer.quarters);
+        return machine.service.transactItem(customer.session, machine.names[0]);
+    }
+
+    @Benchmark
+    public long transactItemCents(Machine machine, Customer customer) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
+        
+        machine.service.addCoins(customer.session, Coin.QUARTER, 12L);
+        return machine.service.transactItemCents(customer.session, machine.names[0]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long transactItemZipf(Machine machine, Customer customer) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
+        
+        String name = machine.names[machine.sampler.next(customer.random)];
+        machine.service.addCoins(customer.session, Coin.QUARTER, 12L);
+        return machine.service.transactItemCents(customer.session, name);
+    }
+
+    @Benchmark
+    public Object refusedTransactItem(Machine machine, Customer customer) {
+        try {
+            return machine.service.transactItemCents(customer.session, machine.names[0]);
+        } catch (NoItemInventoryException | InsufficientFundsException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public PurchaseResult refusedPurchaseItem(Machine machine, Customer customer) {
+        return machine.service.purchaseItem(customer.session, machine.names[0]);
+    }
+}
@@ -0,0 +1,53 @@
+package com.bm.vendingmachine.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws item indexes with Zipf-distributed popularity, where the item of
+ * rank k is picked in proportion to 1 / (k + 1)^skew
+ *
+ * The cumulative distribution is computed once, so every draw is a binary
+ * search over it. A sampler can be shared by any number of threads, each
+ * drawing with its own random source.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+final class ZipfSampler {
+    private final double[] cumulative;
+
+    /**
+     * @param size The number of items
+     * @param skew The exponent of the distribution, where 0 is uniform
+     */
+    ZipfSampler(int size, double skew) {
+        cumulative = new double[size];
+        double total = 0;
+        for (int k = 0; k < size; k++) {
+            total += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < size; k++) {
+            cumulative[k] /= total;
+        }
+    }
+
+    /**
+     * @return The index of an item, the most popular being 0
+     */
+    int next(SplittableRandom random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
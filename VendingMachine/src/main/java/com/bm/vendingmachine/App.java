@@ -1,11 +1,26 @@
 package com.bm.vendingmachine;
 
 import com.bm.vendingmachine.controller.VendingMachineController;
+import com.bm.vendingmachine.dao.InventoryJournal;
 import com.bm.vendingmachine.dao.VendingMachineAuditDaoFileImpl;
+import com.bm.vendingmachine.dao.VendingMachineAuditDaoMeteredImpl;
+import com.bm.vendingmachine.dao.VendingMachineAuditDaoSummarizingImpl;
+import com.bm.vendingmachine.dao.VendingMachineCoinDaoFileImpl;
 import com.bm.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.bm.vendingmachine.dao.VendingMachineDaoMeteredImpl;
+import com.bm.vendingmachine.events.EventBus;
+import com.bm.vendingmachine.events.SalesTally;
+import com.bm.vendingmachine.events.SalesTallyMXBean;
+import com.bm.vendingmachine.metrics.MetricsRegistry;
+import com.bm.vendingmachine.service.Coin;
+import com.bm.vendingmachine.service.CoinInventory;
 import com.bm.vendingmachine.service.VendingMachineService;
 import com.bm.vendingmachine.ui.UserIoConsoleImpl;
 import com.bm.vendingmachine.ui.VendingMachineView;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Serves as the entry point for the whole application
@@ -15,14 +30,68 @@ import com.bm.vendingmachine.ui.VendingMachineView;
  * date: Jul 31, 2021
  */
 public class App {
+    /**
+     * The coins the machine is stocked with for giving change, until it
+     * has saved coins of its own
+     */
+    private static final Map<Coin, Long> STARTING_COINS = Map.of(
+        Coin.QUARTER, 40L,
+        Coin.DIME, 50L,
+        Coin.NICKEL, 40L,
+        Coin.PENNY, 100L
+    );
+    
     public static void main(String[] args) {
         VendingMachineView view = new VendingMachineView(
             new UserIoConsoleImpl()
         );
     
+        MetricsRegistry metrics = new MetricsRegistry();
+        EventBus events = new EventBus();
+        SalesTally salesTally = new SalesTally();
+        events.subscribe("sales-tally", salesTally);
+        metrics.addGauges("sales", salesTally, SalesTallyMXBean.class);
+        events.start();
         VendingMachineService service = new VendingMachineService(
-            new VendingMachineDaoFileImpl(),
-            new VendingMachineAuditDaoFileImpl()
+            new VendingMachineDaoMeteredImpl(
+                new VendingMachineDaoFileImpl(
+                    VendingMachineDaoFileImpl.DEFAULT_ITEMS_FILE,
+                    InventoryJournal.SyncPolicy.EVERY_COMMIT
+                ),
+                metrics
+            ),
+            new VendingMachineAuditDaoMeteredImpl(
+                new VendingMachineAuditDaoSummarizingImpl(
+                    new VendingMachineAuditDaoFileImpl(
+                        VendingMachineAuditDaoFileImpl.AUDIT_DIRECTORY,
+                        VendingMachineAuditDaoFileImpl.OverflowPolicy.BLOCK,
+                        VendingMachineAuditDaoFileImpl.DEFAULT_CAPACITY
+                    )
+                ),
+                metrics
+            ),
+            new CoinInventory(STARTING_COINS),
+            new VendingMachineCoinDaoFileImpl(
+                VendingMachineCoinDaoFileImpl.DEFAULT_COINS_FILE
+            ),
+            System::nanoTime,
+            metrics,
+            events
+        );
+        metrics.registerMBeans();
+        
+        // reservations lapse on time even while nobody uses the machine
+        ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "reservation-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tickMillis = VendingMachineService.RESERVATION_TICK.toMillis();
+        expiry.scheduleAtFixedRate(
+            service::expireReservations,
+            tickMillis,
+            tickMillis,
+            TimeUnit.MILLISECONDS
         );
         
         VendingMachineController controller = new VendingMachineController(
@@ -31,5 +100,6 @@ public class App {
         );
         
         controller.run();
+        expiry.shutdown();
     }
 }
@@ -0,0 +1,96 @@
+package com.bm.vendingmachine;
+
+import com.bm.vendingmachine.dao.AuditLog;
+import com.bm.vendingmachine.dao.AuditLogAnalyzer;
+import com.bm.vendingmachine.dao.VendingMachineAuditDaoFileImpl;
+import com.bm.vendingmachine.dto.AuditEventType;
+import com.bm.vendingmachine.dto.AuditReport;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Serves as the entry point for querying the audit log
+ *
+ * Usage: AuditReportApp [directory [from [to]]], where from and to are
+ * local date-times such as 2021-08-01T00:00. The whole log is queried by
+ * default.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class AuditReportApp {
+    public static void main(String[] args) {
+        String directory = args.length > 0
+            ? args[0]
+            : VendingMachineAuditDaoFileImpl.AUDIT_DIRECTORY;
+        long fromNanos;
+        long toNanos;
+        try {
+            fromNanos = args.length > 1 ? toNanos(args[1]) : Long.MIN_VALUE;
+            toNanos = args.length > 2 ? toNanos(args[2]) : Long.MAX_VALUE;
+        } catch (DateTimeParseException ex) {
+            System.err.println("Invalid date-time: " + ex.getParsedString());
+            System.exit(1);
+            return;
+        }
+        
+        AuditReport report;
+        long startTime = System.nanoTime();
+        try {
+            report = AuditLogAnalyzer.analyze(new AuditLog(Path.of(directory)), fromNanos, toNanos);
+        } catch (IOException ex) {
+            System.err.println("Unable to read the audit log: " + ex.getMessage());
+            System.exit(1);
+            return;
+        }
+        long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+        
+        System.out.println("=== Sales per item ===");
+        report.getSalesByItem().forEach((item, sales) -> {
+            System.out.println(item + ": " + sales);
+        });
+        
+        System.out.println("=== Transactions ===");
+        System.out.println("Attempted: " + report.getTransactionAttempts());
+        System.out.println("Succeeded: " + report.getCount(AuditEventType.TRANSACTION_SUCCEEDED));
+        System.out.println("Carts sold: " + report.getCount(AuditEventType.CART_SOLD));
+        System.out.println("Carts refused: " + report.getCount(AuditEventType.CART_REFUSED));
+        printFailures(report, "No such item", AuditEventType.TRANSACTION_FAILED_NO_SUCH_ITEM);
+        printFailures(report, "Out of stock", AuditEventType.TRANSACTION_FAILED_OUT_OF_STOCK);
+        printFailures(report, "Not enough funds", AuditEventType.TRANSACTION_FAILED_INSUFFICIENT_FUNDS);
+        printFailures(report, "No change", AuditEventType.TRANSACTION_FAILED_NO_CHANGE);
+        System.out.println("Reservations: " + report.getCount(AuditEventType.ITEM_RESERVED));
+        System.out.println("Reservations expired: " + report.getCount(AuditEventType.RESERVATION_EXPIRED));
+        System.out.println("Price updates: " + report.getCount(AuditEventType.PRICES_UPDATED));
+        
+        System.out.println("=== Deposits per coin ===");
+        report.getDepositCentsByCoin().forEach((coin, cents) -> {
+            System.out.println(coin + ": $" + BigDecimal.valueOf(cents, 2));
+        });
+        
+        System.out.println(
+            report.getEventCount() + " event(s) aggregated in " + elapsedMillis + " ms"
+        );
+    }
+    
+    private static void printFailures(AuditReport report, String reason, AuditEventType type) {
+        System.out.println(String.format(
+            "%s: %d (%.2f%%)",
+            reason,
+            report.getCount(type),
+            report.getFailureRate(type) * 100
+        ));
+    }
+    
+    private static long toNanos(String dateTime) {
+        return LocalDateTime.parse(dateTime)
+            .atZone(ZoneId.systemDefault())
+            .toInstant()
+            .toEpochMilli() * 1_000_000L;
+    }
+}
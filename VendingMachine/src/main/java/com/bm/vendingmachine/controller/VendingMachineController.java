@@ -2,6 +2,8 @@ package com.bm.vendingmachine.controller;
 
 import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
 import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.service.Change;
 import com.bm.vendingmachine.service.Coin;
 import com.bm.vendingmachine.service.VendingMachineService;
 import com.bm.vendingmachine.service.exceptions.InsufficientFundsException;
@@ -50,7 +52,7 @@ public class VendingMachineController {
             "4. Exit"
         };
         
-        view.displayVendingItems(service.getAllItems());
+        displayCatalog();
         view.displayLine("");
         while(active) {
             view.displayMainMenuOptions(mainMenuOptions);
@@ -58,6 +60,9 @@ public class VendingMachineController {
             view.displayInformationalLine(
                 "Funds in Machine: $" + service.getFundsAvailable()
             );
+            if (service.isExactChangeOnly()) {
+                view.displayErrorLine("EXACT CHANGE ONLY");
+            }
             
             int choice = view.intSupplier(
                 "Pick an option",
@@ -124,7 +129,7 @@ public class VendingMachineController {
                         "You must enter a nonnegative integer"
                     ).get();
                     
-                    service.addCoins(Coin.QUARTER, amount);
+                    depositCoins(Coin.QUARTER, amount);
                     break;
                 case 2:
                     amount = view.bigIntegerSupplier(
@@ -133,7 +138,7 @@ public class VendingMachineController {
                         "You must enter a nonnegative integer"
                     ).get();
                     
-                    service.addCoins(Coin.DIME, amount);
+                    depositCoins(Coin.DIME, amount);
                     break;
                 case 3:
                     amount = view.bigIntegerSupplier(
@@ -142,7 +147,7 @@ public class VendingMachineController {
                         "You must enter a nonnegative integer"
                     ).get();
                     
-                    service.addCoins(Coin.NICKEL, amount);
+                    depositCoins(Coin.NICKEL, amount);
                     break;
                 case 4:
                     amount = view.bigIntegerSupplier(
@@ -151,7 +156,7 @@ public class VendingMachineController {
                         "You must enter a nonnegative integer"
                     ).get();
                     
-                    service.addCoins(Coin.PENNY, amount);
+                    depositCoins(Coin.PENNY, amount);
                     break;
                 case 5:
                     active = false;
@@ -163,6 +168,14 @@ public class VendingMachineController {
         }
     }
 
+    private void depositCoins(Coin coin, BigInteger amount) {
+        try {
+            service.addCoins(coin, amount);
+        } catch (ArithmeticException ex) {
+            view.displayErrorLine("The machine cannot hold that much money");
+        }
+    }
+
     private void purchaseItem() {
         BigDecimal currentFunds = service.getFundsAvailable();
         if (currentFunds.signum() <= 0) {
@@ -176,7 +189,7 @@ public class VendingMachineController {
             ).get();
             
             try {
-                BigDecimal change = service.transactItem(itemName);
+                Change change = service.transactItemForChange(itemName);
                 view.displayInformationalLine("Transaction Successful");
                 view.displayChange(change);
             } catch (NoItemInventoryException | InsufficientFundsException ex) {
@@ -187,10 +200,16 @@ public class VendingMachineController {
     }
 
     private void listItems() {
-        view.displayVendingItems(service.getAllItems());
+        displayCatalog();
         pauseBeforeContinuation();
     }
     
+    private void displayCatalog() {
+        try (CatalogSnapshot snapshot = service.getCatalogSnapshot()) {
+            view.displayVendingItems(snapshot);
+        }
+    }
+    
     private void pauseBeforeContinuation() {
         view.stringSupplier("Press ENTER to continue", val -> true, "").get();
     }
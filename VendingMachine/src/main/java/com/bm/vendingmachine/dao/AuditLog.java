@@ -0,0 +1,491 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.AuditEvent;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A directory of audit log segments, as written by
+ * VendingMachineAuditDaoFileImpl
+ *
+ * Every segment is named after the timestamp of its first record, in
+ * nanoseconds since the epoch, and holds the records written until the
+ * next one starts, so the names alone tell which segments can hold the
+ * events of a time window. A segment is first written uncompressed, as
+ * 1629000000000000000.log with its index in .log.idx, and then
+ * compressed into .log.gz with its index in .log.gz.idx. The compressed
+ * index is moved into place last, so a segment counts as compressed once
+ * it exists.
+ *
+ * Within a segment, the index leads a lookup to the last mark before the
+ * window and stops it at the first mark after it, so only the parts of the
+ * segment that may hold the window are read or decompressed.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class AuditLog {
+    public static final String SEGMENT_SUFFIX = ".log";
+    public static final String COMPRESSED_SUFFIX = ".log.gz";
+    public static final String INDEX_SUFFIX = ".idx";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int COMPRESSION_BUFFER_SIZE = 1 << 16;
+    private static final Pattern SEGMENT_NAME = Pattern.compile(
+        "(\\d{19})(\\.log|\\.log\\.gz\\.idx)"
+    );
+    private final Path directory;
+    
+    /**
+     * @param directory The directory holding the segments
+     */
+    public AuditLog(Path directory) {
+        this.directory = directory;
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * @return Every segment in the directory, from the oldest to the newest
+     * @throws IOException If the directory cannot be listed
+     */
+    public List<Segment> getSegments() throws IOException {
+        Map<Long, Segment> segments = new TreeMap<>();
+        if (Files.notExists(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    long startNanos = Long.parseLong(matcher.group(1));
+                    boolean compressed = !matcher.group(2).equals(SEGMENT_SUFFIX);
+                    // the compressed copy wins over any leftover original
+                    segments.merge(
+                        startNanos,
+                        new Segment(startNanos, compressed),
+                        (a, b) -> a.compressed ? a : b
+                    );
+                }
+            });
+        }
+        return new ArrayList<>(segments.values());
+    }
+    
+    /**
+     * @param fromNanos The start of a time window, inclusive
+     * @param toNanos The end of the window, inclusive
+     * @return The segments which may hold events of that window, from the
+     *         oldest to the newest
+     * @throws IOException If the directory cannot be listed
+     */
+    public List<Segment> findSegments(long fromNanos, long toNanos) throws IOException {
+        List<Segment> segments = getSegments();
+        List<Segment> found = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            boolean last = i + 1 == segments.size();
+            if (segment.startNanos <= toNanos
+                && (last || segments.get(i + 1).startNanos >= fromNanos)) {
+                
+                found.add(segment);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Reads the events of a time window, in the order they were written
+     *
+     * @param fromNanos The start of the window, inclusive, in nanoseconds
+     *                  since the epoch
+     * @param toNanos The end of the window, inclusive
+     * @param action Receives every event of the window
+     * @throws IOException If a segment cannot be read
+     */
+    public void read(long fromNanos, long toNanos, Consumer<AuditEvent> action) throws IOException {
+        for (Segment segment : findSegments(fromNanos, toNanos)) {
+            try {
+                readSegment(segment, fromNanos, toNanos, action);
+            } catch (NoSuchFileException ex) {
+                // compressed since it was listed
+                if (segment.compressed) {
+                    throw ex;
+                }
+                readSegment(new Segment(segment.startNanos, true), fromNanos, toNanos, action);
+            }
+        }
+    }
+    
+    /**
+     * Splits the parts of the segments which may hold events of a time
+     * window into spans, one per mark. Every span can be read on its own.
+     *
+     * @param fromNanos The start of the window, inclusive
+     * @param toNanos The end of the window, inclusive
+     * @return The spans, in the order they were written
+     * @throws IOException If the directory or an index cannot be read
+     */
+    public List<Span> findSpans(long fromNanos, long toNanos) throws IOException {
+        List<Span> spans = new ArrayList<>();
+        for (Segment segment : findSegments(fromNanos, toNanos)) {
+            Path file = segment.compressed
+                ? compressedFile(segment.startNanos)
+                : segmentFile(segment.startNanos);
+            List<long[]> marks;
+            long size;
+            try {
+                marks = AuditLogFormat.readMarks(indexOf(file));
+                size = Files.size(file);
+            } catch (NoSuchFileException ex) {
+                // compressed since it was listed
+                if (segment.compressed) {
+                    throw ex;
+                }
+                file = compressedFile(segment.startNanos);
+                marks = AuditLogFormat.readMarks(indexOf(file));
+                size = Files.size(file);
+                segment = new Segment(segment.startNanos, true);
+            }
+            int[] range = markRange(marks, fromNanos, toNanos);
+            for (int i = range[0]; i < range[1]; i++) {
+                long start = marks.get(i)[1];
+                long end = i + 1 < marks.size() ? marks.get(i + 1)[1] : size;
+                if (start < end) {
+                    spans.add(new Span(file, segment.compressed, start, end));
+                }
+            }
+        }
+        return spans;
+    }
+    
+    /**
+     * Reads every event, in the order they were written
+     */
+    public void readAll(Consumer<AuditEvent> action) throws IOException {
+        read(Long.MIN_VALUE, Long.MAX_VALUE, action);
+    }
+    
+    /**
+     * Renders the whole log as text, one event per line
+     *
+     * @param textFile The text file to create or overwrite
+     * @throws IOException If a segment or the text file cannot be accessed
+     */
+    public void toText(Path textFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(textFile)) {
+            IOException[] failure = new IOException[1];
+            readAll(event -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    writer.write(event.toString());
+                    writer.newLine();
+                } catch (IOException ex) {
+                    failure[0] = ex;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+    
+    /**
+     * @return The uncompressed file of the segment starting at the given
+     *         time
+     */
+    public Path segmentFile(long startNanos) {
+        return directory.resolve(String.format("%019d", startNanos) + SEGMENT_SUFFIX);
+    }
+    
+    /**
+     * @return The compressed file of the segment starting at the given time
+     */
+    public Path compressedFile(long startNanos) {
+        return directory.resolve(String.format("%019d", startNanos) + COMPRESSED_SUFFIX);
+    }
+    
+    /**
+     * @return The index of a segment file
+     */
+    public static Path indexOf(Path segmentFile) {
+        return segmentFile.resolveSibling(segmentFile.getFileName() + INDEX_SUFFIX);
+    }
+    
+    /**
+     * Compresses a segment which is no longer written to, one gzip member
+     * per mark, and then deletes the original
+     *
+     * @param segment A segment of this log
+     * @throws IOException If the segment cannot be compressed
+     */
+    public void compress(Segment segment) throws IOException {
+        Path source = segmentFile(segment.startNanos);
+        Path target = compressedFile(segment.startNanos);
+        if (!segment.compressed) {
+            Path temporaryTarget = target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+            Path temporaryIndex = indexOf(target).resolveSibling(
+                indexOf(target).getFileName() + TEMPORARY_SUFFIX
+            );
+            List<long[]> marks = AuditLogFormat.readMarks(indexOf(source));
+            try (FileChannel input = FileChannel.open(source);
+                DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryTarget)));
+                DataOutputStream index = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryIndex)))) {
+                
+                AuditLogFormat.writeIndexHeader(index);
+                long size = input.size();
+                for (int i = 0; i < marks.size(); i++) {
+                    long start = marks.get(i)[1];
+                    long end = i + 1 < marks.size() ? marks.get(i + 1)[1] : size;
+                    if (start >= end) {
+                        continue;
+                    }
+                    AuditLogFormat.writeMark(index, marks.get(i)[0], output.size());
+                    input.position(start);
+                    try (GZIPOutputStream member = new FastGzip(new Unclosed(output))) {
+                        new Limited(Channels.newInputStream(input), end - start).transferTo(member);
+                    }
+                }
+            }
+            Files.move(temporaryTarget, target, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(temporaryIndex, indexOf(target), StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(indexOf(source));
+    }
+    
+    private void readSegment(
+        Segment segment,
+        long fromNanos,
+        long toNanos,
+        Consumer<AuditEvent> action) throws IOException {
+        
+        Path file = segment.compressed
+            ? compressedFile(segment.startNanos)
+            : segmentFile(segment.startNanos);
+        List<long[]> marks = AuditLogFormat.readMarks(indexOf(file));
+        if (marks.isEmpty()) {
+            return;
+        }
+        
+        int[] range = markRange(marks, fromNanos, toNanos);
+        long start = marks.get(range[0])[1];
+        long end = range[1] < marks.size() ? marks.get(range[1])[1] : Long.MAX_VALUE;
+        
+        try (FileChannel channel = FileChannel.open(file)) {
+            channel.position(start);
+            InputStream input = new Limited(Channels.newInputStream(channel), end - start);
+            if (segment.compressed) {
+                input = new GZIPInputStream(input);
+            }
+            AuditLogFormat.readRecords(input, event -> {
+                long timestampNanos = event.getTimestampNanos();
+                if (timestampNanos >= fromNanos && timestampNanos <= toNanos) {
+                    action.accept(event);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Starts at the last mark before a time window and stops at the first
+     * mark after it
+     *
+     * @return The index of the first mark to read from, and the index of
+     *         the mark to stop at, which is the number of marks if reading
+     *         should go on to the end of the segment
+     */
+    private static int[] markRange(List<long[]> marks, long fromNanos, long toNanos) {
+        int first = 0;
+        while (first + 1 < marks.size() && marks.get(first + 1)[0] < fromNanos) {
+            first++;
+        }
+        int end = first + 1;
+        while (end < marks.size() && marks.get(end)[0] <= toNanos) {
+            end++;
+        }
+        return new int[] {first, Math.min(end, marks.size())};
+    }
+    
+    /**
+     * A segment of the log, compressed or not
+     */
+    public static class Segment {
+        private final long startNanos;
+        private final boolean compressed;
+        
+        private Segment(long startNanos, boolean compressed) {
+            this.startNanos = startNanos;
+            this.compressed = compressed;
+        }
+        
+        /**
+         * @return The timestamp of the first record of this segment
+         */
+        public long getStartNanos() {
+            return startNanos;
+        }
+        
+        public boolean isCompressed() {
+            return compressed;
+        }
+        
+        @Override
+        public String toString() {
+            return "Segment{" + "startNanos=" + startNanos + ", compressed=" + compressed + '}';
+        }
+    }
+    
+    /**
+     * The records between two marks of a segment. The span of a compressed
+     * segment is a single gzip member.
+     */
+    public static class Span {
+        private final Path file;
+        private final boolean compressed;
+        private final long start;
+        private final long end;
+        
+        private Span(Path file, boolean compressed, long start, long end) {
+            this.file = file;
+            this.compressed = compressed;
+            this.start = start;
+            this.end = end;
+        }
+        
+        public Path getFile() {
+            return file;
+        }
+        
+        public boolean isCompressed() {
+            return compressed;
+        }
+        
+        /**
+         * @return The offset of the first byte of this span in its file
+         */
+        public long getStart() {
+            return start;
+        }
+        
+        /**
+         * @return The offset right after the last byte of this span
+         */
+        public long getEnd() {
+            return end;
+        }
+    }
+    
+    /**
+     * Reads no more than a given number of bytes from a stream
+     */
+    private static class Limited extends FilterInputStream {
+        private long remaining;
+        
+        private Limited(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+        
+        @Override
+        public void close() {
+            // the channel is closed by its owner
+        }
+    }
+    
+    /**
+     * Compresses for speed rather than size, so that compression keeps up
+     * with a busy writer
+     */
+    private static class FastGzip extends GZIPOutputStream {
+        private FastGzip(OutputStream out) throws IOException {
+            super(out, COMPRESSION_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+    
+    /**
+     * Lets a gzip member be finished without closing the file it is
+     * written to
+     */
+    private static class Unclosed extends FilterOutputStream {
+        private Unclosed(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.AuditEventType;
+import com.bm.vendingmachine.dto.AuditReport;
+import com.bm.vendingmachine.dto.Cart;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Aggregates the audit log over a time range into an AuditReport
+ *
+ * Every segment involved is memory-mapped once, and the spans between its
+ * marks are scanned as separate fork-join tasks, since a span never refers
+ * to anything written before it. A task decodes the records of its span
+ * straight from the mapped bytes, inflating the gzip member first if the
+ * segment is compressed, and counts them into arrays indexed by item id
+ * without creating an object per event. The partial totals of the tasks
+ * are then merged pairwise on the way back up.
+ *
+ * Events counted in a SUMMARY record are added to the counts of their type,
+ * as if they had been recorded one by one, and the SUMMARY record itself is
+ * not counted as an event. Likewise, the units of a cart sold are added to
+ * the sales of their items.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class AuditLogAnalyzer {
+    private static final int SPANS_PER_TASK = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int SALES = 0;
+    private static final int DEPOSIT_CENTS = 1;
+    /**
+     * The number of times a cart was sold, which is only counted while
+     * scanning a span
+     */
+    private static final int CARTS_SOLD = 2;
+    private static final int COUNTERS_PER_ITEM = 3;
+    
+    private AuditLogAnalyzer() {
+    }
+    
+    /**
+     * Aggregates the events of a time range on the common fork-join pool
+     *
+     * @param log The audit log
+     * @param fromNanos The start of the range, inclusive, in nanoseconds
+     *                  since the epoch
+     * @param toNanos The end of the range, inclusive
+     * @return What the events of the range add up to
+     * @throws IOException If a segment cannot be read or is corrupt
+     */
+    public static AuditReport analyze(AuditLog log, long fromNanos, long toNanos) throws IOException {
+        return analyze(log, fromNanos, toNanos, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Aggregates the events of a time range on the given pool
+     */
+    public static AuditReport analyze(
+        AuditLog log,
+        long fromNanos,
+        long toNanos,
+        ForkJoinPool pool) throws IOException {
+        
+        List<ByteBuffer> buffers = new ArrayList<>();
+        List<Boolean> compressed = new ArrayList<>();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                mapSpans(log.findSpans(fromNanos, toNanos), buffers, compressed);
+                break;
+            } catch (NoSuchFileException ex) {
+                // a segment was compressed while being mapped
+                if (attempt == MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                buffers.clear();
+                compressed.clear();
+            }
+        }
+        
+        Totals totals;
+        try {
+            totals = pool.invoke(new ScanTask(buffers, compressed, 0, buffers.size(), fromNanos, toNanos));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        
+        Map<AuditEventType, Long> countsByType = new EnumMap<>(AuditEventType.class);
+        long eventCount = 0;
+        for (AuditEventType type : AuditEventType.values()) {
+            long count = totals.countsByCode[type.getCode()];
+            eventCount += count;
+            if (count > 0) {
+                countsByType.put(type, count);
+            }
+        }
+        Map<String, Long> salesByItem = new HashMap<>();
+        Map<String, Long> depositCentsByCoin = new HashMap<>();
+        totals.byItem.forEach((item, values) -> {
+            if (values[SALES] > 0) {
+                salesByItem.put(item, values[SALES]);
+            }
+            if (values[DEPOSIT_CENTS] != 0) {
+                depositCentsByCoin.put(item, values[DEPOSIT_CENTS]);
+            }
+        });
+        return new AuditReport(fromNanos, toNanos, eventCount, countsByType, salesByItem, depositCentsByCoin);
+    }
+    
+    /**
+     * Maps every file holding some of the spans once, and slices the span
+     * out of it
+     */
+    private static void mapSpans(
+        List<AuditLog.Span> spans,
+        List<ByteBuffer> buffers,
+        List<Boolean> compressed) throws IOException {
+        
+        Map<Path, ByteBuffer> mapped = new HashMap<>();
+        for (AuditLog.Span span : spans) {
+            ByteBuffer file = mapped.get(span.getFile());
+            if (file == null) {
+                try (FileChannel channel = FileChannel.open(span.getFile(), StandardOpenOption.READ)) {
+                    file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                mapped.put(span.getFile(), file);
+            }
+            if (span.getStart() >= file.capacity()) {
+                continue;
+            }
+            ByteBuffer buffer = file.duplicate();
+            buffer.limit((int) Math.min(span.getEnd(), file.capacity()));
+            buffer.position((int) span.getStart());
+            buffers.add(buffer.slice());
+            compressed.add(span.isCompressed());
+        }
+    }
+    
+    /**
+     * @return The type with the given name, or null if there is none
+     */
+    private static AuditEventType typeNamed(String name) {
+        try {
+            return name == null ? null : AuditEventType.valueOf(name);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Adds the units of a cart, sold the given number of times, to the
+     * sales of their items
+     */
+    private static void addCartSales(Totals totals, String description, long times) {
+        Cart cart;
+        try {
+            cart = Cart.parse(description);
+        } catch (IllegalArgumentException ex) {
+            return;
+        }
+        cart.getQuantities().forEach((item, quantity) -> {
+            totals.add(item, new long[] {quantity * times, 0});
+        });
+    }
+    
+    /**
+     * The counts of some of the spans
+     */
+    private static class Totals {
+        private final long[] countsByCode = new long[AuditEventType.values().length];
+        private final Map<String, long[]> byItem = new HashMap<>();
+        
+        private Totals merge(Totals other) {
+            for (int i = 0; i < countsByCode.length; i++) {
+                countsByCode[i] += other.countsByCode[i];
+            }
+            other.byItem.forEach(this::add);
+            return this;
+        }
+        
+        private void add(String item, long[] values) {
+            long[] totals = byItem.computeIfAbsent(item, key -> new long[2]);
+            totals[SALES] += values[SALES];
+            totals[DEPOSIT_CENTS] += values[DEPOSIT_CENTS];
+        }
+    }
+    
+    /**
+     * Scans the spans from start to end, splitting them in halves until
+     * there are few enough to scan on the current thread
+     */
+    private static class ScanTask extends RecursiveTask<Totals> {
+        private final List<ByteBuffer> buffers;
+        private final List<Boolean> compressed;
+        private final int start;
+        private final int end;
+        private final long fromNanos;
+        private final long toNanos;
+        private byte[] inflated;
+        
+        private ScanTask(
+            List<ByteBuffer> buffers,
+            List<Boolean> compressed,
+            int start,
+            int end,
+            long fromNanos,
+            long toNanos) {
+            
+            this.buffers = buffers;
+            this.compressed = compressed;
+            this.start = start;
+            this.end = end;
+            this.fromNanos = fromNanos;
+            this.toNanos = toNanos;
+        }
+        
+        @Override
+        protected Totals compute() {
+            if (end - start > SPANS_PER_TASK) {
+                int middle = (start + end) >>> 1;
+                ScanTask left = new ScanTask(buffers, compressed, start, middle, fromNanos, toNanos);
+                ScanTask right = new ScanTask(buffers, compressed, middle, end, fromNanos, toNanos);
+                left.fork();
+                Totals rightTotals = right.compute();
+                return left.join().merge(rightTotals);
+            }
+            
+            Totals totals = new Totals();
+            for (int i = start; i < end; i++) {
+                ByteBuffer records = buffers.get(i);
+                if (compressed.get(i)) {
+                    int length = inflate(records);
+                    records = ByteBuffer.wrap(inflated, 0, length);
+                }
+                scan(records, totals);
+            }
+            return totals;
+        }
+        
+        /**
+         * Inflates a gzip member as written by GZIPOutputStream, whose
+         * header has no optional fields, into the inflated buffer of this
+         * task, which is reused from one span to the next
+         *
+         * @return The number of bytes inflated
+         */
+        private int inflate(ByteBuffer member) {
+            if (member.remaining() < GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE
+                || member.get(0) != (byte) 0x1f
+                || member.get(1) != (byte) 0x8b
+                || member.get(3) != 0) {
+                
+                throw new UncheckedIOException(new IOException("Unexpected gzip member in audit log"));
+            }
+            ByteBuffer deflated = member.duplicate();
+            deflated.position(GZIP_HEADER_SIZE);
+            deflated.limit(member.limit() - GZIP_TRAILER_SIZE);
+            
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(deflated);
+                if (inflated == null) {
+                    inflated = new byte[Math.max(1 << 16, deflated.remaining() * 4)];
+                }
+                int length = 0;
+                while (!inflater.finished()) {
+                    if (length == inflated.length) {
+                        byte[] grown = new byte[inflated.length * 2];
+                        System.arraycopy(inflated, 0, grown, 0, length);
+                        inflated = grown;
+                    }
+                    int count = inflater.inflate(inflated, length, inflated.length - length);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new DataFormatException("Truncated gzip member");
+                    }
+                    length += count;
+                }
+                return length;
+            } catch (DataFormatException ex) {
+                throw new UncheckedIOException(new IOException("Corrupt gzip member in audit log", ex));
+            } finally {
+                inflater.end();
+            }
+        }
+        
+        /**
+         * Counts the records of a span. Item ids start over in every span,
+         * so the names and counters of the ids seen are local to the span
+         * until they are added to the totals at its end.
+         */
+        private void scan(ByteBuffer records, Totals totals) {
+            List<String> names = new ArrayList<>();
+            long[] counters = new long[32];
+            int position = records.position();
+            int limit = records.limit();
+            
+            while (position < limit) {
+                byte code = records.get(position);
+                if (code == AuditLogFormat.ITEM_CODE) {
+                    if (limit - position < 9) {
+                        break;
+                    }
+                    int itemId = records.getInt(position + 1);
+                    int length = records.getInt(position + 5);
+                    if (length < 0 || limit - position - 9 < length) {
+                        break;
+                    }
+                    byte[] bytes = new byte[length];
+                    ByteBuffer name = records.duplicate();
+                    name.position(position + 9);
+                    name.get(bytes);
+                    while (names.size() <= itemId) {
+                        names.add(null);
+                    }
+                    names.set(itemId, new String(bytes, StandardCharsets.UTF_8));
+                    if (counters.length < names.size() * COUNTERS_PER_ITEM) {
+                        long[] grown = new long[names.size() * COUNTERS_PER_ITEM * 2];
+                        System.arraycopy(counters, 0, grown, 0, counters.length);
+                        counters = grown;
+                    }
+                    position += 9 + length;
+                } else if (code == AuditLogFormat.TEXT_CODE) {
+                    if (limit - position < 13) {
+                        break;
+                    }
+                    long timestampNanos = records.getLong(position + 1);
+                    int length = records.getInt(position + 9);
+                    if (length < 0 || limit - position - 13 < length) {
+                        break;
+                    }
+                    if (timestampNanos >= fromNanos && timestampNanos <= toNanos) {
+                        totals.countsByCode[code]++;
+                    }
+                    position += 13 + length;
+                } else {
+                    if (code < 0 || code >= totals.countsByCode.length) {
+                        throw new UncheckedIOException(new IOException("Unknown audit record code: " + code));
+                    }
+                    if (limit - position < AuditLogFormat.EVENT_SIZE) {
+                        break;
+                    }
+                    long timestampNanos = records.getLong(position + 1);
+                    int itemId = records.getInt(position + 9);
+                    long amount = records.getLong(position + 13);
+                    position += AuditLogFormat.EVENT_SIZE;
+                    if (timestampNanos < fromNanos || timestampNanos > toNanos) {
+                        continue;
+                    }
+                    if (code != AuditEventType.SUMMARY.getCode()) {
+                        totals.countsByCode[code]++;
+                    }
+                    if (itemId < 0 || itemId >= names.size()) {
+                        continue;
+                    }
+                    if (code == AuditEventType.TRANSACTION_SUCCEEDED.getCode()) {
+                        counters[itemId * COUNTERS_PER_ITEM + SALES]++;
+                    } else if (code == AuditEventType.COINS_ADDED.getCode()) {
+                        counters[itemId * COUNTERS_PER_ITEM + DEPOSIT_CENTS] += amount;
+                    } else if (code == AuditEventType.CART_SOLD.getCode()) {
+                        counters[itemId * COUNTERS_PER_ITEM + CARTS_SOLD]++;
+                    } else if (code == AuditEventType.SUMMARY.getCode()) {
+                        AuditEventType type = typeNamed(names.get(itemId));
+                        if (type != null) {
+                            totals.countsByCode[type.getCode()] += amount;
+                        }
+                    }
+                }
+            }
+            
+            for (int itemId = 0; itemId < names.size(); itemId++) {
+                if (names.get(itemId) != null) {
+                    totals.add(names.get(itemId), new long[] {
+                        counters[itemId * COUNTERS_PER_ITEM + SALES],
+                        counters[itemId * COUNTERS_PER_ITEM + DEPOSIT_CENTS]
+                    });
+                    long carts = counters[itemId * COUNTERS_PER_ITEM + CARTS_SOLD];
+                    if (carts > 0) {
+                        addCartSales(totals, names.get(itemId), carts);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.AuditEvent;
+import com.bm.vendingmachine.dto.AuditEventType;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Describes the binary formats of the audit log segments written by
+ * VendingMachineAuditDaoFileImpl, and reads them back as AuditEvents
+ *
+ * A segment is a sequence of records, each starting with a one-byte code:
+ *     the code of an AuditEventType other than TEXT, long timestamp,
+ *         int item id, long amount
+ *     TEXT_CODE, long timestamp, int length, the text in UTF-8
+ *     ITEM_CODE, int item id, int length, the name in UTF-8
+ * Timestamps are in nanoseconds since the epoch. An item record assigns a
+ * name to an id for every event that follows it, so an event only carries
+ * the id of its item, or NO_ITEM.
+ *
+ * Every segment has a sparse index next to it, which starts with a header
+ * of INDEX_HEADER_SIZE bytes:
+ *     int magic, int version
+ * followed by one mark of MARK_SIZE bytes every so often:
+ *     long timestamp of the first record after the mark, long offset
+ * Item ids are assigned afresh after every mark, so reading can start at
+ * any mark. A compressed segment holds one gzip member per mark, and the
+ * offsets of its index point at those members rather than into the
+ * uncompressed records.
+ *
+ * All values are big-endian. A record or mark cut short by a crash at the
+ * end of a file is ignored.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class AuditLogFormat {
+    public static final int INDEX_MAGIC = 0x564D4158;
+    public static final int VERSION = 2;
+    public static final int INDEX_HEADER_SIZE = 8;
+    public static final int MARK_SIZE = 16;
+    
+    public static final byte TEXT_CODE = AuditEventType.TEXT.getCode();
+    public static final byte ITEM_CODE = -1;
+    public static final int NO_ITEM = -1;
+    public static final int EVENT_SIZE = 21;
+    
+    private AuditLogFormat() {
+    }
+    
+    /**
+     * Writes an event of any type but TEXT
+     */
+    public static void writeEvent(
+        DataOutputStream output,
+        long timestampNanos,
+        AuditEventType type,
+        int itemId,
+        long amount) throws IOException {
+        
+        output.writeByte(type.getCode());
+        output.writeLong(timestampNanos);
+        output.writeInt(itemId);
+        output.writeLong(amount);
+    }
+    
+    public static void writeText(
+        DataOutputStream output,
+        long timestampNanos,
+        String text) throws IOException {
+        
+        output.writeByte(TEXT_CODE);
+        output.writeLong(timestampNanos);
+        writeString(output, text);
+    }
+    
+    public static void writeItem(DataOutputStream output, int itemId, String name) throws IOException {
+        output.writeByte(ITEM_CODE);
+        output.writeInt(itemId);
+        writeString(output, name);
+    }
+    
+    public static void writeIndexHeader(DataOutputStream index) throws IOException {
+        index.writeInt(INDEX_MAGIC);
+        index.writeInt(VERSION);
+    }
+    
+    public static void writeMark(DataOutputStream index, long timestampNanos, long offset) throws IOException {
+        index.writeLong(timestampNanos);
+        index.writeLong(offset);
+    }
+    
+    /**
+     * Reads the marks of an index
+     *
+     * @param indexFile The index
+     * @return The marks, as pairs of timestamp and offset
+     * @throws IOException If the file cannot be read or is not an index
+     */
+    public static List<long[]> readMarks(Path indexFile) throws IOException {
+        List<long[]> marks = new ArrayList<>();
+        try (DataInputStream index = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            
+            try {
+                if (index.readInt() != INDEX_MAGIC || index.readInt() != VERSION) {
+                    throw new IOException("Not an audit index of a supported version: " + indexFile);
+                }
+                while (true) {
+                    marks.add(new long[] {index.readLong(), index.readLong()});
+                }
+            } catch (EOFException ex) {
+                // the end of the index, or a mark cut short
+            }
+        }
+        return marks;
+    }
+    
+    /**
+     * Reads every event from a stream positioned at a mark of a segment,
+     * in the order they were written
+     *
+     * @param input The uncompressed records
+     * @param action Receives every event
+     * @throws IOException If the stream cannot be read or holds something
+     *                     other than records
+     */
+    public static void readRecords(InputStream input, Consumer<AuditEvent> action) throws IOException {
+        DataInputStream data = new DataInputStream(
+            input instanceof BufferedInputStream ? input : new BufferedInputStream(input)
+        );
+        Map<Integer, String> items = new HashMap<>();
+        try {
+            int code;
+            while ((code = data.read()) >= 0) {
+                if ((byte) code == ITEM_CODE) {
+                    int itemId = data.readInt();
+                    items.put(itemId, readString(data));
+                } else if ((byte) code == TEXT_CODE) {
+                    long timestampNanos = data.readLong();
+                    String text = readString(data);
+                    action.accept(new AuditEvent(timestampNanos, AuditEventType.TEXT, null, 0, text));
+                } else {
+                    AuditEventType type = AuditEventType.fromCode((byte) code);
+                    if (type == null) {
+                        throw new IOException("Unknown audit record code: " + code);
+                    }
+                    long timestampNanos = data.readLong();
+                    int itemId = data.readInt();
+                    long amount = data.readLong();
+                    action.accept(new AuditEvent(
+                        timestampNanos,
+                        type,
+                        itemId == NO_ITEM ? null : items.get(itemId),
+                        amount,
+                        null
+                    ));
+                }
+            }
+        } catch (EOFException ex) {
+            // the last record was cut short
+        }
+    }
+    
+    private static void writeString(DataOutputStream output, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+    
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length in audit log: " + length);
+        }
+        byte[] bytes = input.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
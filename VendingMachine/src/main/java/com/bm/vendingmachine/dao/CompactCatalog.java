@@ -0,0 +1,472 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A catalog of items kept in parallel primitive arrays
+ *
+ * Item i costs costCents[i] cents and has quantities[i] units left. Its name
+ * is stored in UTF-8 within a single byte arena, between nameOffsets[i] and
+ * nameOffsets[i + 1]. Names are found through an open-addressing hash table
+ * of item indices. An item therefore costs a few dozen bytes of heap instead
+ * of a map entry plus a DTO, a String, a BigDecimal and a BigInteger.
+ *
+ * The set of items never changes once built. Quantities are updated
+ * through compare-and-set on the array, which allocates nothing. Callers
+ * that need the VendingMachineItem API can get a flyweight view of any
+ * item, which reads the arrays on demand.
+ *
+ * Every change to a single quantity holds the read lock of the catalog,
+ * which any number of them share. Removing units of several items at once
+ * holds the write lock instead, so no other change runs between checking
+ * that every item holds enough units and removing them, and the units are
+ * either all removed or all left.
+ *
+ * The costs are held apart, in a price version along with a PriceIndex of
+ * the items, whose ids are the indices of the items. The index is refreshed
+ * whenever a quantity reaches or leaves zero. setCosts builds a whole new
+ * version and switches to it with a single volatile write, so a caller
+ * reading one version sees every cost from the same update.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class CompactCatalog {
+    private static final VarHandle QUANTITIES = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int size;
+    private final int[] quantities;
+    private final byte[] names;
+    private final int[] nameOffsets;
+    private final int[] table;
+    private final ReadWriteLock lock;
+    private volatile Prices prices;
+
+    private CompactCatalog(Builder builder) {
+        size = builder.size;
+        quantities = Arrays.copyOf(builder.quantities, size);
+        names = Arrays.copyOf(builder.names, builder.nameOffsets[size]);
+        nameOffsets = Arrays.copyOf(builder.nameOffsets, size + 1);
+        table = builder.table;
+        lock = new ReentrantReadWriteLock();
+        prices = new Prices(0, Arrays.copyOf(builder.costCents, size));
+    }
+
+    /**
+     * Builds a catalog from an items file
+     *
+     * @param itemsFile The items file
+     * @return The catalog of the items in that file
+     * @throws FailedLoadOfVendingItemsException If the file cannot be read or
+     *         parsed, or if a cost has more than two decimal places or a
+     *         quantity does not fit in an int
+     */
+    public static CompactCatalog load(Path itemsFile) throws FailedLoadOfVendingItemsException {
+        Builder builder = new Builder();
+        ItemsFileParser.parse(itemsFile, (name, unscaledCost, costScale, quantity) -> {
+            if (costScale > 2) {
+                throw new ArithmeticException(
+                    "The cost of " + name + " has more than two decimal places"
+                );
+            }
+            long cents = unscaledCost;
+            for (int scale = costScale; scale < 2; scale++) {
+                cents = Math.multiplyExact(cents, 10);
+            }
+            builder.add(name, cents, Math.toIntExact(quantity));
+        });
+        return builder.build();
+    }
+
+    /**
+     * @return The number of items in this catalog
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param name The name of an item
+     * @return The index of that item, or -1 if it is not in this catalog
+     */
+    public int indexOf(String name) {
+        int mask = table.length - 1;
+        for (int probe = name.hashCode() & mask; ; probe = (probe + 1) & mask) {
+            int entry = table[probe];
+            if (entry == 0) {
+                return -1;
+            }
+            if (nameEquals(names, nameOffsets, entry - 1, name)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    public String nameOf(int index) {
+        return new String(
+            names,
+            nameOffsets[index],
+            nameOffsets[index + 1] - nameOffsets[index],
+            StandardCharsets.UTF_8
+        );
+    }
+
+    public long costCentsOf(int index) {
+        return prices.costCents[index];
+    }
+
+    /**
+     * Copies the cost of every item, all from the same price version
+     *
+     * @return The costs in cents, by index
+     */
+    public long[] copyCosts() {
+        return prices.costCents.clone();
+    }
+
+    /**
+     * @return The number of times setCosts has switched the costs
+     */
+    public long priceVersion() {
+        return prices.version;
+    }
+
+    /**
+     * Switches every item to a new cost at once. The new price version is
+     * built while removals go on against the current one.
+     *
+     * @param costCents The new cost of every item in cents, by index
+     */
+    public synchronized void setCosts(long[] costCents) {
+        if (costCents.length != size) {
+            throw new IllegalArgumentException(
+                "Expected " + size + " costs but got " + costCents.length
+            );
+        }
+        Prices next = new Prices(prices.version + 1, costCents.clone());
+        prices = next;
+        // removals refresh the new index from here on; catch up on those
+        // which refreshed the old one while the new one was being built
+        next.priceIndex.refreshAll();
+    }
+
+    public int quantityOf(int index) {
+        return (int) QUANTITIES.getVolatile(quantities, index);
+    }
+
+    public void setQuantity(int index, int quantity) {
+        lock.readLock().lock();
+        try {
+            QUANTITIES.setVolatile(quantities, index, quantity);
+        } finally {
+            lock.readLock().unlock();
+        }
+        prices.priceIndex.refresh(index);
+    }
+
+    /**
+     * @return The index of the items in this catalog by their current cost
+     */
+    public PriceIndex priceIndex() {
+        return prices.priceIndex;
+    }
+
+    /**
+     * Copies the quantity of every item as of a single point in time. The
+     * copy holds the write lock, so no quantity changes while it is taken.
+     *
+     * @return The quantities, by index
+     */
+    public int[] copyQuantities() {
+        lock.writeLock().lock();
+        try {
+            return quantities.clone();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reduces the quantity of the item by one unless it is already depleted
+     *
+     * @param index The index of the item
+     * @return The quantity left after the removal, or -1 if there was
+     *         nothing to remove
+     */
+    public int removeOne(int index) {
+        return removeUnits(index, 1);
+    }
+
+    /**
+     * Reduces the quantity of the item by the units unless it holds fewer
+     *
+     * @param index The index of the item
+     * @param units The number of units, which must be positive
+     * @return The quantity left after the removal, or -1 if there were not
+     *         enough units to remove
+     */
+    public int removeUnits(int index, long units) {
+        int current;
+        lock.readLock().lock();
+        try {
+            do {
+                current = (int) QUANTITIES.getVolatile(quantities, index);
+                if (current < units) {
+                    return -1;
+                }
+            } while (!QUANTITIES.compareAndSet(quantities, index, current, (int) (current - units)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (current == units) {
+            prices.priceIndex.refresh(index);
+        }
+        return (int) (current - units);
+    }
+
+    /**
+     * Reduces the quantities of several items by their units, unless any
+     * of them holds fewer, in which case none is reduced
+     *
+     * @param indices The indices of the items, each at most once
+     * @param units The number of units of each item, which must be
+     *              positive
+     * @return The position in indices of an item which did not hold enough
+     *         units, or -1 if every unit was removed
+     */
+    public int removeUnitsOfAll(int[] indices, long[] units) {
+        lock.writeLock().lock();
+        try {
+            for (int line = 0; line < indices.length; line++) {
+                if (quantityOf(indices[line]) < units[line]) {
+                    return line;
+                }
+            }
+            for (int line = 0; line < indices.length; line++) {
+                QUANTITIES.setVolatile(
+                    quantities,
+                    indices[line],
+                    (int) (quantityOf(indices[line]) - units[line])
+                );
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (int line = 0; line < indices.length; line++) {
+            if (quantityOf(indices[line]) == 0) {
+                prices.priceIndex.refresh(indices[line]);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Increases the quantity of the item
+     *
+     * @param index The index of the item
+     * @param quantity The number of units added, which must be positive
+     * @return The quantity after the addition
+     * @throws ArithmeticException If the sum does not fit in an int, in
+     *         which case the quantity is left as it was
+     */
+    public int addUnits(int index, long quantity) {
+        int current;
+        int next;
+        lock.readLock().lock();
+        try {
+            do {
+                current = (int) QUANTITIES.getVolatile(quantities, index);
+                next = Math.toIntExact(Math.addExact(current, quantity));
+            } while (!QUANTITIES.compareAndSet(quantities, index, current, next));
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (current <= 0 && next > 0) {
+            prices.priceIndex.refresh(index);
+        }
+        return next;
+    }
+
+    /**
+     * @param index The index of an item
+     * @return A view of that item, whose getters always reflect the current
+     *         state of this catalog
+     */
+    public VendingMachineItem viewOf(int index) {
+        return new ItemView(this, index);
+    }
+
+    /**
+     * Writes every item in this catalog as a row of an items file
+     *
+     * @param writer The writer of the items file
+     * @throws IOException If the rows cannot be written
+     */
+    public void writeTo(ItemsFileWriter writer) throws IOException {
+        long[] costCents = prices.costCents;
+        for (int i = 0; i < size; i++) {
+            writer.writeRow(
+                names,
+                nameOffsets[i],
+                nameOffsets[i + 1] - nameOffsets[i],
+                costCents[i],
+                2,
+                quantityOf(i)
+            );
+        }
+    }
+
+    /**
+     * Compares a stored name with a String without decoding the stored name,
+     * as long as the String is plain ASCII
+     */
+    private static boolean nameEquals(byte[] names, int[] nameOffsets, int index, String name) {
+        int start = nameOffsets[index];
+        int length = nameOffsets[index + 1] - start;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return new String(names, start, length, StandardCharsets.UTF_8).equals(name);
+            }
+            if (i >= length || names[start + i] != c) {
+                return false;
+            }
+        }
+        return name.length() == length;
+    }
+
+    /**
+     * Accumulates items for a new catalog. Adding an item whose name is
+     * already present replaces its cost and quantity.
+     */
+    public static final class Builder {
+        private int size;
+        private long[] costCents = new long[16];
+        private int[] quantities = new int[16];
+        private byte[] names = new byte[256];
+        private int[] nameOffsets = new int[17];
+        private int[] table = new int[32];
+
+        public Builder add(String name, long cents, int quantity) {
+            int mask = table.length - 1;
+            int probe = name.hashCode() & mask;
+            while (table[probe] != 0) {
+                int index = table[probe] - 1;
+                if (nameEquals(names, nameOffsets, index, name)) {
+                    costCents[index] = cents;
+                    quantities[index] = quantity;
+                    return this;
+                }
+                probe = (probe + 1) & mask;
+            }
+
+            if (size == costCents.length) {
+                costCents = Arrays.copyOf(costCents, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+                nameOffsets = Arrays.copyOf(nameOffsets, size * 2 + 1);
+            }
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            int nameStart = nameOffsets[size];
+            if (nameStart + encoded.length > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, nameStart + encoded.length));
+            }
+            System.arraycopy(encoded, 0, names, nameStart, encoded.length);
+
+            costCents[size] = cents;
+            quantities[size] = quantity;
+            nameOffsets[size + 1] = nameStart + encoded.length;
+            table[probe] = ++size;
+
+            // keep the table at most half full
+            if (size * 2 > table.length) {
+                rehash(table.length * 2);
+            }
+            return this;
+        }
+
+        public CompactCatalog build() {
+            return new CompactCatalog(this);
+        }
+
+        private void rehash(int capacity) {
+            int[] rehashed = new int[capacity];
+            int mask = capacity - 1;
+            for (int index = 0; index < size; index++) {
+                int hash = new String(
+                    names,
+                    nameOffsets[index],
+                    nameOffsets[index + 1] - nameOffsets[index],
+                    StandardCharsets.UTF_8
+                ).hashCode();
+                int probe = hash & mask;
+                while (rehashed[probe] != 0) {
+                    probe = (probe + 1) & mask;
+                }
+                rehashed[probe] = index + 1;
+            }
+            table = rehashed;
+        }
+    }
+
+    /**
+     * The costs of the items as of one price update, along with a
+     * PriceIndex over them. Nothing in a version changes once built.
+     */
+    private final class Prices {
+        private final long version;
+        private final long[] costCents;
+        private final PriceIndex priceIndex;
+
+        private Prices(long version, long[] costCents) {
+            this.version = version;
+            this.costCents = costCents;
+            this.priceIndex = new PriceIndex(costCents, index -> quantityOf(index) > 0);
+        }
+    }
+
+    /**
+     * A VendingMachineItem backed by an index into a catalog
+     */
+    private static final class ItemView extends VendingMachineItem {
+        private final CompactCatalog catalog;
+        private final int index;
+
+        private ItemView(CompactCatalog catalog, int index) {
+            super(null, null, null);
+            this.catalog = catalog;
+            this.index = index;
+        }
+
+        @Override
+        public String getName() {
+            return catalog.nameOf(index);
+        }
+
+        @Override
+        public BigDecimal getCost() {
+            return BigDecimal.valueOf(catalog.costCentsOf(index), 2);
+        }
+
+        @Override
+        public BigInteger getQuantity() {
+            return BigInteger.valueOf(catalog.quantityOf(index));
+        }
+
+        @Override
+        public void setQuantity(BigInteger quantity) {
+            catalog.setQuantity(index, quantity.intValueExact());
+        }
+    }
+}
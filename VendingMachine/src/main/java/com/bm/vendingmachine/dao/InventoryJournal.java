@@ -0,0 +1,506 @@
+package com.bm.vendingmachine.dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * An append-only journal of inventory changes
+ *
+ * Every change is a small delta record of the form name::delta. Records are
+ * handed to a background JournalWriter, which writes whatever has queued up
+ * as one group and syncs it to disk according to its SyncPolicy. A journal
+ * either starts a writer of its own or shares one with other journals.
+ *
+ * The journal is split into numbered generations, each in its own file next
+ * to the items file (items.txt.journal.1, items.txt.journal.2, ...). A
+ * generation is never reopened once closed, so a torn record can only ever
+ * be the last line of a generation.
+ *
+ * Once a group cannot be written, the journal has failed: every later
+ * append and close throws rather than letting changes go unrecorded.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class InventoryJournal {
+    /**
+     * Determines when the records written by the journal are forced to disk
+     */
+    public enum SyncPolicy {
+        /**
+         * Every group of records is forced to disk before the callers that
+         * appended them are allowed to continue
+         */
+        EVERY_COMMIT,
+        /**
+         * Records are forced to disk at most once per sync interval, and
+         * callers never wait for them
+         */
+        PERIODIC,
+        /**
+         * Records are handed to the operating system, which decides when
+         * they reach the disk
+         */
+        NEVER
+    }
+
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+    private static final String JOURNAL_SUFFIX = ".journal.";
+    private static final String DELIMITER = "::";
+    private static final int MAX_GROUP_SIZE = 4096;
+    private static final long ROTATE = 0;
+    private static final long CLOSE = 1;
+    private static final CompletableFuture<Void> COMMITTED =
+        CompletableFuture.completedFuture(null);
+
+    private final Path ITEMS_FILE;
+    private final SyncPolicy SYNC_POLICY;
+    private final long SYNC_INTERVAL_NANOS;
+    private final BlockingQueue<Record> QUEUE;
+    private final AtomicBoolean SCHEDULED;
+    private final JournalWriter WRITER;
+    private final boolean OWNS_WRITER;
+
+    private volatile boolean open;
+    private boolean finished;
+    private long generation;
+    private FileOutputStream stream;
+    private Writer writer;
+    private long lastSync;
+    private boolean dirty;
+    private volatile IOException failure;
+
+    /**
+     * Opens a new, empty generation of the journal belonging to this items
+     * file. The generation is numbered one past the highest generation
+     * currently on disk.
+     *
+     * @param itemsFile The items file this journal belongs to
+     * @param syncPolicy When written records are forced to disk
+     * @param syncIntervalMillis The interval used by the PERIODIC policy
+     * @throws IOException If the new generation cannot be created
+     */
+    public InventoryJournal(
+        Path itemsFile,
+        SyncPolicy syncPolicy,
+        long syncIntervalMillis) throws IOException {
+
+        this(itemsFile, syncPolicy, syncIntervalMillis, null);
+    }
+
+    /**
+     * Opens a new, empty generation of the journal belonging to this items
+     * file, written by a writer shared with other journals
+     *
+     * @param itemsFile The items file this journal belongs to
+     * @param syncPolicy When written records are forced to disk
+     * @param syncIntervalMillis The interval used by the PERIODIC policy
+     * @param writer The writer of this journal, which must not be closed
+     *               before this journal is, or null to start one for this
+     *               journal alone
+     * @throws IOException If the new generation cannot be created
+     */
+    public InventoryJournal(
+        Path itemsFile,
+        SyncPolicy syncPolicy,
+        long syncIntervalMillis,
+        JournalWriter writer) throws IOException {
+
+        ITEMS_FILE = itemsFile;
+        SYNC_POLICY = syncPolicy;
+        SYNC_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        QUEUE = new LinkedBlockingQueue<>();
+        SCHEDULED = new AtomicBoolean();
+
+        List<Long> generations = generations(itemsFile);
+        generation = generations.isEmpty()
+            ? 1
+            : generations.get(generations.size() - 1) + 1;
+        openGeneration();
+        lastSync = System.nanoTime();
+        open = true;
+
+        OWNS_WRITER = writer == null;
+        WRITER = OWNS_WRITER ? new JournalWriter(syncIntervalMillis) : writer;
+        WRITER.register(this);
+    }
+
+    /**
+     * Appends a delta record to this journal.
+     * 
+     * Under the EVERY_COMMIT policy the returned future completes once the
+     * record is on disk. Under any other policy it is already complete, and
+     * a record which cannot be written is reported by the appends after it
+     * and by close.
+     *
+     * @param name The name of the item that changed
+     * @param delta The change in the quantity of that item
+     * @return The aforementioned future
+     * @throws IOException If the journal has been closed or has failed
+     */
+    public CompletableFuture<Void> append(String name, long delta) throws IOException {
+        if (SYNC_POLICY != SyncPolicy.EVERY_COMMIT) {
+            enqueue(new Record(name, delta, null));
+            return COMMITTED;
+        }
+        Record record = new Record(name, delta, new CompletableFuture<>());
+        enqueue(record);
+        return record.done;
+    }
+
+    /**
+     * Waits for a record appended to this journal to be committed
+     *
+     * @param commit The future returned when the record was appended
+     * @throws IOException If the record could not be written
+     */
+    public static void awaitCommit(CompletableFuture<Void> commit) throws IOException {
+        try {
+            commit.join();
+        } catch (RuntimeException ex) {
+            throw new IOException("Unable to write the inventory journal", ex.getCause());
+        }
+    }
+
+    /**
+     * Closes the current generation and starts a new one. Every record
+     * appended before this call ends up in the closed generation, which is
+     * forced to disk before this call returns.
+     *
+     * @return The number of the generation that was closed
+     * @throws IOException If the generations cannot be switched
+     */
+    public long rotate() throws IOException {
+        Record marker = new Record(null, ROTATE, new CompletableFuture<>());
+        enqueue(marker);
+        awaitCommit(marker.done);
+        return generation - 1;
+    }
+
+    /**
+     * Writes and forces to disk every queued record, then stops the writer
+     * if it belongs to this journal alone
+     *
+     * @throws IOException If any record appended to this journal could not
+     *         be written
+     */
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        Record marker = new Record(null, CLOSE, new CompletableFuture<>());
+        QUEUE.add(marker);
+        schedule();
+        marker.done.join();
+        WRITER.unregister(this);
+        if (OWNS_WRITER) {
+            WRITER.close();
+        }
+        
+        // anything that slipped in after the last generation was closed
+        // will never be written
+        IOException closed = new IOException("The inventory journal is closed");
+        for (Record record = QUEUE.poll(); record != null; record = QUEUE.poll()) {
+            if (record.done != null) {
+                record.done.completeExceptionally(closed);
+            }
+        }
+        if (failure != null) {
+            throw new IOException("Unable to write the inventory journal", failure);
+        }
+    }
+
+    /**
+     * @param itemsFile An items file
+     * @return The journal generations of that items file on disk, in
+     *         ascending order
+     * @throws IOException If the directory cannot be listed
+     */
+    public static List<Long> generations(Path itemsFile) throws IOException {
+        Path directory = directoryOf(itemsFile);
+        String prefix = itemsFile.getFileName().toString() + JOURNAL_SUFFIX;
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(
+            directory,
+            prefix + "*")) {
+
+            for (Path entry : entries) {
+                String number = entry.getFileName().toString()
+                    .substring(prefix.length());
+                try {
+                    generations.add(Long.parseLong(number));
+                } catch (NumberFormatException ex) {
+                    // not one of ours
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    /**
+     * @param itemsFile An items file
+     * @param generation A journal generation
+     * @return The path of that generation of the items file's journal
+     */
+    public static Path pathOf(Path itemsFile, long generation) {
+        return itemsFile.resolveSibling(
+            itemsFile.getFileName().toString() + JOURNAL_SUFFIX + generation
+        );
+    }
+
+    /**
+     * Replays one generation of a journal, handing every complete record to
+     * the consumer. A record is only complete once its newline is written,
+     * so a record torn by a crash is never replayed, even when what is left
+     * of it would parse. The torn record is cut off the end of the
+     * generation.
+     *
+     * @param journalFile The generation to replay
+     * @param consumer Receives the name and delta of every record
+     * @return The number of records replayed
+     * @throws IOException If the generation cannot be read, or holds a
+     *         malformed record which is complete
+     */
+    public static long replay(
+        Path journalFile,
+        ObjLongConsumer<String> consumer) throws IOException {
+
+        long replayed = 0;
+        long complete = 0;
+        try (FileChannel channel = FileChannel.open(
+            journalFile,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+
+            InputStream input = new BufferedInputStream(Channels.newInputStream(channel));
+            byte[] line = new byte[64];
+            int length = 0;
+            int next;
+            while ((next = input.read()) >= 0) {
+                if (next != '\n') {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = (byte) next;
+                    continue;
+                }
+                String record = new String(line, 0, length, StandardCharsets.UTF_8);
+                int split = record.lastIndexOf(DELIMITER);
+                long delta;
+                try {
+                    if (split < 0) {
+                        throw new NumberFormatException("No delimiter");
+                    }
+                    delta = Long.parseLong(record.substring(split + DELIMITER.length()));
+                } catch (NumberFormatException ex) {
+                    throw new IOException(
+                        "Malformed record at byte " + complete + " of " + journalFile,
+                        ex
+                    );
+                }
+                consumer.accept(record.substring(0, split), delta);
+                replayed++;
+                complete += length + 1;
+                length = 0;
+            }
+            if (complete < channel.size()) {
+                channel.truncate(complete);
+                channel.force(false);
+            }
+        }
+        return replayed;
+    }
+
+    private void enqueue(Record record) throws IOException {
+        if (!open) {
+            throw new IOException("The inventory journal is closed");
+        }
+        IOException failed = failure;
+        if (failed != null) {
+            throw new IOException("The inventory journal has failed", failed);
+        }
+        QUEUE.add(record);
+        schedule();
+    }
+
+    /**
+     * Hands this journal to its writer, unless it is waiting there already
+     */
+    private void schedule() {
+        if (SCHEDULED.compareAndSet(false, true)) {
+            WRITER.schedule(this);
+        }
+    }
+
+    /**
+     * Writes everything that has queued up as a single group, and forces it
+     * to disk if the SyncPolicy calls for it. Called on the writer thread
+     * alone.
+     */
+    void writeQueued() {
+        SCHEDULED.set(false);
+        List<Record> group = new ArrayList<>();
+        QUEUE.drainTo(group, MAX_GROUP_SIZE);
+        if (finished) {
+            failClosed(group);
+            return;
+        }
+        writeGroup(group);
+        if (!QUEUE.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Fails this journal, unless it has failed already. Called on the
+     * writer thread alone.
+     */
+    void fail(IOException cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+    }
+
+    private void writeGroup(List<Record> group) {
+        List<CompletableFuture<Void>> committed = new ArrayList<>();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            for (int i = 0; i < group.size(); i++) {
+                Record record = group.get(i);
+                if (record.name == null) {
+                    // a marker, everything before it is written
+                    closeGeneration();
+                    completeAll(committed);
+                    if (record.delta == CLOSE) {
+                        finished = true;
+                        record.done.complete(null);
+                        failClosed(group.subList(i + 1, group.size()));
+                        return;
+                    }
+                    generation++;
+                    openGeneration();
+                    record.done.complete(null);
+                    continue;
+                }
+                writer.write(record.name);
+                writer.write(DELIMITER);
+                writer.write(Long.toString(record.delta));
+                writer.write('\n');
+                dirty = true;
+                if (record.done != null) {
+                    committed.add(record.done);
+                }
+            }
+            writer.flush();
+            long now = System.nanoTime();
+            if (dirty && (SYNC_POLICY == SyncPolicy.EVERY_COMMIT
+                || (SYNC_POLICY == SyncPolicy.PERIODIC
+                    && now - lastSync >= SYNC_INTERVAL_NANOS))) {
+
+                stream.getChannel().force(false);
+                lastSync = now;
+                dirty = false;
+            }
+            completeAll(committed);
+        } catch (IOException ex) {
+            if (failure == null) {
+                failure = ex;
+            }
+            for (Record record : group) {
+                if (record.name == null && record.delta == CLOSE) {
+                    // close reports the failure, it only needs the
+                    // generation let go of
+                    finishQuietly();
+                    record.done.complete(null);
+                } else if (record.done != null) {
+                    record.done.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    private static void failClosed(List<Record> records) {
+        IOException closed = new IOException("The inventory journal is closed");
+        for (Record record : records) {
+            if (record.done != null) {
+                record.done.completeExceptionally(closed);
+            }
+        }
+    }
+
+    private void finishQuietly() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            writer.close();
+        } catch (IOException ex) {
+            // the journal has failed already
+        }
+    }
+
+    private void completeAll(List<CompletableFuture<Void>> committed) {
+        committed.forEach(done -> done.complete(null));
+        committed.clear();
+    }
+
+    private void openGeneration() throws IOException {
+        stream = new FileOutputStream(pathOf(ITEMS_FILE, generation).toFile());
+        writer = new BufferedWriter(
+            new OutputStreamWriter(stream, StandardCharsets.UTF_8)
+        );
+    }
+
+    private void closeGeneration() throws IOException {
+        writer.flush();
+        if (SYNC_POLICY != SyncPolicy.NEVER) {
+            stream.getChannel().force(false);
+        }
+        writer.close();
+        dirty = false;
+    }
+
+    private static Path directoryOf(Path file) {
+        Path parent = file.toAbsolutePath().getParent();
+        return parent == null ? Path.of(".") : parent;
+    }
+
+    private static class Record {
+        private final String name;
+        private final long delta;
+        private final CompletableFuture<Void> done;
+
+        private Record(String name, long delta, CompletableFuture<Void> done) {
+            this.name = name;
+            this.delta = delta;
+            this.done = done;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.MalformedItemsFileException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A streaming parser for items files, in which every line has the form
+ * name::cost::quantity
+ *
+ * The parser reads the file into byte buffers and works directly on the
+ * bytes. It never splits strings or compiles a regular expression, and
+ * apart from the name of each item it allocates nothing per row. Blank
+ * lines are skipped, and a malformed row is reported through a
+ * MalformedItemsFileException carrying its line and column. The file is
+ * read rather than mapped, so it is closed once parsed and can be replaced
+ * right away, even on platforms which refuse to rename over a mapped file.
+ *
+ * Large files can also be parsed in parallel. The file is split into chunks
+ * that end on line breaks, and every chunk is parsed on the common fork-join
+ * pool into a list of rows. The rows are then handed over in file order, so
+ * when a name appears twice the last row wins, as it does in a sequential
+ * parse.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class ItemsFileParser {
+    /**
+     * Receives every row parsed from an items file
+     */
+    public interface RowHandler {
+        /**
+         * @param name The name of the item
+         * @param unscaledCost The cost of the item without its decimal point
+         * @param costScale The number of digits after the decimal point of
+         *                  the cost
+         * @param quantity The quantity of the item
+         */
+        public void row(String name, long unscaledCost, int costScale, long quantity);
+    }
+    
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+    private static final int MAX_LINE_LENGTH = 1 << 20;
+    private static final byte COLON = ':';
+    private static final byte DOT = '.';
+    private static final byte MINUS = '-';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte NEWLINE = '\n';
+    private static final int MAX_DIGITS = 18;
+    
+    private ItemsFileParser() {
+    }
+    
+    /**
+     * Parses the items file on the calling thread, handing the rows to the
+     * handler in file order
+     *
+     * @param file The items file
+     * @param handler Receives every row
+     * @throws FailedLoadOfVendingItemsException If the file cannot be read,
+     *         or a MalformedItemsFileException if one of its rows is malformed
+     */
+    public static void parse(Path file, RowHandler handler) throws FailedLoadOfVendingItemsException {
+        parseInParallel(file, 1, handler);
+    }
+    
+    /**
+     * Parses the items file in up to the given number of chunks at once.
+     * Rows are handed to the handler on the calling thread, in file order,
+     * once every chunk has been parsed.
+     *
+     * @param file The items file
+     * @param chunks The number of chunks to split the file into
+     * @param handler Receives every row
+     * @throws FailedLoadOfVendingItemsException If the file cannot be read,
+     *         or a MalformedItemsFileException if one of its rows is malformed.
+     *         If several rows are malformed, the first one is reported.
+     */
+    public static void parseInParallel(
+        Path file,
+        int chunks,
+        RowHandler handler) throws FailedLoadOfVendingItemsException {
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Segment> segments = split(channel, Math.max(1, chunks));
+            
+            if (segments.size() == 1) {
+                ParseFailure failure = segments.get(0).read(channel).parse(handler);
+                if (failure != null) {
+                    throw failure.toException(file, 0);
+                }
+                return;
+            }
+            
+            List<Rows> parsed = segments.parallelStream()
+                .map(segment -> {
+                    Rows rows = new Rows();
+                    try {
+                        segment.read(channel);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    rows.failure = segment.parse(rows);
+                    rows.lines = segment.countLines();
+                    segment.release();
+                    return rows;
+                })
+                .collect(Collectors.toList());
+            
+            long linesBefore = 0;
+            for (Rows rows : parsed) {
+                rows.handTo(handler);
+                if (rows.failure != null) {
+                    throw rows.failure.toException(file, linesBefore);
+                }
+                linesBefore += rows.lines;
+            }
+        } catch (UncheckedIOException ex) {
+            throw new FailedLoadOfVendingItemsException(
+                "Unable to load vending items",
+                ex.getCause()
+            );
+        } catch (IOException | RuntimeException ex) {
+            throw new FailedLoadOfVendingItemsException(
+                "Unable to load vending items",
+                ex
+            );
+        }
+    }
+    
+    /**
+     * Splits the file into consecutive segments of roughly equal size, each
+     * ending right after a line break or at the end of the file. Only the
+     * bytes around each boundary are read here.
+     */
+    private static List<Segment> split(FileChannel channel, int chunks) throws IOException {
+        long size = channel.size();
+        long target = Math.min(
+            MAX_SEGMENT_SIZE,
+            Math.max(1, (size + chunks - 1) / chunks)
+        );
+        
+        List<Segment> segments = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + target);
+            if (end < size) {
+                // extend the segment to the end of the line it stops in
+                ByteBuffer window = readFully(
+                    channel,
+                    end - 1,
+                    (int) Math.min(size - end + 1, MAX_LINE_LENGTH)
+                );
+                int newline = 0;
+                while (newline < window.limit() && window.get(newline) != NEWLINE) {
+                    newline++;
+                }
+                if (newline == window.limit() && end - 1 + newline < size) {
+                    throw new IOException(
+                        "A line of the items file is longer than " + MAX_LINE_LENGTH + " bytes"
+                    );
+                }
+                end = Math.min(size, end + newline);
+            }
+            segments.add(new Segment(start, (int) (end - start)));
+            start = end;
+        }
+        return segments;
+    }
+    
+    /**
+     * Reads the bytes of the file from the position into a new buffer
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("The items file was truncated while it was read");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * @return The column of the byte at the position, starting from 1 at
+     *         the start of the line and counted in characters, so that a
+     *         multi-byte UTF-8 character takes up a single column
+     */
+    private static long columnOf(ByteBuffer buffer, int lineStart, int position) {
+        long column = 1;
+        for (int i = lineStart; i < position; i++) {
+            // every character has exactly one byte that is not 10xxxxxx
+            if ((buffer.get(i) & 0xC0) != 0x80) {
+                column++;
+            }
+        }
+        return column;
+    }
+    
+    /**
+     * A part of the file that starts at the beginning of a line and ends
+     * after a line break or at the end of the file
+     */
+    private static class Segment {
+        private final long start;
+        private final int length;
+        private ByteBuffer buffer;
+        
+        private Segment(long start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+        
+        private Segment read(FileChannel channel) throws IOException {
+            buffer = readFully(channel, start, length);
+            return this;
+        }
+        
+        private void release() {
+            buffer = null;
+        }
+        
+        private long countLines() {
+            long lines = 0;
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (buffer.get(i) == NEWLINE) {
+                    lines++;
+                }
+            }
+            return lines;
+        }
+        
+        /**
+         * @return The first malformed row of this segment, with its line
+         *         counted from the start of the segment, or null if every row
+         *         is well formed
+         */
+        private ParseFailure parse(RowHandler handler) {
+            ByteBuffer view = buffer.duplicate();
+            byte[] nameBytes = new byte[64];
+            int limit = buffer.limit();
+            int position = 0;
+            long line = 1;
+            
+            while (position < limit) {
+                int lineStart = position;
+                
+                // a blank line
+                if (buffer.get(position) == NEWLINE) {
+                    position++;
+                    line++;
+                    continue;
+                }
+                if (buffer.get(position) == CARRIAGE_RETURN
+                    && position + 1 < limit
+                    && buffer.get(position + 1) == NEWLINE) {
+                    position += 2;
+                    line++;
+                    continue;
+                }
+                
+                // the name, up to the first "::"
+                int nameEnd = position;
+                while (nameEnd < limit
+                    && buffer.get(nameEnd) != NEWLINE
+                    && !(buffer.get(nameEnd) == COLON
+                        && nameEnd + 1 < limit
+                        && buffer.get(nameEnd + 1) == COLON)) {
+                    nameEnd++;
+                }
+                if (nameEnd == lineStart) {
+                    return new ParseFailure(line, 1, "expected the name of an item");
+                }
+                if (nameEnd >= limit || buffer.get(nameEnd) == NEWLINE) {
+                    return new ParseFailure(line, columnOf(buffer, lineStart, nameEnd), "expected '::' after the name");
+                }
+                int nameLength = nameEnd - lineStart;
+                if (nameBytes.length < nameLength) {
+                    nameBytes = new byte[Math.max(nameLength, nameBytes.length * 2)];
+                }
+                view.position(lineStart);
+                view.get(nameBytes, 0, nameLength);
+                position = nameEnd + 2;
+                
+                // the cost, digits with an optional decimal point
+                long unscaledCost = 0;
+                int costScale = -1;
+                int digits = 0;
+                while (position < limit) {
+                    byte b = buffer.get(position);
+                    if (b >= '0' && b <= '9') {
+                        if (++digits > MAX_DIGITS) {
+                            return new ParseFailure(line, columnOf(buffer, lineStart, position), "the cost is too large");
+                        }
+                        unscaledCost = unscaledCost * 10 + (b - '0');
+                        if (costScale >= 0) {
+                            costScale++;
+                        }
+                    } else if (b == DOT && costScale < 0) {
+                        costScale = 0;
+                    } else {
+                        break;
+                    }
+                    position++;
+                }
+                if (digits == 0) {
+                    return new ParseFailure(line, columnOf(buffer, lineStart, position), "expected a cost");
+                }
+                if (!isDelimiter(buffer, position, limit)) {
+                    return new ParseFailure(line, columnOf(buffer, lineStart, position), "expected '::' after the cost");
+                }
+                position += 2;
+                
+                // the quantity, an optionally negative integer
+                boolean negative = position < limit && buffer.get(position) == MINUS;
+                if (negative) {
+                    position++;
+                }
+                long quantity = 0;
+                digits = 0;
+                while (position < limit) {
+                    byte b = buffer.get(position);
+                    if (b < '0' || b > '9') {
+                        break;
+                    }
+                    if (++digits > MAX_DIGITS) {
+                        return new ParseFailure(line, columnOf(buffer, lineStart, position), "the quantity is too large");
+                    }
+                    quantity = quantity * 10 + (b - '0');
+                    position++;
+                }
+                if (digits == 0) {
+                    return new ParseFailure(line, columnOf(buffer, lineStart, position), "expected a quantity");
+                }
+                
+                // the end of the line
+                if (position < limit && buffer.get(position) == CARRIAGE_RETURN) {
+                    position++;
+                }
+                if (position < limit && buffer.get(position) != NEWLINE) {
+                    return new ParseFailure(line, columnOf(buffer, lineStart, position), "expected the end of the line");
+                }
+                position++;
+                
+                handler.row(
+                    new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8),
+                    unscaledCost,
+                    Math.max(0, costScale),
+                    negative ? -quantity : quantity
+                );
+                line++;
+            }
+            return null;
+        }
+        
+        private static boolean isDelimiter(ByteBuffer buffer, int position, int limit) {
+            return position + 1 < limit
+                && buffer.get(position) == COLON
+                && buffer.get(position + 1) == COLON;
+        }
+    }
+    
+    private static class ParseFailure {
+        private final long line;
+        private final long column;
+        private final String problem;
+        
+        private ParseFailure(long line, long column, String problem) {
+            this.line = line;
+            this.column = column;
+            this.problem = problem;
+        }
+        
+        /**
+         * @param linesBefore The number of lines in the file before the
+         *                    segment this failure was found in
+         */
+        private MalformedItemsFileException toException(Path file, long linesBefore) {
+            return new MalformedItemsFileException(
+                file.toString(),
+                linesBefore + line,
+                column,
+                problem
+            );
+        }
+    }
+    
+    /**
+     * The rows of one segment, kept until every segment before it has been
+     * handed over, along with the first malformed row of the segment and
+     * the number of lines in it
+     */
+    private static class Rows implements RowHandler {
+        private String[] names = new String[64];
+        private long[] unscaledCosts = new long[64];
+        private int[] costScales = new int[64];
+        private long[] quantities = new long[64];
+        private int size;
+        private ParseFailure failure;
+        private long lines;
+        
+        @Override
+        public void row(String name, long unscaledCost, int costScale, long quantity) {
+            if (size == names.length) {
+                int capacity = size * 2;
+                names = Arrays.copyOf(names, capacity);
+                unscaledCosts = Arrays.copyOf(unscaledCosts, capacity);
+                costScales = Arrays.copyOf(costScales, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+            }
+            names[size] = name;
+            unscaledCosts[size] = unscaledCost;
+            costScales[size] = costScale;
+            quantities[size] = quantity;
+            size++;
+        }
+        
+        private void handTo(RowHandler handler) {
+            for (int i = 0; i < size; i++) {
+                handler.row(names[i], unscaledCosts[i], costScales[i], quantities[i]);
+            }
+        }
+    }
+}
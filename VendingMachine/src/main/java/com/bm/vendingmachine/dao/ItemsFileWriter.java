@@ -0,0 +1,161 @@
+package com.bm.vendingmachine.dao;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes files in the items format (name::cost::quantity per line)
+ *
+ * Rows are encoded straight into a large byte buffer without going through
+ * format strings. Together with replace, this is how every items file in
+ * this application gets saved: the rows are written to a temporary file,
+ * which is synced and then atomically renamed over the items file.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class ItemsFileWriter implements Closeable {
+    public static final String BACKUP_SUFFIX = ".bak";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] DELIMITER = "::".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR =
+        System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final FileOutputStream stream;
+    private final BufferedOutputStream out;
+    private final byte[] digits;
+
+    /**
+     * Creates or truncates the file
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be opened
+     */
+    public ItemsFileWriter(Path file) throws IOException {
+        stream = new FileOutputStream(file.toFile());
+        out = new BufferedOutputStream(stream, BUFFER_SIZE);
+        digits = new byte[21];
+    }
+
+    /**
+     * Writes a row for an item whose cost is a BigDecimal
+     */
+    public void writeRow(String name, BigDecimal cost, long quantity) throws IOException {
+        out.write(name.getBytes(StandardCharsets.UTF_8));
+        out.write(DELIMITER);
+        out.write(cost.toPlainString().getBytes(StandardCharsets.US_ASCII));
+        out.write(DELIMITER);
+        writeDecimal(quantity, 0);
+        out.write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes a row for an item whose name is already UTF-8 encoded and whose
+     * cost is an unscaled long, such as a number of cents
+     *
+     * @param name A buffer holding the encoded name
+     * @param offset The position of the name within the buffer
+     * @param length The length of the encoded name
+     * @param unscaledCost The cost without its decimal point
+     * @param costScale The number of digits after the decimal point
+     * @param quantity The quantity of the item
+     */
+    public void writeRow(
+        byte[] name,
+        int offset,
+        int length,
+        long unscaledCost,
+        int costScale,
+        long quantity) throws IOException {
+
+        out.write(name, offset, length);
+        out.write(DELIMITER);
+        writeDecimal(unscaledCost, costScale);
+        out.write(DELIMITER);
+        writeDecimal(quantity, 0);
+        out.write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Flushes every row written so far and forces the file to disk
+     */
+    public void sync() throws IOException {
+        out.flush();
+        stream.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Atomically renames the replacement over the items file. The previous
+     * generation of the items file is kept next to it with BACKUP_SUFFIX
+     * appended to its name.
+     *
+     * @param itemsFile The items file
+     * @param replacement A complete, synced file to take its place
+     * @throws IOException If the files cannot be renamed
+     */
+    public static void replace(Path itemsFile, Path replacement) throws IOException {
+        if (Files.exists(itemsFile)) {
+            Path backup = itemsFile.resolveSibling(
+                itemsFile.getFileName().toString() + BACKUP_SUFFIX
+            );
+            Files.deleteIfExists(backup);
+            try {
+                Files.createLink(backup, itemsFile);
+            } catch (IOException | UnsupportedOperationException ex) {
+                Files.copy(itemsFile, backup);
+            }
+        }
+        Files.move(
+            replacement,
+            itemsFile,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+
+        // make the rename itself durable, where the platform allows it
+        Path directory = itemsFile.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // directories cannot be opened for syncing on every platform
+        }
+    }
+
+    /**
+     * Writes the unscaled value with a decimal point before its last scale
+     * digits
+     */
+    private void writeDecimal(long unscaled, int scale) throws IOException {
+        boolean negative = unscaled < 0;
+        long remaining = Math.abs(unscaled);
+        int position = digits.length;
+        int written = 0;
+        do {
+            if (written == scale && scale > 0) {
+                digits[--position] = '.';
+            }
+            digits[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+            written++;
+        } while (remaining > 0 || written <= scale);
+        if (negative) {
+            digits[--position] = '-';
+        }
+        out.write(digits, position, digits.length - position);
+    }
+}
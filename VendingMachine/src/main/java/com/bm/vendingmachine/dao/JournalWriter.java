@@ -0,0 +1,111 @@
+package com.bm.vendingmachine.dao;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The background thread writing the records of one or more inventory
+ * journals
+ *
+ * A journal hands itself to its writer whenever records queue up in it,
+ * and the writer then writes whatever has queued up in that journal as one
+ * group. Journals are served in the order they were handed over, so any
+ * number of them can share a single writer and a single thread. Once per
+ * sync interval the writer also visits every journal it serves, which is
+ * when the records written under the PERIODIC policy are forced to disk.
+ *
+ * A writer must outlive the journals it serves: they should all be closed
+ * before it is.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class JournalWriter {
+    private static final Object WAKE_UP = new Object();
+
+    private final long SYNC_INTERVAL_NANOS;
+    private final BlockingQueue<Object> READY;
+    private final Set<InventoryJournal> JOURNALS;
+    private final Thread THREAD;
+
+    private volatile boolean open;
+
+    /**
+     * Starts a writer
+     *
+     * @param syncIntervalMillis How often every journal is visited, which
+     *                           is the interval of the PERIODIC policy
+     */
+    public JournalWriter(long syncIntervalMillis) {
+        SYNC_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        READY = new LinkedBlockingQueue<>();
+        JOURNALS = ConcurrentHashMap.newKeySet();
+        open = true;
+
+        THREAD = new Thread(this::run, "inventory-journal-writer");
+        THREAD.setDaemon(true);
+        THREAD.start();
+    }
+
+    /**
+     * Stops the writer once every journal handed to it has been written
+     */
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        READY.add(WAKE_UP);
+        try {
+            THREAD.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a journal to those visited once per sync interval
+     */
+    void register(InventoryJournal journal) {
+        JOURNALS.add(journal);
+    }
+
+    void unregister(InventoryJournal journal) {
+        JOURNALS.remove(journal);
+    }
+
+    /**
+     * Hands over a journal whose records have queued up
+     */
+    void schedule(InventoryJournal journal) {
+        READY.add(journal);
+    }
+
+    /**
+     * The body of the writer thread
+     */
+    private void run() {
+        long lastVisit = System.nanoTime();
+        while (open || !READY.isEmpty()) {
+            try {
+                Object ready = READY.poll(SYNC_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+                if (ready instanceof InventoryJournal) {
+                    ((InventoryJournal) ready).writeQueued();
+                }
+            } catch (InterruptedException ex) {
+                IOException interrupted = new IOException("The inventory journal writer was interrupted");
+                JOURNALS.forEach(journal -> journal.fail(interrupted));
+            }
+            long now = System.nanoTime();
+            if (now - lastVisit >= SYNC_INTERVAL_NANOS) {
+                JOURNALS.forEach(InventoryJournal::writeQueued);
+                lastVisit = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes the fixed-width binary items format used by
+ * VendingMachineDaoMappedImpl, and converts between it and the text format
+ * of items.txt
+ *
+ * The file starts with a header of HEADER_SIZE bytes:
+ *     int magic, int version, int item count, int unused,
+ *     long offset of the name arena, long unused
+ * followed by one slot of SLOT_SIZE bytes per item:
+ *     long cost in cents, long quantity,
+ *     int offset of the name within the arena, int length of the name
+ * followed by the name arena, which holds every name in UTF-8.
+ *
+ * All values are big-endian, and every long sits on an 8-byte boundary so
+ * that it can be updated atomically in place.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class MappedItemsFormat {
+    public static final int MAGIC = 0x564D4931;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int SLOT_SIZE = 24;
+    
+    public static final int MAGIC_OFFSET = 0;
+    public static final int VERSION_OFFSET = 4;
+    public static final int COUNT_OFFSET = 8;
+    public static final int ARENA_OFFSET = 16;
+    
+    public static final int COST_OFFSET = 0;
+    public static final int QUANTITY_OFFSET = 8;
+    public static final int NAME_OFFSET = 16;
+    public static final int NAME_LENGTH_OFFSET = 20;
+    
+    private static final String DELIMITER = "::";
+    
+    private MappedItemsFormat() {
+    }
+    
+    /**
+     * @param index The index of an item
+     * @return The position of that item's slot within the file
+     */
+    public static int slotOf(int index) {
+        return HEADER_SIZE + index * SLOT_SIZE;
+    }
+    
+    /**
+     * Converts a text items file (name::cost::quantity per line) into the
+     * binary format
+     *
+     * @param textFile The text file to read
+     * @param binaryFile The binary file to create or overwrite
+     * @throws IOException If either file cannot be accessed, a line of the
+     *                     text file is malformed, or a cost has more than two
+     *                     decimal places
+     */
+    public static void fromText(Path textFile, Path binaryFile) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        List<long[]> values = new ArrayList<>();
+        
+        try {
+            ItemsFileParser.parse(textFile, (name, unscaledCost, costScale, quantity) -> {
+                if (costScale > 2) {
+                    throw new ArithmeticException(
+                        "The cost of " + name + " has more than two decimal places"
+                    );
+                }
+                long costCents = unscaledCost;
+                for (int scale = costScale; scale < 2; scale++) {
+                    costCents = Math.multiplyExact(costCents, 10);
+                }
+                byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+                names.add(encoded);
+                values.add(new long[] {costCents, quantity});
+            });
+        } catch (FailedLoadOfVendingItemsException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        int arenaSize = 0;
+        for (byte[] name : names) {
+            arenaSize += name.length;
+        }
+        
+        int count = names.size();
+        int arenaOffset = slotOf(count);
+        ByteBuffer buffer = ByteBuffer.allocate(arenaOffset + arenaSize);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(COUNT_OFFSET, count);
+        buffer.putLong(ARENA_OFFSET, arenaOffset);
+        
+        int nameOffset = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = slotOf(i);
+            byte[] name = names.get(i);
+            buffer.putLong(slot + COST_OFFSET, values.get(i)[0]);
+            buffer.putLong(slot + QUANTITY_OFFSET, values.get(i)[1]);
+            buffer.putInt(slot + NAME_OFFSET, nameOffset);
+            buffer.putInt(slot + NAME_LENGTH_OFFSET, name.length);
+            buffer.position(arenaOffset + nameOffset);
+            buffer.put(name);
+            nameOffset += name.length;
+        }
+        buffer.rewind();
+        
+        try (FileChannel channel = FileChannel.open(
+            binaryFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        // a batch left in the redo log belongs to the file just overwritten
+        Files.deleteIfExists(MappedRedoLog.fileOf(binaryFile));
+    }
+    
+    /**
+     * Converts a binary items file back into the text format
+     *
+     * @param binaryFile The binary file to read
+     * @param textFile The text file to create or overwrite
+     * @throws IOException If either file cannot be accessed, or the binary
+     *                     file is not in this format
+     */
+    public static void toText(Path binaryFile, Path textFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(binaryFile));
+        validate(buffer);
+        
+        int count = buffer.getInt(COUNT_OFFSET);
+        int arenaOffset = (int) buffer.getLong(ARENA_OFFSET);
+        try (BufferedWriter writer = Files.newBufferedWriter(
+            textFile,
+            StandardCharsets.UTF_8)) {
+            
+            for (int i = 0; i < count; i++) {
+                int slot = slotOf(i);
+                writer.write(nameOf(buffer, arenaOffset, slot));
+                writer.write(DELIMITER);
+                writer.write(BigDecimal.valueOf(buffer.getLong(slot + COST_OFFSET), 2).toPlainString());
+                writer.write(DELIMITER);
+                writer.write(Long.toString(buffer.getLong(slot + QUANTITY_OFFSET)));
+                writer.newLine();
+            }
+        }
+    }
+    
+    /**
+     * Checks that the buffer holds a complete file in this format
+     *
+     * @param buffer The contents of the file
+     * @throws IOException If it does not
+     */
+    public static void validate(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE
+            || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not a binary items file");
+        }
+        if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException(
+                "Unsupported binary items version " + buffer.getInt(VERSION_OFFSET)
+            );
+        }
+        int count = buffer.getInt(COUNT_OFFSET);
+        long arenaOffset = buffer.getLong(ARENA_OFFSET);
+        if (count < 0
+            || arenaOffset != slotOf(count)
+            || arenaOffset > buffer.capacity()) {
+            throw new IOException("The binary items file is truncated");
+        }
+    }
+    
+    /**
+     * @param buffer The contents of the file
+     * @param arenaOffset The position of the name arena
+     * @param slot The position of an item's slot
+     * @return The name of that item
+     */
+    public static String nameOf(ByteBuffer buffer, int arenaOffset, int slot) {
+        byte[] name = new byte[buffer.getInt(slot + NAME_LENGTH_OFFSET)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(arenaOffset + buffer.getInt(slot + NAME_OFFSET));
+        view.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+}
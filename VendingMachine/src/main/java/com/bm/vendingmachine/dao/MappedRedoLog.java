@@ -0,0 +1,158 @@
+package com.bm.vendingmachine.dao;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A redo log which makes several writes to a mapped items file land
+ * together
+ *
+ * The log is a small mapped file next to the items file. It starts with the
+ * number of writes committed to it, followed by one pair of longs per
+ * write: the position of a long within the items file and its new value.
+ * A batch is written to the log, committed by writing its count, applied to
+ * the items file, and then cleared by writing a count of zero. A crash
+ * before the commit leaves the items file as it was, and a crash after it
+ * leaves a committed batch, which recover applies again on the next load.
+ * Every write sets a whole value, so applying a batch twice does no harm.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+final class MappedRedoLog {
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(
+        long[].class,
+        ByteOrder.BIG_ENDIAN
+    );
+    private static final String SUFFIX = ".redo";
+    private static final int COUNT_OFFSET = 0;
+    private static final int ENTRIES_OFFSET = 8;
+    private static final int ENTRY_SIZE = 16;
+
+    private final Path FILE;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Maps the redo log of an items file, creating it if it does not exist
+     *
+     * @param itemsFile The mapped items file
+     * @throws IOException If the log cannot be created or mapped
+     */
+    MappedRedoLog(Path itemsFile) throws IOException {
+        FILE = fileOf(itemsFile);
+        buffer = map(ENTRIES_OFFSET);
+    }
+
+    /**
+     * @param itemsFile A mapped items file
+     * @return The path of its redo log
+     */
+    static Path fileOf(Path itemsFile) {
+        return itemsFile.resolveSibling(itemsFile.getFileName().toString() + SUFFIX);
+    }
+
+    /**
+     * Applies the batch left committed by a crash, if any, to the items file
+     *
+     * @param target The mapped items file
+     * @throws IOException If the log is truncated or a position in it lies
+     *                     outside the items file
+     */
+    synchronized void recover(MappedByteBuffer target) throws IOException {
+        long count = buffer.getLong(COUNT_OFFSET);
+        if (count == 0) {
+            return;
+        }
+        if (count < 0 || count > (buffer.capacity() - ENTRIES_OFFSET) / ENTRY_SIZE) {
+            throw new IOException("The redo log " + FILE + " is truncated");
+        }
+        for (int entry = 0; entry < count; entry++) {
+            long position = buffer.getLong(ENTRIES_OFFSET + entry * ENTRY_SIZE);
+            if (position < 0 || position > target.capacity() - Long.BYTES) {
+                throw new IOException("The redo log " + FILE + " does not match its items file");
+            }
+        }
+        apply(target, (int) count);
+        target.force();
+        buffer.putLong(COUNT_OFFSET, 0);
+        buffer.force();
+    }
+
+    /**
+     * Sets several longs of the items file as one batch
+     *
+     * @param target The mapped items file
+     * @param positions The position of each long within the items file
+     * @param values The new value of each long
+     * @param durable Whether the batch must survive a crash of the system,
+     *                and not only of the process, once this returns, in
+     *                which case the log and the items file are forced to
+     *                disk along the way
+     * @throws IOException If the log cannot grow to hold the batch
+     */
+    synchronized void write(
+        MappedByteBuffer target,
+        int[] positions,
+        long[] values,
+        boolean durable) throws IOException {
+
+        int count = positions.length;
+        long size = ENTRIES_OFFSET + (long) count * ENTRY_SIZE;
+        if (size > buffer.capacity()) {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Too many writes for one batch: " + count);
+            }
+            buffer = map(size);
+        }
+        for (int entry = 0; entry < count; entry++) {
+            buffer.putLong(ENTRIES_OFFSET + entry * ENTRY_SIZE, positions[entry]);
+            buffer.putLong(ENTRIES_OFFSET + entry * ENTRY_SIZE + Long.BYTES, values[entry]);
+        }
+        if (durable) {
+            buffer.force();
+        }
+        // the commit point: from here on a crash is recovered by the log
+        LONGS.setVolatile(buffer, COUNT_OFFSET, (long) count);
+        if (durable) {
+            buffer.force();
+        }
+        apply(target, count);
+        if (durable) {
+            target.force();
+        }
+        LONGS.setVolatile(buffer, COUNT_OFFSET, 0L);
+    }
+
+    private void apply(MappedByteBuffer target, int count) {
+        for (int entry = 0; entry < count; entry++) {
+            LONGS.setVolatile(
+                target,
+                (int) buffer.getLong(ENTRIES_OFFSET + entry * ENTRY_SIZE),
+                buffer.getLong(ENTRIES_OFFSET + entry * ENTRY_SIZE + Long.BYTES)
+            );
+        }
+    }
+
+    private MappedByteBuffer map(long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+            FILE,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+
+            // the mapping stays valid once the channel is closed
+            return channel.map(
+                FileChannel.MapMode.READ_WRITE,
+                0,
+                Math.max(size, channel.size())
+            );
+        }
+    }
+}
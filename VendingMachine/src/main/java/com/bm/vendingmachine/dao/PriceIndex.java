@@ -0,0 +1,188 @@
+package com.bm.vendingmachine.dao;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * An index of items by cost, along with which of them are in stock
+ *
+ * Items are identified by the ids their DAO gives them, from 0 to n - 1.
+ * The index sorts them by cost once, when built, and keeps one bit per
+ * sorted position telling whether that item is in stock. A query finds the
+ * bounds of its cost range by binary search and then walks the set bits
+ * within them a word at a time, so it costs O(log n) plus the number of
+ * items it returns, plus one step per 64 positions it skips.
+ *
+ * The costs never change once built; new costs take a new index. The DAO
+ * calls refresh whenever the quantity of an item may have crossed zero, and
+ * the bit is rewritten until it agrees with the quantity read after the
+ * write, so racing refreshes always settle on the latest quantity.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class PriceIndex {
+    private final long[] sortedCents;
+    private final int[] idAt;
+    private final int[] positionOf;
+    private final AtomicLongArray inStock;
+    private final IntPredicate isInStock;
+
+    /**
+     * @param centsById The cost of every item in cents, by id
+     * @param isInStock Tells whether the item with a given id is in stock
+     */
+    public PriceIndex(long[] centsById, IntPredicate isInStock) {
+        int size = centsById.length;
+        this.isInStock = isInStock;
+
+        // sort the ids by cost, breaking ties by id
+        Integer[] ids = new Integer[size];
+        for (int id = 0; id < size; id++) {
+            ids[id] = id;
+        }
+        Arrays.sort(ids, (a, b) -> {
+            int byCost = Long.compare(centsById[a], centsById[b]);
+            return byCost != 0 ? byCost : Integer.compare(a, b);
+        });
+
+        sortedCents = new long[size];
+        idAt = new int[size];
+        positionOf = new int[size];
+        inStock = new AtomicLongArray((size + 63) >>> 6);
+        for (int position = 0; position < size; position++) {
+            int id = ids[position];
+            sortedCents[position] = centsById[id];
+            idAt[position] = id;
+            positionOf[id] = position;
+            if (isInStock.test(id)) {
+                setBit(position, true);
+            }
+        }
+    }
+
+    /**
+     * @return The number of items in this index, in stock or not
+     */
+    public int size() {
+        return idAt.length;
+    }
+
+    /**
+     * Brings the in-stock bit of the item up to date with its quantity
+     *
+     * @param id The id of the item
+     */
+    public void refresh(int id) {
+        int position = positionOf[id];
+        boolean available;
+        do {
+            available = isInStock.test(id);
+            setBit(position, available);
+        } while (isInStock.test(id) != available);
+    }
+
+    /**
+     * Brings the in-stock bit of every item up to date. A DAO switching to a
+     * new index calls this once the new index is the one being refreshed, to
+     * catch any quantity that crossed zero while it was being built.
+     */
+    public void refreshAll() {
+        for (int id = 0; id < positionOf.length; id++) {
+            refresh(id);
+        }
+    }
+
+    /**
+     * Visits the in-stock items whose cost lies within the bounds, from the
+     * cheapest to the most expensive
+     *
+     * @param minimumCents The lowest cost visited, inclusive
+     * @param maximumCents The highest cost visited, inclusive
+     * @param limit The largest number of items to visit
+     * @param action Receives the id of every item visited
+     */
+    public void forEachInStock(long minimumCents, long maximumCents, int limit, IntConsumer action) {
+        if (limit <= 0 || minimumCents > maximumCents) {
+            return;
+        }
+        int start = minimumCents == Long.MIN_VALUE ? 0 : firstPositionAbove(minimumCents - 1);
+        int end = firstPositionAbove(maximumCents);
+        int visited = 0;
+        for (int position = nextInStock(start, end);
+            position < end && visited < limit;
+            position = nextInStock(position + 1, end)) {
+
+            action.accept(idAt[position]);
+            visited++;
+        }
+    }
+
+    /**
+     * Visits the in-stock items costing no more than the funds, from the
+     * cheapest to the most expensive
+     */
+    public void forEachAffordable(long fundsCents, IntConsumer action) {
+        forEachInStock(Long.MIN_VALUE, fundsCents, Integer.MAX_VALUE, action);
+    }
+
+    /**
+     * Visits the count cheapest items in stock, from the cheapest up
+     */
+    public void forEachCheapest(int count, IntConsumer action) {
+        forEachInStock(Long.MIN_VALUE, Long.MAX_VALUE, count, action);
+    }
+
+    /**
+     * @return The first position whose cost is greater than the given cost
+     */
+    private int firstPositionAbove(long cents) {
+        if (cents == Long.MAX_VALUE) {
+            return sortedCents.length;
+        }
+        int low = 0;
+        int high = sortedCents.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedCents[middle] <= cents) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The first in-stock position from the given one on, or end if
+     *         there is none before it
+     */
+    private int nextInStock(int from, int end) {
+        if (from >= end) {
+            return end;
+        }
+        int word = from >>> 6;
+        long bits = inStock.get(word) & (-1L << (from & 63));
+        while (bits == 0) {
+            if (++word << 6 >= end) {
+                return end;
+            }
+            bits = inStock.get(word);
+        }
+        return Math.min((word << 6) + Long.numberOfTrailingZeros(bits), end);
+    }
+
+    private void setBit(int position, boolean value) {
+        int word = position >>> 6;
+        long mask = 1L << (position & 63);
+        long current;
+        long next;
+        do {
+            current = inStock.get(word);
+            next = value ? current | mask : current & ~mask;
+        } while (current != next && !inStock.compareAndSet(word, current, next));
+    }
+}
@@ -0,0 +1,34 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.Money;
+import java.math.BigDecimal;
+
+/**
+ * Checks the costs of a price list handed to VendingMachinePriceDao.updatePrices
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+final class PriceList {
+    private PriceList() {
+    }
+
+    /**
+     * @param name The name of the item
+     * @param cost The new cost of the item
+     * @return The cost in cents
+     * @throws IllegalArgumentException If the cost is missing, negative or
+     *         has a fraction of a cent
+     */
+    static long centsOf(String name, BigDecimal cost) {
+        if (cost == null || cost.signum() < 0) {
+            throw new IllegalArgumentException("Invalid cost for " + name + ": " + cost);
+        }
+        try {
+            return Money.toCents(cost);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Invalid cost for " + name + ": " + cost, ex);
+        }
+    }
+}
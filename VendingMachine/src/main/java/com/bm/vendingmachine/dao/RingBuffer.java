@@ -0,0 +1,221 @@
+package com.bm.vendingmachine.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, lock-free queue over a fixed array of slots
+ *
+ * Every slot carries a sequence number telling whether it is ready to be
+ * written or read for a given lap around the array. A producer claims the
+ * next position with a single compare-and-set on the tail and then
+ * publishes its element by advancing the sequence of the slot; a consumer
+ * does the same on the head. Nothing is allocated once the buffer exists,
+ * and offering to a full buffer fails immediately instead of waiting, so
+ * the caller decides what to do about overflow.
+ *
+ * A buffer created with a factory instead owns one preallocated element per
+ * slot. Producers then claim a slot, fill in its element in place and
+ * publish it, and the consumer reads it before handing the slot back, so
+ * the same elements are reused forever and nothing is allocated per
+ * message either.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ * @param <E> The type of the elements
+ */
+public class RingBuffer<E> {
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private final boolean preallocated;
+
+    /**
+     * @param capacity The number of slots, rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity The number of slots, rounded up to a power of two
+     * @param factory Creates the element of every slot, or null to have
+     *                elements offered and polled instead
+     */
+    public RingBuffer(int capacity, Supplier<? extends E> factory) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+            if (factory != null) {
+                elements[i] = factory.get();
+            }
+        }
+        preallocated = factory != null;
+        mask = size - 1;
+        head = new AtomicLong();
+        tail = new AtomicLong();
+    }
+
+    /**
+     * @return The number of slots in this buffer
+     */
+    public int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * @return The number of elements waiting, which may be stale as soon as
+     *         it is returned
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head.get(), elements.length));
+    }
+
+    /**
+     * Adds the element unless every slot is taken
+     *
+     * @param element The element, which must not be null
+     * @return Whether the element was added
+     */
+    public boolean offer(E element) {
+        checkNotPreallocated();
+        long position = claim();
+        if (position < 0) {
+            return false;
+        }
+        elements[(int) (position & mask)] = element;
+        publish(position);
+        return true;
+    }
+
+    /**
+     * Claims the next slot of a preallocated buffer for the caller alone.
+     * The caller fills in the element returned by get and then publishes
+     * the slot.
+     *
+     * @return The position of the slot, or -1 if every slot is taken
+     */
+    public long claim() {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long lag = sequences.get(index) - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (lag < 0) {
+                // the slot still holds the element from the previous lap
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @param position A position returned by claim and not yet published
+     * @return The element of that slot
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long position) {
+        return (E) elements[(int) (position & mask)];
+    }
+
+    /**
+     * Makes a claimed slot visible to the consumer
+     *
+     * @param position A position returned by claim
+     */
+    public void publish(long position) {
+        sequences.set((int) (position & mask), position + 1);
+    }
+
+    /**
+     * Removes the oldest element of a buffer that is not preallocated
+     *
+     * @return The element, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        checkNotPreallocated();
+        long position = take();
+        if (position < 0) {
+            return null;
+        }
+        int index = (int) (position & mask);
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.set(index, position + elements.length);
+        return element;
+    }
+
+    /**
+     * Removes up to limit of the oldest elements, handing each one to the
+     * action in order. The slot of an element is only handed back once the
+     * action returns, so the action may read a preallocated element freely
+     * but must not keep it.
+     *
+     * @return The number of elements removed
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> action, int limit) {
+        int drained = 0;
+        while (drained < limit) {
+            long position = take();
+            if (position < 0) {
+                break;
+            }
+            int index = (int) (position & mask);
+            try {
+                action.accept((E) elements[index]);
+            } finally {
+                if (!preallocated) {
+                    elements[index] = null;
+                }
+                sequences.set(index, position + elements.length);
+            }
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Claims the oldest published slot for the caller alone
+     *
+     * @return The position of the slot, or -1 if there is none
+     */
+    private long take() {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position & mask);
+            long lag = sequences.get(index) - (position + 1);
+            if (lag == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (lag < 0) {
+                return -1;
+            }
+        }
+    }
+
+    private void checkNotPreallocated() {
+        if (preallocated) {
+            throw new IllegalStateException(
+                "Elements of a preallocated buffer are claimed, not offered or polled"
+            );
+        }
+    }
+}
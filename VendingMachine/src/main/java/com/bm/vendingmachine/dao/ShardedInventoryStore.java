@@ -0,0 +1,251 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Hosts the inventories of many vending machines in one process
+ *
+ * Machines are spread by id over a fixed number of shards. Every shard has
+ * its own lock and its own directory, which holds one items file per
+ * machine: shard-07/lobby-3.txt, for instance. A machine is loaded the first
+ * time it is asked for, while holding the lock of its shard alone, so
+ * loading one machine never holds up machines in other shards.
+ *
+ * Once loaded, a machine is served by its own VendingMachineDaoFileImpl and
+ * reached through a concurrent map without taking any lock, so sales on
+ * different machines never contend, even within a shard. When the machines
+ * keep journals, those of a shard share one JournalWriter and one compactor
+ * thread, started with the first machine loaded into the shard, so the
+ * number of threads grows with the shards rather than with the machines.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class ShardedInventoryStore {
+    public static final int DEFAULT_SHARD_COUNT = 64;
+    private static final Pattern MACHINE_ID = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final String ITEMS_SUFFIX = ".txt";
+    private final Path DIRECTORY;
+    private final InventoryJournal.SyncPolicy SYNC_POLICY;
+    private final Shard[] SHARDS;
+
+    public ShardedInventoryStore(String directory) {
+        this(directory, DEFAULT_SHARD_COUNT, null);
+    }
+
+    /**
+     * @param directory The directory holding the shard directories
+     * @param shardCount The number of shards, which must never change for
+     *                   a given directory
+     * @param syncPolicy The sync policy of the journal of every machine, or
+     *                   null to keep no journals at all
+     */
+    public ShardedInventoryStore(
+        String directory,
+        int shardCount,
+        InventoryJournal.SyncPolicy syncPolicy) {
+
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("There must be at least one shard");
+        }
+        DIRECTORY = Path.of(directory);
+        SYNC_POLICY = syncPolicy;
+        SHARDS = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            SHARDS[i] = new Shard(DIRECTORY.resolve(String.format("shard-%02d", i)));
+        }
+    }
+
+    /**
+     * @param machineId The id of a machine
+     * @return The shard the machine belongs to
+     */
+    public int shardOf(String machineId) {
+        return Math.floorMod(machineId.hashCode(), SHARDS.length);
+    }
+
+    /**
+     * Returns the DAO of a machine, loading it first if this is the first
+     * time it is asked for. A machine that has never been saved starts out
+     * with no items.
+     *
+     * @param machineId The id of the machine, made of letters, digits,
+     *                  underscores and dashes
+     * @return The DAO holding the inventory of that machine
+     * @throws FailedLoadOfVendingItemsException If the machine has to be
+     *         loaded and cannot be
+     */
+    public VendingMachineDao getMachine(String machineId) throws FailedLoadOfVendingItemsException {
+        if (!MACHINE_ID.matcher(machineId).matches()) {
+            throw new IllegalArgumentException("Invalid machine id: " + machineId);
+        }
+        Shard shard = SHARDS[shardOf(machineId)];
+        VendingMachineDao machine = shard.machines.get(machineId);
+        if (machine != null) {
+            return machine;
+        }
+
+        shard.lock.lock();
+        try {
+            machine = shard.machines.get(machineId);
+            if (machine == null) {
+                machine = shard.load(machineId, SYNC_POLICY);
+                shard.machines.put(machineId, machine);
+            }
+            return machine;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * @param machineId The id of a machine
+     * @return Whether that machine has been loaded already
+     */
+    public boolean isLoaded(String machineId) {
+        return SHARDS[shardOf(machineId)].machines.containsKey(machineId);
+    }
+
+    /**
+     * Saves every loaded machine, one shard at a time. Every machine is
+     * attempted even if an earlier one fails.
+     *
+     * @throws FailedSaveOfVendingItemsException If any machine could not be
+     *         saved
+     */
+    public void saveAll() throws FailedSaveOfVendingItemsException {
+        FailedSaveOfVendingItemsException failure = null;
+        for (Shard shard : SHARDS) {
+            List<VendingMachineDao> machines;
+            shard.lock.lock();
+            try {
+                machines = new ArrayList<>(shard.machines.values());
+            } finally {
+                shard.lock.unlock();
+            }
+            for (VendingMachineDao machine : machines) {
+                try {
+                    machine.saveItems();
+                } catch (FailedSaveOfVendingItemsException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    } else {
+                        failure.addSuppressed(ex);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Closes every loaded machine, along with the threads of their journals.
+     * Machines asked for afterwards are loaded again from their files.
+     */
+    public void close() {
+        for (Shard shard : SHARDS) {
+            shard.lock.lock();
+            try {
+                shard.machines.values().forEach(VendingMachineDao::close);
+                shard.machines.clear();
+                shard.stopThreads();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A partition of the machines, along with the lock guarding their
+     * loading and the threads their journals share
+     */
+    private static class Shard {
+        private final Path directory;
+        private final ReentrantLock lock;
+        private final Map<String, VendingMachineDao> machines;
+        private JournalWriter journalWriter;
+        private ExecutorService compactor;
+
+        private Shard(Path directory) {
+            this.directory = directory;
+            this.lock = new ReentrantLock();
+            this.machines = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Loads a machine, creating an empty items file for it if it has
+         * none yet. Must be called while holding the lock.
+         */
+        private VendingMachineDao load(
+            String machineId,
+            InventoryJournal.SyncPolicy syncPolicy) throws FailedLoadOfVendingItemsException {
+
+            Path itemsFile = directory.resolve(machineId + ITEMS_SUFFIX);
+            try {
+                Files.createDirectories(directory);
+                if (Files.notExists(itemsFile)) {
+                    Files.createFile(itemsFile);
+                }
+            } catch (IOException ex) {
+                throw new FailedLoadOfVendingItemsException(
+                    "Unable to create the items file of machine " + machineId,
+                    ex
+                );
+            }
+
+            if (syncPolicy != null && journalWriter == null) {
+                journalWriter = new JournalWriter(InventoryJournal.DEFAULT_SYNC_INTERVAL_MILLIS);
+                compactor = Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "inventory-compactor-" + directory.getFileName());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            VendingMachineDao machine = new VendingMachineDaoFileImpl(
+                itemsFile.toString(),
+                syncPolicy,
+                VendingMachineDaoFileImpl.DEFAULT_COMPACTION_THRESHOLD,
+                journalWriter,
+                compactor
+            );
+            machine.loadItems();
+            return machine;
+        }
+
+        /**
+         * Stops the threads shared by the journals of the machines, once
+         * every machine has been closed. Must be called while holding the
+         * lock.
+         */
+        private void stopThreads() {
+            if (journalWriter == null) {
+                return;
+            }
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            journalWriter.close();
+            journalWriter = null;
+            compactor = null;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.bm.vendingmachine.dao;
 
+import com.bm.vendingmachine.dto.AuditEventType;
+
 /**
  * @author Benjamin Munoz
  * email: driver396@gmail.com
@@ -12,6 +14,16 @@ public interface VendingMachineAuditDao {
      */
     public void appendRecord(String s);
     
+    /**
+     * Appends a typed event into the audit record, which is kept as is and
+     * only rendered as text when the record is read
+     * @param type The type of the event
+     * @param item The item involved, or null if there is none
+     * @param amountCents The amount involved, in cents unless the type says
+     *                    otherwise
+     */
+    public void appendEvent(AuditEventType type, String item, long amountCents);
+    
     /**
      * Frees all resources dedicated to this auditing dao.
      */
@@ -1,12 +1,43 @@
 package com.bm.vendingmachine.dao;
 
-import java.io.FileWriter;
+import com.bm.vendingmachine.dto.AuditEventType;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.time.LocalDateTime;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * The file implementation of the AuditDao interface
+ *
+ * Records are written in the binary format of AuditLogFormat: an event is
+ * stored as its type code, a nanosecond timestamp, the id of its item and
+ * its amount, and is only rendered as text when the log is read back.
+ *
+ * The log is a directory of segments, read back through AuditLog. A new
+ * segment is started once the current one reaches a maximum size or age,
+ * and the old one is then compressed on a background thread. Every segment
+ * gets a mark in its index every so often, so that a time window can be
+ * looked up without reading whole segments. Timestamps are kept from
+ * going back within the log, so that segments and marks stay in order.
+ *
+ * By default every record is written and flushed on the caller's thread.
+ * When constructed with an OverflowPolicy, records are instead copied into
+ * the preallocated slots of a RingBuffer, so appending an event allocates
+ * nothing, and a single background thread drains them in batches, encodes
+ * them and flushes once per batch. What happens to a record appended while
+ * the buffer is full is up to the policy. close() writes out every record
+ * accepted before it.
  * 
  * @author Benjamin Munoz
  * email: driver396@gmail.com
@@ -14,28 +45,441 @@ import java.time.LocalDateTime;
  */
 public class VendingMachineAuditDaoFileImpl implements VendingMachineAuditDao {
 
-    public static final String AUDIT_FILE = "audit.txt";
-    private PrintWriter writer;
+    /**
+     * What an asynchronous audit DAO does with a record appended while its
+     * buffer is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait for the writer to make room, so that no record is lost
+         */
+        BLOCK,
+        /**
+         * Drop the record
+         */
+        DROP,
+        /**
+         * Wait for room for one of every SAMPLE_RATE records that overflow,
+         * and drop the rest
+         */
+        SAMPLE
+    }
+    
+    public static final String AUDIT_DIRECTORY = "audit";
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int SAMPLE_RATE = 16;
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    public static final Duration DEFAULT_SEGMENT_AGE = Duration.ofDays(1);
+    public static final int INDEX_INTERVAL = 1 << 16;
+    private static final int MARKS_PER_SEGMENT = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final long FULL_PARK_NANOS = 10_000;
+    private final AuditLog log;
+    private final long maxSegmentBytes;
+    private final long maxSegmentNanos;
+    private final long indexInterval;
+    private final ExecutorService compressor;
+    private final boolean available;
+    private DataOutputStream output;
+    private DataOutputStream index;
+    private long segmentStartNanos;
+    private long lastMarkOffset;
+    private long lastTimestampNanos;
+    private final Map<String, Integer> itemIds;
+    private final long epochNanosAtStart;
+    private final long nanoTimeAtStart;
+    private final OverflowPolicy overflowPolicy;
+    private final RingBuffer<PendingRecord> buffer;
+    private final AtomicLong droppedRecords;
+    private final AtomicLong overflowedRecords;
+    private final Thread writerThread;
+    private long reportedDrops;
+    private volatile boolean closed;
     
     public VendingMachineAuditDaoFileImpl() {
-        try {
-            writer = new PrintWriter(new FileWriter(AUDIT_FILE, true));
-        } catch (IOException ex) {
+        this(AUDIT_DIRECTORY);
+    }
+    
+    /**
+     * Creates an audit DAO that writes every record on the caller's thread
+     *
+     * @param auditDirectory The directory holding the segments of the log
+     */
+    public VendingMachineAuditDaoFileImpl(String auditDirectory) {
+        this(auditDirectory, null, 0);
+    }
+    
+    /**
+     * @param auditDirectory The directory holding the segments of the log
+     * @param overflowPolicy What to do with records appended while the
+     *                       buffer is full, or null to write every record
+     *                       on the caller's thread
+     * @param capacity The number of records the buffer holds
+     */
+    public VendingMachineAuditDaoFileImpl(
+        String auditDirectory,
+        OverflowPolicy overflowPolicy,
+        int capacity) {
+        
+        this(auditDirectory, overflowPolicy, capacity, DEFAULT_SEGMENT_BYTES, DEFAULT_SEGMENT_AGE);
+    }
+    
+    /**
+     * @param auditDirectory The directory holding the segments of the log
+     * @param overflowPolicy What to do with records appended while the
+     *                       buffer is full, or null to write every record
+     *                       on the caller's thread
+     * @param capacity The number of records the buffer holds
+     * @param maxSegmentBytes The size past which a new segment is started
+     * @param maxSegmentAge The age past which a new segment is started
+     */
+    public VendingMachineAuditDaoFileImpl(
+        String auditDirectory,
+        OverflowPolicy overflowPolicy,
+        int capacity,
+        long maxSegmentBytes,
+        Duration maxSegmentAge) {
+        
+        if (maxSegmentBytes <= 0 || maxSegmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + maxSegmentBytes);
+        }
+        this.log = new AuditLog(Path.of(auditDirectory));
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentNanos = maxSegmentAge.toNanos();
+        this.indexInterval = Math.max(1, Math.min(INDEX_INTERVAL, maxSegmentBytes / MARKS_PER_SEGMENT));
+        this.compressor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "audit-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.itemIds = new HashMap<>();
+        this.epochNanosAtStart = System.currentTimeMillis() * 1_000_000L;
+        this.nanoTimeAtStart = System.nanoTime();
+        this.available = prepareDirectory();
+        this.overflowPolicy = overflowPolicy;
+        this.droppedRecords = new AtomicLong();
+        this.overflowedRecords = new AtomicLong();
+        if (overflowPolicy == null || !available) {
+            buffer = null;
+            writerThread = null;
+        } else {
+            buffer = new RingBuffer<>(capacity, PendingRecord::new);
+            writerThread = new Thread(this::drainRecords, "audit-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
         }
     }
     
     @Override
     public void appendRecord(String s) {
-        if (writer != null) {
-          writer.println(LocalDateTime.now().toString() + ": " + s);
-          writer.flush();
-        }
+        append(AuditEventType.TEXT, null, 0, s);
+    }
+    
+    @Override
+    public void appendEvent(AuditEventType type, String item, long amountCents) {
+        append(type, item, amountCents, null);
+    }
+    
+    /**
+     * @return The number of records dropped because the buffer was full
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+    
+    /**
+     * @return The log this DAO writes to
+     */
+    public AuditLog getLog() {
+        return log;
     }
     
     @Override
     public void close() {
-        if (writer != null) {
-            writer.close();
+        if (!available) {
+            return;
+        }
+        closed = true;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            try {
+                writerThread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            closeSegment();
+        }
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void append(AuditEventType type, String item, long amount, String text) {
+        if (!available) {
+            return;
+        }
+        long timestampNanos = now();
+        if (buffer == null) {
+            synchronized (this) {
+                if (!closed) {
+                    write(timestampNanos, type, item, amount, text);
+                    flush();
+                }
+            }
+            return;
+        }
+        
+        if (closed) {
+            return;
+        }
+        long position = buffer.claim();
+        if (position < 0) {
+            boolean wait = overflowPolicy == OverflowPolicy.BLOCK
+                || (overflowPolicy == OverflowPolicy.SAMPLE
+                    && overflowedRecords.incrementAndGet() % SAMPLE_RATE == 0);
+            if (!wait) {
+                droppedRecords.incrementAndGet();
+                return;
+            }
+            while ((position = buffer.claim()) < 0) {
+                if (closed) {
+                    droppedRecords.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(writerThread);
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+            }
+        }
+        buffer.get(position).set(timestampNanos, type, item, amount, text);
+        buffer.publish(position);
+    }
+    
+    /**
+     * Runs on the writer thread until the DAO is closed and every record
+     * accepted before that has been written
+     */
+    private void drainRecords() {
+        while (true) {
+            // read the flag first, so the last drain sees every record
+            boolean closing = closed;
+            int drained = buffer.drain(this::write, buffer.capacity());
+            reportDrops();
+            if (drained > 0) {
+                flush();
+            } else if (closing) {
+                break;
+            } else {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        flush();
+    }
+    
+    private void write(PendingRecord record) {
+        write(record.timestampNanos, record.type, record.item, record.amount, record.text);
+        record.set(0, null, null, 0, null);
+    }
+    
+    /**
+     * Encodes one record, preceded by the definition of its item if this is
+     * the first time the item is used since the last mark. Must be called
+     * by one thread at a time. Failures are ignored, so that auditing never
+     * interrupts the caller.
+     */
+    private void write(
+        long timestampNanos,
+        AuditEventType type,
+        String item,
+        long amount,
+        String text) {
+        
+        try {
+            timestampNanos = Math.max(timestampNanos, lastTimestampNanos);
+            lastTimestampNanos = timestampNanos;
+            prepareSegment(timestampNanos);
+            if (type == AuditEventType.TEXT) {
+                AuditLogFormat.writeText(output, timestampNanos, text);
+                return;
+            }
+            int itemId = AuditLogFormat.NO_ITEM;
+            if (item != null) {
+                Integer id = itemIds.get(item);
+                if (id == null) {
+                    id = itemIds.size();
+                    itemIds.put(item, id);
+                    AuditLogFormat.writeItem(output, id, item);
+                }
+                itemId = id;
+            }
+            AuditLogFormat.writeEvent(output, timestampNanos, type, itemId, amount);
+        } catch (IOException ex) {
+        }
+    }
+    
+    /**
+     * @return The current time in nanoseconds since the epoch, read from
+     *         the monotonic clock so that it never allocates or goes back
+     */
+    private long now() {
+        return epochNanosAtStart + (System.nanoTime() - nanoTimeAtStart);
+    }
+    
+    /**
+     * Makes sure there is a segment to write a record with the given
+     * timestamp to, rolling over to a new one and marking the index as
+     * needed
+     */
+    private void prepareSegment(long timestampNanos) throws IOException {
+        if (output != null
+            && (output.size() >= maxSegmentBytes
+                || timestampNanos - segmentStartNanos >= maxSegmentNanos)) {
+            
+            closeSegment();
+        }
+        if (output == null) {
+            openSegment(timestampNanos);
+        }
+        if (output.size() == 0 || output.size() - lastMarkOffset >= indexInterval) {
+            // the records after a mark must not depend on those before it
+            AuditLogFormat.writeMark(index, timestampNanos, output.size());
+            lastMarkOffset = output.size();
+            itemIds.clear();
+        }
+    }
+    
+    private void openSegment(long startNanos) throws IOException {
+        Path file = log.segmentFile(startNanos);
+        DataOutputStream segmentOutput = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(file, StandardOpenOption.CREATE_NEW),
+            BUFFER_SIZE
+        ));
+        try {
+            index = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(AuditLog.indexOf(file), StandardOpenOption.CREATE_NEW)
+            ));
+            AuditLogFormat.writeIndexHeader(index);
+        } catch (IOException ex) {
+            segmentOutput.close();
+            throw ex;
+        }
+        output = segmentOutput;
+        segmentStartNanos = startNanos;
+        lastMarkOffset = 0;
+    }
+    
+    /**
+     * Closes the current segment, if any, and hands it over to be
+     * compressed
+     */
+    private void closeSegment() {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.close();
+            index.close();
+        } catch (IOException ex) {
+        }
+        output = null;
+        index = null;
+        scheduleCompression(segmentStartNanos);
+    }
+    
+    private void scheduleCompression(long startNanos) {
+        compressor.execute(() -> {
+            try {
+                for (AuditLog.Segment segment : log.getSegments()) {
+                    if (segment.getStartNanos() == startNanos) {
+                        log.compress(segment);
+                    }
+                }
+            } catch (IOException ex) {
+                // left uncompressed until the log is opened again
+            }
+        });
+    }
+    
+    /**
+     * Creates the directory of the log if need be, and hands over any
+     * segment left uncompressed by an earlier run
+     *
+     * @return Whether the directory is usable
+     */
+    private boolean prepareDirectory() {
+        try {
+            Files.createDirectories(log.getDirectory());
+            List<AuditLog.Segment> segments = log.getSegments();
+            for (AuditLog.Segment segment : segments) {
+                if (!segment.isCompressed()) {
+                    scheduleCompression(segment.getStartNanos());
+                }
+            }
+            if (!segments.isEmpty()) {
+                // start after the last mark of the newest segment
+                AuditLog.Segment newest = segments.get(segments.size() - 1);
+                Path file = newest.isCompressed()
+                    ? log.compressedFile(newest.getStartNanos())
+                    : log.segmentFile(newest.getStartNanos());
+                lastTimestampNanos = newest.getStartNanos() + 1;
+                for (long[] mark : AuditLogFormat.readMarks(AuditLog.indexOf(file))) {
+                    lastTimestampNanos = Math.max(lastTimestampNanos, mark[0] + 1);
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+    
+    private void flush() {
+        if (output == null) {
+            return;
+        }
+        try {
+            // the records first, so that no mark points past them
+            output.flush();
+            index.flush();
+        } catch (IOException ex) {
+        }
+    }
+    
+    private void reportDrops() {
+        long dropped = droppedRecords.get();
+        if (dropped > reportedDrops) {
+            write(now(), AuditEventType.RECORDS_DROPPED, null, dropped - reportedDrops, null);
+            reportedDrops = dropped;
+        }
+    }
+    
+    /**
+     * A slot of the buffer, filled in by the appending thread and read by
+     * the writer thread
+     */
+    private static class PendingRecord {
+        private long timestampNanos;
+        private AuditEventType type;
+        private String item;
+        private long amount;
+        private String text;
+        
+        private void set(
+            long timestampNanos,
+            AuditEventType type,
+            String item,
+            long amount,
+            String text) {
+            
+            this.timestampNanos = timestampNanos;
+            this.type = type;
+            this.item = item;
+            this.amount = amount;
+            this.text = text;
         }
     }
 }
@@ -0,0 +1,59 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.AuditEventType;
+import com.bm.vendingmachine.metrics.MetricsRegistry;
+import com.bm.vendingmachine.metrics.OperationMetrics;
+
+/**
+ * An audit DAO that times every write to another audit DAO, recording into
+ * a MetricsRegistry as "audit.appendEvent"
+ *
+ * Placed around a VendingMachineAuditDaoSummarizingImpl, it measures what
+ * the callers actually wait for, summarized events included.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class VendingMachineAuditDaoMeteredImpl implements VendingMachineAuditDao {
+    private final VendingMachineAuditDao delegate;
+    private final OperationMetrics appends;
+
+    /**
+     * @param delegate The audit DAO doing the work
+     * @param metrics The registry to record into
+     */
+    public VendingMachineAuditDaoMeteredImpl(VendingMachineAuditDao delegate, MetricsRegistry metrics) {
+        this.delegate = delegate;
+        this.appends = metrics.operation("audit.appendEvent");
+    }
+
+    @Override
+    public void appendRecord(String s) {
+        long start = System.nanoTime();
+        try {
+            delegate.appendRecord(s);
+            appends.succeeded(start);
+        } catch (RuntimeException ex) {
+            appends.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void appendEvent(AuditEventType type, String item, long amountCents) {
+        long start = System.nanoTime();
+        try {
+            delegate.appendEvent(type, item, amountCents);
+            appends.succeeded(start);
+        } catch (RuntimeException ex) {
+            appends.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
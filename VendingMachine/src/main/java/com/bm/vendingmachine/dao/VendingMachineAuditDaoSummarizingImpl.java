@@ -0,0 +1,143 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.AuditEventType;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An audit DAO that counts some types of events instead of recording
+ * every one of them, and hands everything else to another audit DAO
+ *
+ * Events of the summarized types only bump a striped counter, so that
+ * threads polling the funds or the catalog never contend with each other
+ * or touch the log. Every interval, and once more on close, a SUMMARY
+ * event is recorded for every summarized type that occurred since its
+ * last summary, carrying how many times it did. All other events, such as
+ * deposits, sales and loading or saving the items, are still recorded one
+ * by one.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class VendingMachineAuditDaoSummarizingImpl implements VendingMachineAuditDao {
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(1);
+    private final VendingMachineAuditDao delegate;
+    private final boolean[] summarized;
+    private final LongAdder[] counters;
+    private final long[] reported;
+    private final ScheduledExecutorService summarizer;
+    
+    /**
+     * Summarizes every read-only type of event once a minute
+     *
+     * @param delegate The audit DAO recording the events and summaries
+     */
+    public VendingMachineAuditDaoSummarizingImpl(VendingMachineAuditDao delegate) {
+        this(delegate, readOnlyTypes(), DEFAULT_INTERVAL);
+    }
+    
+    /**
+     * @param delegate The audit DAO recording the events and summaries
+     * @param summarizedTypes The types of events to count rather than record
+     * @param interval How often the counts are recorded
+     */
+    public VendingMachineAuditDaoSummarizingImpl(
+        VendingMachineAuditDao delegate,
+        Set<AuditEventType> summarizedTypes,
+        Duration interval) {
+        
+        if (summarizedTypes.contains(AuditEventType.SUMMARY)) {
+            throw new IllegalArgumentException("Summaries cannot be summarized");
+        }
+        int typeCount = AuditEventType.values().length;
+        this.delegate = delegate;
+        this.summarized = new boolean[typeCount];
+        this.counters = new LongAdder[typeCount];
+        this.reported = new long[typeCount];
+        for (AuditEventType type : summarizedTypes) {
+            summarized[type.getCode()] = true;
+            counters[type.getCode()] = new LongAdder();
+        }
+        
+        summarizer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "audit-summarizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = interval.toNanos();
+        summarizer.scheduleAtFixedRate(
+            this::recordSummaries,
+            intervalNanos,
+            intervalNanos,
+            TimeUnit.NANOSECONDS
+        );
+    }
+    
+    /**
+     * @return Every type of event that records a lookup changing nothing
+     */
+    public static Set<AuditEventType> readOnlyTypes() {
+        Set<AuditEventType> types = EnumSet.noneOf(AuditEventType.class);
+        for (AuditEventType type : AuditEventType.values()) {
+            if (type.isReadOnly()) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+    
+    @Override
+    public void appendRecord(String s) {
+        delegate.appendRecord(s);
+    }
+    
+    @Override
+    public void appendEvent(AuditEventType type, String item, long amountCents) {
+        if (summarized[type.getCode()]) {
+            counters[type.getCode()].increment();
+        } else {
+            delegate.appendEvent(type, item, amountCents);
+        }
+    }
+    
+    /**
+     * Records the last summaries and closes the underlying audit DAO
+     */
+    @Override
+    public void close() {
+        summarizer.shutdown();
+        try {
+            summarizer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        recordSummaries();
+        delegate.close();
+    }
+    
+    /**
+     * Records how many events of every summarized type occurred since the
+     * last summary. Counters are never reset, so an event counted while
+     * this runs is simply left for the next summary. Runs on one thread at
+     * a time.
+     */
+    private synchronized void recordSummaries() {
+        for (AuditEventType type : AuditEventType.values()) {
+            int code = type.getCode();
+            if (!summarized[code]) {
+                continue;
+            }
+            long total = counters[code].sum();
+            if (total > reported[code]) {
+                delegate.appendEvent(AuditEventType.SUMMARY, type.name(), total - reported[code]);
+                reported[code] = total;
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.bm.vendingmachine.dao;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A Dao which can also remove the units of several items as one step, as
+ * a cart is taken out of the machine
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public interface VendingMachineCartDao extends VendingMachineDao {
+    /**
+     * Attempts to reduce the quantities of several items at once, by the
+     * given quantity of each. Either every unit is removed or none is, and
+     * no other caller can observe some of the items reduced and not the
+     * others, or be refused units which are then put back.
+     *
+     * @param quantities The number of units of each item, by name, each of
+     *                   which must be positive
+     * @return The name of an item which does not exist or does not hold
+     *         enough units, or an empty instance if every unit was removed
+     */
+    public Optional<String> removeUnitsOfItems(Map<String, Long> quantities);
+}
@@ -0,0 +1,36 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The Dao keeping the coins a Vending Machine gives change from, as a
+ * count for every kind of coin, named as the service names them
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public interface VendingMachineCoinDao {
+    /**
+     * Loads the coin counts from an external source
+     *
+     * @return The count of every kind of coin, by name, or an empty
+     *         instance if no counts have been saved yet
+     * @throws FailedLoadOfVendingItemsException If the counts exist but
+     *         cannot be read
+     */
+    public Optional<Map<String, Long>> loadCoins() throws FailedLoadOfVendingItemsException;
+
+    /**
+     * Saves the coin counts to an external source, replacing those saved
+     * before
+     *
+     * @param counts The count of every kind of coin, by name
+     * @throws FailedSaveOfVendingItemsException If the counts cannot be
+     *         written
+     */
+    public void saveCoins(Map<String, Long> counts) throws FailedSaveOfVendingItemsException;
+}
@@ -0,0 +1,110 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The file implementation of the VendingMachineCoinDao interface
+ *
+ * The counts are kept one kind of coin per line, as name::count, next to
+ * the items file. They are saved the way the items are: written to a
+ * temporary file, which is forced to disk and then atomically renamed over
+ * the coins file, keeping the previous generation as coins.txt.bak.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class VendingMachineCoinDaoFileImpl implements VendingMachineCoinDao {
+    public static final String DEFAULT_COINS_FILE = "coins.txt";
+    private static final String DELIMITER = "::";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private final Path COINS_FILE;
+
+    public VendingMachineCoinDaoFileImpl() {
+        this(DEFAULT_COINS_FILE);
+    }
+
+    public VendingMachineCoinDaoFileImpl(String coinsFile) {
+        COINS_FILE = Path.of(coinsFile);
+    }
+
+    @Override
+    public Optional<Map<String, Long>> loadCoins() throws FailedLoadOfVendingItemsException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(COINS_FILE, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException ex) {
+            throw new FailedLoadOfVendingItemsException("Unable to load coins", ex);
+        }
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int line = 0; line < lines.size(); line++) {
+            if (lines.get(line).isBlank()) {
+                continue;
+            }
+            String[] fields = lines.get(line).split(DELIMITER, -1);
+            try {
+                if (fields.length != 2) {
+                    throw new NumberFormatException("Expected name" + DELIMITER + "count");
+                }
+                long count = Long.parseLong(fields[1].trim());
+                if (count < 0) {
+                    throw new NumberFormatException("Negative count: " + count);
+                }
+                counts.put(fields[0].trim(), count);
+            } catch (NumberFormatException ex) {
+                throw new FailedLoadOfVendingItemsException(
+                    "Malformed line " + (line + 1) + " in " + COINS_FILE,
+                    ex
+                );
+            }
+        }
+        return Optional.of(counts);
+    }
+
+    @Override
+    public void saveCoins(Map<String, Long> counts) throws FailedSaveOfVendingItemsException {
+        Path temporary = COINS_FILE.resolveSibling(
+            COINS_FILE.getFileName().toString() + TEMPORARY_SUFFIX
+        );
+        try {
+            try (FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+
+                Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+                for (Map.Entry<String, Long> count : counts.entrySet()) {
+                    writer.write(count.getKey() + DELIMITER + count.getValue() + System.lineSeparator());
+                }
+                writer.flush();
+                channel.force(true);
+            }
+            ItemsFileWriter.replace(COINS_FILE, temporary);
+        } catch (IOException ex) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // the next save overwrites it anyway
+            }
+            throw new FailedSaveOfVendingItemsException("Unable to save coins", ex);
+        }
+    }
+}
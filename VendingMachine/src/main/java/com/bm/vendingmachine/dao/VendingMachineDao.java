@@ -2,6 +2,7 @@ package com.bm.vendingmachine.dao;
 
 import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
 import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
 import com.bm.vendingmachine.dto.VendingMachineItem;
 import java.util.List;
 import java.util.Optional;
@@ -9,6 +10,13 @@ import java.util.Optional;
 /**
  * The Dao interface that all Daos in this application must implement
  *
+ * It covers loading and saving the items, looking them up, and removing
+ * and returning units of one item at a time. A DAO that can also answer
+ * queries by cost and update prices implements VendingMachinePriceDao, and
+ * one that can remove a whole cart at once implements
+ * VendingMachineCartDao. The service falls back on these core operations
+ * for a DAO that implements neither.
+ *
  * @author Benjamin Munoz
  * email: driver396@gmail.com
  * date: Jul 31, 2021
@@ -28,6 +36,19 @@ public interface VendingMachineDao {
      */
     public List<VendingMachineItem> getAllItems();
     
+    /**
+     * Captures every Vending Machine Item in this machine, including those
+     * items with zero quantity, as of a single point in time. Taking the
+     * snapshot may hold up removals while it copies the quantities, but
+     * reading it does not, and removals made afterwards are not visible
+     * through it.
+     * 
+     * The snapshot should be closed once it has been read.
+     * 
+     * @return A snapshot of the whole catalog
+     */
+    public CatalogSnapshot getCatalogSnapshot();
+    
     /**
      * Attempts to retrieve the Vending Machine Item in this DAO whose name
      * matches the below name.
@@ -58,6 +79,30 @@ public interface VendingMachineDao {
      */
     public Optional<VendingMachineItem> removeOneOfItem(String name);
     
+    /**
+     * Attempts to reduce the quantity of the item corresponding to this
+     * name by the given quantity, in a single step. Nothing is removed
+     * unless the item holds at least that many units.
+     *
+     * @param name The name of the item
+     * @param quantity The number of units, which must be positive
+     * @return The item after the removal, or an empty instance if the item
+     *         does not exist or does not hold enough units
+     */
+    public Optional<VendingMachineItem> removeUnitsOfItem(String name, long quantity);
+    
+    /**
+     * Puts units of an item back into the machine, typically because the
+     * sale that removed them could not be completed
+     *
+     * @param name The name of the item
+     * @param quantity The number of units, which must be positive
+     * @return Whether the item exists
+     * @throws ArithmeticException If the quantity of the item would no
+     *         longer fit in this DAO, in which case no unit is put back
+     */
+    public boolean returnUnitsOfItem(String name, long quantity);
+
     /**
      * Saves the Vending Machine items in this DAO to some external source.
      * If this saving procedure fails, the below exception will be thrown.
@@ -65,4 +110,9 @@ public interface VendingMachineDao {
      * @throws FailedSaveOfVendingItemsException 
      */
     public void saveItems() throws FailedSaveOfVendingItemsException;
+    
+    /**
+     * Frees all resources dedicated to this DAO.
+     */
+    public void close();
 }
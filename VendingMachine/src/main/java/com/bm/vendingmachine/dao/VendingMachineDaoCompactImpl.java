@@ -0,0 +1,291 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.Money;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A VendingMachineDao implementation that keeps the items file in a
+ * CompactCatalog
+ *
+ * Costs are held as long cents and quantities as ints in primitive arrays,
+ * so a removal is a single compare-and-set that allocates nothing. The items
+ * handed out are flyweight views of the catalog rather than copies, and
+ * their getters always report the current state of the item.
+ *
+ * Catalog snapshots copy the quantity and cost columns, which are an int
+ * and a long per item, and share the names with the live catalog. Removals
+ * wait while the quantities are copied, so the copy holds every quantity as
+ * of one point in time, and every cost comes from the same price version.
+ *
+ * updatePrices hands the catalog a whole new column of costs, which it
+ * switches to at once; the views handed out before then report the new
+ * costs too.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class VendingMachineDaoCompactImpl implements VendingMachinePriceDao, VendingMachineCartDao {
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private final Path ITEMS_FILE;
+    private final AtomicLong SNAPSHOT_VERSION;
+    private volatile CompactCatalog catalog;
+
+    public VendingMachineDaoCompactImpl(String itemsFile) {
+        ITEMS_FILE = Path.of(itemsFile);
+        SNAPSHOT_VERSION = new AtomicLong();
+        catalog = new CompactCatalog.Builder().build();
+    }
+
+    @Override
+    public void loadItems() throws FailedLoadOfVendingItemsException {
+        catalog = CompactCatalog.load(ITEMS_FILE);
+    }
+
+    @Override
+    public List<VendingMachineItem> getAllItems() {
+        CompactCatalog current = catalog;
+        List<VendingMachineItem> items = new ArrayList<>(current.size());
+        for (int i = 0; i < current.size(); i++) {
+            items.add(current.viewOf(i));
+        }
+        return items;
+    }
+
+    @Override
+    public CatalogSnapshot getCatalogSnapshot() {
+        CompactCatalog current = catalog;
+        long[] costCents = current.copyCosts();
+        int[] quantities = current.copyQuantities();
+        return new CatalogSnapshot(SNAPSHOT_VERSION.incrementAndGet()) {
+            @Override
+            public int size() {
+                return quantities.length;
+            }
+
+            @Override
+            public VendingMachineItem get(int index) {
+                return new VendingMachineItem(
+                    current.nameOf(index),
+                    BigDecimal.valueOf(costCents[index], 2),
+                    BigInteger.valueOf(quantities[index])
+                );
+            }
+        };
+    }
+
+    @Override
+    public Optional<VendingMachineItem> getItemByName(String name) {
+        CompactCatalog current = catalog;
+        int index = current.indexOf(name);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(current.viewOf(index));
+    }
+
+    @Override
+    public List<VendingMachineItem> getAffordableItems(BigDecimal funds) {
+        CompactCatalog current = catalog;
+        List<VendingMachineItem> items = new ArrayList<>();
+        current.priceIndex().forEachAffordable(
+            Money.centsAtMost(funds),
+            index -> addIfInStock(items, current, index)
+        );
+        return items;
+    }
+
+    @Override
+    public List<VendingMachineItem> getCheapestItems(int count) {
+        CompactCatalog current = catalog;
+        List<VendingMachineItem> items = new ArrayList<>();
+        current.priceIndex().forEachCheapest(
+            count,
+            index -> addIfInStock(items, current, index)
+        );
+        return items;
+    }
+
+    @Override
+    public List<VendingMachineItem> getItemsInPriceRange(BigDecimal minimum, BigDecimal maximum) {
+        CompactCatalog current = catalog;
+        List<VendingMachineItem> items = new ArrayList<>();
+        current.priceIndex().forEachInStock(
+            Money.centsAtLeast(minimum),
+            Money.centsAtMost(maximum),
+            Integer.MAX_VALUE,
+            index -> addIfInStock(items, current, index)
+        );
+        return items;
+    }
+
+    /**
+     * Adds a view of the item unless it sold out after the index was read
+     */
+    private static void addIfInStock(
+        List<VendingMachineItem> items,
+        CompactCatalog current,
+        int index) {
+
+        if (current.quantityOf(index) > 0) {
+            items.add(current.viewOf(index));
+        }
+    }
+
+    @Override
+    public Optional<VendingMachineItem> removeOneOfItem(String name) {
+        CompactCatalog current = catalog;
+        int index = current.indexOf(name);
+        if (index < 0 || current.removeOne(index) < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(current.viewOf(index));
+    }
+
+    @Override
+    public Optional<VendingMachineItem> removeUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        CompactCatalog current = catalog;
+        int index = current.indexOf(name);
+        if (index < 0 || current.removeUnits(index, quantity) < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(current.viewOf(index));
+    }
+
+    @Override
+    public Optional<String> removeUnitsOfItems(Map<String, Long> quantities) {
+        CompactCatalog current = catalog;
+        String[] names = new String[quantities.size()];
+        int[] indices = new int[names.length];
+        long[] units = new long[names.length];
+        int line = 0;
+        for (Map.Entry<String, Long> quantity : quantities.entrySet()) {
+            if (quantity.getValue() <= 0) {
+                throw new IllegalArgumentException("Invalid quantity: " + quantity.getValue());
+            }
+            int index = current.indexOf(quantity.getKey());
+            if (index < 0) {
+                return Optional.of(quantity.getKey());
+            }
+            names[line] = quantity.getKey();
+            indices[line] = index;
+            units[line] = quantity.getValue();
+            line++;
+        }
+        int failed = current.removeUnitsOfAll(indices, units);
+        return failed < 0 ? Optional.empty() : Optional.of(names[failed]);
+    }
+
+    @Override
+    public ItemRemoval removeOneOfItemIfAffordable(String name, long fundsCents) {
+        CompactCatalog current = catalog;
+        int index = current.indexOf(name);
+        if (index < 0) {
+            return new ItemRemoval(ItemRemoval.Status.NO_SUCH_ITEM, null);
+        }
+        long costCents = current.costCentsOf(index);
+        if (fundsCents < costCents) {
+            return new ItemRemoval(
+                ItemRemoval.Status.INSUFFICIENT_FUNDS,
+                current.viewOf(index),
+                costCents
+            );
+        }
+        if (current.removeOne(index) < 0) {
+            return new ItemRemoval(
+                ItemRemoval.Status.OUT_OF_STOCK,
+                current.viewOf(index),
+                costCents
+            );
+        }
+        return new ItemRemoval(
+            ItemRemoval.Status.REMOVED,
+            current.viewOf(index),
+            costCents
+        );
+    }
+
+    @Override
+    public boolean returnUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        CompactCatalog current = catalog;
+        int index = current.indexOf(name);
+        if (index < 0) {
+            return false;
+        }
+        current.addUnits(index, quantity);
+        return true;
+    }
+
+    /**
+     * Costs are held to the cent, so the whole new column is built from the
+     * current one before the catalog switches to it. The new costs are
+     * written by the next saveItems, along with the quantities.
+     */
+    @Override
+    public synchronized void updatePrices(Map<String, BigDecimal> costs) {
+        CompactCatalog current = catalog;
+        long[] costCents = current.copyCosts();
+        for (Map.Entry<String, BigDecimal> price : costs.entrySet()) {
+            int index = current.indexOf(price.getKey());
+            if (index < 0) {
+                throw new IllegalArgumentException("No such item: " + price.getKey());
+            }
+            costCents[index] = PriceList.centsOf(price.getKey(), price.getValue());
+        }
+        current.setCosts(costCents);
+    }
+
+    @Override
+    public long getPriceVersion() {
+        return catalog.priceVersion();
+    }
+
+    @Override
+    public void saveItems() throws FailedSaveOfVendingItemsException {
+        Path temporary = ITEMS_FILE.resolveSibling(
+            ITEMS_FILE.getFileName().toString() + TEMPORARY_SUFFIX
+        );
+        try {
+            try (ItemsFileWriter writer = new ItemsFileWriter(temporary)) {
+                catalog.writeTo(writer);
+                writer.sync();
+            }
+            ItemsFileWriter.replace(ITEMS_FILE, temporary);
+        } catch (IOException ex) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // the next save overwrites it anyway
+            }
+            throw new FailedSaveOfVendingItemsException(
+                "Unable to save vending items",
+                ex
+            );
+        }
+    }
+
+    @Override
+    public void close() {
+        // nothing is held open between calls
+    }
+}
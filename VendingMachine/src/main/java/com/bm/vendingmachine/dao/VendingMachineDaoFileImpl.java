@@ -2,109 +2,1380 @@ package com.bm.vendingmachine.dao;
 
 import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
 import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.Money;
 import com.bm.vendingmachine.dto.VendingMachineItem;
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.HashMap;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntToLongFunction;
 
 /**
  * The file implementation of the VendingMachineDao interface
  *
+ * Items are kept in a concurrent map, and the quantity of every item is a
+ * chain of revisions whose head is swapped through compare-and-set, so any
+ * number of threads may look up and remove items at once without a global
+ * lock.
+ *
+ * Every revision is stamped with a version from a shared clock, which is
+ * what catalog snapshots read against: a snapshot remembers the clock when
+ * it was taken and, for every item, reads the newest revision no later than
+ * that. Revisions stay pending until stamped, and whoever first needs the
+ * stamp of a pending revision assigns it, so a revision a snapshot has
+ * already skipped always ends up with a later version. Old revisions are
+ * dropped as soon as no open snapshot can still need them.
+ *
+ * The units of several items are removed at once as a RevisionGroup: its
+ * revisions share one version, are invisible until the group commits, and
+ * hold off other writers of their items until then, so no caller sees, or
+ * is refused because of, only some of them.
+ *
+ * The costs of the items live apart from them, in a PriceVersion holding
+ * every cost by item id along with a PriceIndex over them, which answers
+ * the queries by cost and is refreshed whenever a removal empties an item
+ * or a unit is given back. Every call reads the current PriceVersion once
+ * and takes all of its costs from it. updatePrices builds the next version
+ * on the side, while sales go on against the current one, and switches to
+ * it with a single volatile write, so no call ever sees the costs of two
+ * versions.
+ *
+ * When constructed with a SyncPolicy, every removal is also appended to an
+ * InventoryJournal, so no sale is lost if the application dies before
+ * saveItems is called. Once enough records have accumulated, the journal is
+ * compacted into a new items file snapshot in the background. The journal
+ * writer and the compactor are threads of this DAO's own, unless it is
+ * given ones shared with other DAOs. loadItems
+ * replays whatever journal generations the last snapshot does not cover.
+ * The journal records quantities alone, so a price update writes a snapshot
+ * holding its costs before it switches to them.
+ *
+ * Units set aside by holdUnitsOfItem leave the stock without a journal
+ * record, and every save and snapshot counts them with the stock, so a
+ * hold outstanding when the application stops or dies is not mistaken for
+ * a sale. Only sellHeldUnitsOfItem journals their removal. The holds are
+ * taken and given up under the checkpoint lock, so a snapshot never sees
+ * units gone from the stock and not yet counted as held.
+ *
+ * A change whose record the journal refused outright is undone. A change
+ * whose record was handed to the journal but never confirmed may or may
+ * not be on disk, so it is kept, and the DAO fails instead: every later
+ * change, save and price update throws until loadItems replays the journal,
+ * which then holds the only account of whether the change happened.
+ *
+ * A snapshot is committed by renaming it to items.txt.snapshot.N, where N is
+ * the last journal generation it covers. The covered generations are then
+ * deleted and the snapshot renamed over the items file. A snapshot left
+ * behind by a crash is finished the same way on the next load.
+ *
+ * The items file is never written in place. Every save goes to a temporary
+ * file, which is forced to disk and then atomically renamed over the items
+ * file, so a crash leaves either the old or the new file behind. The
+ * previous generation is kept as items.txt.bak for rollback.
+ *
  * @author Benjamin Munoz
  * email: driver396@gmail.com
  * date: Jul 31, 2021
  */
-public class VendingMachineDaoFileImpl implements VendingMachineDao {
+public class VendingMachineDaoFileImpl implements
+    VendingMachinePriceDao,
+    VendingMachineCartDao,
+    VendingMachineHoldDao {
+
+    public static final String DEFAULT_ITEMS_FILE = "items.txt";
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 10_000;
+    public static final long PARALLEL_LOAD_THRESHOLD = 8L << 20;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot.";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
     private final String ITEMS_FILE;
-    private static final String DELIMITER = "::";
-    private final Map<String, VendingMachineItem> ITEMS_MAP;
+    private final Map<String, StockEntry> ITEMS_MAP;
+    private final InventoryJournal.SyncPolicy SYNC_POLICY;
+    private final long COMPACTION_THRESHOLD;
+    private final ReadWriteLock CHECKPOINT_LOCK;
+    private final AtomicLong RECORDS_SINCE_CHECKPOINT;
+    private final AtomicBoolean COMPACTING;
+    private final Executor COMPACTOR;
+    private final ExecutorService OWN_COMPACTOR;
+    private final JournalWriter JOURNAL_WRITER;
+    private final AtomicLong CLOCK;
+    private final AtomicLong SNAPSHOT_SEQUENCE;
+    private final ConcurrentSkipListSet<SnapshotRegistration> OPEN_SNAPSHOTS;
+    private volatile InventoryJournal journal;
+    private volatile IOException journalFailure;
+    private volatile PriceVersion prices;
     
     public VendingMachineDaoFileImpl() {
-        ITEMS_MAP = new HashMap<>();
-        ITEMS_FILE = "items.txt";
+        this(DEFAULT_ITEMS_FILE);
     }
     
     public VendingMachineDaoFileImpl(String itemsFile) {
-        ITEMS_MAP = new HashMap<>();
+        this(itemsFile, null, DEFAULT_COMPACTION_THRESHOLD);
+    }
+    
+    public VendingMachineDaoFileImpl(
+        String itemsFile,
+        InventoryJournal.SyncPolicy syncPolicy) {
+        
+        this(itemsFile, syncPolicy, DEFAULT_COMPACTION_THRESHOLD);
+    }
+    
+    /**
+     * @param itemsFile The items file backing this DAO
+     * @param syncPolicy The sync policy of the journal, or null to keep no
+     *                   journal at all
+     * @param compactionThreshold The number of journal records after which
+     *                            the journal is compacted into a snapshot
+     */
+    public VendingMachineDaoFileImpl(
+        String itemsFile,
+        InventoryJournal.SyncPolicy syncPolicy,
+        long compactionThreshold) {
+        
+        this(itemsFile, syncPolicy, compactionThreshold, null, null);
+    }
+    
+    /**
+     * @param itemsFile The items file backing this DAO
+     * @param syncPolicy The sync policy of the journal, or null to keep no
+     *                   journal at all
+     * @param compactionThreshold The number of journal records after which
+     *                            the journal is compacted into a snapshot
+     * @param journalWriter The writer of the journal, shared with other
+     *                      DAOs and closed after them, or null to start one
+     *                      for this DAO alone
+     * @param compactor Runs the compactions of the journal, shared with
+     *                  other DAOs and shut down after them, or null to start
+     *                  a thread for this DAO alone
+     */
+    public VendingMachineDaoFileImpl(
+        String itemsFile,
+        InventoryJournal.SyncPolicy syncPolicy,
+        long compactionThreshold,
+        JournalWriter journalWriter,
+        Executor compactor) {
+        
+        ITEMS_MAP = new ConcurrentHashMap<>();
         ITEMS_FILE = itemsFile;
+        SYNC_POLICY = syncPolicy;
+        COMPACTION_THRESHOLD = compactionThreshold;
+        CHECKPOINT_LOCK = new ReentrantReadWriteLock();
+        RECORDS_SINCE_CHECKPOINT = new AtomicLong();
+        COMPACTING = new AtomicBoolean();
+        CLOCK = new AtomicLong();
+        SNAPSHOT_SEQUENCE = new AtomicLong();
+        OPEN_SNAPSHOTS = new ConcurrentSkipListSet<>();
+        prices = new PriceVersion(0, new StockEntry[0], new BigDecimal[0]);
+        JOURNAL_WRITER = journalWriter;
+        if (syncPolicy == null || compactor != null) {
+            OWN_COMPACTOR = null;
+            COMPACTOR = compactor;
+        } else {
+            OWN_COMPACTOR = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "inventory-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            COMPACTOR = OWN_COMPACTOR;
+        }
     }
     
     @Override
     public void loadItems() throws FailedLoadOfVendingItemsException {
-        Scanner reader;
-        try {
-            reader = new Scanner(new BufferedReader(new FileReader(ITEMS_FILE)));
-        } catch (FileNotFoundException ex) {
-            throw new FailedLoadOfVendingItemsException(
-                "Unable to load vending items", 
-                ex
-            );
+        if (SYNC_POLICY != null) {
+            loadJournaledItems();
+        } else {
+            loadSnapshot();
         }
         
-        while (reader.hasNextLine()) {
-            String[] tokens = reader.nextLine().split(DELIMITER);
-            String name = tokens[0];
-            BigDecimal cost = new BigDecimal(tokens[1]);
-            BigInteger quantity = new BigInteger(tokens[2]);
-            
-            ITEMS_MAP.put(name, new VendingMachineItem(name, cost, quantity));
+        // snapshots list the items by name, at fixed positions
+        StockEntry[] loaded = ITEMS_MAP.values().toArray(new StockEntry[0]);
+        Arrays.sort(loaded, Comparator.comparing((StockEntry entry) -> entry.name));
+        BigDecimal[] costById = new BigDecimal[loaded.length];
+        for (int id = 0; id < loaded.length; id++) {
+            loaded[id].id = id;
+            costById[id] = loaded[id].loadedCost;
         }
-        reader.close();
+        prices = new PriceVersion(prices.version + 1, loaded, costById);
     }
-
+    
+    /**
+     * Parses the items file into the items map. Files of at least
+     * PARALLEL_LOAD_THRESHOLD bytes are parsed in one chunk per processor.
+     */
+    private void loadSnapshot() throws FailedLoadOfVendingItemsException {
+        Path itemsFile = Path.of(ITEMS_FILE);
+        ItemsFileParser.RowHandler handler = (name, unscaledCost, costScale, quantity) -> {
+            ITEMS_MAP.put(
+                name,
+                new StockEntry(name, BigDecimal.valueOf(unscaledCost, costScale), quantity)
+            );
+        };
+        
+        if (itemsFile.toFile().length() >= PARALLEL_LOAD_THRESHOLD) {
+            ItemsFileParser.parseInParallel(
+                itemsFile,
+                Runtime.getRuntime().availableProcessors(),
+                handler
+            );
+        } else {
+            ItemsFileParser.parse(itemsFile, handler);
+        }
+    }
+    
     @Override
     public List<VendingMachineItem> getAllItems() {
-        return new LinkedList<>(ITEMS_MAP.values());
+        PriceVersion current = prices;
+        List<VendingMachineItem> items = new LinkedList<>();
+        ITEMS_MAP.values().forEach(entry -> items.add(current.toItem(entry)));
+        return items;
     }
-
+    
+    @Override
+    public CatalogSnapshot getCatalogSnapshot() {
+        // register before reading the clock, so that no revision this
+        // snapshot needs can be dropped in between
+        SnapshotRegistration registration = new SnapshotRegistration(
+            CLOCK.get(),
+            SNAPSHOT_SEQUENCE.incrementAndGet()
+        );
+        OPEN_SNAPSHOTS.add(registration);
+        return new VersionedSnapshot(prices, CLOCK.get(), registration);
+    }
+    
     @Override
     public Optional<VendingMachineItem> getItemByName(String name) {
-        var item = ITEMS_MAP.get(name);
-        if (item == null) {
+        var entry = ITEMS_MAP.get(name);
+        if (entry == null) {
             return Optional.empty();
         }
-        return Optional.of(item);
+        return Optional.of(prices.toItem(entry));
     }
-
+    
+    @Override
+    public List<VendingMachineItem> getAffordableItems(BigDecimal funds) {
+        PriceVersion current = prices;
+        List<VendingMachineItem> items = new ArrayList<>();
+        current.index.forEachAffordable(
+            Money.centsAtMost(funds),
+            id -> addIfInStock(items, current, id)
+        );
+        return items;
+    }
+    
+    @Override
+    public List<VendingMachineItem> getCheapestItems(int count) {
+        PriceVersion current = prices;
+        List<VendingMachineItem> items = new ArrayList<>();
+        current.index.forEachCheapest(count, id -> addIfInStock(items, current, id));
+        return items;
+    }
+    
+    @Override
+    public List<VendingMachineItem> getItemsInPriceRange(BigDecimal minimum, BigDecimal maximum) {
+        PriceVersion current = prices;
+        List<VendingMachineItem> items = new ArrayList<>();
+        current.index.forEachInStock(
+            Money.centsAtLeast(minimum),
+            Money.centsAtMost(maximum),
+            Integer.MAX_VALUE,
+            id -> addIfInStock(items, current, id)
+        );
+        return items;
+    }
+    
+    /**
+     * Adds a copy of the entry unless it sold out after the index was read
+     */
+    private static void addIfInStock(List<VendingMachineItem> items, PriceVersion current, int id) {
+        StockEntry entry = current.entries[id];
+        long quantity = entry.quantity();
+        if (quantity > 0) {
+            items.add(current.toItem(entry, quantity));
+        }
+    }
+    
     @Override
     public Optional<VendingMachineItem> removeOneOfItem(String name) {
-        var item = ITEMS_MAP.get(name);
-        if (item == null || item.getQuantity().signum() <= 0) {
+        var entry = ITEMS_MAP.get(name);
+        if (entry == null) {
             return Optional.empty();
         }
-        item.setQuantity(item.getQuantity().subtract(BigInteger.ONE));
-        return Optional.of(item);
+        long remaining = removeUnits(entry, 1);
+        if (remaining < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(prices.toItem(entry, remaining));
     }
-
+    
+    @Override
+    public Optional<VendingMachineItem> removeUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        var entry = ITEMS_MAP.get(name);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        long remaining = removeUnits(entry, quantity);
+        if (remaining < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(prices.toItem(entry, remaining));
+    }
+    
+    /**
+     * The units are removed as one RevisionGroup, holding the entries in
+     * ascending order of id so that two calls never wait for each other
+     */
+    @Override
+    public Optional<String> removeUnitsOfItems(Map<String, Long> quantities) {
+        StockEntry[] entries = new StockEntry[quantities.size()];
+        long[] units = new long[entries.length];
+        int line = 0;
+        for (Map.Entry<String, Long> quantity : quantities.entrySet()) {
+            if (quantity.getValue() <= 0) {
+                throw new IllegalArgumentException("Invalid quantity: " + quantity.getValue());
+            }
+            StockEntry entry = ITEMS_MAP.get(quantity.getKey());
+            if (entry == null) {
+                return Optional.of(quantity.getKey());
+            }
+            // a cart only has a few lines, so insertion keeps them in order
+            int position = line++;
+            while (position > 0 && entries[position - 1].id > entry.id) {
+                entries[position] = entries[position - 1];
+                units[position] = units[position - 1];
+                position--;
+            }
+            entries[position] = entry;
+            units[position] = quantity.getValue();
+        }
+        
+        if (SYNC_POLICY == null) {
+            int failed = removeGroup(entries, units);
+            return failed < 0 ? Optional.empty() : Optional.of(entries[failed].name);
+        }
+        
+        checkJournal();
+        int failed;
+        List<CompletableFuture<Void>> commits = new ArrayList<>(entries.length);
+        Lock lock = CHECKPOINT_LOCK.readLock();
+        lock.lock();
+        try {
+            failed = removeGroup(entries, units);
+            InventoryJournal current = journal;
+            if (failed < 0 && current != null) {
+                for (int i = 0; i < entries.length; i++) {
+                    commits.add(current.append(entries[i].name, -units[i]));
+                }
+            }
+        } catch (IOException ex) {
+            if (!commits.isEmpty()) {
+                throw failJournal("Unable to journal the removal of a cart", ex);
+            }
+            returnGroup(entries, units);
+            throw new UncheckedIOException("Unable to journal the removal of a cart", ex);
+        } finally {
+            lock.unlock();
+        }
+        if (failed >= 0) {
+            return Optional.of(entries[failed].name);
+        }
+        
+        for (CompletableFuture<Void> commit : commits) {
+            try {
+                InventoryJournal.awaitCommit(commit);
+            } catch (IOException ex) {
+                throw failJournal("Unable to journal the removal of a cart", ex);
+            }
+        }
+        for (int i = 0; i < commits.size(); i++) {
+            countJournalRecord();
+        }
+        return Optional.empty();
+    }
+    
+    /**
+     * Holds the units of every entry in one RevisionGroup and commits it,
+     * unless an entry holds too few, in which case the group is abandoned
+     *
+     * @param entries The entries, in ascending order of id
+     * @return The position of an entry which did not hold enough units, or
+     *         -1 if every unit was removed
+     */
+    private int removeGroup(StockEntry[] entries, long[] units) {
+        RevisionGroup group = new RevisionGroup();
+        Revision[] held = new Revision[entries.length];
+        for (int line = 0; line < entries.length; line++) {
+            held[line] = entries[line].holdUnits(units[line], group);
+            if (held[line] == null) {
+                for (int release = line - 1; release >= 0; release--) {
+                    entries[release].release(held[release]);
+                }
+                return line;
+            }
+        }
+        group.commit(held, CLOCK);
+        for (int line = 0; line < entries.length; line++) {
+            if (publish(held[line]) == 0) {
+                refreshPrice(entries[line]);
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Gives back the units of a group whose removal could not be journaled
+     */
+    private void returnGroup(StockEntry[] entries, long[] units) {
+        for (int line = 0; line < entries.length; line++) {
+            publish(entries[line].add(units[line]));
+            refreshPrice(entries[line]);
+        }
+    }
+    
+    @Override
+    public ItemRemoval removeOneOfItemIfAffordable(String name, long fundsCents) {
+        var entry = ITEMS_MAP.get(name);
+        if (entry == null) {
+            return new ItemRemoval(ItemRemoval.Status.NO_SUCH_ITEM, null);
+        }
+        // the check and the sale both go by the costs of this one version
+        PriceVersion current = prices;
+        long costCents = current.centsById[entry.id];
+        if (fundsCents < costCents) {
+            return new ItemRemoval(
+                ItemRemoval.Status.INSUFFICIENT_FUNDS,
+                current.toItem(entry),
+                costCents
+            );
+        }
+        long remaining = removeUnits(entry, 1);
+        if (remaining < 0) {
+            return new ItemRemoval(
+                ItemRemoval.Status.OUT_OF_STOCK,
+                current.toItem(entry, 0),
+                costCents
+            );
+        }
+        return new ItemRemoval(
+            ItemRemoval.Status.REMOVED,
+            current.toItem(entry, remaining),
+            costCents
+        );
+    }
+    
+    @Override
+    public Optional<VendingMachineItem> holdUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        var entry = ITEMS_MAP.get(name);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        long remaining;
+        Lock lock = CHECKPOINT_LOCK.readLock();
+        lock.lock();
+        try {
+            remaining = publish(entry.removeUnits(quantity));
+            if (remaining >= 0) {
+                entry.held.addAndGet(quantity);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (remaining < 0) {
+            return Optional.empty();
+        }
+        if (remaining == 0) {
+            refreshPrice(entry);
+        }
+        return Optional.of(prices.toItem(entry, remaining));
+    }
+    
+    @Override
+    public boolean releaseUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        var entry = ITEMS_MAP.get(name);
+        if (entry == null) {
+            return false;
+        }
+        Lock lock = CHECKPOINT_LOCK.readLock();
+        lock.lock();
+        try {
+            entry.held.addAndGet(-quantity);
+            publish(entry.add(quantity));
+        } finally {
+            lock.unlock();
+        }
+        refreshPrice(entry);
+        return true;
+    }
+    
+    /**
+     * The units were already taken out of the stock when they were held,
+     * so only the count of held units and the journal change
+     */
+    @Override
+    public boolean sellHeldUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        var entry = ITEMS_MAP.get(name);
+        if (entry == null) {
+            return false;
+        }
+        if (SYNC_POLICY == null) {
+            entry.held.addAndGet(-quantity);
+            return true;
+        }
+        
+        checkJournal();
+        CompletableFuture<Void> commit = null;
+        Lock lock = CHECKPOINT_LOCK.readLock();
+        lock.lock();
+        try {
+            entry.held.addAndGet(-quantity);
+            InventoryJournal current = journal;
+            if (current != null) {
+                commit = current.append(entry.name, -quantity);
+            }
+        } catch (IOException ex) {
+            entry.held.addAndGet(quantity);
+            throw new UncheckedIOException(
+                "Unable to journal the sale of " + entry.name,
+                ex
+            );
+        } finally {
+            lock.unlock();
+        }
+        
+        if (commit != null) {
+            try {
+                InventoryJournal.awaitCommit(commit);
+            } catch (IOException ex) {
+                throw failJournal("Unable to journal the sale of " + entry.name, ex);
+            }
+            countJournalRecord();
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean returnUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        var entry = ITEMS_MAP.get(name);
+        if (entry == null) {
+            return false;
+        }
+        returnUnits(entry, quantity);
+        return true;
+    }
+    
+    /**
+     * Builds the next PriceVersion while sales go on against the current
+     * one, and then switches to it. With a journal, a snapshot holding the
+     * new costs is committed first, since the journal only records
+     * quantities; without one, the new costs are written by the next
+     * saveItems, along with the quantities.
+     */
+    @Override
+    public synchronized void updatePrices(Map<String, BigDecimal> costs)
+        throws FailedSaveOfVendingItemsException {
+        
+        PriceVersion current = prices;
+        BigDecimal[] costById = current.costById.clone();
+        for (Map.Entry<String, BigDecimal> price : costs.entrySet()) {
+            StockEntry entry = ITEMS_MAP.get(price.getKey());
+            if (entry == null) {
+                throw new IllegalArgumentException("No such item: " + price.getKey());
+            }
+            costById[entry.id] = Money.toDollars(PriceList.centsOf(price.getKey(), price.getValue()));
+        }
+        PriceVersion next = new PriceVersion(current.version + 1, current.entries, costById);
+        
+        if (SYNC_POLICY != null) {
+            try {
+                checkpoint(next);
+            } catch (IOException ex) {
+                throw new FailedSaveOfVendingItemsException(
+                    "Unable to save vending item prices",
+                    ex
+                );
+            }
+        }
+        prices = next;
+        // removals refresh the new index from here on; catch up on those
+        // which refreshed the old one while the new one was being built
+        next.index.refreshAll();
+    }
+    
+    @Override
+    public long getPriceVersion() {
+        return prices.version;
+    }
+    
     @Override
     public void saveItems() throws FailedSaveOfVendingItemsException {
-        PrintWriter writer;
+        if (SYNC_POLICY != null) {
+            try {
+                checkpoint();
+            } catch (IOException ex) {
+                throw new FailedSaveOfVendingItemsException(
+                    "Unable to save vending items",
+                    ex
+                );
+            }
+            return;
+        }
+        
+        Path itemsFile = Path.of(ITEMS_FILE);
+        Path temporary = siblingOf(itemsFile, TEMPORARY_SUFFIX);
+        PriceVersion current = prices;
+        long[] quantities = new long[current.entries.length];
+        Lock lock = CHECKPOINT_LOCK.writeLock();
+        lock.lock();
         try {
-            writer = new PrintWriter(new FileWriter(ITEMS_FILE));
+            for (int id = 0; id < quantities.length; id++) {
+                quantities[id] = current.entries[id].storedQuantity();
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writeItemsFile(temporary, current, id -> quantities[id]);
+            ItemsFileWriter.replace(itemsFile, temporary);
         } catch (IOException ex) {
-            throw new FailedSaveOfVendingItemsException("Unable to save vending items");
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // the next save overwrites it anyway
+            }
+            throw new FailedSaveOfVendingItemsException(
+                "Unable to save vending items",
+                ex
+            );
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (OWN_COMPACTOR != null) {
+            OWN_COMPACTOR.shutdown();
+            try {
+                OWN_COMPACTOR.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            // a shared compactor outlives this DAO, so only its compaction
+            // is waited for
+            while (COMPACTING.get()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(
+                    "Unable to write the vending items journal",
+                    ex
+                );
+            } finally {
+                journal = null;
+            }
+        }
+    }
+    
+    /**
+     * Finishes any checkpoint interrupted by a crash, loads the items file
+     * and replays the journal generations written after it. A fresh journal
+     * generation is then opened for the changes to come.
+     */
+    private void loadJournaledItems() throws FailedLoadOfVendingItemsException {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ex) {
+                // the changes it lost are dropped along with the rest of
+                // the inventory, which is reloaded from disk below
+            }
+            journal = null;
+        }
+        journalFailure = null;
+        
+        Path itemsFile = Path.of(ITEMS_FILE);
+        long replayed = 0;
+        try {
+            recoverCheckpoint(itemsFile);
+            loadSnapshot();
+            for (long generation : InventoryJournal.generations(itemsFile)) {
+                replayed += InventoryJournal.replay(
+                    InventoryJournal.pathOf(itemsFile, generation),
+                    (name, delta) -> {
+                        StockEntry entry = ITEMS_MAP.get(name);
+                        if (entry != null) {
+                            publish(entry.add(delta));
+                        }
+                    }
+                );
+            }
+            journal = new InventoryJournal(
+                itemsFile,
+                SYNC_POLICY,
+                InventoryJournal.DEFAULT_SYNC_INTERVAL_MILLIS,
+                JOURNAL_WRITER
+            );
+        } catch (IOException ex) {
+            throw new FailedLoadOfVendingItemsException(
+                "Unable to replay the vending items journal",
+                ex
+            );
+        }
+        RECORDS_SINCE_CHECKPOINT.set(replayed);
+    }
+    
+    /**
+     * Removes units from the entry and, if there is a journal, records the
+     * removal in it. The units are given back if the journal refuses the
+     * record, and the DAO fails if the record is not confirmed.
+     *
+     * @return The quantity left, or -1 if there were not enough units
+     */
+    private long removeUnits(StockEntry entry, long quantity) {
+        if (SYNC_POLICY == null) {
+            long remaining = publish(entry.removeUnits(quantity));
+            if (remaining == 0) {
+                refreshPrice(entry);
+            }
+            return remaining;
+        }
+        
+        checkJournal();
+        long remaining;
+        CompletableFuture<Void> commit = null;
+        Lock lock = CHECKPOINT_LOCK.readLock();
+        lock.lock();
+        try {
+            remaining = publish(entry.removeUnits(quantity));
+            InventoryJournal current = journal;
+            if (remaining >= 0 && current != null) {
+                commit = current.append(entry.name, -quantity);
+            }
+        } catch (IOException ex) {
+            publish(entry.add(quantity));
+            refreshPrice(entry);
+            throw new UncheckedIOException(
+                "Unable to journal the removal of " + entry.name,
+                ex
+            );
+        } finally {
+            lock.unlock();
+        }
+        if (remaining == 0) {
+            refreshPrice(entry);
+        }
+        
+        if (commit != null) {
+            try {
+                InventoryJournal.awaitCommit(commit);
+            } catch (IOException ex) {
+                throw failJournal("Unable to journal the removal of " + entry.name, ex);
+            }
+            countJournalRecord();
+        }
+        return remaining;
+    }
+    
+    /**
+     * Gives units back to the entry and, if there is a journal, records
+     * the return in it. The units are taken away again if the journal
+     * refuses the record, and the DAO fails if the record is not confirmed.
+     */
+    private void returnUnits(StockEntry entry, long quantity) {
+        if (SYNC_POLICY == null) {
+            publish(entry.add(quantity));
+            refreshPrice(entry);
+            return;
+        }
+        
+        checkJournal();
+        CompletableFuture<Void> commit = null;
+        Lock lock = CHECKPOINT_LOCK.readLock();
+        lock.lock();
+        try {
+            publish(entry.add(quantity));
+            InventoryJournal current = journal;
+            if (current != null) {
+                commit = current.append(entry.name, quantity);
+            }
+        } catch (IOException ex) {
+            publish(entry.add(-quantity));
+            throw new UncheckedIOException(
+                "Unable to journal the return of " + entry.name,
+                ex
+            );
+        } finally {
+            lock.unlock();
+        }
+        refreshPrice(entry);
+        
+        if (commit != null) {
+            try {
+                InventoryJournal.awaitCommit(commit);
+            } catch (IOException ex) {
+                throw failJournal("Unable to journal the return of " + entry.name, ex);
+            }
+            countJournalRecord();
+        }
+    }
+    
+    /**
+     * Refuses a change once the journal has failed, until the items are
+     * loaded again
+     *
+     * @throws IllegalStateException If the journal has failed
+     */
+    private void checkJournal() {
+        IOException failure = journalFailure;
+        if (failure != null) {
+            throw new IllegalStateException(
+                "The vending items journal has failed; the items must be reloaded",
+                failure
+            );
+        }
+    }
+    
+    /**
+     * Fails this DAO after a record was handed to the journal but never
+     * confirmed. The change is kept in memory, and only loadItems tells
+     * whether it reached the journal.
+     *
+     * @return The exception to throw to the caller of the change
+     */
+    private UncheckedIOException failJournal(String message, IOException cause) {
+        if (journalFailure == null) {
+            journalFailure = cause;
+        }
+        return new UncheckedIOException(message + "; the items must be reloaded", cause);
+    }
+    
+    /**
+     * Counts a record written to the journal, compacting the journal in the
+     * background once enough of them have piled up
+     */
+    private void countJournalRecord() {
+        if (RECORDS_SINCE_CHECKPOINT.incrementAndGet() >= COMPACTION_THRESHOLD
+            && COMPACTING.compareAndSet(false, true)) {
+            
+            try {
+                COMPACTOR.execute(this::compact);
+            } catch (RejectedExecutionException ex) {
+                // the compactor is shutting down, the journal keeps growing
+                // until the next load
+                COMPACTING.set(false);
+            }
+        }
+    }
+    
+    /**
+     * Stamps a new revision and drops the revisions under it that no open
+     * snapshot can read anymore
+     *
+     * @param revision The new head of an entry, or null if there was none
+     * @return The quantity of the revision, or -1 if there was none
+     */
+    private long publish(Revision revision) {
+        if (revision == null) {
+            return -1;
+        }
+        revision.stamp(CLOCK);
+        
+        // the clock is read before the open snapshots; see getCatalogSnapshot
+        long horizon = CLOCK.get();
+        SnapshotRegistration oldest = OPEN_SNAPSHOTS.ceiling(SnapshotRegistration.LOWEST);
+        if (oldest != null) {
+            horizon = Math.min(horizon, oldest.version);
+        }
+        for (Revision visible = revision; visible != null; visible = visible.previous) {
+            if (visible.version() <= horizon) {
+                visible.previous = null;
+                break;
+            }
+        }
+        return revision.quantity;
+    }
+    
+    private void refreshPrice(StockEntry entry) {
+        PriceVersion current = prices;
+        if (entry.id < current.entries.length && current.entries[entry.id] == entry) {
+            current.index.refresh(entry.id);
+        }
+    }
+    
+    private void compact() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException ex) {
+            // the journal still holds every change, try again later
+        } finally {
+            COMPACTING.set(false);
+        }
+    }
+    
+    private synchronized void checkpoint() throws IOException {
+        checkpoint(prices);
+    }
+    
+    /**
+     * Writes a snapshot of every item, at the given costs, into the items
+     * file and discards the journal generations it covers. Sales are only
+     * held up while the quantities are copied and the journal switches
+     * generations.
+     */
+    private synchronized void checkpoint(PriceVersion snapshotPrices) throws IOException {
+        IOException failure = journalFailure;
+        if (failure != null) {
+            throw new IOException(
+                "The vending items journal has failed; the items must be reloaded",
+                failure
+            );
+        }
+        StockEntry[] snapshotEntries = snapshotPrices.entries;
+        long[] quantities = new long[snapshotEntries.length];
+        long coveredGeneration = 0;
+        Lock lock = CHECKPOINT_LOCK.writeLock();
+        lock.lock();
+        try {
+            for (int id = 0; id < snapshotEntries.length; id++) {
+                quantities[id] = snapshotEntries[id].storedQuantity();
+            }
+            if (journal != null) {
+                coveredGeneration = journal.rotate();
+            }
+            RECORDS_SINCE_CHECKPOINT.set(0);
+        } finally {
+            lock.unlock();
+        }
+        
+        Path itemsFile = Path.of(ITEMS_FILE);
+        Path temporary = siblingOf(itemsFile, TEMPORARY_SUFFIX);
+        writeItemsFile(temporary, snapshotPrices, id -> quantities[id]);
+        
+        // the rename to the snapshot name is the commit point
+        Path committed = siblingOf(itemsFile, SNAPSHOT_SUFFIX + coveredGeneration);
+        Files.move(temporary, committed, StandardCopyOption.ATOMIC_MOVE);
+        finishCheckpoint(itemsFile, committed, coveredGeneration);
+    }
+    
+    /**
+     * Discards a snapshot that was never committed, and finishes any that
+     * was
+     */
+    private static void recoverCheckpoint(Path itemsFile) throws IOException {
+        Files.deleteIfExists(siblingOf(itemsFile, TEMPORARY_SUFFIX));
+        
+        String prefix = itemsFile.getFileName().toString() + SNAPSHOT_SUFFIX;
+        Path directory = itemsFile.toAbsolutePath().getParent();
+        List<Path> committed = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(
+            directory,
+            prefix + "*")) {
+            
+            entries.forEach(committed::add);
+        }
+        for (Path snapshot : committed) {
+            String generation = snapshot.getFileName().toString()
+                .substring(prefix.length());
+            finishCheckpoint(itemsFile, snapshot, Long.parseLong(generation));
+        }
+    }
+    
+    private static void finishCheckpoint(
+        Path itemsFile,
+        Path snapshot,
+        long coveredGeneration) throws IOException {
+        
+        for (long generation : InventoryJournal.generations(itemsFile)) {
+            if (generation <= coveredGeneration) {
+                Files.deleteIfExists(InventoryJournal.pathOf(itemsFile, generation));
+            }
+        }
+        ItemsFileWriter.replace(itemsFile, snapshot);
+    }
+    
+    /**
+     * Writes the entries of a price version to a file in the items format,
+     * at its costs, and forces the file to disk
+     *
+     * @param quantityOf Gives the quantity to write for every item id
+     */
+    private static void writeItemsFile(
+        Path file,
+        PriceVersion snapshotPrices,
+        IntToLongFunction quantityOf) throws IOException {
+        
+        try (ItemsFileWriter writer = new ItemsFileWriter(file)) {
+            for (StockEntry entry : snapshotPrices.entries) {
+                writer.writeRow(
+                    entry.name,
+                    snapshotPrices.costById[entry.id],
+                    quantityOf.applyAsLong(entry.id)
+                );
+            }
+            writer.sync();
+        }
+    }
+    
+    private static Path siblingOf(Path itemsFile, String suffix) {
+        return itemsFile.resolveSibling(itemsFile.getFileName().toString() + suffix);
+    }
+    
+    /**
+     * The live state of a single item. The name never changes, while the
+     * quantity is a chain of revisions whose head only ever changes through
+     * compare-and-set. The cost is kept by the PriceVersion; the cost read
+     * from the items file only seeds the first one.
+     */
+    private static class StockEntry {
+        private final String name;
+        private final BigDecimal loadedCost;
+        private final AtomicReference<Revision> head;
+        private final AtomicLong held;
+        private int id;
+        
+        private StockEntry(String name, BigDecimal loadedCost, long quantity) {
+            this.name = name;
+            this.loadedCost = loadedCost;
+            this.head = new AtomicReference<>(new Revision(quantity, null, 0));
+            this.held = new AtomicLong();
+        }
+        
+        /**
+         * @return The quantity of the newest committed revision
+         */
+        private long quantity() {
+            Revision current = head.get();
+            return current.isUncommitted() ? current.previous.quantity : current.quantity;
+        }
+        
+        /**
+         * @return The quantity to save, which counts the held units as
+         *         still in stock
+         */
+        private long storedQuantity() {
+            return quantity() + held.get();
+        }
+        
+        /**
+         * Waits until the head is not held by an uncommitted RevisionGroup
+         *
+         * @return The head, which is committed as of the read
+         */
+        private Revision awaitCommitted() {
+            Revision current;
+            while ((current = head.get()).isUncommitted()) {
+                Thread.onSpinWait();
+            }
+            return current;
+        }
+        
+        /**
+         * Pushes a revision with the units removed, unless the quantity is
+         * smaller than that
+         *
+         * @return The new, unstamped revision, or null if there were not
+         *         enough units to remove
+         */
+        private Revision removeUnits(long units) {
+            Revision current;
+            Revision next;
+            do {
+                current = awaitCommitted();
+                if (current.quantity < units) {
+                    return null;
+                }
+                next = new Revision(current.quantity - units, current, Revision.PENDING);
+            } while (!head.compareAndSet(current, next));
+            return next;
+        }
+        
+        /**
+         * Pushes a revision with the units removed as part of a group,
+         * unless the quantity is smaller than that. Until the group is
+         * committed, nobody else can push a revision over it.
+         *
+         * @return The new revision, or null if there were not enough units
+         *         to remove
+         */
+        private Revision holdUnits(long units, RevisionGroup group) {
+            Revision current;
+            Revision next;
+            do {
+                current = awaitCommitted();
+                if (current.quantity < units) {
+                    return null;
+                }
+                next = new Revision(current.quantity - units, current, group);
+            } while (!head.compareAndSet(current, next));
+            return next;
+        }
+        
+        /**
+         * Takes back a revision pushed by holdUnits for a group which was
+         * abandoned
+         */
+        private void release(Revision held) {
+            head.compareAndSet(held, held.previous);
+        }
+        
+        /**
+         * Pushes a revision with the delta added to the quantity
+         *
+         * @return The new, unstamped revision
+         */
+        private Revision add(long delta) {
+            Revision current;
+            Revision next;
+            do {
+                current = awaitCommitted();
+                next = new Revision(current.quantity + delta, current, Revision.PENDING);
+            } while (!head.compareAndSet(current, next));
+            return next;
+        }
+        
+        /**
+         * @return The quantity as of the version of the clock
+         */
+        private long quantityAt(long version, AtomicLong clock) {
+            for (Revision revision = head.get(); revision != null; revision = revision.previous) {
+                if (revision.stamp(clock) <= version) {
+                    return revision.quantity;
+                }
+            }
+            throw new IllegalStateException(
+                "The revision of " + name + " at version " + version + " was dropped"
+            );
+        }
+    }
+    
+    /**
+     * The costs of every item by id, as of one price update, along with a
+     * PriceIndex over them. Nothing in a version changes once built.
+     */
+    private static class PriceVersion {
+        private final long version;
+        private final StockEntry[] entries;
+        private final BigDecimal[] costById;
+        private final long[] centsById;
+        private final PriceIndex index;
+        
+        private PriceVersion(long version, StockEntry[] entries, BigDecimal[] costById) {
+            this.version = version;
+            this.entries = entries;
+            this.costById = costById;
+            this.centsById = new long[costById.length];
+            for (int id = 0; id < costById.length; id++) {
+                centsById[id] = Money.centsAtLeast(costById[id]);
+            }
+            this.index = new PriceIndex(centsById, id -> entries[id].quantity() > 0);
         }
         
-        ITEMS_MAP.values().forEach(item -> {
-            writer.format(
-                "%s::%s::%s%n",
-                item.getName(),
-                item.getCost(),
-                item.getQuantity()
+        private VendingMachineItem toItem(StockEntry entry) {
+            return toItem(entry, entry.quantity());
+        }
+        
+        private VendingMachineItem toItem(StockEntry entry, long quantity) {
+            return new VendingMachineItem(
+                entry.name,
+                costById[entry.id],
+                BigInteger.valueOf(quantity)
             );
-        });
+        }
+    }
+    
+    /**
+     * One quantity of an item, along with the quantity it replaced
+     */
+    private static class Revision {
+        private static final long PENDING = Long.MAX_VALUE;
+        private static final AtomicLongFieldUpdater<Revision> VERSION =
+            AtomicLongFieldUpdater.newUpdater(Revision.class, "version");
+        
+        private final long quantity;
+        private final RevisionGroup group;
+        private volatile Revision previous;
+        private volatile long version;
+        
+        private Revision(long quantity, Revision previous, long version) {
+            this.quantity = quantity;
+            this.previous = previous;
+            this.version = version;
+            this.group = null;
+        }
+        
+        private Revision(long quantity, Revision previous, RevisionGroup group) {
+            this.quantity = quantity;
+            this.previous = previous;
+            this.version = PENDING;
+            this.group = group;
+        }
         
-        writer.close();
+        /**
+         * @return Whether this revision belongs to a group which has not
+         *         been committed, and may never be
+         */
+        private boolean isUncommitted() {
+            return group != null && group.version == PENDING;
+        }
+        
+        /**
+         * @return The version of this revision, or PENDING if it has none
+         *         yet
+         */
+        private long version() {
+            return group == null ? version : group.version;
+        }
+        
+        /**
+         * Assigns this revision the next version of the clock unless it has
+         * one already. Pending revisions underneath are stamped first, so
+         * versions never decrease from the head of a chain to its tail.
+         *
+         * @return The version of this revision
+         */
+        private long stamp(AtomicLong clock) {
+            if (group != null) {
+                // stamped all at once when the group commits
+                return group.version;
+            }
+            long current = version;
+            if (current != PENDING) {
+                return current;
+            }
+            Revision underneath = previous;
+            if (underneath != null) {
+                underneath.stamp(clock);
+            }
+            VERSION.compareAndSet(this, PENDING, clock.incrementAndGet());
+            return version;
+        }
+    }
+    
+    /**
+     * The revisions pushed by one removeUnitsOfItems call, which share a
+     * single version. Until the group commits, its revisions are invisible
+     * to readers and the writers of their entries wait, so they appear all
+     * at once or, if the group is abandoned, not at all.
+     */
+    private static class RevisionGroup {
+        private volatile long version = Revision.PENDING;
+        
+        /**
+         * Stamps the revisions underneath first, so versions never decrease
+         * down a chain, and then gives the whole group the next version
+         */
+        private void commit(Revision[] revisions, AtomicLong clock) {
+            for (Revision revision : revisions) {
+                Revision underneath = revision.previous;
+                if (underneath != null) {
+                    underneath.stamp(clock);
+                }
+            }
+            version = clock.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Marks an open snapshot, so that the revisions it reads are kept. The
+     * sequence tells apart snapshots that registered with the same version.
+     */
+    private static class SnapshotRegistration implements Comparable<SnapshotRegistration> {
+        private static final SnapshotRegistration LOWEST =
+            new SnapshotRegistration(Long.MIN_VALUE, Long.MIN_VALUE);
+        
+        private final long version;
+        private final long sequence;
+        
+        private SnapshotRegistration(long version, long sequence) {
+            this.version = version;
+            this.sequence = sequence;
+        }
+        
+        @Override
+        public int compareTo(SnapshotRegistration other) {
+            int byVersion = Long.compare(version, other.version);
+            return byVersion != 0 ? byVersion : Long.compare(sequence, other.sequence);
+        }
+    }
+    
+    /**
+     * A snapshot that reads every entry at a fixed version of the clock, at
+     * the costs current when it was taken
+     */
+    private class VersionedSnapshot extends CatalogSnapshot {
+        private final PriceVersion snapshotPrices;
+        private final SnapshotRegistration registration;
+        
+        private VersionedSnapshot(
+            PriceVersion snapshotPrices,
+            long version,
+            SnapshotRegistration registration) {
+            
+            super(version);
+            this.snapshotPrices = snapshotPrices;
+            this.registration = registration;
+        }
+        
+        @Override
+        public int size() {
+            return snapshotPrices.entries.length;
+        }
+        
+        @Override
+        public VendingMachineItem get(int index) {
+            StockEntry entry = snapshotPrices.entries[index];
+            return snapshotPrices.toItem(entry, entry.quantityAt(getVersion(), CLOCK));
+        }
+        
+        @Override
+        public void close() {
+            OPEN_SNAPSHOTS.remove(registration);
+        }
     }
 }
@@ -0,0 +1,625 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedAccessOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.Money;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A VendingMachineDao implementation backed by an embedded SQL database
+ *
+ * The database runs in-process, so no server is needed: with H2 on the
+ * classpath, a URL such as jdbc:h2:./items keeps everything in items.mv.db.
+ * One connection is opened by loadItems and reused until close, and every
+ * statement is prepared once along with it. Calls on the shared connection
+ * are serialized.
+ *
+ * Every removal is a single conditional UPDATE ... WHERE quantity > 0,
+ * committed on its own, so stock changes are transactional and already
+ * durable when the call returns. The removals of several items at once
+ * share one transaction. The first load of an empty database seeds
+ * it from an items file, inserting the rows in batches.
+ *
+ * The single-item removals read the updated row back in the same statement
+ * through SELECT ... FROM FINAL TABLE (UPDATE ...), which is H2 syntax, as
+ * is the MERGE used to seed. This DAO is therefore tied to H2; another
+ * database would need these statements rewritten, for example with
+ * UPDATE ... RETURNING, and nothing else.
+ *
+ * Costs are stored to the cent. A price update rewrites the costs in a
+ * single transaction, so its commit is the switch from the old costs to
+ * the new ones. Calls on the shared connection wait for it like for any
+ * other call.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class VendingMachineDaoJdbcImpl implements VendingMachinePriceDao, VendingMachineCartDao {
+    public static final String DEFAULT_URL = "jdbc:h2:./items";
+    public static final int BATCH_SIZE = 1_000;
+    private static final int SNAPSHOT_PAGE_SIZE = 256;
+    private static final String COLUMNS = "name, cost, quantity";
+
+    private final String URL;
+    private final Path SEED_FILE;
+    private final AtomicLong SNAPSHOT_VERSION;
+    private final AtomicLong PRICE_VERSION;
+    private Connection connection;
+    private PreparedStatement selectAll;
+    private PreparedStatement selectByName;
+    private PreparedStatement removeOne;
+    private PreparedStatement removeOneIfAffordable;
+    private PreparedStatement removeUnits;
+    private PreparedStatement returnUnits;
+    private PreparedStatement selectInPriceRange;
+    private PreparedStatement merge;
+    private PreparedStatement updateCost;
+
+    public VendingMachineDaoJdbcImpl() {
+        this(DEFAULT_URL, VendingMachineDaoFileImpl.DEFAULT_ITEMS_FILE);
+    }
+
+    /**
+     * @param url The JDBC URL of the database
+     * @param seedItemsFile The items file loaded into the database if it is
+     *                      empty, or null to never seed it
+     */
+    public VendingMachineDaoJdbcImpl(String url, String seedItemsFile) {
+        URL = url;
+        SEED_FILE = seedItemsFile == null ? null : Path.of(seedItemsFile);
+        SNAPSHOT_VERSION = new AtomicLong();
+        PRICE_VERSION = new AtomicLong();
+    }
+
+    @Override
+    public synchronized void loadItems() throws FailedLoadOfVendingItemsException {
+        close();
+        try {
+            connection = DriverManager.getConnection(URL);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(
+                    "CREATE TABLE IF NOT EXISTS items ("
+                    + "name VARCHAR(255) PRIMARY KEY, "
+                    + "cost DECIMAL(19, 2) NOT NULL, "
+                    + "quantity BIGINT NOT NULL)"
+                );
+                statement.execute("CREATE INDEX IF NOT EXISTS items_by_cost ON items (cost)");
+            }
+
+            selectAll = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM items ORDER BY name"
+            );
+            selectByName = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM items WHERE name = ?"
+            );
+            removeOne = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM FINAL TABLE ("
+                + "UPDATE items SET quantity = quantity - 1 "
+                + "WHERE name = ? AND quantity > 0)"
+            );
+            removeOneIfAffordable = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM FINAL TABLE ("
+                + "UPDATE items SET quantity = quantity - 1 "
+                + "WHERE name = ? AND quantity > 0 AND cost <= ?)"
+            );
+            removeUnits = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM FINAL TABLE ("
+                + "UPDATE items SET quantity = quantity - ? "
+                + "WHERE name = ? AND quantity >= ?)"
+            );
+            returnUnits = connection.prepareStatement(
+                "UPDATE items SET quantity = quantity + ? WHERE name = ?"
+            );
+            selectInPriceRange = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM items "
+                + "WHERE quantity > 0 AND cost BETWEEN ? AND ? "
+                + "ORDER BY cost, name LIMIT ?"
+            );
+            merge = connection.prepareStatement(
+                "MERGE INTO items (" + COLUMNS + ") KEY (name) VALUES (?, ?, ?)"
+            );
+            updateCost = connection.prepareStatement(
+                "UPDATE items SET cost = ? WHERE name = ?"
+            );
+
+            if (SEED_FILE != null && Files.exists(SEED_FILE) && isEmpty()) {
+                seed();
+            }
+        } catch (SQLException ex) {
+            close();
+            throw new FailedLoadOfVendingItemsException(
+                "Unable to load vending items",
+                ex
+            );
+        }
+    }
+
+    @Override
+    public synchronized List<VendingMachineItem> getAllItems() {
+        try {
+            return readItems(selectAll);
+        } catch (SQLException ex) {
+            throw failedAccess(ex);
+        }
+    }
+
+    /**
+     * Reads the snapshot through a connection of its own, in a repeatable
+     * read transaction, a page of rows at a time
+     */
+    @Override
+    public CatalogSnapshot getCatalogSnapshot() {
+        try {
+            return new TransactionSnapshot(
+                DriverManager.getConnection(URL),
+                SNAPSHOT_VERSION.incrementAndGet()
+            );
+        } catch (SQLException ex) {
+            throw failedAccess(ex);
+        }
+    }
+
+    @Override
+    public synchronized Optional<VendingMachineItem> getItemByName(String name) {
+        try {
+            selectByName.setString(1, name);
+            List<VendingMachineItem> items = readItems(selectByName);
+            return items.isEmpty() ? Optional.empty() : Optional.of(items.get(0));
+        } catch (SQLException ex) {
+            throw failedAccess(ex);
+        }
+    }
+
+    @Override
+    public List<VendingMachineItem> getAffordableItems(BigDecimal funds) {
+        return getItemsInPriceRange(BigDecimal.ZERO, funds, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<VendingMachineItem> getCheapestItems(int count) {
+        return getItemsInPriceRange(BigDecimal.ZERO, BigDecimal.valueOf(Long.MAX_VALUE, 2), count);
+    }
+
+    @Override
+    public List<VendingMachineItem> getItemsInPriceRange(BigDecimal minimum, BigDecimal maximum) {
+        return getItemsInPriceRange(minimum, maximum, Integer.MAX_VALUE);
+    }
+
+    private synchronized List<VendingMachineItem> getItemsInPriceRange(
+        BigDecimal minimum,
+        BigDecimal maximum,
+        int limit) {
+
+        try {
+            selectInPriceRange.setBigDecimal(1, minimum);
+            selectInPriceRange.setBigDecimal(2, maximum);
+            selectInPriceRange.setInt(3, limit);
+            return readItems(selectInPriceRange);
+        } catch (SQLException ex) {
+            throw failedAccess(ex);
+        }
+    }
+
+    @Override
+    public synchronized Optional<VendingMachineItem> removeOneOfItem(String name) {
+        try {
+            removeOne.setString(1, name);
+            List<VendingMachineItem> removed = readItems(removeOne);
+            return removed.isEmpty() ? Optional.empty() : Optional.of(removed.get(0));
+        } catch (SQLException ex) {
+            throw failedAccess(ex);
+        }
+    }
+
+    @Override
+    public synchronized Optional<VendingMachineItem> removeUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        try {
+            removeUnits.setLong(1, quantity);
+            removeUnits.setString(2, name);
+            removeUnits.setLong(3, quantity);
+            List<VendingMachineItem> removed = readItems(removeUnits);
+            return removed.isEmpty() ? Optional.empty() : Optional.of(removed.get(0));
+        } catch (SQLException ex) {
+            throw failedAccess(ex);
+        }
+    }
+
+    /**
+     * Runs the conditional UPDATE of every item in one transaction, which
+     * is rolled back as soon as an item does not hold enough units
+     */
+    @Override
+    public synchronized Optional<String> removeUnitsOfItems(Map<String, Long> quantities) {
+        for (long quantity : quantities.values()) {
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Invalid quantity: " + quantity);
+            }
+        }
+        try {
+            connection.setAutoCommit(false);
+            try {
+                for (Map.Entry<String, Long> line : quantities.entrySet()) {
+                    removeUnits.setLong(1, line.getValue());
+                    removeUnits.setString(2, line.getKey());
+                    removeUnits.setLong(3, line.getValue());
+                    if (readItems(removeUnits).isEmpty()) {
+                        connection.rollback();
+                        return Optional.of(line.getKey());
+                    }
+                }
+                connection.commit();
+                return Optional.empty();
+            } catch (SQLException | RuntimeException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw failedAccess(ex);
+        }
+    }
+
+    @Override
+    public synchronized ItemRemoval removeOneOfItemIfAffordable(String name, BigDecimal funds) {
+        try {
+            removeOneIfAffordable.setString(1, name);
+            removeOneIfAffordable.setBigDecimal(2, funds);
+            List<VendingMachineItem> removed = readItems(removeOneIfAffordable);
+            if (!removed.isEmpty()) {
+                return new ItemRemoval(ItemRemoval.Status.REMOVED, removed.get(0));
+            }
+
+            // nothing was removed, so find out why; quantities only go down
+            selectByName.setString(1, name);
+            List<VendingMachineItem> items = readItems(selectByName);
+            if (items.isEmpty()) {
+                return new ItemRemoval(ItemRemoval.Status.NO_SUCH_ITEM, null);
+            }
+            VendingMachineItem item = items.get(0);
+            if (funds.compareTo(item.getCost()) < 0) {
+                return new ItemRemoval(ItemRemoval.Status.INSUFFICIENT_FUNDS, item);
+            }
+            return new ItemRemoval(ItemRemoval.Status.OUT_OF_STOCK, item);
+        } catch (SQLException ex) {
+            throw failedAccess(ex);
+        }
+    }
+
+    /**
+     * Costs are kept as DECIMAL in the database, so the funds are compared
+     * there as an amount in dollars
+     */
+    @Override
+    public ItemRemoval removeOneOfItemIfAffordable(String name, long fundsCents) {
+        return removeOneOfItemIfAffordable(name, Money.toDollars(fundsCents));
+    }
+
+    @Override
+    public synchronized boolean returnUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        try {
+            returnUnits.setLong(1, quantity);
+            returnUnits.setString(2, name);
+            return returnUnits.executeUpdate() > 0;
+        } catch (SQLException ex) {
+            throw failedAccess(ex);
+        }
+    }
+
+    /**
+     * Rewrites the costs in one transaction, sending them to the database
+     * BATCH_SIZE rows at a time, and rolls it back if any row is missing
+     */
+    @Override
+    public synchronized void updatePrices(Map<String, BigDecimal> costs)
+        throws FailedSaveOfVendingItemsException {
+        
+        for (Map.Entry<String, BigDecimal> price : costs.entrySet()) {
+            PriceList.centsOf(price.getKey(), price.getValue());
+        }
+        try {
+            connection.setAutoCommit(false);
+            try {
+                List<String> pendingNames = new ArrayList<>(BATCH_SIZE);
+                for (Map.Entry<String, BigDecimal> price : costs.entrySet()) {
+                    updateCost.setBigDecimal(1, price.getValue());
+                    updateCost.setString(2, price.getKey());
+                    updateCost.addBatch();
+                    pendingNames.add(price.getKey());
+                    if (pendingNames.size() == BATCH_SIZE) {
+                        executeCostUpdates(pendingNames);
+                    }
+                }
+                if (!pendingNames.isEmpty()) {
+                    executeCostUpdates(pendingNames);
+                }
+                connection.commit();
+                PRICE_VERSION.incrementAndGet();
+            } catch (SQLException | RuntimeException ex) {
+                updateCost.clearBatch();
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new FailedSaveOfVendingItemsException(
+                "Unable to save vending item prices",
+                ex
+            );
+        }
+    }
+
+    /**
+     * The version only grows once a price update commits, and calls on the
+     * connection are serialized, so a call that starts after the commit
+     * always reads the new version
+     */
+    @Override
+    public long getPriceVersion() {
+        return PRICE_VERSION.get();
+    }
+
+    /**
+     * Sends the batched cost updates, which must each have found their row
+     */
+    private void executeCostUpdates(List<String> names) throws SQLException {
+        int[] counts = updateCost.executeBatch();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new IllegalArgumentException("No such item: " + names.get(i));
+            }
+        }
+        names.clear();
+    }
+
+    /**
+     * Every removal is committed as it happens, so saving only makes sure
+     * the database has written its log out
+     */
+    @Override
+    public synchronized void saveItems() throws FailedSaveOfVendingItemsException {
+        if (connection == null) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CHECKPOINT");
+        } catch (SQLException ex) {
+            throw new FailedSaveOfVendingItemsException(
+                "Unable to save vending items",
+                ex
+            );
+        }
+    }
+
+    /**
+     * Inserts or replaces the items in one transaction, sending them to the
+     * database BATCH_SIZE rows at a time
+     *
+     * @param items The items to store
+     * @throws FailedSaveOfVendingItemsException If the items could not be
+     *         stored, in which case none of them are
+     */
+    public synchronized void putItems(Iterable<VendingMachineItem> items)
+        throws FailedSaveOfVendingItemsException {
+
+        try {
+            connection.setAutoCommit(false);
+            try {
+                int pending = 0;
+                for (VendingMachineItem item : items) {
+                    addMerge(item.getName(), item.getCost(), item.getQuantity().longValueExact());
+                    if (++pending == BATCH_SIZE) {
+                        merge.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    merge.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException ex) {
+                merge.clearBatch();
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException | RuntimeException ex) {
+            throw new FailedSaveOfVendingItemsException(
+                "Unable to save vending items",
+                ex
+            );
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection != null) {
+            try {
+                // closing the connection closes its statements as well
+                connection.close();
+            } catch (SQLException ex) {
+                // nothing more can be done with it either way
+            }
+            connection = null;
+        }
+    }
+
+    private boolean isEmpty() throws SQLException {
+        try (Statement statement = connection.createStatement();
+            ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM items")) {
+
+            rows.next();
+            return rows.getLong(1) == 0;
+        }
+    }
+
+    /**
+     * Streams the seed file into the database in batches, in a single
+     * transaction
+     */
+    private void seed() throws SQLException, FailedLoadOfVendingItemsException {
+        connection.setAutoCommit(false);
+        try {
+            int[] pending = {0};
+            ItemsFileParser.parse(SEED_FILE, (name, unscaledCost, costScale, quantity) -> {
+                try {
+                    addMerge(name, BigDecimal.valueOf(unscaledCost, costScale), quantity);
+                    if (++pending[0] == BATCH_SIZE) {
+                        merge.executeBatch();
+                        pending[0] = 0;
+                    }
+                } catch (SQLException ex) {
+                    throw new FailedAccessOfVendingItemsException("Unable to seed vending items", ex);
+                }
+            });
+            if (pending[0] > 0) {
+                merge.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException | FailedLoadOfVendingItemsException ex) {
+            merge.clearBatch();
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private void addMerge(String name, BigDecimal cost, long quantity) throws SQLException {
+        merge.setString(1, name);
+        merge.setBigDecimal(2, cost);
+        merge.setLong(3, quantity);
+        merge.addBatch();
+    }
+
+    private static List<VendingMachineItem> readItems(PreparedStatement query) throws SQLException {
+        List<VendingMachineItem> items = new ArrayList<>();
+        try (ResultSet rows = query.executeQuery()) {
+            while (rows.next()) {
+                items.add(readItem(rows));
+            }
+        }
+        return items;
+    }
+
+    private static VendingMachineItem readItem(ResultSet rows) throws SQLException {
+        return new VendingMachineItem(
+            rows.getString(1),
+            rows.getBigDecimal(2),
+            BigInteger.valueOf(rows.getLong(3))
+        );
+    }
+
+    private static FailedAccessOfVendingItemsException failedAccess(SQLException ex) {
+        return new FailedAccessOfVendingItemsException("Unable to access vending items", ex);
+    }
+
+    /**
+     * A snapshot held open as a repeatable read transaction on a connection
+     * of its own. Only the page last read is kept in memory.
+     *
+     * Reading the items in order fetches each page after the last name of
+     * the page before it, through the primary key, so a full pass costs
+     * linear time. Only a jump to an index elsewhere pages by offset.
+     */
+    private static class TransactionSnapshot extends CatalogSnapshot {
+        private final Connection connection;
+        private final PreparedStatement selectPageAfter;
+        private final PreparedStatement selectPageAt;
+        private final int size;
+        private List<VendingMachineItem> page;
+        private int pageOffset;
+
+        private TransactionSnapshot(Connection connection, long version) throws SQLException {
+            super(version);
+            this.connection = connection;
+            try {
+                connection.setAutoCommit(false);
+                connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                try (Statement statement = connection.createStatement();
+                    ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM items")) {
+
+                    rows.next();
+                    size = Math.toIntExact(rows.getLong(1));
+                }
+                selectPageAfter = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM items WHERE name > ? ORDER BY name LIMIT ?"
+                );
+                selectPageAt = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM items ORDER BY name LIMIT ? OFFSET ?"
+                );
+            } catch (SQLException ex) {
+                connection.close();
+                throw ex;
+            }
+            page = List.of();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public synchronized VendingMachineItem get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            if (index < pageOffset || index >= pageOffset + page.size()) {
+                try {
+                    if (index == pageOffset + page.size() && !page.isEmpty()) {
+                        selectPageAfter.setString(1, page.get(page.size() - 1).getName());
+                        selectPageAfter.setInt(2, SNAPSHOT_PAGE_SIZE);
+                        pageOffset = index;
+                        page = readItems(selectPageAfter);
+                    } else {
+                        pageOffset = index - index % SNAPSHOT_PAGE_SIZE;
+                        selectPageAt.setInt(1, SNAPSHOT_PAGE_SIZE);
+                        selectPageAt.setInt(2, pageOffset);
+                        page = readItems(selectPageAt);
+                    }
+                } catch (SQLException ex) {
+                    throw failedAccess(ex);
+                }
+            }
+            return page.get(index - pageOffset);
+        }
+
+        @Override
+        public synchronized void close() {
+            try {
+                connection.rollback();
+                connection.close();
+            } catch (SQLException ex) {
+                // the transaction only ever read
+            }
+        }
+    }
+}
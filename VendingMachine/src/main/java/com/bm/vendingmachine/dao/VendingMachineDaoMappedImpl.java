@@ -0,0 +1,598 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.Money;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A VendingMachineDao implementation backed by a memory-mapped file in the
+ * fixed-width format described by MappedItemsFormat
+ *
+ * Loading maps the file instead of parsing it, and only the names are read
+ * up front to build the lookup index. Every removal is a single in-place
+ * compare-and-set on the mapped quantity, so there is nothing left to
+ * rewrite on save; saving just forces the mapped pages to disk.
+ *
+ * Every removal of a single item holds the read lock of the catalog, which
+ * any number of them share. Removing units of several items at once holds
+ * the write lock instead, checks that every item holds enough units, and
+ * then writes the new quantities as one batch through a MappedRedoLog, so
+ * a crash part way through the batch is finished on the next load.
+ *
+ * Catalog snapshots copy the mapped quantities into a long array and share
+ * the names with the live catalog. The copy holds the write lock, so it
+ * holds every quantity as of one point in time.
+ *
+ * The costs are read from the file on load into a price version, along
+ * with a PriceIndex of the items, whose ids are their positions in the
+ * file. The index is refreshed whenever a removal empties an item. Calls
+ * take every cost from the version current when they start, and
+ * updatePrices switches to a new one with a single volatile write. The new
+ * costs are first written into the mapped file as one durable batch
+ * through the redo log, where no call reads them, so the file holds
+ * either every old cost or every new one.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class VendingMachineDaoMappedImpl implements VendingMachinePriceDao, VendingMachineCartDao {
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(
+        long[].class,
+        ByteOrder.BIG_ENDIAN
+    );
+
+    private final Path ITEMS_FILE;
+    private final AtomicLong SNAPSHOT_VERSION;
+    private volatile Catalog catalog;
+
+    public VendingMachineDaoMappedImpl(String itemsFile) {
+        ITEMS_FILE = Path.of(itemsFile);
+        SNAPSHOT_VERSION = new AtomicLong();
+    }
+
+    @Override
+    public void loadItems() throws FailedLoadOfVendingItemsException {
+        try (FileChannel channel = FileChannel.open(
+            ITEMS_FILE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+
+            // the mapping stays valid once the channel is closed
+            MappedByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_WRITE,
+                0,
+                channel.size()
+            );
+            MappedItemsFormat.validate(buffer);
+            MappedRedoLog redoLog = new MappedRedoLog(ITEMS_FILE);
+            redoLog.recover(buffer);
+
+            int count = buffer.getInt(MappedItemsFormat.COUNT_OFFSET);
+            int arenaOffset = (int) buffer.getLong(MappedItemsFormat.ARENA_OFFSET);
+            String[] names = new String[count];
+            Map<String, Integer> slots = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                int slot = MappedItemsFormat.slotOf(i);
+                names[i] = MappedItemsFormat.nameOf(buffer, arenaOffset, slot);
+                slots.put(names[i], slot);
+            }
+            long[] centsById = new long[count];
+            for (int i = 0; i < count; i++) {
+                centsById[i] = buffer.getLong(
+                    MappedItemsFormat.slotOf(i) + MappedItemsFormat.COST_OFFSET
+                );
+            }
+            Catalog loaded = new Catalog(buffer, redoLog, names, slots);
+            loaded.prices = loaded.new Prices(0, centsById);
+            catalog = loaded;
+        } catch (IOException ex) {
+            throw new FailedLoadOfVendingItemsException(
+                "Unable to load vending items",
+                ex
+            );
+        }
+    }
+
+    @Override
+    public List<VendingMachineItem> getAllItems() {
+        List<VendingMachineItem> items = new LinkedList<>();
+        Catalog current = catalog;
+        if (current != null) {
+            Catalog.Prices prices = current.prices;
+            current.slots.forEach((name, slot) -> items.add(prices.toItem(name, slot)));
+        }
+        return items;
+    }
+
+    @Override
+    public CatalogSnapshot getCatalogSnapshot() {
+        Catalog current = catalog;
+        String[] names = current == null ? new String[0] : current.names;
+        Catalog.Prices prices = current == null ? null : current.prices;
+        long[] quantities = current == null ? new long[0] : current.copyQuantities();
+        return new CatalogSnapshot(SNAPSHOT_VERSION.incrementAndGet()) {
+            @Override
+            public int size() {
+                return names.length;
+            }
+
+            @Override
+            public VendingMachineItem get(int index) {
+                return prices.toItem(
+                    names[index],
+                    MappedItemsFormat.slotOf(index),
+                    quantities[index]
+                );
+            }
+        };
+    }
+
+    @Override
+    public Optional<VendingMachineItem> getItemByName(String name) {
+        Catalog current = catalog;
+        Integer slot = current == null ? null : current.slots.get(name);
+        if (slot == null) {
+            return Optional.empty();
+        }
+        return Optional.of(current.prices.toItem(name, slot));
+    }
+
+    @Override
+    public List<VendingMachineItem> getAffordableItems(BigDecimal funds) {
+        return getItemsInPriceRange(Long.MIN_VALUE, Money.centsAtMost(funds));
+    }
+
+    @Override
+    public List<VendingMachineItem> getCheapestItems(int count) {
+        List<VendingMachineItem> items = new ArrayList<>();
+        Catalog current = catalog;
+        if (current != null) {
+            Catalog.Prices prices = current.prices;
+            prices.priceIndex.forEachCheapest(
+                count,
+                i -> prices.addIfInStock(items, i)
+            );
+        }
+        return items;
+    }
+
+    @Override
+    public List<VendingMachineItem> getItemsInPriceRange(BigDecimal minimum, BigDecimal maximum) {
+        return getItemsInPriceRange(
+            Money.centsAtLeast(minimum),
+            Money.centsAtMost(maximum)
+        );
+    }
+
+    private List<VendingMachineItem> getItemsInPriceRange(long minimumCents, long maximumCents) {
+        List<VendingMachineItem> items = new ArrayList<>();
+        Catalog current = catalog;
+        if (current != null) {
+            Catalog.Prices prices = current.prices;
+            prices.priceIndex.forEachInStock(
+                minimumCents,
+                maximumCents,
+                Integer.MAX_VALUE,
+                i -> prices.addIfInStock(items, i)
+            );
+        }
+        return items;
+    }
+
+    @Override
+    public Optional<VendingMachineItem> removeOneOfItem(String name) {
+        Catalog current = catalog;
+        Integer slot = current == null ? null : current.slots.get(name);
+        if (slot == null) {
+            return Optional.empty();
+        }
+        long remaining = current.removeOne(slot);
+        if (remaining < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(current.prices.toItem(name, slot, remaining));
+    }
+
+    @Override
+    public Optional<VendingMachineItem> removeUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        Catalog current = catalog;
+        Integer slot = current == null ? null : current.slots.get(name);
+        if (slot == null) {
+            return Optional.empty();
+        }
+        long remaining = current.removeUnits(slot, quantity);
+        if (remaining < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(current.prices.toItem(name, slot, remaining));
+    }
+
+    @Override
+    public Optional<String> removeUnitsOfItems(Map<String, Long> quantities) {
+        Catalog current = catalog;
+        String[] names = new String[quantities.size()];
+        int[] slotsOfLines = new int[names.length];
+        long[] units = new long[names.length];
+        int line = 0;
+        for (Map.Entry<String, Long> quantity : quantities.entrySet()) {
+            if (quantity.getValue() <= 0) {
+                throw new IllegalArgumentException("Invalid quantity: " + quantity.getValue());
+            }
+            Integer slot = current == null ? null : current.slots.get(quantity.getKey());
+            if (slot == null) {
+                return Optional.of(quantity.getKey());
+            }
+            names[line] = quantity.getKey();
+            slotsOfLines[line] = slot;
+            units[line] = quantity.getValue();
+            line++;
+        }
+        if (line == 0) {
+            return Optional.empty();
+        }
+        int failed;
+        try {
+            failed = current.removeUnitsOfAll(slotsOfLines, units);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to log the removal of a cart", ex);
+        }
+        return failed < 0 ? Optional.empty() : Optional.of(names[failed]);
+    }
+
+    @Override
+    public ItemRemoval removeOneOfItemIfAffordable(String name, long fundsCents) {
+        Catalog current = catalog;
+        Integer slot = current == null ? null : current.slots.get(name);
+        if (slot == null) {
+            return new ItemRemoval(ItemRemoval.Status.NO_SUCH_ITEM, null);
+        }
+        Catalog.Prices prices = current.prices;
+        long costCents = prices.costCentsOf(slot);
+        if (fundsCents < costCents) {
+            return new ItemRemoval(
+                ItemRemoval.Status.INSUFFICIENT_FUNDS,
+                prices.toItem(name, slot),
+                costCents
+            );
+        }
+        long remaining = current.removeOne(slot);
+        if (remaining < 0) {
+            return new ItemRemoval(
+                ItemRemoval.Status.OUT_OF_STOCK,
+                prices.toItem(name, slot, 0),
+                costCents
+            );
+        }
+        return new ItemRemoval(
+            ItemRemoval.Status.REMOVED,
+            prices.toItem(name, slot, remaining),
+            costCents
+        );
+    }
+
+    @Override
+    public boolean returnUnitsOfItem(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        Catalog current = catalog;
+        Integer slot = current == null ? null : current.slots.get(name);
+        if (slot == null) {
+            return false;
+        }
+        current.addUnits(slot, quantity);
+        return true;
+    }
+
+    /**
+     * The new costs are written into the mapped slots as one batch and
+     * forced to disk before the switch. Nothing reads the costs in the file
+     * once it is loaded, so calls running meanwhile still see the old costs.
+     */
+    @Override
+    public synchronized void updatePrices(Map<String, BigDecimal> costs)
+        throws FailedSaveOfVendingItemsException {
+        
+        Catalog current = catalog;
+        if (current == null) {
+            throw new IllegalStateException("No vending items have been loaded");
+        }
+        Catalog.Prices prices = current.prices;
+        long[] centsById = prices.centsById.clone();
+        int[] positions = new int[costs.size()];
+        long[] newCents = new long[positions.length];
+        int line = 0;
+        for (Map.Entry<String, BigDecimal> price : costs.entrySet()) {
+            Integer slot = current.slots.get(price.getKey());
+            if (slot == null) {
+                throw new IllegalArgumentException("No such item: " + price.getKey());
+            }
+            positions[line] = slot + MappedItemsFormat.COST_OFFSET;
+            newCents[line] = PriceList.centsOf(price.getKey(), price.getValue());
+            centsById[Catalog.positionOf(slot)] = newCents[line];
+            line++;
+        }
+        Catalog.Prices next = current.new Prices(prices.version + 1, centsById);
+        
+        try {
+            current.redoLog.write(current.buffer, positions, newCents, true);
+        } catch (IOException | RuntimeException ex) {
+            throw new FailedSaveOfVendingItemsException(
+                "Unable to save vending item prices",
+                ex
+            );
+        }
+        current.prices = next;
+        // removals refresh the new index from here on; catch up on those
+        // which refreshed the old one while the new one was being built
+        next.priceIndex.refreshAll();
+    }
+    
+    @Override
+    public long getPriceVersion() {
+        Catalog current = catalog;
+        return current == null ? 0 : current.prices.version;
+    }
+    
+    /**
+     * Every change is already in the mapped file, so saving only forces the
+     * mapped pages to disk
+     */
+    @Override
+    public void saveItems() throws FailedSaveOfVendingItemsException {
+        Catalog current = catalog;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.buffer.force();
+        } catch (RuntimeException ex) {
+            throw new FailedSaveOfVendingItemsException(
+                "Unable to save vending items",
+                ex
+            );
+        }
+    }
+
+    @Override
+    public void close() {
+        Catalog current = catalog;
+        if (current != null) {
+            current.buffer.force();
+            catalog = null;
+        }
+    }
+
+    /**
+     * A mapped file along with the names of its items, in slot order, the
+     * index of its slots by name and the current price version
+     */
+    private static class Catalog {
+        private final MappedByteBuffer buffer;
+        private final MappedRedoLog redoLog;
+        private final String[] names;
+        private final Map<String, Integer> slots;
+        private final ReadWriteLock lock;
+        private volatile Prices prices;
+
+        private Catalog(
+            MappedByteBuffer buffer,
+            MappedRedoLog redoLog,
+            String[] names,
+            Map<String, Integer> slots) {
+
+            this.buffer = buffer;
+            this.redoLog = redoLog;
+            this.names = names;
+            this.slots = slots;
+            this.lock = new ReentrantReadWriteLock();
+        }
+
+        /**
+         * @return The position in the file of the item in the slot, which
+         *         is its id in the PriceIndex
+         */
+        private static int positionOf(int slot) {
+            return (slot - MappedItemsFormat.HEADER_SIZE) / MappedItemsFormat.SLOT_SIZE;
+        }
+
+        private long quantityOf(int slot) {
+            return (long) LONGS.getVolatile(
+                buffer,
+                slot + MappedItemsFormat.QUANTITY_OFFSET
+            );
+        }
+
+        /**
+         * Copies every mapped quantity as of a single point in time
+         *
+         * @return The quantities, by position
+         */
+        private long[] copyQuantities() {
+            long[] copy = new long[names.length];
+            lock.writeLock().lock();
+            try {
+                for (int i = 0; i < names.length; i++) {
+                    copy[i] = quantityOf(MappedItemsFormat.slotOf(i));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return copy;
+        }
+
+        /**
+         * Reduces the mapped quantity by one unless it is already depleted
+         *
+         * @return The quantity left after the removal, or -1 if there was
+         *         nothing to remove
+         */
+        private long removeOne(int slot) {
+            return removeUnits(slot, 1);
+        }
+
+        /**
+         * Reduces the mapped quantity by the units unless it holds fewer
+         *
+         * @return The quantity left after the removal, or -1 if there were
+         *         not enough units to remove
+         */
+        private long removeUnits(int slot, long units) {
+            int position = slot + MappedItemsFormat.QUANTITY_OFFSET;
+            long current;
+            lock.readLock().lock();
+            try {
+                do {
+                    current = (long) LONGS.getVolatile(buffer, position);
+                    if (current < units) {
+                        return -1;
+                    }
+                } while (!LONGS.compareAndSet(buffer, position, current, current - units));
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (current == units) {
+                prices.priceIndex.refresh(positionOf(slot));
+            }
+            return current - units;
+        }
+
+        /**
+         * Reduces the mapped quantities of several items by their units,
+         * unless any of them holds fewer, in which case none is reduced
+         *
+         * @param slotsOfLines The slots of the items, each at most once
+         * @param units The number of units of each item
+         * @return The position in slotsOfLines of an item which did not
+         *         hold enough units, or -1 if every unit was removed
+         * @throws IOException If the redo log cannot hold the batch, in
+         *                     which case none is reduced either
+         */
+        private int removeUnitsOfAll(int[] slotsOfLines, long[] units) throws IOException {
+            int[] positions = new int[slotsOfLines.length];
+            long[] remaining = new long[slotsOfLines.length];
+            lock.writeLock().lock();
+            try {
+                for (int line = 0; line < slotsOfLines.length; line++) {
+                    positions[line] = slotsOfLines[line] + MappedItemsFormat.QUANTITY_OFFSET;
+                    remaining[line] = quantityOf(slotsOfLines[line]) - units[line];
+                    if (remaining[line] < 0) {
+                        return line;
+                    }
+                }
+                redoLog.write(buffer, positions, remaining, false);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (int line = 0; line < slotsOfLines.length; line++) {
+                if (remaining[line] == 0) {
+                    prices.priceIndex.refresh(positionOf(slotsOfLines[line]));
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds units to the mapped quantity
+         *
+         * @return The quantity after the addition
+         * @throws ArithmeticException If the sum overflows, in which case
+         *         the quantity is left as it was
+         */
+        private long addUnits(int slot, long quantity) {
+            int position = slot + MappedItemsFormat.QUANTITY_OFFSET;
+            long current;
+            lock.readLock().lock();
+            try {
+                do {
+                    current = (long) LONGS.getVolatile(buffer, position);
+                } while (!LONGS.compareAndSet(
+                    buffer,
+                    position,
+                    current,
+                    Math.addExact(current, quantity)));
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (current <= 0 && current + quantity > 0) {
+                prices.priceIndex.refresh(positionOf(slot));
+            }
+            return current + quantity;
+        }
+
+        /**
+         * The costs of the items by position, as of one price update, along
+         * with a PriceIndex over them. Nothing in a version changes once
+         * built.
+         */
+        private final class Prices {
+            private final long version;
+            private final long[] centsById;
+            private final PriceIndex priceIndex;
+
+            private Prices(long version, long[] centsById) {
+                this.version = version;
+                this.centsById = centsById;
+                this.priceIndex = new PriceIndex(
+                    centsById,
+                    i -> quantityOf(MappedItemsFormat.slotOf(i)) > 0
+                );
+            }
+
+            private long costCentsOf(int slot) {
+                return centsById[positionOf(slot)];
+            }
+
+            /**
+             * Adds a copy of the item at the position in the file unless it
+             * sold out after the index was read
+             */
+            private void addIfInStock(List<VendingMachineItem> items, int position) {
+                int slot = MappedItemsFormat.slotOf(position);
+                long quantity = quantityOf(slot);
+                if (quantity > 0) {
+                    items.add(toItem(names[position], slot, quantity));
+                }
+            }
+
+            private VendingMachineItem toItem(String name, int slot) {
+                return toItem(name, slot, quantityOf(slot));
+            }
+
+            private VendingMachineItem toItem(String name, int slot, long quantity) {
+                return new VendingMachineItem(
+                    name,
+                    BigDecimal.valueOf(costCentsOf(slot), 2),
+                    BigInteger.valueOf(quantity)
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import com.bm.vendingmachine.metrics.MetricsRegistry;
+import com.bm.vendingmachine.metrics.OperationMetrics;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A DAO that times every operation of another DAO and counts how each one
+ * ended, recording into a MetricsRegistry under names such as
+ * "dao.loadItems"
+ *
+ * Any implementation can be measured this way, without a line of it
+ * changing. An operation that returns normally counts as a success, even
+ * when it reports an item as missing or sold out; only exceptions count as
+ * failures.
+ *
+ * Holds are passed on to a delegate which can hold units. For any other
+ * delegate, a hold removes the units and a release returns them, which is
+ * all a DAO without holds can do.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class VendingMachineDaoMeteredImpl implements
+    VendingMachinePriceDao,
+    VendingMachineCartDao,
+    VendingMachineHoldDao {
+
+    private final VendingMachineDao delegate;
+    private final VendingMachinePriceDao prices;
+    private final VendingMachineCartDao carts;
+    private final VendingMachineHoldDao holds;
+    private final OperationMetrics loads;
+    private final OperationMetrics saves;
+    private final OperationMetrics listings;
+    private final OperationMetrics snapshots;
+    private final OperationMetrics lookups;
+    private final OperationMetrics queries;
+    private final OperationMetrics removals;
+    private final OperationMetrics returns;
+    private final OperationMetrics priceUpdates;
+
+    /**
+     * @param <D> A DAO offering the price and cart operations as well as the
+     *            core ones
+     * @param delegate The DAO doing the work
+     * @param metrics The registry to record into
+     */
+    public <D extends VendingMachinePriceDao & VendingMachineCartDao> VendingMachineDaoMeteredImpl(
+        D delegate,
+        MetricsRegistry metrics) {
+
+        this.delegate = delegate;
+        this.prices = delegate;
+        this.carts = delegate;
+        this.holds = delegate instanceof VendingMachineHoldDao
+            ? (VendingMachineHoldDao) delegate
+            : null;
+        this.loads = metrics.operation("dao.loadItems");
+        this.saves = metrics.operation("dao.saveItems");
+        this.listings = metrics.operation("dao.getAllItems");
+        this.snapshots = metrics.operation("dao.getCatalogSnapshot");
+        this.lookups = metrics.operation("dao.getItemByName");
+        this.queries = metrics.operation("dao.priceQueries");
+        this.removals = metrics.operation("dao.removeUnits");
+        this.returns = metrics.operation("dao.returnUnits");
+        this.priceUpdates = metrics.operation("dao.updatePrices");
+    }
+
+    /**
+     * @param dao A DAO, metered or not
+     * @return The DAO doing the work behind any number of metered DAOs, so
+     *         that reads made for monitoring are not counted as operations
+     */
+    public static VendingMachineDao unmetered(VendingMachineDao dao) {
+        while (dao instanceof VendingMachineDaoMeteredImpl) {
+            dao = ((VendingMachineDaoMeteredImpl) dao).delegate;
+        }
+        return dao;
+    }
+
+    @Override
+    public void loadItems() throws FailedLoadOfVendingItemsException {
+        long start = System.nanoTime();
+        try {
+            delegate.loadItems();
+            loads.succeeded(start);
+        } catch (FailedLoadOfVendingItemsException | RuntimeException ex) {
+            loads.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public List<VendingMachineItem> getAllItems() {
+        long start = System.nanoTime();
+        try {
+            List<VendingMachineItem> items = delegate.getAllItems();
+            listings.succeeded(start);
+            return items;
+        } catch (RuntimeException ex) {
+            listings.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public CatalogSnapshot getCatalogSnapshot() {
+        long start = System.nanoTime();
+        try {
+            CatalogSnapshot snapshot = delegate.getCatalogSnapshot();
+            snapshots.succeeded(start);
+            return snapshot;
+        } catch (RuntimeException ex) {
+            snapshots.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Optional<VendingMachineItem> getItemByName(String name) {
+        long start = System.nanoTime();
+        try {
+            Optional<VendingMachineItem> item = delegate.getItemByName(name);
+            lookups.succeeded(start);
+            return item;
+        } catch (RuntimeException ex) {
+            lookups.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public List<VendingMachineItem> getAffordableItems(BigDecimal funds) {
+        long start = System.nanoTime();
+        try {
+            List<VendingMachineItem> items = prices.getAffordableItems(funds);
+            queries.succeeded(start);
+            return items;
+        } catch (RuntimeException ex) {
+            queries.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public List<VendingMachineItem> getCheapestItems(int count) {
+        long start = System.nanoTime();
+        try {
+            List<VendingMachineItem> items = prices.getCheapestItems(count);
+            queries.succeeded(start);
+            return items;
+        } catch (RuntimeException ex) {
+            queries.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public List<VendingMachineItem> getItemsInPriceRange(BigDecimal minimum, BigDecimal maximum) {
+        long start = System.nanoTime();
+        try {
+            List<VendingMachineItem> items = prices.getItemsInPriceRange(minimum, maximum);
+            queries.succeeded(start);
+            return items;
+        } catch (RuntimeException ex) {
+            queries.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Optional<VendingMachineItem> removeOneOfItem(String name) {
+        long start = System.nanoTime();
+        try {
+            Optional<VendingMachineItem> item = delegate.removeOneOfItem(name);
+            removals.succeeded(start);
+            return item;
+        } catch (RuntimeException ex) {
+            removals.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Optional<VendingMachineItem> removeUnitsOfItem(String name, long quantity) {
+        long start = System.nanoTime();
+        try {
+            Optional<VendingMachineItem> item = delegate.removeUnitsOfItem(name, quantity);
+            removals.succeeded(start);
+            return item;
+        } catch (RuntimeException ex) {
+            removals.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Optional<String> removeUnitsOfItems(Map<String, Long> quantities) {
+        long start = System.nanoTime();
+        try {
+            Optional<String> missing = carts.removeUnitsOfItems(quantities);
+            removals.succeeded(start);
+            return missing;
+        } catch (RuntimeException ex) {
+            removals.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public ItemRemoval removeOneOfItemIfAffordable(String name, BigDecimal funds) {
+        long start = System.nanoTime();
+        try {
+            ItemRemoval removal = prices.removeOneOfItemIfAffordable(name, funds);
+            removals.succeeded(start);
+            return removal;
+        } catch (RuntimeException ex) {
+            removals.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public ItemRemoval removeOneOfItemIfAffordable(String name, long fundsCents) {
+        long start = System.nanoTime();
+        try {
+            ItemRemoval removal = prices.removeOneOfItemIfAffordable(name, fundsCents);
+            removals.succeeded(start);
+            return removal;
+        } catch (RuntimeException ex) {
+            removals.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean returnUnitsOfItem(String name, long quantity) {
+        long start = System.nanoTime();
+        try {
+            boolean returned = delegate.returnUnitsOfItem(name, quantity);
+            returns.succeeded(start);
+            return returned;
+        } catch (RuntimeException ex) {
+            returns.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Optional<VendingMachineItem> holdUnitsOfItem(String name, long quantity) {
+        long start = System.nanoTime();
+        try {
+            Optional<VendingMachineItem> item = holds != null
+                ? holds.holdUnitsOfItem(name, quantity)
+                : delegate.removeUnitsOfItem(name, quantity);
+            removals.succeeded(start);
+            return item;
+        } catch (RuntimeException ex) {
+            removals.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean releaseUnitsOfItem(String name, long quantity) {
+        long start = System.nanoTime();
+        try {
+            boolean released = holds != null
+                ? holds.releaseUnitsOfItem(name, quantity)
+                : delegate.returnUnitsOfItem(name, quantity);
+            returns.succeeded(start);
+            return released;
+        } catch (RuntimeException ex) {
+            returns.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean sellHeldUnitsOfItem(String name, long quantity) {
+        if (holds == null) {
+            // the units left the delegate when they were held
+            return delegate.getItemByName(name).isPresent();
+        }
+        long start = System.nanoTime();
+        try {
+            boolean sold = holds.sellHeldUnitsOfItem(name, quantity);
+            removals.succeeded(start);
+            return sold;
+        } catch (RuntimeException ex) {
+            removals.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void updatePrices(Map<String, BigDecimal> costs) throws FailedSaveOfVendingItemsException {
+        long start = System.nanoTime();
+        try {
+            prices.updatePrices(costs);
+            priceUpdates.succeeded(start);
+        } catch (FailedSaveOfVendingItemsException | RuntimeException ex) {
+            priceUpdates.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public long getPriceVersion() {
+        return prices.getPriceVersion();
+    }
+
+    @Override
+    public void saveItems() throws FailedSaveOfVendingItemsException {
+        long start = System.nanoTime();
+        try {
+            delegate.saveItems();
+            saves.succeeded(start);
+        } catch (FailedSaveOfVendingItemsException | RuntimeException ex) {
+            saves.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
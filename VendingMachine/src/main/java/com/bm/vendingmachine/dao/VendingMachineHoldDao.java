@@ -0,0 +1,51 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.util.Optional;
+
+/**
+ * A Dao which can set units aside for a while without recording them as
+ * removed
+ *
+ * Held units are out of stock for every lookup and removal, but saves and
+ * any other record kept of the items still count them, so units held when
+ * the application stops, or dies, are found in stock on the next load.
+ * Only once held units are sold is their removal recorded.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public interface VendingMachineHoldDao extends VendingMachineDao {
+    /**
+     * Attempts to set aside the given quantity of the item corresponding
+     * to this name, in a single step. Nothing is held unless the item holds
+     * at least that many units.
+     *
+     * @param name The name of the item
+     * @param quantity The number of units, which must be positive
+     * @return The item after the units were set aside, or an empty instance
+     *         if the item does not exist or does not hold enough units
+     */
+    public Optional<VendingMachineItem> holdUnitsOfItem(String name, long quantity);
+
+    /**
+     * Puts held units back in stock, as they were before they were held
+     *
+     * @param name The name of the item
+     * @param quantity The number of units, which must be positive and no
+     *                 more than are held
+     * @return Whether the item exists
+     */
+    public boolean releaseUnitsOfItem(String name, long quantity);
+
+    /**
+     * Records held units as sold, which removes them for good
+     *
+     * @param name The name of the item
+     * @param quantity The number of units, which must be positive and no
+     *                 more than are held
+     * @return Whether the item exists
+     */
+    public boolean sellHeldUnitsOfItem(String name, long quantity);
+}
@@ -0,0 +1,99 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.Money;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Dao which can also find items by their cost, remove a unit only if the
+ * funds cover it, and change the costs of its items
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public interface VendingMachinePriceDao extends VendingMachineDao {
+    /**
+     * Finds the items in stock that the funds are enough to buy
+     * 
+     * @param funds The funds available for purchasing an item
+     * @return The items with a positive quantity whose cost does not exceed
+     *         the funds, from the cheapest to the most expensive
+     */
+    public List<VendingMachineItem> getAffordableItems(BigDecimal funds);
+
+    /**
+     * @param count The largest number of items to return
+     * @return The cheapest items with a positive quantity, from the cheapest
+     *         up, and no more than count of them
+     */
+    public List<VendingMachineItem> getCheapestItems(int count);
+
+    /**
+     * @param minimum The lowest cost of the items returned, inclusive
+     * @param maximum The highest cost of the items returned, inclusive
+     * @return The items with a positive quantity whose cost lies within the
+     *         bounds, from the cheapest to the most expensive
+     */
+    public List<VendingMachineItem> getItemsInPriceRange(BigDecimal minimum, BigDecimal maximum);
+
+    /**
+     * Attempts to look up the item corresponding to this name, check its
+     * cost against the funds provided and reduce its quantity by one, all in
+     * a single step. No other caller can observe or consume the unit between
+     * the check and the removal.
+     *
+     * The checks are performed in the following order: existence of the
+     * item, sufficiency of the funds, and then availability of the item.
+     *
+     * @param name The name of the item
+     * @param funds The funds available for purchasing the item
+     * @return The outcome of this removal
+     */
+    public default ItemRemoval removeOneOfItemIfAffordable(String name, BigDecimal funds) {
+        return removeOneOfItemIfAffordable(name, Money.centsAtMost(funds));
+    }
+
+    /**
+     * Does exactly what removeOneOfItemIfAffordable(String, BigDecimal)
+     * does, with the funds given in whole cents. This is the form used on
+     * the purchase path, where no BigDecimal needs to be made.
+     *
+     * @param name The name of the item
+     * @param fundsCents The funds available for purchasing the item, in
+     *                   cents
+     * @return The outcome of this removal
+     */
+    public ItemRemoval removeOneOfItemIfAffordable(String name, long fundsCents);
+
+    /**
+     * Replaces the costs of the items in a price list, all at once.
+     *
+     * The new costs are prepared without holding up lookups and removals,
+     * and then switched in together as a new price version, so every call
+     * sees either the old costs of every item or the new ones, never some
+     * of each. Items left out of the price list keep their cost.
+     *
+     * @param costs The new cost of each item, by name
+     * @throws IllegalArgumentException If an item is not in this DAO, or a
+     *         cost is negative or has a fraction of a cent, in which case no
+     *         cost is changed
+     * @throws FailedSaveOfVendingItemsException If the new costs could not
+     *         be stored, in which case no cost is changed
+     */
+    public void updatePrices(Map<String, BigDecimal> costs) throws FailedSaveOfVendingItemsException;
+
+    /**
+     * Tells apart the price versions of this DAO. A caller that reads the
+     * same price version before and after looking up several items has seen
+     * all of their costs from that one version.
+     *
+     * @return The current price version, which grows with every call to
+     *         updatePrices
+     */
+    public long getPriceVersion();
+}
@@ -0,0 +1,14 @@
+package com.bm.vendingmachine.dao.exceptions;
+
+/**
+ * An unchecked exception for indicating that the store backing the Vending
+ * Items could not be reached by a DAO method that does not declare any
+ * checked exception
+ * 
+ * @author agent
+ */
+public class FailedAccessOfVendingItemsException extends RuntimeException {
+    public FailedAccessOfVendingItemsException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
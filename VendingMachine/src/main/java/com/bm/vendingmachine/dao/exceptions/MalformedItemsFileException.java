@@ -0,0 +1,33 @@
+package com.bm.vendingmachine.dao.exceptions;
+
+/**
+ * An exception for indicating that an items file could not be loaded because
+ * one of its rows is malformed. It records where the problem was found.
+ *
+ * @author agent
+ */
+public class MalformedItemsFileException extends FailedLoadOfVendingItemsException {
+    private final long line;
+    private final long column;
+    
+    public MalformedItemsFileException(String file, long line, long column, String problem) {
+        super(file + ":" + line + ":" + column + ": " + problem);
+        this.line = line;
+        this.column = column;
+    }
+    
+    /**
+     * @return The line of the malformed row, starting from 1
+     */
+    public long getLine() {
+        return line;
+    }
+    
+    /**
+     * @return The column at which the row stops being well formed, starting
+     *         from 1 and counted in characters
+     */
+    public long getColumn() {
+        return column;
+    }
+}
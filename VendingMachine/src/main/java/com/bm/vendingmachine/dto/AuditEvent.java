@@ -0,0 +1,95 @@
+package com.bm.vendingmachine.dto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * An event read back from the audit log
+ *
+ * Events are stored in binary form and only turned into text by getText
+ * and toString, when someone actually reads them.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class AuditEvent {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    
+    private final long timestampNanos;
+    private final AuditEventType type;
+    private final String item;
+    private final long amount;
+    private final String text;
+    
+    /**
+     * @param timestampNanos When the event happened, in nanoseconds since
+     *                       the epoch
+     * @param type The type of the event
+     * @param item The item of the event, or null if it has none
+     * @param amount The amount of the event, in cents unless its type says
+     *               otherwise
+     * @param text The text of a TEXT event, or null for any other type
+     */
+    public AuditEvent(
+        long timestampNanos,
+        AuditEventType type,
+        String item,
+        long amount,
+        String text) {
+        
+        this.timestampNanos = timestampNanos;
+        this.type = type;
+        this.item = item;
+        this.amount = amount;
+        this.text = text;
+    }
+    
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+    
+    public AuditEventType getType() {
+        return type;
+    }
+    
+    /**
+     * @return The item of this event, or null if it has none
+     */
+    public String getItem() {
+        return item;
+    }
+    
+    public long getAmount() {
+        return amount;
+    }
+    
+    /**
+     * @return When this event happened, in the local time zone
+     */
+    public LocalDateTime getTime() {
+        return LocalDateTime.ofInstant(
+            Instant.ofEpochSecond(
+                Math.floorDiv(timestampNanos, NANOS_PER_SECOND),
+                Math.floorMod(timestampNanos, NANOS_PER_SECOND)
+            ),
+            ZoneId.systemDefault()
+        );
+    }
+    
+    /**
+     * @return The text of this event, without its time
+     */
+    public String getText() {
+        return type == AuditEventType.TEXT ? text : type.render(item, amount);
+    }
+    
+    /**
+     * @return This event as a line of the audit trail
+     */
+    @Override
+    public String toString() {
+        return getTime().toString() + ": " + getText();
+    }
+}
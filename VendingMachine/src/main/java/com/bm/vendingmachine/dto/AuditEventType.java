@@ -0,0 +1,147 @@
+package com.bm.vendingmachine.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * The kinds of events recorded in the audit trail
+ *
+ * Every type has a fixed code, which is what the audit log stores, and a
+ * template used to render its events as text when the log is read. In a
+ * template, {item} stands for the item of the event, {dollars} for its
+ * amount in dollars and {count} for its amount as a plain number.
+ *
+ * Read-only types record lookups that change nothing, which a busy
+ * machine performs far more often than anything else, so an audit DAO may
+ * count them rather than record each one.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public enum AuditEventType {
+    /**
+     * A free-form line of text, recorded through appendRecord
+     */
+    TEXT(0, ""),
+    ITEMS_LOADED(1, "Loaded vending items into memory"),
+    ITEMS_SAVED(2, "Saved vending items to external source(s)"),
+    ITEMS_LISTED(3, "Acquiring list of all items", true),
+    SNAPSHOT_ACQUIRED(4, "Acquiring snapshot of all items", true),
+    FUNDS_QUERIED(5, "Vending machine funds queried", true),
+    /**
+     * The item is the name of the coin, and the amount is the value added
+     */
+    COINS_ADDED(6, "Added ${dollars} in {item}(s)"),
+    TRANSACTION_ATTEMPTED(7, "Transaction attempted for {item}"),
+    TRANSACTION_FAILED_NO_SUCH_ITEM(8, "Transaction failed - no such item"),
+    TRANSACTION_FAILED_OUT_OF_STOCK(9, "Transaction failed - {item} is out of stock"),
+    /**
+     * The amount is the cost of the item
+     */
+    TRANSACTION_FAILED_INSUFFICIENT_FUNDS(
+        10,
+        "Transaction failed - not enough funds for {item} (${dollars})"
+    ),
+    /**
+     * The amount is the change returned
+     */
+    TRANSACTION_SUCCEEDED(11, "Transaction successful, returned ${dollars} in change"),
+    /**
+     * The amount is the number of records dropped, not a number of cents
+     */
+    RECORDS_DROPPED(12, "{count} audit record(s) dropped"),
+    /**
+     * The item is the name of the type summarized, and the amount is the
+     * number of events of that type since its last summary
+     */
+    SUMMARY(13, "{item} occurred {count} time(s) since the last summary"),
+    /**
+     * The amount is the change that could not be given
+     */
+    TRANSACTION_FAILED_NO_CHANGE(14, "Transaction failed - no change for ${dollars} on {item}"),
+    /**
+     * The item describes the whole cart, as Cart.describe does, and the
+     * amount is the change returned
+     */
+    CART_SOLD(15, "Cart of {item} sold, returned ${dollars} in change"),
+    /**
+     * The item describes the whole cart, and the amount is the credit the
+     * customer had
+     */
+    CART_REFUSED(16, "Cart of {item} refused with ${dollars} of credit"),
+    /**
+     * The amount is the number of units set aside
+     */
+    ITEM_RESERVED(17, "Reserved {count} unit(s) of {item}"),
+    /**
+     * The amount is the number of units left unsold, which are restocked
+     */
+    RESERVATION_EXPIRED(18, "Reservation of {item} expired, restocking {count} unit(s)"),
+    /**
+     * The amount is the number of units left unsold, which are restocked
+     */
+    RESERVATION_RELEASED(19, "Reservation of {item} released, restocking {count} unit(s)"),
+    /**
+     * The amount is the number of items given a new cost
+     */
+    PRICES_UPDATED(20, "Updated the cost of {count} item(s)");
+    
+    private static final AuditEventType[] BY_CODE = new AuditEventType[values().length];
+    
+    static {
+        for (AuditEventType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+    
+    private final byte code;
+    private final String template;
+    private final boolean readOnly;
+    
+    private AuditEventType(int code, String template) {
+        this(code, template, false);
+    }
+    
+    private AuditEventType(int code, String template, boolean readOnly) {
+        this.code = (byte) code;
+        this.template = template;
+        this.readOnly = readOnly;
+    }
+    
+    /**
+     * @return The code identifying this type in the audit log
+     */
+    public byte getCode() {
+        return code;
+    }
+    
+    /**
+     * @return Whether events of this type record a lookup that changes
+     *         nothing
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+    
+    /**
+     * @param code A code read from the audit log
+     * @return The type with that code, or null if there is none
+     */
+    public static AuditEventType fromCode(byte code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+    
+    /**
+     * Renders an event of this type as text
+     *
+     * @param item The item of the event, or null if it has none
+     * @param amount The amount of the event
+     * @return The text of the event
+     */
+    public String render(String item, long amount) {
+        return template
+            .replace("{item}", String.valueOf(item))
+            .replace("{dollars}", BigDecimal.valueOf(amount, 2).toPlainString())
+            .replace("{count}", Long.toString(amount));
+    }
+}
@@ -0,0 +1,112 @@
+package com.bm.vendingmachine.dto;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What the audit trail of a Vending Machine says about a span of time:
+ * the sales of every item, the attempted transactions and why they failed,
+ * and the deposits of every coin
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class AuditReport {
+    private final long fromNanos;
+    private final long toNanos;
+    private final long eventCount;
+    private final Map<AuditEventType, Long> countsByType;
+    private final Map<String, Long> salesByItem;
+    private final Map<String, Long> depositCentsByCoin;
+    
+    /**
+     * @param fromNanos The start of the time range, inclusive
+     * @param toNanos The end of the time range, inclusive
+     * @param eventCount The number of events within the range
+     * @param countsByType The number of events of every type
+     * @param salesByItem The number of successful transactions per item
+     * @param depositCentsByCoin The value deposited per coin, in cents
+     */
+    public AuditReport(
+        long fromNanos,
+        long toNanos,
+        long eventCount,
+        Map<AuditEventType, Long> countsByType,
+        Map<String, Long> salesByItem,
+        Map<String, Long> depositCentsByCoin) {
+        
+        this.fromNanos = fromNanos;
+        this.toNanos = toNanos;
+        this.eventCount = eventCount;
+        Map<AuditEventType, Long> counts = new EnumMap<>(AuditEventType.class);
+        counts.putAll(countsByType);
+        this.countsByType = Collections.unmodifiableMap(counts);
+        this.salesByItem = Collections.unmodifiableMap(new TreeMap<>(salesByItem));
+        this.depositCentsByCoin = Collections.unmodifiableMap(new TreeMap<>(depositCentsByCoin));
+    }
+    
+    public long getFromNanos() {
+        return fromNanos;
+    }
+    
+    public long getToNanos() {
+        return toNanos;
+    }
+    
+    /**
+     * @return The number of events of any type within the range
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+    
+    /**
+     * @return The number of events of the given type
+     */
+    public long getCount(AuditEventType type) {
+        return countsByType.getOrDefault(type, 0L);
+    }
+    
+    /**
+     * @return The number of successful transactions per item, sorted by
+     *         name
+     */
+    public Map<String, Long> getSalesByItem() {
+        return salesByItem;
+    }
+    
+    /**
+     * @return The value deposited per coin in cents, sorted by coin name
+     */
+    public Map<String, Long> getDepositCentsByCoin() {
+        return depositCentsByCoin;
+    }
+    
+    /**
+     * @return The number of transactions attempted
+     */
+    public long getTransactionAttempts() {
+        return getCount(AuditEventType.TRANSACTION_ATTEMPTED);
+    }
+    
+    /**
+     * @param reason One of the TRANSACTION_FAILED types
+     * @return The share of attempted transactions which failed for that
+     *         reason, or 0 if none were attempted
+     */
+    public double getFailureRate(AuditEventType reason) {
+        long attempts = getTransactionAttempts();
+        return attempts == 0 ? 0 : (double) getCount(reason) / attempts;
+    }
+    
+    @Override
+    public String toString() {
+        return "AuditReport{" + "fromNanos=" + fromNanos + ", toNanos=" + toNanos
+            + ", eventCount=" + eventCount + ", countsByType=" + countsByType
+            + ", salesByItem=" + salesByItem
+            + ", depositCentsByCoin=" + depositCentsByCoin + '}';
+    }
+}
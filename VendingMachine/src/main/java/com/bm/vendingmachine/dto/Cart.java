@@ -0,0 +1,119 @@
+package com.bm.vendingmachine.dto;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The items a customer buys in a single checkout, with how many units of
+ * each, in the order they were added
+ *
+ * A cart is written in the audit trail as one line per item, each giving
+ * the quantity and then the name, with lines separated by the same "::"
+ * that separates the fields of the items file, which no name may contain.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class Cart {
+    public static final String LINE_DELIMITER = "::";
+    private final Map<String, Long> quantities;
+
+    public Cart() {
+        this.quantities = new LinkedHashMap<>();
+    }
+
+    /**
+     * Adds units of an item, on top of any already in this cart
+     *
+     * @param name The name of the item
+     * @param quantity The number of units, which must be positive
+     * @return This cart
+     */
+    public Cart add(String name, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        if (name.contains(LINE_DELIMITER)) {
+            throw new IllegalArgumentException("Invalid item name: " + name);
+        }
+        quantities.merge(name, quantity, Math::addExact);
+        return this;
+    }
+
+    /**
+     * @return The number of units of every item, by name, in the order the
+     *         items were added
+     */
+    public Map<String, Long> getQuantities() {
+        return Collections.unmodifiableMap(quantities);
+    }
+
+    /**
+     * @return Whether this cart holds no items
+     */
+    public boolean isEmpty() {
+        return quantities.isEmpty();
+    }
+
+    /**
+     * @return This cart as it is written in the audit trail, like
+     *         "2 Pepsi::1 Doritos"
+     */
+    public String describe() {
+        StringBuilder description = new StringBuilder();
+        quantities.forEach((name, quantity) -> {
+            if (description.length() > 0) {
+                description.append(LINE_DELIMITER);
+            }
+            description.append(quantity).append(' ').append(name);
+        });
+        return description.toString();
+    }
+
+    /**
+     * @param description A cart as returned by describe
+     * @return The cart described
+     * @throws IllegalArgumentException If the description is malformed
+     */
+    public static Cart parse(String description) {
+        Cart cart = new Cart();
+        if (description.isEmpty()) {
+            return cart;
+        }
+        for (String line : description.split(LINE_DELIMITER, -1)) {
+            int space = line.indexOf(' ');
+            if (space <= 0) {
+                throw new IllegalArgumentException("Malformed cart line: " + line);
+            }
+            try {
+                cart.add(line.substring(space + 1), Long.parseLong(line.substring(0, space)));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Malformed cart line: " + line, ex);
+            }
+        }
+        return cart;
+    }
+
+    @Override
+    public int hashCode() {
+        return quantities.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Cart)) {
+            return false;
+        }
+        return quantities.equals(((Cart) obj).quantities);
+    }
+
+    @Override
+    public String toString() {
+        return "Cart{" + "quantities=" + quantities + '}';
+    }
+}
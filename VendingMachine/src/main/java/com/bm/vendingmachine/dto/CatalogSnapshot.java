@@ -0,0 +1,98 @@
+package com.bm.vendingmachine.dto;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A consistent, point-in-time view of every item in a Vending Machine
+ *
+ * Items are materialized one at a time as they are read, so iterating over
+ * a snapshot or reading it a page at a time never copies the whole catalog.
+ * The items handed out are copies; changing them has no effect on the
+ * machine, and later sales have no effect on them.
+ *
+ * Subclasses only have to provide the size of the catalog and the item at
+ * each position. Positions are stable for the lifetime of the snapshot.
+ * A snapshot should be closed once it is no longer read, so that the state
+ * it holds on to can be released.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public abstract class CatalogSnapshot implements Iterable<VendingMachineItem>, AutoCloseable {
+    private final long version;
+
+    protected CatalogSnapshot(long version) {
+        this.version = version;
+    }
+
+    /**
+     * @return The version of the catalog captured by this snapshot. Later
+     *         snapshots of the same machine never have a smaller version,
+     *         and two snapshots with the same version hold the same items.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The number of items in this snapshot, including those items
+     *         with zero quantity
+     */
+    public abstract int size();
+
+    /**
+     * @param index The position of an item, from 0 to size() - 1
+     * @return A copy of the item at that position
+     */
+    public abstract VendingMachineItem get(int index);
+
+    /**
+     * @param offset The position of the first item of the page
+     * @param limit The largest number of items in the page
+     * @return The items from that position on, which may be fewer than the
+     *         limit at the end of the catalog
+     */
+    public List<VendingMachineItem> getPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Pages cannot have a negative offset or limit");
+        }
+        int end = (int) Math.min((long) offset + limit, size());
+        List<VendingMachineItem> page = new ArrayList<>(Math.max(end - offset, 0));
+        for (int i = offset; i < end; i++) {
+            page.add(get(i));
+        }
+        return page;
+    }
+
+    @Override
+    public Iterator<VendingMachineItem> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public VendingMachineItem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Releases whatever state this snapshot holds on to. Does nothing by
+     * default.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,74 @@
+package com.bm.vendingmachine.dto;
+
+/**
+ * Describes the outcome of an attempt to remove one unit of an item from a
+ * Vending Machine with a given amount of funds.
+ *
+ * Whenever the item exists, the instance also carries a view of that item
+ * (after the removal, if one took place), along with its cost in cents so
+ * the purchase path can settle the sale without going through BigDecimal.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class ItemRemoval {
+    public enum Status {
+        REMOVED,
+        NO_SUCH_ITEM,
+        OUT_OF_STOCK,
+        INSUFFICIENT_FUNDS
+    }
+
+    private final Status status;
+    private final VendingMachineItem item;
+    private final long costCents;
+
+    public ItemRemoval(Status status, VendingMachineItem item) {
+        this(status, item, item == null ? 0 : Money.centsAtLeast(item.getCost()));
+    }
+
+    /**
+     * @param status
+     * @param item
+     * @param costCents The cost of the item in cents, when the caller has
+     *                  it at hand already
+     */
+    public ItemRemoval(Status status, VendingMachineItem item, long costCents) {
+        this.status = status;
+        this.item = item;
+        this.costCents = costCents;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The item involved in this removal, or null if no such item
+     *         exists
+     */
+    public VendingMachineItem getItem() {
+        return item;
+    }
+
+    /**
+     * @return The cost of the item in cents, rounded up to a whole cent, or
+     *         zero if no such item exists
+     */
+    public long getCostCents() {
+        return costCents;
+    }
+
+    /**
+     * @return Whether one unit of the item was actually removed
+     */
+    public boolean isRemoved() {
+        return status == Status.REMOVED;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemRemoval{" + "status=" + status + ", item=" + item + '}';
+    }
+}
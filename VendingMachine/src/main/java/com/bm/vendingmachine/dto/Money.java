@@ -0,0 +1,98 @@
+package com.bm.vendingmachine.dto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point arithmetic on amounts of money held as whole cents in a long
+ *
+ * The purchase path works on cents alone, so it neither allocates nor
+ * rounds, and every sum or product is checked so that an overflow fails
+ * with an ArithmeticException instead of wrapping around. BigDecimal only
+ * appears at the edges, where amounts are read in or shown to a person.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class Money {
+    public static final int SCALE = 2;
+    private static final int CENTS_PER_DOLLAR = 100;
+
+    private Money() {
+    }
+
+    /**
+     * @param dollars An amount with no fraction of a cent
+     * @return The amount in cents
+     * @throws ArithmeticException If the amount has a fraction of a cent or
+     *         does not fit in a long
+     */
+    public static long toCents(BigDecimal dollars) {
+        return dollars.movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * @return The amount in whole cents, rounded down, for use as the funds
+     *         of a customer or as an upper bound
+     */
+    public static long centsAtMost(BigDecimal dollars) {
+        return dollars.movePointRight(SCALE).setScale(0, RoundingMode.FLOOR).longValueExact();
+    }
+
+    /**
+     * @return The amount in whole cents, rounded up, for use as the cost of
+     *         an item or as a lower bound
+     */
+    public static long centsAtLeast(BigDecimal dollars) {
+        return dollars.movePointRight(SCALE).setScale(0, RoundingMode.CEILING).longValueExact();
+    }
+
+    /**
+     * @param cents
+     * @return The amount in dollars, always with two decimal places
+     */
+    public static BigDecimal toDollars(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    /**
+     * @throws ArithmeticException If the sum overflows
+     */
+    public static long add(long cents, long moreCents) {
+        return Math.addExact(cents, moreCents);
+    }
+
+    /**
+     * @throws ArithmeticException If the difference overflows
+     */
+    public static long subtract(long cents, long lessCents) {
+        return Math.subtractExact(cents, lessCents);
+    }
+
+    /**
+     * @throws ArithmeticException If the product overflows
+     */
+    public static long multiply(long cents, long quantity) {
+        return Math.multiplyExact(cents, quantity);
+    }
+
+    /**
+     * @param cents
+     * @return The amount in dollars with two decimal places, like 2.99
+     */
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) {
+            text.append('-');
+        }
+        // negate through the remainders so Long.MIN_VALUE needs no care
+        long dollars = Math.abs(cents / CENTS_PER_DOLLAR);
+        int remainder = (int) Math.abs(cents % CENTS_PER_DOLLAR);
+        text.append(dollars).append('.');
+        if (remainder < 10) {
+            text.append('0');
+        }
+        return text.append(remainder).toString();
+    }
+}
@@ -8,6 +8,9 @@ import java.util.Objects;
  * Serves as the primary DTO of the whole application.
  * Each instance represents an item in the vending machine.
  *
+ * Subclasses may serve as views onto items stored elsewhere by overriding
+ * the getters, which is why equality only goes through them.
+ *
  * @author Benjamin Munoz
  * email: driver396@gmail.com
  * date: Jul 31, 2021
@@ -42,7 +45,7 @@ public class VendingMachineItem {
     @Override
     public int hashCode() {
         int hash = 3;
-        hash = 47 * hash + Objects.hashCode(this.name);
+        hash = 47 * hash + Objects.hashCode(getName());
         return hash;
     }
 
@@ -54,15 +57,15 @@ public class VendingMachineItem {
         if (obj == null) {
             return false;
         }
-        if (getClass() != obj.getClass()) {
+        if (!(obj instanceof VendingMachineItem)) {
             return false;
         }
         final VendingMachineItem other = (VendingMachineItem) obj;
-        return Objects.equals(this.name, other.name);
+        return Objects.equals(getName(), other.getName());
     }
 
     @Override
     public String toString() {
-        return "VendingMachineItem{" + "name=" + name + ", cost=" + cost + ", quantity=" + quantity + '}';
+        return "VendingMachineItem{" + "name=" + getName() + ", cost=" + getCost() + ", quantity=" + getQuantity() + '}';
     }   
 }
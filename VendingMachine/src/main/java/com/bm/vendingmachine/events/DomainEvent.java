@@ -0,0 +1,101 @@
+package com.bm.vendingmachine.events;
+
+/**
+ * Something that happened to a Vending Machine, as handed to the
+ * subscribers of an EventBus
+ *
+ * The events live in the slots of the bus and are filled in again on every
+ * lap around it, so a subscriber may read an event while it is being
+ * handled but must copy whatever it wants to keep.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class DomainEvent {
+    private long sequence;
+    private DomainEventType type;
+    private long sessionId;
+    private String item;
+    private long amountCents;
+    private long changeCents;
+    private String reason;
+
+    DomainEvent() {
+    }
+
+    /**
+     * Fills in this event for a new publication
+     *
+     * @return This event
+     */
+    public DomainEvent set(
+        DomainEventType type,
+        long sessionId,
+        String item,
+        long amountCents,
+        long changeCents,
+        String reason) {
+
+        this.type = type;
+        this.sessionId = sessionId;
+        this.item = item;
+        this.amountCents = amountCents;
+        this.changeCents = changeCents;
+        this.reason = reason;
+        return this;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return The position of this event among all those published on its
+     *         bus, starting at zero
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public DomainEventType getType() {
+        return type;
+    }
+
+    /**
+     * @return The session the event happened in, or -1 if it concerns the
+     *         whole machine
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @return The item, coin or cart concerned, or null if there is none
+     */
+    public String getItem() {
+        return item;
+    }
+
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public long getChangeCents() {
+        return changeCents;
+    }
+
+    /**
+     * @return Why a sale was rejected, or null for any other event
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "DomainEvent{" + "sequence=" + sequence + ", type=" + type + ", sessionId=" + sessionId
+            + ", item=" + item + ", amountCents=" + amountCents + ", changeCents=" + changeCents
+            + ", reason=" + reason + '}';
+    }
+}
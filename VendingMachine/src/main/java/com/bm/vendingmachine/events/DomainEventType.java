@@ -0,0 +1,38 @@
+package com.bm.vendingmachine.events;
+
+/**
+ * The kinds of things that happen to a Vending Machine which other parts of
+ * the application may want to know about
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public enum DomainEventType {
+    /**
+     * The item is the name of the coin, and the amount the value added
+     */
+    COINS_ADDED,
+    /**
+     * The amount is the cost of the item, and the change what was given
+     * back
+     */
+    SALE_COMPLETED,
+    /**
+     * The amount is the cost of the item, or zero if it is unknown, and
+     * the reason the outcome of the purchase
+     */
+    SALE_REJECTED,
+    /**
+     * The item describes the whole cart, as Cart.describe does, the amount
+     * is its total cost and the change what was given back
+     */
+    CART_SOLD,
+    ITEMS_LOADED,
+    ITEMS_SAVED,
+    /**
+     * The amount is the number of items given a new cost, not a number of
+     * cents
+     */
+    PRICES_UPDATED
+}
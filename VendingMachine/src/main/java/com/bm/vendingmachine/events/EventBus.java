@@ -0,0 +1,315 @@
+package com.bm.vendingmachine.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands the events of a Vending Machine to any number of subscribers, each
+ * on a thread of its own, through a single ring of preallocated events
+ *
+ * Unlike a RingBuffer, where every element goes to one consumer, every
+ * event here is seen by every subscriber. Publishers claim the next
+ * sequence with a compare-and-set, fill in the event of its slot and mark
+ * the slot published, so a publication costs the same however many
+ * subscribers there are. Each subscriber follows the ring at its own pace,
+ * handling every published event in order and then advancing its own
+ * sequence, and a slot is only reused once the slowest subscriber has
+ * moved past it.
+ *
+ * When the slowest subscriber falls a whole ring behind, the overflow
+ * policy decides whether publishers wait for it or drop the event.
+ * Subscribers are added before the bus is started; events published before
+ * it is started or after it is closed are dropped.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class EventBus {
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final int SPINS_BEFORE_PARKING = 100;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    public enum OverflowPolicy {
+        /**
+         * Publishers wait until the slowest subscriber frees a slot
+         */
+        BLOCK,
+        /**
+         * Events which find the ring full are dropped and counted
+         */
+        DROP
+    }
+
+    private final DomainEvent[] events;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong next;
+    private final OverflowPolicy overflowPolicy;
+    private final List<Subscription> subscriptions;
+    private final LongAdder dropped;
+    private volatile long cachedGate;
+    private volatile boolean started;
+    private volatile boolean running;
+
+    public EventBus() {
+        this(DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * @param capacity The number of events in the ring, rounded up to a
+     *                 power of two
+     * @param overflowPolicy What publishing does when the ring is full
+     */
+    public EventBus(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.events = new DomainEvent[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = new DomainEvent();
+            published.set(i, -1);
+        }
+        this.mask = size - 1;
+        this.next = new AtomicLong();
+        this.overflowPolicy = overflowPolicy;
+        this.subscriptions = new ArrayList<>();
+        this.dropped = new LongAdder();
+    }
+
+    /**
+     * Adds a subscriber, which will be handed every event published once
+     * the bus is started
+     *
+     * @param name The name of the subscriber, given to its thread
+     * @param subscriber
+     * @throws IllegalStateException If the bus has already been started
+     */
+    public synchronized void subscribe(String name, EventSubscriber subscriber) {
+        if (started) {
+            throw new IllegalStateException("Subscribers must be added before the bus is started");
+        }
+        subscriptions.add(new Subscription(name, subscriber));
+    }
+
+    /**
+     * Starts the thread of every subscriber
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("The bus has already been started");
+        }
+        started = true;
+        cachedGate = minimumSequence();
+        running = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.thread.start();
+        }
+    }
+
+    /**
+     * Claims the next event for the caller alone. The caller fills it in,
+     * with set on the event returned by get, and then publishes it.
+     *
+     * @return The sequence of the event, or -1 if it was dropped
+     */
+    public long claim() {
+        int spins = 0;
+        while (true) {
+            if (!running) {
+                dropped.increment();
+                return -1;
+            }
+            long sequence = next.get();
+            long wrapPoint = sequence - events.length;
+            if (wrapPoint >= cachedGate) {
+                long gate = minimumSequence();
+                cachedGate = gate;
+                if (wrapPoint >= gate) {
+                    if (overflowPolicy == OverflowPolicy.DROP) {
+                        dropped.increment();
+                        return -1;
+                    }
+                    spins = backOff(spins);
+                    continue;
+                }
+            }
+            if (next.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * @param sequence A sequence returned by claim and not yet published
+     * @return The event to fill in
+     */
+    public DomainEvent get(long sequence) {
+        return events[(int) (sequence & mask)];
+    }
+
+    /**
+     * Hands a claimed event to the subscribers
+     *
+     * @param sequence A sequence returned by claim
+     */
+    public void publish(long sequence) {
+        int index = (int) (sequence & mask);
+        events[index].setSequence(sequence);
+        published.set(index, sequence);
+    }
+
+    /**
+     * Publishes an event in a single call
+     *
+     * @return Whether the event was published rather than dropped
+     */
+    public boolean publish(
+        DomainEventType type,
+        long sessionId,
+        String item,
+        long amountCents,
+        long changeCents,
+        String reason) {
+
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        get(sequence).set(type, sessionId, item, amountCents, changeCents, reason);
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * @return The number of events dropped, because the ring was full or
+     *         the bus was not running
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The number of exceptions thrown by subscribers
+     */
+    public long getSubscriberErrorCount() {
+        long errors = 0;
+        for (Subscription subscription : subscriptions) {
+            errors += subscription.errors.sum();
+        }
+        return errors;
+    }
+
+    /**
+     * @return How many published events the slowest subscriber has yet to
+     *         handle
+     */
+    public long getBacklog() {
+        return subscriptions.isEmpty() ? 0 : next.get() - minimumSequence();
+    }
+
+    /**
+     * Stops accepting events, and waits for every subscriber to handle
+     * those already published
+     */
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        for (Subscription subscription : subscriptions) {
+            try {
+                subscription.thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The lowest sequence any subscriber has yet to handle, or
+     *         Long.MAX_VALUE if there are no subscribers
+     */
+    private long minimumSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Waits a little longer every time nothing could be done
+     *
+     * @return The number of attempts so far
+     */
+    private static int backOff(int spins) {
+        if (spins < SPINS_BEFORE_PARKING) {
+            Thread.onSpinWait();
+        } else {
+            int doublings = Math.min(spins - SPINS_BEFORE_PARKING, 10);
+            LockSupport.parkNanos(Math.min(1_000L << doublings, MAX_PARK_NANOS));
+        }
+        return spins + 1;
+    }
+
+    /**
+     * A subscriber along with its thread and the sequence of the next event
+     * it will handle
+     */
+    private final class Subscription implements Runnable {
+        private final EventSubscriber subscriber;
+        private final AtomicLong sequence;
+        private final LongAdder errors;
+        private final Thread thread;
+
+        private Subscription(String name, EventSubscriber subscriber) {
+            this.subscriber = subscriber;
+            this.sequence = new AtomicLong();
+            this.errors = new LongAdder();
+            this.thread = new Thread(this, "event-subscriber-" + name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long nextSequence = sequence.get();
+            int spins = 0;
+            while (true) {
+                long end = nextSequence;
+                while (end - nextSequence < events.length
+                    && published.get((int) (end & mask)) == end) {
+                    end++;
+                }
+                if (end > nextSequence) {
+                    for (long s = nextSequence; s < end; s++) {
+                        try {
+                            subscriber.onEvent(events[(int) (s & mask)]);
+                        } catch (RuntimeException ex) {
+                            errors.increment();
+                        }
+                    }
+                    nextSequence = end;
+                    sequence.set(nextSequence);
+                    spins = 0;
+                } else if (!running && nextSequence == next.get()) {
+                    return;
+                } else {
+                    spins = backOff(spins);
+                }
+            }
+        }
+    }
+}
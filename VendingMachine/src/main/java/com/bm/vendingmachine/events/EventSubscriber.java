@@ -0,0 +1,21 @@
+package com.bm.vendingmachine.events;
+
+/**
+ * Receives every event published on an EventBus, in order, on a thread of
+ * its own
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+@FunctionalInterface
+public interface EventSubscriber {
+    /**
+     * Handles an event, which must not be kept once this returns. An
+     * exception thrown from here is counted by the bus and the event
+     * skipped.
+     *
+     * @param event
+     */
+    public void onEvent(DomainEvent event);
+}
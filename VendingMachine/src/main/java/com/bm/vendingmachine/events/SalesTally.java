@@ -0,0 +1,71 @@
+package com.bm.vendingmachine.events;
+
+import com.bm.vendingmachine.dto.Cart;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A subscriber which keeps running totals of what a Vending Machine has
+ * sold, for analytics to read while the machine is running
+ *
+ * Only the thread of the subscriber writes the totals, while any thread
+ * may read them.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class SalesTally implements EventSubscriber, SalesTallyMXBean {
+    private final ConcurrentMap<String, AtomicLong> unitsSold;
+    private final AtomicLong revenueCents;
+    private final AtomicLong salesRejected;
+
+    public SalesTally() {
+        this.unitsSold = new ConcurrentHashMap<>();
+        this.revenueCents = new AtomicLong();
+        this.salesRejected = new AtomicLong();
+    }
+
+    @Override
+    public void onEvent(DomainEvent event) {
+        switch (event.getType()) {
+            case SALE_COMPLETED:
+                addUnits(event.getItem(), 1);
+                revenueCents.addAndGet(event.getAmountCents());
+                break;
+            case CART_SOLD:
+                Cart.parse(event.getItem()).getQuantities().forEach(this::addUnits);
+                revenueCents.addAndGet(event.getAmountCents());
+                break;
+            case SALE_REJECTED:
+                salesRejected.incrementAndGet();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addUnits(String item, long units) {
+        unitsSold.computeIfAbsent(item, name -> new AtomicLong()).addAndGet(units);
+    }
+
+    @Override
+    public Map<String, Long> getUnitsSoldByItem() {
+        Map<String, Long> units = new TreeMap<>();
+        unitsSold.forEach((item, count) -> units.put(item, count.get()));
+        return units;
+    }
+
+    @Override
+    public long getRevenueCents() {
+        return revenueCents.get();
+    }
+
+    @Override
+    public long getSalesRejected() {
+        return salesRejected.get();
+    }
+}
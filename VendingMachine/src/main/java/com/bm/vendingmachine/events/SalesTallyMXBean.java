@@ -0,0 +1,25 @@
+package com.bm.vendingmachine.events;
+
+import java.util.Map;
+
+/**
+ * The management interface of a SalesTally, as read by JMX tooling
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public interface SalesTallyMXBean {
+    /**
+     * @return The number of units sold of every item, by name, whether
+     *         alone or in a cart
+     */
+    public Map<String, Long> getUnitsSoldByItem();
+
+    /**
+     * @return The cost of everything sold, in cents
+     */
+    public long getRevenueCents();
+
+    public long getSalesRejected();
+}
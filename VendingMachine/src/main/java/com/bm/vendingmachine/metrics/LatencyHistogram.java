@@ -0,0 +1,129 @@
+package com.bm.vendingmachine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many operations took how long, in nanoseconds, without taking
+ * any lock
+ *
+ * Durations are kept in log-linear buckets: every power of two is cut into
+ * 32 buckets of equal width, so a percentile read from the histogram is
+ * never more than about 3% above the duration actually recorded, from a
+ * nanosecond up to centuries, in under 2000 counters. Recording a duration
+ * is a single atomic increment of its bucket, plus two striped counters for
+ * the total and the maximum.
+ *
+ * A percentile is read from the buckets as they are at that moment, which
+ * may miss durations being recorded at the same time, but is never torn.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder total;
+    private final LongAccumulator max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.total = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * @param nanos The duration of an operation, where a negative one
+     *              counts as zero
+     */
+    public void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        counts.getAndIncrement(bucketOf(duration));
+        total.add(duration);
+        max.accumulate(duration);
+    }
+
+    /**
+     * @return The number of durations recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return The sum of the durations recorded
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * @return The longest duration recorded, or zero if there is none
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile The fraction of durations, from 0 to 1, which should
+     *                 be at or below the value returned
+     * @return The duration at that quantile, rounded up to the top of its
+     *         bucket, or zero if nothing has been recorded
+     */
+    public long getValueAtQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Invalid quantile: " + quantile);
+        }
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestInBucket(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * @return The bucket counting a duration
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        int subBucket = (int) (nanos >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The longest duration counted by a bucket
+     */
+    static long highestInBucket(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,155 @@
+package com.bm.vendingmachine.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * The metrics of a Vending Machine, which the service and the DAOs record
+ * into and JMX tooling reads from
+ *
+ * Every kind of operation is known by a name such as
+ * "service.transactItem", and is published as the MBean
+ * com.bm.vendingmachine:type=Operation,name=service.transactItem. Gauges,
+ * which are read on demand from the component they describe, are published
+ * as com.bm.vendingmachine:type=Gauges,name=... in the same way.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class MetricsRegistry {
+    public static final String DOMAIN = "com.bm.vendingmachine";
+
+    private final ConcurrentMap<String, OperationMetrics> operations;
+    private final ConcurrentMap<String, StandardMBean> gauges;
+    private final Set<ObjectName> registered;
+    private MBeanServer server;
+
+    public MetricsRegistry() {
+        this.operations = new ConcurrentHashMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+        this.registered = new LinkedHashSet<>();
+    }
+
+    /**
+     * @param name The name of a kind of operation
+     * @return Its metrics, which are created on first use and published
+     *         right away if the registry already is
+     */
+    public OperationMetrics operation(String name) {
+        OperationMetrics metrics = operations.get(name);
+        if (metrics != null) {
+            return metrics;
+        }
+        OperationMetrics created = new OperationMetrics(name);
+        metrics = operations.putIfAbsent(name, created);
+        if (metrics != null) {
+            return metrics;
+        }
+        publish(objectName("Operation", name), created);
+        return created;
+    }
+
+    /**
+     * Adds a set of gauges, published right away if the registry already is
+     *
+     * @param name The name of the gauges
+     * @param gauges The object reading them
+     * @param mxbeanInterface The management interface of the gauges
+     */
+    public <T> void addGauges(String name, T gauges, Class<T> mxbeanInterface) {
+        StandardMBean mbean = new StandardMBean(gauges, mxbeanInterface, true);
+        if (this.gauges.putIfAbsent(name, mbean) != null) {
+            throw new IllegalArgumentException("Gauges already added: " + name);
+        }
+        publish(objectName("Gauges", name), mbean);
+    }
+
+    /**
+     * @return The metrics of every kind of operation, by name
+     */
+    public Map<String, OperationMetrics> getOperations() {
+        return Collections.unmodifiableMap(new TreeMap<>(operations));
+    }
+
+    /**
+     * Publishes every metric in the platform MBean server, along with those
+     * added afterwards
+     *
+     * @throws IllegalStateException If the MBeans could not be registered,
+     *         such as when another registry has taken the same names
+     */
+    public void registerMBeans() {
+        registerMBeans(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Publishes every metric in an MBean server, along with those added
+     * afterwards
+     *
+     * @param server
+     * @throws IllegalStateException If the MBeans could not be registered
+     */
+    public synchronized void registerMBeans(MBeanServer server) {
+        if (this.server != null) {
+            throw new IllegalStateException("The metrics are already registered");
+        }
+        this.server = server;
+        operations.forEach((name, metrics) -> register(objectName("Operation", name), metrics));
+        gauges.forEach((name, mbean) -> register(objectName("Gauges", name), mbean));
+    }
+
+    /**
+     * Withdraws every metric from the MBean server they were published in
+     */
+    public synchronized void unregisterMBeans() {
+        if (server == null) {
+            return;
+        }
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ex) {
+                // already withdrawn by someone else
+            }
+        }
+        registered.clear();
+        server = null;
+    }
+
+    private synchronized void publish(ObjectName name, Object mbean) {
+        if (server != null) {
+            register(name, mbean);
+        }
+    }
+
+    private void register(ObjectName name, Object mbean) {
+        if (!registered.add(name)) {
+            return;
+        }
+        try {
+            server.registerMBean(mbean, name);
+        } catch (JMException ex) {
+            registered.remove(name);
+            throw new IllegalStateException("Could not register " + name, ex);
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=" + type + ",name=" + name);
+        } catch (JMException ex) {
+            throw new IllegalArgumentException("Invalid metric name: " + name, ex);
+        }
+    }
+}
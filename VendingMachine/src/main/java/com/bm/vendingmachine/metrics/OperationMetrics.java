@@ -0,0 +1,137 @@
+package com.bm.vendingmachine.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The latencies and outcomes of one kind of operation
+ *
+ * An operation is timed from a start taken with System.nanoTime, and ends
+ * either in succeeded or in failed, with the exception it threw or the
+ * kind of failure it reported. Both only touch a LatencyHistogram and
+ * striped counters, so they are safe and cheap to call from any number of
+ * threads.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    private static final double NANOS_PER_MICRO = 1_000.0;
+
+    private final String name;
+    private final LatencyHistogram latencies;
+    private final LongAdder successes;
+    private final ConcurrentMap<String, LongAdder> failuresByType;
+
+    OperationMetrics(String name) {
+        this.name = name;
+        this.latencies = new LatencyHistogram();
+        this.successes = new LongAdder();
+        this.failuresByType = new ConcurrentHashMap<>();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The latencies of every operation, failed ones included
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Records an operation which succeeded
+     *
+     * @param startNanos The value of System.nanoTime when it began
+     */
+    public void succeeded(long startNanos) {
+        latencies.record(System.nanoTime() - startNanos);
+        successes.increment();
+    }
+
+    /**
+     * Records an operation which threw an exception
+     *
+     * @param startNanos The value of System.nanoTime when it began
+     * @param cause The exception thrown
+     */
+    public void failed(long startNanos, Throwable cause) {
+        failed(startNanos, cause.getClass().getSimpleName());
+    }
+
+    /**
+     * Records an operation which failed without throwing
+     *
+     * @param startNanos The value of System.nanoTime when it began
+     * @param type The kind of failure, counted along with the names of the
+     *             exceptions
+     */
+    public void failed(long startNanos, String type) {
+        latencies.record(System.nanoTime() - startNanos);
+        failuresByType.computeIfAbsent(type, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public long getCount() {
+        return getSuccesses() + getFailures();
+    }
+
+    @Override
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        long failures = 0;
+        for (LongAdder count : failuresByType.values()) {
+            failures += count.sum();
+        }
+        return failures;
+    }
+
+    @Override
+    public Map<String, Long> getFailuresByType() {
+        Map<String, Long> failures = new TreeMap<>();
+        failuresByType.forEach((type, count) -> failures.put(type, count.sum()));
+        return failures;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long count = latencies.getCount();
+        return count == 0 ? 0 : latencies.getTotalNanos() / NANOS_PER_MICRO / count;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latencies.getValueAtQuantile(0.5) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latencies.getValueAtQuantile(0.99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latencies.getValueAtQuantile(0.999) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latencies.getMaxNanos() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationMetrics{" + "name=" + name + ", successes=" + getSuccesses()
+            + ", failures=" + getFailuresByType() + '}';
+    }
+}
@@ -0,0 +1,39 @@
+package com.bm.vendingmachine.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of the metrics of one kind of operation, as
+ * read by JMX tooling
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public interface OperationMetricsMXBean {
+    /**
+     * @return The number of operations finished, whether or not they
+     *         succeeded
+     */
+    public long getCount();
+
+    public long getSuccesses();
+
+    public long getFailures();
+
+    /**
+     * @return The number of failed operations, by the simple name of the
+     *         exception they threw or the kind of failure they reported
+     */
+    public Map<String, Long> getFailuresByType();
+
+    public double getMeanMicros();
+
+    public double getP50Micros();
+
+    public double getP99Micros();
+
+    public double getP999Micros();
+
+    public double getMaxMicros();
+}
@@ -0,0 +1,86 @@
+package com.bm.vendingmachine.service;
+
+import com.bm.vendingmachine.dto.Money;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * The coins handed back to a customer, by kind of coin
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class Change {
+    public static final Change NONE = new Change(new long[Coin.values().length]);
+
+    private final long[] counts;
+    private final long totalCents;
+
+    /**
+     * @param counts The number of coins of every kind, by ordinal of Coin,
+     *               which this instance takes ownership of
+     */
+    Change(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        for (Coin coin : Coin.values()) {
+            total = Money.add(total, Money.multiply(coin.getCents(), counts[coin.ordinal()]));
+        }
+        this.totalCents = total;
+    }
+
+    /**
+     * @param coin
+     * @return The number of coins of that kind
+     */
+    public long getCount(Coin coin) {
+        return counts[coin.ordinal()];
+    }
+
+    /**
+     * @return The total number of coins
+     */
+    public long getCoinCount() {
+        long coins = 0;
+        for (long count : counts) {
+            coins += count;
+        }
+        return coins;
+    }
+
+    /**
+     * @return The value of these coins in cents
+     */
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    /**
+     * @return The value of these coins in dollars
+     */
+    public BigDecimal getTotal() {
+        return Money.toDollars(totalCents);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Change)) {
+            return false;
+        }
+        return Arrays.equals(counts, ((Change) obj).counts);
+    }
+
+    @Override
+    public String toString() {
+        return "Change{" + "total=" + Money.format(totalCents) + ", counts=" + Arrays.toString(counts) + '}';
+    }
+}
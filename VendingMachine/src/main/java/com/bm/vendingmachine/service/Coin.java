@@ -1,5 +1,6 @@
 package com.bm.vendingmachine.service;
 
+import com.bm.vendingmachine.dto.Money;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
@@ -11,14 +12,27 @@ import java.math.BigInteger;
  * date: Aug 1, 2021
  */
 public enum Coin {
-    QUARTER(new BigDecimal("0.25")),
-    DIME(new BigDecimal("0.10")),
-    NICKEL(new BigDecimal("0.05")),
-    PENNY(new BigDecimal("0.01"));
+    QUARTER(25, "Quarters"),
+    DIME(10, "Dimes"),
+    NICKEL(5, "Nickels"),
+    PENNY(1, "Pennies");
     
-    private BigDecimal value;
-    private Coin(BigDecimal value) {
-        this.value = value;
+    private final int cents;
+    private final BigDecimal value;
+    private final BigInteger centValue;
+    private final String pluralName;
+    private Coin(int cents, String pluralName) {
+        this.cents = cents;
+        this.value = BigDecimal.valueOf(cents, Money.SCALE);
+        this.centValue = BigInteger.valueOf(cents);
+        this.pluralName = pluralName;
+    }
+
+    /**
+     * @return The value of the coin in cents
+     */
+    public int getCents() {
+        return cents;
     }
 
     /**
@@ -32,7 +46,7 @@ public enum Coin {
      * @return The value of this coin in cents
      */
     public BigInteger getCentValue() {
-        return value.multiply(new BigDecimal("100")).toBigInteger();
+        return centValue;
     }
     
     /**
@@ -42,4 +56,11 @@ public enum Coin {
         return this.toString().charAt(0)
                 + this.toString().substring(1).toLowerCase();
     }
+    
+    /**
+     * @return The qualified name of several of this coin
+     */
+    public String repPluralName() {
+        return pluralName;
+    }
 }
@@ -0,0 +1,338 @@
+package com.bm.vendingmachine.service;
+
+import com.bm.vendingmachine.dto.Money;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The coins held by a Vending Machine for giving change, by kind of coin
+ *
+ * Change is made with the fewest coins the stock allows. Coins are tried
+ * from the largest kind down, and for every kind only the few largest
+ * counts are worth trying: giving up a whole period of a kind, such as two
+ * quarters, frees an amount that any handful of the smaller coins worth as
+ * much could be swapped for, with fewer coins and without running short.
+ * For the coins of this machine the period is two quarters, one dime and
+ * one nickel, so at most two combinations are ever looked at and any
+ * amount is answered in constant time, however large the stock.
+ *
+ * An unlimited inventory assumes there are always enough coins of every
+ * kind, as the machine did before it kept count.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class CoinInventory {
+    /**
+     * The machine asks for exact change unless it can give every amount of
+     * change below this one
+     */
+    public static final long CHANGE_GUARANTEE_CENTS = 100;
+    private static final Coin[] COINS = Coin.values();
+    private static final long[] PERIODS = new long[COINS.length];
+
+    static {
+        for (int i = 0; i < COINS.length - 1; i++) {
+            if (COINS[i].getCents() <= COINS[i + 1].getCents()) {
+                throw new AssertionError("Coins must be declared from the largest down");
+            }
+            PERIODS[i] = lcm(COINS[i].getCents(), COINS[i + 1].getCents()) / COINS[i].getCents();
+        }
+    }
+
+    private final ReentrantLock lock;
+    private final long[] stock;
+    private final boolean unlimited;
+
+    /**
+     * Creates an inventory holding no coins at all
+     */
+    public CoinInventory() {
+        this(Map.of());
+    }
+
+    /**
+     * @param counts The number of coins of every kind to begin with, where
+     *               the kinds left out start with none
+     */
+    public CoinInventory(Map<Coin, Long> counts) {
+        this(false);
+        counts.forEach(this::deposit);
+    }
+
+    private CoinInventory(boolean unlimited) {
+        this.lock = new ReentrantLock();
+        this.stock = new long[COINS.length];
+        this.unlimited = unlimited;
+    }
+
+    /**
+     * @return An inventory which never runs out of any coin
+     */
+    public static CoinInventory unlimited() {
+        return new CoinInventory(true);
+    }
+
+    /**
+     * @param coin
+     * @return The number of coins of that kind, or Long.MAX_VALUE if the
+     *         inventory is unlimited
+     */
+    public long getCount(Coin coin) {
+        if (unlimited) {
+            return Long.MAX_VALUE;
+        }
+        lock.lock();
+        try {
+            return stock[coin.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The value of every coin in stock, in cents, or Long.MAX_VALUE
+     *         if the inventory is unlimited
+     */
+    public long getTotalCents() {
+        if (unlimited) {
+            return Long.MAX_VALUE;
+        }
+        lock.lock();
+        try {
+            long total = 0;
+            for (Coin coin : COINS) {
+                total = Money.add(total, Money.multiply(coin.getCents(), stock[coin.ordinal()]));
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Adds coins to the stock, when the machine is restocked
+     *
+     * @param coin
+     * @param quantity The number of coins, which must not be negative
+     * @throws ArithmeticException If the count would overflow
+     */
+    public void deposit(Coin coin, long quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        if (unlimited) {
+            return;
+        }
+        lock.lock();
+        try {
+            stock[coin.ordinal()] = Money.add(stock[coin.ordinal()], quantity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of coins of every kind, or an empty map if the
+     *         inventory is unlimited
+     */
+    public Map<Coin, Long> getCounts() {
+        Map<Coin, Long> counts = new EnumMap<>(Coin.class);
+        if (unlimited) {
+            return counts;
+        }
+        lock.lock();
+        try {
+            for (Coin coin : COINS) {
+                counts.put(coin, stock[coin.ordinal()]);
+            }
+            return counts;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Replaces the whole stock, when the coins saved by a previous run are
+     * loaded. An unlimited inventory ignores the counts.
+     *
+     * @param counts The number of coins of every kind, where the kinds left
+     *               out have none
+     */
+    public void restock(Map<Coin, Long> counts) {
+        long[] fresh = new long[COINS.length];
+        counts.forEach((coin, quantity) -> {
+            if (quantity < 0) {
+                throw new IllegalArgumentException("Invalid quantity: " + quantity);
+            }
+            fresh[coin.ordinal()] = quantity;
+        });
+        if (unlimited) {
+            return;
+        }
+        lock.lock();
+        try {
+            System.arraycopy(fresh, 0, stock, 0, stock.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param cents An amount of change
+     * @return Whether the stock holds coins worth exactly that amount
+     */
+    public boolean canMakeChange(long cents) {
+        lock.lock();
+        try {
+            return plan(cents, available()) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Whether some amount of change below CHANGE_GUARANTEE_CENTS
+     *         cannot be given from the stock
+     */
+    public boolean isExactChangeOnly() {
+        if (unlimited) {
+            return false;
+        }
+        lock.lock();
+        try {
+            for (long cents = 1; cents < CHANGE_GUARANTEE_CENTS; cents++) {
+                if (plan(cents, stock) == null) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the coins paid for a sale into the stock and the coins of its
+     * change out of it, in a single step, so no other sale can take the
+     * coins planned for this one. Nothing changes if the change cannot be
+     * made.
+     *
+     * @param paid The number of coins paid of every kind, by ordinal
+     * @param changeCents The amount of change owed
+     * @return The coins to hand back, or null if the stock, along with the
+     *         coins paid, does not hold coins worth exactly the change
+     */
+    Change settle(long[] paid, long changeCents) {
+        lock.lock();
+        try {
+            long[] available = available();
+            if (!unlimited) {
+                for (int i = 0; i < available.length; i++) {
+                    available[i] = Money.add(available[i], paid[i]);
+                }
+            }
+            long[] counts = plan(changeCents, available);
+            if (counts == null) {
+                return null;
+            }
+            if (!unlimited) {
+                for (int i = 0; i < available.length; i++) {
+                    stock[i] = available[i] - counts[i];
+                }
+            }
+            return changeCents == 0 ? Change.NONE : new Change(counts);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The counts change may be made from, which the caller may
+     *         modify; must be called while holding the lock
+     */
+    private long[] available() {
+        long[] available = unlimited ? new long[COINS.length] : stock.clone();
+        if (unlimited) {
+            Arrays.fill(available, Long.MAX_VALUE);
+        }
+        return available;
+    }
+
+    /**
+     * @param cents The amount of change
+     * @param available The number of coins of every kind, by ordinal
+     * @return The fewest coins worth exactly the amount, by ordinal, or
+     *         null if there are none
+     */
+    static long[] plan(long cents, long[] available) {
+        if (cents < 0) {
+            return null;
+        }
+        long[] best = new long[COINS.length];
+        long[] counts = new long[COINS.length];
+        long fewest = search(0, cents, 0, available, counts, best, Long.MAX_VALUE);
+        return fewest == Long.MAX_VALUE ? null : best;
+    }
+
+    /**
+     * Tries the counts of one kind of coin that are worth trying, and the
+     * kinds below it for each of them
+     *
+     * @return The number of coins of the best combination found so far
+     */
+    private static long search(
+        int level,
+        long remaining,
+        long used,
+        long[] available,
+        long[] counts,
+        long[] best,
+        long fewest) {
+
+        long value = COINS[level].getCents();
+        long most = Math.min(available[level], remaining / value);
+        if (level == COINS.length - 1) {
+            if (most * value == remaining && used + most < fewest) {
+                counts[level] = most;
+                System.arraycopy(counts, 0, best, 0, counts.length);
+                return used + most;
+            }
+            return fewest;
+        }
+        long least = Math.max(0, most - PERIODS[level] + 1);
+        for (long count = most; count >= least; count--) {
+            counts[level] = count;
+            fewest = search(level + 1, remaining - count * value, used + count, available, counts, best, fewest);
+        }
+        counts[level] = 0;
+        return fewest;
+    }
+
+    private static long lcm(long a, long b) {
+        long x = a;
+        long y = b;
+        while (y != 0) {
+            long t = x % y;
+            x = y;
+            y = t;
+        }
+        return a / x * b;
+    }
+
+    @Override
+    public String toString() {
+        if (unlimited) {
+            return "CoinInventory{unlimited}";
+        }
+        lock.lock();
+        try {
+            return "CoinInventory{" + "stock=" + Arrays.toString(stock) + '}';
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.bm.vendingmachine.service;
+
+import com.bm.vendingmachine.dto.Money;
+import com.bm.vendingmachine.service.exceptions.ExactChangeRequiredException;
+import com.bm.vendingmachine.service.exceptions.InsufficientFundsException;
+import com.bm.vendingmachine.service.exceptions.NoItemInventoryException;
+
+/**
+ * The outcome of an attempt to buy one item, returned rather than thrown
+ *
+ * A refused purchase is routine for a vending machine, and reporting it
+ * this way costs neither a stack trace nor a message. The outcomes which
+ * carry nothing beyond their kind are shared instances, and the others are
+ * a single small object. toChange turns a result back into the change or
+ * the exception that transactItem reports it with.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public final class PurchaseResult {
+    public enum Outcome {
+        /**
+         * The item was sold and the change given
+         */
+        SOLD,
+        /**
+         * The machine does not have the item
+         */
+        NO_SUCH_ITEM,
+        /**
+         * The item has sold out
+         */
+        OUT_OF_STOCK,
+        /**
+         * The funds do not cover the cost of the item
+         */
+        INSUFFICIENT_FUNDS,
+        /**
+         * The machine does not hold the coins to give the change
+         */
+        NO_CHANGE
+    }
+
+    static final PurchaseResult NO_SUCH_ITEM = new PurchaseResult(Outcome.NO_SUCH_ITEM, null, 0, 0);
+    static final PurchaseResult OUT_OF_STOCK = new PurchaseResult(Outcome.OUT_OF_STOCK, null, 0, 0);
+
+    private final Outcome outcome;
+    private final Change change;
+    private final long costCents;
+    private final long amountCents;
+
+    /**
+     * @param amountCents The shortfall of a purchase with insufficient
+     *                    funds, or the change owed by any other
+     */
+    private PurchaseResult(Outcome outcome, Change change, long costCents, long amountCents) {
+        this.outcome = outcome;
+        this.change = change;
+        this.costCents = costCents;
+        this.amountCents = amountCents;
+    }
+
+    static PurchaseResult sold(long costCents, Change change) {
+        return new PurchaseResult(Outcome.SOLD, change, costCents, change.getTotalCents());
+    }
+
+    static PurchaseResult insufficientFunds(long costCents, long fundsCents) {
+        return new PurchaseResult(Outcome.INSUFFICIENT_FUNDS, null, costCents, costCents - fundsCents);
+    }
+
+    static PurchaseResult noChange(long costCents, long changeCents) {
+        return new PurchaseResult(Outcome.NO_CHANGE, null, costCents, changeCents);
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return Whether the item was sold
+     */
+    public boolean isSold() {
+        return outcome == Outcome.SOLD;
+    }
+
+    /**
+     * @return The coins given back, which are none unless the item was sold
+     */
+    public Change getChange() {
+        return change == null ? Change.NONE : change;
+    }
+
+    /**
+     * @return The cost of the item in cents, or zero if the item does not
+     *         exist or has sold out
+     */
+    public long getCostCents() {
+        return costCents;
+    }
+
+    /**
+     * @return How many cents short the funds fell of the cost, which is
+     *         zero unless the funds were insufficient
+     */
+    public long getShortfallCents() {
+        return outcome == Outcome.INSUFFICIENT_FUNDS ? amountCents : 0;
+    }
+
+    /**
+     * @return The change owed, in cents, whether given or not, which is
+     *         zero unless the item was sold or the change could not be
+     *         given
+     */
+    public long getChangeCents() {
+        return outcome == Outcome.SOLD || outcome == Outcome.NO_CHANGE ? amountCents : 0;
+    }
+
+    /**
+     * @return The change given for a sold item
+     * @throws NoItemInventoryException If the item does not exist or has
+     *         sold out
+     * @throws InsufficientFundsException If the funds do not cover the
+     *         item, or the change cannot be given
+     */
+    public Change toChange() throws NoItemInventoryException, InsufficientFundsException {
+        switch (outcome) {
+            case SOLD:
+                return change;
+            case NO_SUCH_ITEM:
+                throw new NoItemInventoryException(
+                    "The vending machine does not have this item"
+                );
+            case OUT_OF_STOCK:
+                throw new NoItemInventoryException(
+                    "The vending machine has run out of this item"
+                );
+            case INSUFFICIENT_FUNDS:
+                throw new InsufficientFundsException(
+                    "Not enough funds have been provided to purchase this item "
+                    + "(Item cost: $" + Money.format(costCents)
+                    + ", Funds available: $" + Money.format(costCents - amountCents) + ")"
+                );
+            default:
+                throw new ExactChangeRequiredException(
+                    "The vending machine cannot give $" + Money.format(amountCents)
+                    + " in change, please pay with exact change"
+                );
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PurchaseResult{" + "outcome=" + outcome + ", cost=" + Money.format(costCents)
+            + ", change=" + getChange() + '}';
+    }
+}
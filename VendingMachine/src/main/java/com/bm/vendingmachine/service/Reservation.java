@@ -0,0 +1,154 @@
+package com.bm.vendingmachine.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Units of an item set aside for one session until a deadline
+ *
+ * The units of a reservation are taken out of the inventory when it is
+ * made, so no other session can buy them, and the session holding it buys
+ * from them before it turns to the inventory. Whatever is left once the
+ * reservation ends, by expiring or being released, goes back into the
+ * inventory.
+ *
+ * The units left are counted in a single atomic, so the session can buy
+ * from a reservation while another thread expires it without either taking
+ * a lock: a reservation which has ended holds -1 units.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class Reservation {
+    private static final long ENDED = -1;
+
+    private final VendingSession session;
+    private final String itemName;
+    private final AtomicLong units;
+    private volatile TimerWheel.Timeout<Reservation> timeout;
+
+    Reservation(VendingSession session, String itemName, long quantity) {
+        this.session = session;
+        this.itemName = itemName;
+        this.units = new AtomicLong(quantity);
+    }
+
+    /**
+     * @return The session this reservation was made for
+     */
+    public VendingSession getSession() {
+        return session;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    /**
+     * @return The number of units still held, which is zero once the
+     *         reservation has ended
+     */
+    public long getUnitsHeld() {
+        return Math.max(0, units.get());
+    }
+
+    /**
+     * @return Whether the reservation has neither expired nor been released
+     */
+    public boolean isActive() {
+        return units.get() != ENDED;
+    }
+
+    void setTimeout(TimerWheel.Timeout<Reservation> timeout) {
+        this.timeout = timeout;
+    }
+
+    TimerWheel.Timeout<Reservation> getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return Whether a unit was taken, which fails once none are left or
+     *         the reservation has ended
+     */
+    boolean takeUnit() {
+        long held;
+        do {
+            held = units.get();
+            if (held <= 0) {
+                return false;
+            }
+        } while (!units.compareAndSet(held, held - 1));
+        return true;
+    }
+
+    /**
+     * Takes as many of the units wanted as are left
+     *
+     * @param wanted The number of units wanted, which must be positive
+     * @return The number of units taken, which is zero once none are left
+     *         or the reservation has ended
+     */
+    long takeUnits(long wanted) {
+        long held;
+        long taken;
+        do {
+            held = units.get();
+            if (held <= 0) {
+                return 0;
+            }
+            taken = Math.min(held, wanted);
+        } while (!units.compareAndSet(held, held - taken));
+        return taken;
+    }
+
+    /**
+     * Puts back a unit taken for a sale which did not go through
+     *
+     * @return Whether the unit is held again, which fails if the
+     *         reservation ended in the meantime
+     */
+    boolean putBackUnit() {
+        long held;
+        do {
+            held = units.get();
+            if (held == ENDED) {
+                return false;
+            }
+        } while (!units.compareAndSet(held, held + 1));
+        return true;
+    }
+
+    /**
+     * Puts back units taken for a sale which did not go through
+     *
+     * @return Whether the units are held again, which fails if the
+     *         reservation ended in the meantime
+     */
+    boolean putBackUnits(long taken) {
+        long held;
+        do {
+            held = units.get();
+            if (held == ENDED) {
+                return false;
+            }
+        } while (!units.compareAndSet(held, held + taken));
+        return true;
+    }
+
+    /**
+     * Ends the reservation, which may happen only once
+     *
+     * @return The units left, which are owed back to the inventory, or -1
+     *         if the reservation had already ended
+     */
+    long end() {
+        return units.getAndSet(ENDED);
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation{" + "session=" + session.getId() + ", itemName=" + itemName
+            + ", units=" + units.get() + '}';
+    }
+}
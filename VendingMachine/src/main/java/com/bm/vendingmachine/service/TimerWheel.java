@@ -0,0 +1,219 @@
+package com.bm.vendingmachine.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A hashed timer wheel, which fires the timeouts scheduled on it once their
+ * deadline has passed
+ *
+ * Time is cut into ticks, and every timeout is hashed by its deadline tick
+ * into one of a fixed number of slots, each a doubly linked list. Scheduling
+ * and cancelling a timeout are constant time whatever the number pending,
+ * and advancing the wheel only visits the slots of the ticks passed, where
+ * the timeouts due a whole turn or more later are simply stepped over. A
+ * timeout fires at most one tick after its deadline.
+ *
+ * The wheel keeps no thread of its own: it moves only when advance is
+ * called, with the current time from the caller, and runs the expired
+ * timeouts in that caller's thread once it has let go of its lock.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+class TimerWheel<T> {
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout<T>[] heads;
+    private final int mask;
+    private final ReentrantLock lock;
+    private volatile long nextTick;
+    private int pending;
+
+    /**
+     * @param slots The number of slots, which is rounded up to a power of
+     *              two
+     * @param tickNanos The length of a tick
+     * @param startNanos The time at which the wheel starts turning
+     */
+    @SuppressWarnings("unchecked")
+    TimerWheel(int slots, long tickNanos, long startNanos) {
+        if (slots <= 0 || tickNanos <= 0) {
+            throw new IllegalArgumentException("Invalid wheel: " + slots + " slots of " + tickNanos + "ns");
+        }
+        int size = Integer.highestOneBit(slots);
+        if (size < slots) {
+            size <<= 1;
+        }
+        this.heads = (Timeout<T>[]) new Timeout<?>[size];
+        this.mask = size - 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * @param task The value handed back once the timeout fires
+     * @param deadlineNanos The time at or after which it should fire
+     * @return The timeout, which may be cancelled until it fires
+     */
+    Timeout<T> schedule(T task, long deadlineNanos) {
+        long elapsed = Math.max(0, deadlineNanos - startNanos);
+        long tick = elapsed / tickNanos + (elapsed % tickNanos == 0 ? 0 : 1);
+        Timeout<T> timeout = new Timeout<>(task, this);
+        lock.lock();
+        try {
+            timeout.tick = Math.max(tick, nextTick);
+            link(timeout);
+            pending++;
+        } finally {
+            lock.unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * Fires every timeout whose deadline is at or before the current time
+     *
+     * @param nowNanos The current time
+     * @return The tasks of the timeouts fired, in no particular order
+     */
+    List<T> advance(long nowNanos) {
+        long lastTick = Math.max(0, nowNanos - startNanos) / tickNanos;
+        if (lastTick < nextTick) {
+            return List.of();
+        }
+        List<T> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            long first = nextTick;
+            if (lastTick < first) {
+                return expired;
+            }
+            // after a full turn every slot has been seen, so there is no
+            // need to walk the ticks of an idle stretch one by one
+            long slotsToVisit = Math.min(lastTick - first + 1, heads.length);
+            for (long i = 0; i < slotsToVisit; i++) {
+                Timeout<T> timeout = heads[(int) ((first + i) & mask)];
+                while (timeout != null) {
+                    Timeout<T> next = timeout.next;
+                    if (timeout.tick <= lastTick) {
+                        unlink(timeout);
+                        pending--;
+                        expired.add(timeout.task);
+                    }
+                    timeout = next;
+                }
+            }
+            nextTick = lastTick + 1;
+        } finally {
+            lock.unlock();
+        }
+        return expired;
+    }
+
+    /**
+     * Cancels every timeout still pending, whatever its deadline
+     *
+     * @return The tasks of the timeouts cancelled, in no particular order
+     */
+    List<T> drain() {
+        List<T> pendingTasks = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int slot = 0; slot < heads.length; slot++) {
+                while (heads[slot] != null) {
+                    pendingTasks.add(heads[slot].task);
+                    unlink(heads[slot]);
+                }
+            }
+            pending = 0;
+        } finally {
+            lock.unlock();
+        }
+        return pendingTasks;
+    }
+
+    /**
+     * @return The number of timeouts which have neither fired nor been
+     *         cancelled
+     */
+    int size() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Whether the timeout was pending, and so will now never fire
+     */
+    private boolean cancel(Timeout<T> timeout) {
+        lock.lock();
+        try {
+            if (!timeout.linked) {
+                return false;
+            }
+            unlink(timeout);
+            pending--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void link(Timeout<T> timeout) {
+        int slot = (int) (timeout.tick & mask);
+        Timeout<T> head = heads[slot];
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        heads[slot] = timeout;
+        timeout.linked = true;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev == null) {
+            heads[(int) (timeout.tick & mask)] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.linked = false;
+    }
+
+    /**
+     * A task waiting on the wheel, whose links are guarded by the lock of
+     * the wheel
+     */
+    static final class Timeout<T> {
+        private final T task;
+        private final TimerWheel<T> wheel;
+        private long tick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private boolean linked;
+
+        private Timeout(T task, TimerWheel<T> wheel) {
+            this.task = task;
+            this.wheel = wheel;
+        }
+
+        /**
+         * @return Whether the timeout was pending, and so will now never
+         *         fire
+         */
+        boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+}
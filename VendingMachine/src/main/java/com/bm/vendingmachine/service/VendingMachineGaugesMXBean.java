@@ -0,0 +1,47 @@
+package com.bm.vendingmachine.service;
+
+/**
+ * The management interface of the gauges of a Vending Machine, read from
+ * the machine every time JMX tooling asks for them. The stock gauges may
+ * be up to VendingMachineService.GAUGE_REFRESH old.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public interface VendingMachineGaugesMXBean {
+    /**
+     * @return The number of items in the catalog, sold out or not
+     */
+    public int getItemCount();
+
+    /**
+     * @return The number of units of every item together, not counting
+     *         those held by reservations
+     */
+    public long getUnitsInStock();
+
+    /**
+     * @return The number of items in the catalog with no units in stock
+     */
+    public int getItemsOutOfStock();
+
+    /**
+     * @return The value of the coins held for change, in cents, or
+     *         Long.MAX_VALUE if they never run out
+     */
+    public long getCoinInventoryCents();
+
+    /**
+     * @return The credit deposited in every open session and not yet spent
+     *         or handed back, in cents
+     */
+    public long getCreditHeldCents();
+
+    /**
+     * @return The number of reservations yet to expire or be released
+     */
+    public int getOpenReservations();
+
+    public boolean isExactChangeOnly();
+}
@@ -1,33 +1,301 @@
 package com.bm.vendingmachine.service;
 
 import com.bm.vendingmachine.dao.VendingMachineAuditDao;
+import com.bm.vendingmachine.dao.VendingMachineCartDao;
+import com.bm.vendingmachine.dao.VendingMachineCoinDao;
 import com.bm.vendingmachine.dao.VendingMachineDao;
+import com.bm.vendingmachine.dao.VendingMachineDaoMeteredImpl;
+import com.bm.vendingmachine.dao.VendingMachineHoldDao;
+import com.bm.vendingmachine.dao.VendingMachinePriceDao;
 import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
 import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.AuditEventType;
+import com.bm.vendingmachine.dto.Cart;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.Money;
 import com.bm.vendingmachine.dto.VendingMachineItem;
+import com.bm.vendingmachine.events.DomainEventType;
+import com.bm.vendingmachine.events.EventBus;
+import com.bm.vendingmachine.metrics.MetricsRegistry;
+import com.bm.vendingmachine.metrics.OperationMetrics;
+import com.bm.vendingmachine.service.exceptions.ExactChangeRequiredException;
 import com.bm.vendingmachine.service.exceptions.InsufficientFundsException;
 import com.bm.vendingmachine.service.exceptions.NoItemInventoryException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 /**
  * Acts as the Service Layer component of this application 
  *
+ * Any number of customers can use the machine at once, each through a
+ * VendingSession holding their own credit, while sharing the inventory
+ * of the DAO. The methods that take no session act on a default session,
+ * which serves the single customer at the console.
+ *
+ * Credit, costs and change are all handled in whole cents held in longs,
+ * with every sum and product checked for overflow. The methods taking or
+ * returning BigDecimal convert at the boundary, for callers that show
+ * amounts to a person.
+ *
+ * Change is given from a CoinInventory. The coins a customer pays in are
+ * kept with their session until a sale, which takes them into the
+ * inventory and the change out of it in the same step. A sale whose change
+ * cannot be made is refused and its item put back. Given a
+ * VendingMachineCoinDao, the service loads and saves the coin counts along
+ * with the items; without one, the coins last as long as the service.
+ *
+ * A session can reserve units of an item for a while, taking them out of
+ * the inventory so that no other session can buy them. The deadlines of
+ * all reservations are kept on a single TimerWheel, which the service
+ * turns as it goes: every purchase, reservation, listing and save first
+ * restocks the units of those which have expired, so an expired hold never
+ * keeps a unit from a customer or out of the stock shown and saved.
+ * expireReservations does the same on demand, for a machine which wants
+ * them restocked while nobody is using it.
+ *
+ * A DAO which can hold units keeps reserved units out of what it records
+ * as removed until they are sold, so reservations outstanding when the
+ * machine dies come back in stock on the next load. Saving and closing
+ * the service release every reservation still open, whatever the DAO.
+ *
+ * The costs of the items can be replaced while the machine is selling, a
+ * whole price list at a time. The DAO switches to the new costs at once,
+ * so a sale pays either the old cost or the new one, and a cart is priced
+ * again should the switch land while its lines are being priced, so all of
+ * its lines are charged from the same price list.
+ *
+ * Every purchase, deposit, reservation, load, save and price update is
+ * timed and counted in a MetricsRegistry, under names such as
+ * "service.transactItem", and the stock, coins, credit and reservations of
+ * the machine are published there as the "service" gauges. The stock
+ * gauges come from one pass over a catalog snapshot, reused for
+ * GAUGE_REFRESH, so reading all of them costs a single pass.
+ *
+ * Deposits, sales, rejected sales, carts, loads, saves and price updates
+ * are also published as DomainEvents on an EventBus, when the service is
+ * given one, for any number of subscribers to follow on their own threads.
+ * Each costs the purchase path a single publication, however many
+ * subscribers there are.
+ *
  * @author Benjamin Munoz
  * email: driver396@gmail.com
  * date: Jul 31, 2021
  */
 public class VendingMachineService {
-    private BigDecimal fundsAvailable;
-    private VendingMachineDao dao;
-    private VendingMachineAuditDao auditDao;
+    /**
+     * How late a reservation may expire at most
+     */
+    public static final Duration RESERVATION_TICK = Duration.ofMillis(100);
+    private static final int RESERVATION_SLOTS = 512;
+    /**
+     * How long the stock gauges are reused before the catalog is read again
+     */
+    public static final Duration GAUGE_REFRESH = Duration.ofSeconds(1);
+    
+    private final VendingMachineDao dao;
+    private final VendingMachineAuditDao auditDao;
+    private final AtomicLong nextSessionId;
+    private final CoinInventory coins;
+    private final VendingMachineCoinDao coinDao;
+    private final VendingSession defaultSession;
+    private final LongSupplier nanoClock;
+    private final TimerWheel<Reservation> reservations;
+    private final MetricsRegistry metrics;
+    private final OperationMetrics loads;
+    private final OperationMetrics saves;
+    private final OperationMetrics deposits;
+    private final OperationMetrics sales;
+    private final OperationMetrics cartSales;
+    private final OperationMetrics reservationsMade;
+    private final OperationMetrics priceUpdates;
+    private final LongAdder creditHeldCents;
+    private final EventBus events;
 
+    /**
+     * Creates a service which never runs out of coins for change
+     */
     public VendingMachineService(VendingMachineDao dao, VendingMachineAuditDao auditDao) {
+        this(dao, auditDao, CoinInventory.unlimited());
+    }
+
+    public VendingMachineService(
+        VendingMachineDao dao,
+        VendingMachineAuditDao auditDao,
+        CoinInventory coins) {
+        
+        this(dao, auditDao, coins, System::nanoTime);
+    }
+    
+    /**
+     * @param dao
+     * @param auditDao
+     * @param coins
+     * @param nanoClock The time, in nanoseconds from some fixed origin, by
+     *                  which reservations expire
+     */
+    public VendingMachineService(
+        VendingMachineDao dao,
+        VendingMachineAuditDao auditDao,
+        CoinInventory coins,
+        LongSupplier nanoClock) {
+        
+        this(dao, auditDao, coins, nanoClock, new MetricsRegistry());
+    }
+    
+    /**
+     * @param dao
+     * @param auditDao
+     * @param coins
+     * @param nanoClock The time, in nanoseconds from some fixed origin, by
+     *                  which reservations expire
+     * @param metrics The registry to record the operations of this service
+     *                into, and to add its gauges to
+     */
+    public VendingMachineService(
+        VendingMachineDao dao,
+        VendingMachineAuditDao auditDao,
+        CoinInventory coins,
+        LongSupplier nanoClock,
+        MetricsRegistry metrics) {
+        
+        this(dao, auditDao, coins, nanoClock, metrics, null);
+    }
+    
+    /**
+     * @param dao
+     * @param auditDao
+     * @param coins
+     * @param nanoClock The time, in nanoseconds from some fixed origin, by
+     *                  which reservations expire
+     * @param metrics The registry to record the operations of this service
+     *                into, and to add its gauges to
+     * @param events The bus to publish the events of this service on, or
+     *               null to publish none
+     */
+    public VendingMachineService(
+        VendingMachineDao dao,
+        VendingMachineAuditDao auditDao,
+        CoinInventory coins,
+        LongSupplier nanoClock,
+        MetricsRegistry metrics,
+        EventBus events) {
+        
+        this(dao, auditDao, coins, null, nanoClock, metrics, events);
+    }
+    
+    /**
+     * @param dao
+     * @param auditDao
+     * @param coins
+     * @param coinDao Loads the coins along with the items, and saves them
+     *                along with the items, or null to keep the coins in
+     *                memory alone
+     * @param nanoClock The time, in nanoseconds from some fixed origin, by
+     *                  which reservations expire
+     * @param metrics The registry to record the operations of this service
+     *                into, and to add its gauges to
+     * @param events The bus to publish the events of this service on, or
+     *               null to publish none
+     */
+    public VendingMachineService(
+        VendingMachineDao dao,
+        VendingMachineAuditDao auditDao,
+        CoinInventory coins,
+        VendingMachineCoinDao coinDao,
+        LongSupplier nanoClock,
+        MetricsRegistry metrics,
+        EventBus events) {
+        
         this.dao = dao;
         this.auditDao = auditDao;
-        this.fundsAvailable = BigDecimal.ZERO;
+        this.coins = coins;
+        this.coinDao = coinDao;
+        this.nanoClock = nanoClock;
+        this.reservations = new TimerWheel<>(
+            RESERVATION_SLOTS,
+            RESERVATION_TICK.toNanos(),
+            nanoClock.getAsLong()
+        );
+        this.metrics = metrics;
+        this.loads = metrics.operation("service.loadItems");
+        this.saves = metrics.operation("service.saveItems");
+        this.deposits = metrics.operation("service.addCoins");
+        this.sales = metrics.operation("service.transactItem");
+        this.cartSales = metrics.operation("service.transactItems");
+        this.reservationsMade = metrics.operation("service.reserveItem");
+        this.priceUpdates = metrics.operation("service.updatePrices");
+        this.creditHeldCents = new LongAdder();
+        this.events = events;
+        metrics.addGauges("service", new Gauges(), VendingMachineGaugesMXBean.class);
+        this.nextSessionId = new AtomicLong();
+        this.defaultSession = openSession();
+    }
+    
+    /**
+     * @return A new session, starting off with no credit
+     */
+    public VendingSession openSession() {
+        return new VendingSession(nextSessionId.getAndIncrement());
+    }
+    
+    /**
+     * Ends a session, which can no longer be used afterwards. Its
+     * reservations are released.
+     * 
+     * @param session
+     * @return The credit left in the session, to be given back to its
+     *         customer
+     */
+    public BigDecimal closeSession(VendingSession session) {
+        List<Reservation> held;
+        long creditCents;
+        session.lock();
+        try {
+            creditCents = session.getCreditCents();
+            spendCredit(session);
+            held = session.takeReservations();
+            session.markClosed();
+        } finally {
+            session.unlock();
+        }
+        for (Reservation reservation : held) {
+            releaseReservation(reservation);
+        }
+        return Money.toDollars(creditCents);
+    }
+    
+    /**
+     * @return The coins this machine gives change from
+     */
+    public CoinInventory getCoinInventory() {
+        return coins;
+    }
+    
+    /**
+     * @return The registry the operations of this service are recorded in
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * @return Whether the machine may be unable to give change, so that
+     *         customers should pay with exact change
+     */
+    public boolean isExactChangeOnly() {
+        return coins.isExactChangeOnly();
     }
     
     /**
@@ -35,38 +303,151 @@ public class VendingMachineService {
      * memory. If this loading is unsuccessful, the below exception will be 
      * thrown.
      * 
+     * The coins saved along with the items, if any, replace those the
+     * machine was stocked with.
+     * 
      * @throws FailedLoadOfVendingItemsException 
      */
     public void loadItems() throws FailedLoadOfVendingItemsException {
-        dao.loadItems();
-        auditDao.appendRecord("Loaded vending items into memory");
+        long start = System.nanoTime();
+        try {
+            dao.loadItems();
+            loadCoins();
+            auditDao.appendEvent(AuditEventType.ITEMS_LOADED, null, 0);
+            publishEvent(DomainEventType.ITEMS_LOADED, -1, null, 0, 0, null);
+            loads.succeeded(start);
+        } catch (FailedLoadOfVendingItemsException | RuntimeException ex) {
+            loads.failed(start, ex);
+            throw ex;
+        }
     }
     
     /**
      * Attempts to save Vending Machine items to an external source. If 
      * this saving is unsuccessful, the below exception will be thrown.
      * 
+     * Every reservation still open is released first, so the units it
+     * holds are saved in stock rather than as sold.
+     * 
      * @throws FailedSaveOfVendingItemsException 
      */
     public void saveItems() throws FailedSaveOfVendingItemsException {
-        dao.saveItems();
-        auditDao.appendRecord("Saved vending items to external source(s)");
+        long start = System.nanoTime();
+        try {
+            expireReservations();
+            releaseReservations();
+            dao.saveItems();
+            if (coinDao != null) {
+                Map<String, Long> counts = new LinkedHashMap<>();
+                coins.getCounts().forEach((coin, count) -> counts.put(coin.name(), count));
+                coinDao.saveCoins(counts);
+            }
+            auditDao.appendEvent(AuditEventType.ITEMS_SAVED, null, 0);
+            publishEvent(DomainEventType.ITEMS_SAVED, -1, null, 0, 0, null);
+            saves.succeeded(start);
+        } catch (FailedSaveOfVendingItemsException | RuntimeException ex) {
+            saves.failed(start, ex);
+            throw ex;
+        }
+    }
+    
+    private void loadCoins() throws FailedLoadOfVendingItemsException {
+        if (coinDao == null) {
+            return;
+        }
+        Optional<Map<String, Long>> saved = coinDao.loadCoins();
+        if (saved.isEmpty()) {
+            return;
+        }
+        Map<Coin, Long> counts = new EnumMap<>(Coin.class);
+        for (Map.Entry<String, Long> count : saved.get().entrySet()) {
+            try {
+                counts.put(Coin.valueOf(count.getKey()), count.getValue());
+            } catch (IllegalArgumentException ex) {
+                throw new FailedLoadOfVendingItemsException("Unknown coin: " + count.getKey(), ex);
+            }
+        }
+        coins.restock(counts);
+    }
+    
+    /**
+     * Replaces the costs of the items in a price list, all at once. Sales
+     * go on at the old costs while the new ones are prepared, and every
+     * sale afterwards pays the new ones; no sale or cart is ever charged
+     * some of each. Items left out of the price list keep their cost.
+     * 
+     * @param costs The new cost of each item, by name
+     * @throws IllegalArgumentException If an item is not in the machine, or
+     *         a cost is negative or has a fraction of a cent, in which case
+     *         no cost is changed
+     * @throws FailedSaveOfVendingItemsException If the new costs could not
+     *         be stored, in which case no cost is changed
+     * @throws UnsupportedOperationException If the DAO of this service
+     *         cannot change the costs of its items
+     */
+    public void updatePrices(Map<String, BigDecimal> costs) throws FailedSaveOfVendingItemsException {
+        long start = System.nanoTime();
+        try {
+            if (!(dao instanceof VendingMachinePriceDao)) {
+                throw new UnsupportedOperationException("The prices of this machine are fixed");
+            }
+            ((VendingMachinePriceDao) dao).updatePrices(costs);
+            auditDao.appendEvent(AuditEventType.PRICES_UPDATED, null, costs.size());
+            publishEvent(DomainEventType.PRICES_UPDATED, -1, null, costs.size(), 0, null);
+            priceUpdates.succeeded(start);
+        } catch (FailedSaveOfVendingItemsException | RuntimeException ex) {
+            priceUpdates.failed(start, ex);
+            throw ex;
+        }
     }
     
     /**
      * @return A list of all the VendingMachineItems available
      */
     public List<VendingMachineItem> getAllItems() {
-        auditDao.appendRecord("Acquiring list of all items");
+        expireReservations();
+        auditDao.appendEvent(AuditEventType.ITEMS_LISTED, null, 0);
         return dao.getAllItems();
     }
     
+    /**
+     * @return A point-in-time snapshot of all the VendingMachineItems,
+     *         which the caller should close once it has been read
+     */
+    public CatalogSnapshot getCatalogSnapshot() {
+        expireReservations();
+        auditDao.appendEvent(AuditEventType.SNAPSHOT_ACQUIRED, null, 0);
+        return dao.getCatalogSnapshot();
+    }
+    
     /**
      * @return The amount of funds currently deposited in the Vending Machine
      */
     public BigDecimal getFundsAvailable() {
-        auditDao.appendRecord("Vending machine funds queried");
-        return fundsAvailable;
+        return getFundsAvailable(defaultSession);
+    }
+    
+    /**
+     * @param session
+     * @return The amount of funds currently deposited in the session
+     */
+    public BigDecimal getFundsAvailable(VendingSession session) {
+        return Money.toDollars(getCreditCents(session));
+    }
+    
+    /**
+     * @param session
+     * @return The amount of funds currently deposited in the session, in
+     *         cents
+     */
+    public long getCreditCents(VendingSession session) {
+        auditDao.appendEvent(AuditEventType.FUNDS_QUERIED, null, 0);
+        session.lock();
+        try {
+            return session.getCreditCents();
+        } finally {
+            session.unlock();
+        }
     }
     
     /**
@@ -76,10 +457,209 @@ public class VendingMachineService {
      * @param quantity 
      */
     public void addCoins(Coin coin, BigInteger quantity) {
-        auditDao.appendRecord("Added " + quantity + " " + coin + "(s)");
-        fundsAvailable = fundsAvailable.add(
-            coin.getValue().multiply(new BigDecimal(quantity))
-        );
+        addCoins(defaultSession, coin, quantity);
+    }
+    
+    /**
+     * Deposits the indicated quantities of coins into a session
+     * 
+     * @param session
+     * @param coin
+     * @param quantity 
+     * @throws ArithmeticException If the credit would become larger than
+     *         the machine can count
+     */
+    public void addCoins(VendingSession session, Coin coin, BigInteger quantity) {
+        addCoins(session, coin, quantity.longValueExact());
+    }
+    
+    /**
+     * Deposits the indicated quantities of coins into a session
+     * 
+     * @param session
+     * @param coin
+     * @param quantity 
+     * @throws ArithmeticException If the credit would become larger than
+     *         the machine can count
+     */
+    public void addCoins(VendingSession session, Coin coin, long quantity) {
+        long start = System.nanoTime();
+        try {
+            if (quantity < 0) {
+                throw new IllegalArgumentException("Invalid quantity: " + quantity);
+            }
+            long addedCents = Money.multiply(coin.getCents(), quantity);
+            session.lock();
+            try {
+                session.pay(coin, quantity, addedCents);
+                creditHeldCents.add(addedCents);
+            } finally {
+                session.unlock();
+            }
+            auditDao.appendEvent(AuditEventType.COINS_ADDED, coin.name(), addedCents);
+            publishEvent(DomainEventType.COINS_ADDED, session.getId(), coin.name(), addedCents, 0, null);
+            deposits.succeeded(start);
+        } catch (RuntimeException ex) {
+            deposits.failed(start, ex);
+            throw ex;
+        }
+    }
+    
+    /**
+     * Reserves units of an item for the console customer, exactly as
+     * reserveItem(VendingSession, String, long, Duration) does
+     * 
+     * @param itemName
+     * @param quantity
+     * @param ttl
+     * @throws NoItemInventoryException
+     * @return The reservation
+     */
+    public Reservation reserveItem(String itemName, long quantity, Duration ttl) throws
+        NoItemInventoryException {
+        
+        return reserveItem(defaultSession, itemName, quantity, ttl);
+    }
+    
+    /**
+     * Sets units of an item aside for a session until the time to live has
+     * passed. No other session can buy them in the meantime, while the
+     * purchases of this session take them before any others. Whatever units
+     * are left when the reservation expires go back into the inventory.
+     * 
+     * @param session
+     * @param itemName
+     * @param quantity The number of units, which must be positive
+     * @param ttl How long the units are held, give or take
+     *            RESERVATION_TICK
+     * @throws NoItemInventoryException If the item does not exist or does
+     *         not hold enough units
+     * @return The reservation, which may be released early
+     */
+    public Reservation reserveItem(
+        VendingSession session,
+        String itemName,
+        long quantity,
+        Duration ttl) throws NoItemInventoryException {
+        
+        long start = System.nanoTime();
+        try {
+            Reservation reservation = reserveItemMetered(session, itemName, quantity, ttl);
+            reservationsMade.succeeded(start);
+            return reservation;
+        } catch (NoItemInventoryException | RuntimeException ex) {
+            reservationsMade.failed(start, ex);
+            throw ex;
+        }
+    }
+    
+    private Reservation reserveItemMetered(
+        VendingSession session,
+        String itemName,
+        long quantity,
+        Duration ttl) throws NoItemInventoryException {
+        
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        expireReservations();
+        session.lock();
+        try {
+            if (holdUnitsOfItem(itemName, quantity).isEmpty()) {
+                throw new NoItemInventoryException(
+                    "The vending machine does not have " + quantity + " of " + itemName
+                );
+            }
+            Reservation reservation = new Reservation(session, itemName, quantity);
+            session.addReservation(reservation);
+            reservation.setTimeout(reservations.schedule(
+                reservation,
+                nanoClock.getAsLong() + ttl.toNanos()
+            ));
+            auditDao.appendEvent(AuditEventType.ITEM_RESERVED, itemName, quantity);
+            return reservation;
+        } finally {
+            session.unlock();
+        }
+    }
+    
+    /**
+     * Ends a reservation before it expires, putting the units it still
+     * holds back into the inventory. Releasing a reservation which has
+     * already ended does nothing.
+     * 
+     * @param reservation
+     */
+    public void releaseReservation(Reservation reservation) {
+        TimerWheel.Timeout<Reservation> timeout = reservation.getTimeout();
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        endReservation(reservation, AuditEventType.RESERVATION_RELEASED);
+    }
+    
+    /**
+     * Restocks the units of every reservation whose time to live has passed
+     * 
+     * @return The number of reservations which expired
+     */
+    public int expireReservations() {
+        List<Reservation> expired = reservations.advance(nanoClock.getAsLong());
+        for (Reservation reservation : expired) {
+            endReservation(reservation, AuditEventType.RESERVATION_EXPIRED);
+        }
+        return expired.size();
+    }
+    
+    /**
+     * Releases every reservation still open, restocking its units
+     */
+    private void releaseReservations() {
+        for (Reservation reservation : reservations.drain()) {
+            endReservation(reservation, AuditEventType.RESERVATION_RELEASED);
+        }
+    }
+    
+    private void endReservation(Reservation reservation, AuditEventType type) {
+        long units = reservation.end();
+        if (units < 0) {
+            return;
+        }
+        if (units > 0) {
+            releaseUnitsOfItem(reservation.getItemName(), units);
+        }
+        auditDao.appendEvent(type, reservation.getItemName(), units);
+    }
+    
+    /**
+     * Takes units out of the stock for a reservation, without recording
+     * them as removed when the DAO can hold units
+     */
+    private Optional<VendingMachineItem> holdUnitsOfItem(String itemName, long quantity) {
+        return dao instanceof VendingMachineHoldDao
+            ? ((VendingMachineHoldDao) dao).holdUnitsOfItem(itemName, quantity)
+            : dao.removeUnitsOfItem(itemName, quantity);
+    }
+    
+    /**
+     * Puts units taken for a reservation back in stock
+     */
+    private void releaseUnitsOfItem(String itemName, long quantity) {
+        if (dao instanceof VendingMachineHoldDao) {
+            ((VendingMachineHoldDao) dao).releaseUnitsOfItem(itemName, quantity);
+        } else {
+            dao.returnUnitsOfItem(itemName, quantity);
+        }
+    }
+    
+    /**
+     * Records units taken for a reservation as sold. A DAO which cannot
+     * hold units removed them when they were reserved.
+     */
+    private void sellHeldUnitsOfItem(String itemName, long quantity) {
+        if (dao instanceof VendingMachineHoldDao) {
+            ((VendingMachineHoldDao) dao).sellHeldUnitsOfItem(itemName, quantity);
+        }
     }
     
     /**
@@ -91,6 +671,12 @@ public class VendingMachineService {
      * If the item's cost is higher than the amount of funds currently in the
      * Vending Machine, an InsufficientFundsException will be thrown.
      * 
+     * If the machine does not hold the coins to give the change, an
+     * ExactChangeRequiredException, which is a kind of
+     * InsufficientFundsException, will be thrown and the funds are kept.
+     * 
+     * A unit reserved for the session is sold before any in the inventory.
+     * 
      * Otherwise, one the transaction succeeds, the quantity of the item will 
      * be decremented by one, and the amount of change is returned. The amount
      * of funds in this machine will revert back to zero.
@@ -104,43 +690,577 @@ public class VendingMachineService {
         NoItemInventoryException,
         InsufficientFundsException {
         
-        auditDao.appendRecord("Transaction attempted for " + itemName);
+        return transactItem(defaultSession, itemName);
+    }
+    
+    /**
+     * Attempts to execute a transaction of the indicated item with the
+     * funds of a session, exactly as transactItem(String) does with those
+     * of the machine. Only the funds of that session are spent.
+     * 
+     * @param session
+     * @param itemName
+     * @throws NoItemInventoryException
+     * @throws InsufficientFundsException
+     * @return The amount of change returned on a successful transaction
+     */
+    public BigDecimal transactItem(VendingSession session, String itemName) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
+        
+        return Money.toDollars(transactItemCents(session, itemName));
+    }
+    
+    /**
+     * Attempts to execute a transaction of the indicated item, exactly as
+     * transactItem(String) does
+     * 
+     * @param itemName
+     * @throws NoItemInventoryException
+     * @throws InsufficientFundsException
+     * @return The coins given back as change on a successful transaction
+     */
+    public Change transactItemForChange(String itemName) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
         
-        Optional<VendingMachineItem> possItem = dao.getItemByName(itemName);
-        if (possItem.isEmpty()) {
-            auditDao.appendRecord("Transaction failed - no such item");
-            throw new NoItemInventoryException(
-                "The vending machine does not have this item"
+        return transactItemForChange(defaultSession, itemName);
+    }
+    
+    /**
+     * Attempts to execute a transaction of the indicated item with the
+     * funds of a session, exactly as transactItem(VendingSession, String)
+     * does
+     * 
+     * @param session
+     * @param itemName
+     * @throws NoItemInventoryException
+     * @throws InsufficientFundsException
+     * @return The coins given back as change on a successful transaction
+     */
+    public Change transactItemForChange(VendingSession session, String itemName) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
+        
+        return purchaseItem(session, itemName).toChange();
+    }
+    
+    /**
+     * Attempts to execute a transaction of the indicated item with the
+     * funds of a session, exactly as transactItem(VendingSession, String)
+     * does, without making a single BigDecimal along the way
+     * 
+     * @param session
+     * @param itemName
+     * @throws NoItemInventoryException
+     * @throws InsufficientFundsException
+     * @return The amount of change returned on a successful transaction, in
+     *         cents
+     */
+    public long transactItemCents(VendingSession session, String itemName) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
+        
+        return purchaseItem(session, itemName).toChange().getTotalCents();
+    }
+    
+    /**
+     * Attempts to buy the indicated item with the funds of the console
+     * customer, exactly as purchaseItem(VendingSession, String) does
+     * 
+     * @param itemName
+     * @return The outcome of the purchase
+     */
+    public PurchaseResult purchaseItem(String itemName) {
+        return purchaseItem(defaultSession, itemName);
+    }
+    
+    /**
+     * Attempts to buy the indicated item with the funds of a session, just
+     * as transactItem(VendingSession, String) does, but returns the outcome
+     * instead of throwing an exception when the item cannot be sold. Failed
+     * attempts are audited, metered and leave the funds untouched in the
+     * same way.
+     * 
+     * @param session
+     * @param itemName
+     * @return The outcome of the purchase, carrying the change of a sale
+     *         or the shortfall of insufficient funds
+     */
+    public PurchaseResult purchaseItem(VendingSession session, String itemName) {
+        long start = System.nanoTime();
+        try {
+            expireReservations();
+            session.lock();
+            try {
+                PurchaseResult result = purchaseItemLocked(session, itemName);
+                if (result.isSold()) {
+                    publishEvent(
+                        DomainEventType.SALE_COMPLETED,
+                        session.getId(),
+                        itemName,
+                        result.getCostCents(),
+                        result.getChangeCents(),
+                        null
+                    );
+                    sales.succeeded(start);
+                } else {
+                    publishEvent(
+                        DomainEventType.SALE_REJECTED,
+                        session.getId(),
+                        itemName,
+                        result.getCostCents(),
+                        0,
+                        result.getOutcome().name()
+                    );
+                    sales.failed(start, result.getOutcome().name());
+                }
+                return result;
+            } finally {
+                session.unlock();
+            }
+        } catch (RuntimeException ex) {
+            sales.failed(start, ex);
+            throw ex;
+        }
+    }
+    
+    private PurchaseResult purchaseItemLocked(VendingSession session, String itemName) {
+        long fundsCents = session.getCreditCents();
+        auditDao.appendEvent(AuditEventType.TRANSACTION_ATTEMPTED, itemName, 0);
+        
+        Reservation reservation = session.findReservation(itemName);
+        ItemRemoval removal = reservation == null
+            ? null
+            : takeReservedUnit(reservation, fundsCents);
+        boolean reserved = removal != null;
+        if (!reserved) {
+            removal = removeOneOfItemIfAffordable(itemName, fundsCents);
+        }
+        if (removal.getStatus() == ItemRemoval.Status.NO_SUCH_ITEM) {
+            auditDao.appendEvent(AuditEventType.TRANSACTION_FAILED_NO_SUCH_ITEM, itemName, 0);
+            return PurchaseResult.NO_SUCH_ITEM;
+        }
+        
+        long costCents = removal.getCostCents();
+        
+        if (removal.getStatus() == ItemRemoval.Status.INSUFFICIENT_FUNDS) {
+            auditDao.appendEvent(
+                AuditEventType.TRANSACTION_FAILED_INSUFFICIENT_FUNDS,
+                itemName,
+                costCents
             );
+            return PurchaseResult.insufficientFunds(costCents, fundsCents);
         }
         
-        VendingMachineItem item = possItem.get();
+        if (removal.getStatus() == ItemRemoval.Status.OUT_OF_STOCK) {
+            auditDao.appendEvent(AuditEventType.TRANSACTION_FAILED_OUT_OF_STOCK, itemName, 0);
+            return PurchaseResult.OUT_OF_STOCK;
+        }
+        long changeCents = Money.subtract(fundsCents, costCents);
+        Change change = coins.settle(session.getCoinsPaid(), changeCents);
+        if (change == null) {
+            if (!reserved) {
+                dao.returnUnitsOfItem(itemName, 1);
+            } else if (!reservation.putBackUnit()) {
+                releaseUnitsOfItem(itemName, 1);
+            }
+            auditDao.appendEvent(AuditEventType.TRANSACTION_FAILED_NO_CHANGE, itemName, changeCents);
+            return PurchaseResult.noChange(costCents, changeCents);
+        }
+        if (reserved) {
+            sellHeldUnitsOfItem(itemName, 1);
+        }
+        auditDao.appendEvent(AuditEventType.TRANSACTION_SUCCEEDED, itemName, changeCents);
+        spendCredit(session);
+        return PurchaseResult.sold(costCents, change);
+    }
+    
+    /**
+     * Takes one unit held by a reservation if the funds cover its cost,
+     * reporting the outcome as removeOneOfItemIfAffordable would
+     * 
+     * @return The outcome, or null if the reservation has ended, in which
+     *         case its units are back in stock
+     */
+    private ItemRemoval takeReservedUnit(Reservation reservation, long fundsCents) {
+        Optional<VendingMachineItem> item = dao.getItemByName(reservation.getItemName());
+        if (item.isEmpty()) {
+            return new ItemRemoval(ItemRemoval.Status.NO_SUCH_ITEM, null);
+        }
+        long costCents = Money.centsAtLeast(item.get().getCost());
+        if (costCents > fundsCents) {
+            return new ItemRemoval(ItemRemoval.Status.INSUFFICIENT_FUNDS, item.get(), costCents);
+        }
+        if (!reservation.takeUnit()) {
+            // expired since it was found
+            return null;
+        }
+        return new ItemRemoval(ItemRemoval.Status.REMOVED, item.get(), costCents);
+    }
+    
+    /**
+     * Removes one unit of an item if the funds cover its cost, in a single
+     * step when the DAO can do so. Otherwise the cost is checked before the
+     * unit is removed, which is just as safe, since the costs of such a DAO
+     * never change.
+     */
+    private ItemRemoval removeOneOfItemIfAffordable(String itemName, long fundsCents) {
+        if (dao instanceof VendingMachinePriceDao) {
+            return ((VendingMachinePriceDao) dao).removeOneOfItemIfAffordable(itemName, fundsCents);
+        }
+        Optional<VendingMachineItem> item = dao.getItemByName(itemName);
+        if (item.isEmpty()) {
+            return new ItemRemoval(ItemRemoval.Status.NO_SUCH_ITEM, null);
+        }
+        long costCents = Money.centsAtLeast(item.get().getCost());
+        if (costCents > fundsCents) {
+            return new ItemRemoval(ItemRemoval.Status.INSUFFICIENT_FUNDS, item.get(), costCents);
+        }
+        return dao.removeOneOfItem(itemName)
+            .map(removed -> new ItemRemoval(ItemRemoval.Status.REMOVED, removed, costCents))
+            .orElseGet(() -> new ItemRemoval(ItemRemoval.Status.OUT_OF_STOCK, item.get(), costCents));
+    }
+    
+    /**
+     * @return The price version of the DAO, which stays the same for a DAO
+     *         whose costs never change
+     */
+    private long getPriceVersion() {
+        return dao instanceof VendingMachinePriceDao
+            ? ((VendingMachinePriceDao) dao).getPriceVersion()
+            : 0;
+    }
+    
+    /**
+     * Removes the units of several items, in a single step when the DAO can
+     * do so. Otherwise they are removed item by item, and the units already
+     * removed are put back should an item run short.
+     * 
+     * @return The name of an item which does not exist or does not hold
+     *         enough units, or an empty instance if every unit was removed
+     */
+    private Optional<String> removeUnitsOfItems(Map<String, Long> quantities) {
+        if (dao instanceof VendingMachineCartDao) {
+            return ((VendingMachineCartDao) dao).removeUnitsOfItems(quantities);
+        }
+        Map<String, Long> removed = new HashMap<>();
+        for (Map.Entry<String, Long> line : quantities.entrySet()) {
+            if (dao.removeUnitsOfItem(line.getKey(), line.getValue()).isEmpty()) {
+                removed.forEach(dao::returnUnitsOfItem);
+                return Optional.of(line.getKey());
+            }
+            removed.put(line.getKey(), line.getValue());
+        }
+        return Optional.empty();
+    }
+    
+    /**
+     * Attempts to sell a whole cart of items with the funds in this
+     * Vending Machine, exactly as transactItems(VendingSession, Cart) does
+     * 
+     * @param cart
+     * @throws NoItemInventoryException
+     * @throws InsufficientFundsException
+     * @return The coins given back as change
+     */
+    public Change transactItems(Cart cart) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
+        
+        return transactItems(defaultSession, cart);
+    }
+    
+    /**
+     * Attempts to sell every unit in a cart with the funds of a session, as
+     * a single purchase: either every unit is sold or none is.
+     * 
+     * The whole cart is checked in one pass before anything is removed:
+     * every item must exist and hold enough units, and the funds must cover
+     * the total cost, priced from a single price list. Units reserved for
+     * the session are sold first, and the rest are removed from the
+     * inventory in a single step, so no other customer ever sees some of
+     * them gone and not the others. Should an item sell out in the
+     * meantime, nothing is removed; should the change be impossible to
+     * give, every unit is put back. The checkout is recorded in the audit
+     * trail as a single event, whatever its outcome.
+     * 
+     * @param session
+     * @param cart A cart holding at least one item
+     * @throws NoItemInventoryException If an item does not exist or does
+     *         not hold enough units
+     * @throws InsufficientFundsException If the funds do not cover the
+     *         cart, or the change cannot be given
+     * @return The coins given back as change
+     */
+    public Change transactItems(VendingSession session, Cart cart) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
         
-        if (fundsAvailable.compareTo(item.getCost()) < 0) {
-            auditDao.appendRecord("Transaction failed - not enough funds for item");
+        long start = System.nanoTime();
+        try {
+            if (cart.isEmpty()) {
+                throw new IllegalArgumentException("The cart is empty");
+            }
+            expireReservations();
+            session.lock();
+            try {
+                Change change = transactItemsLocked(session, cart);
+                cartSales.succeeded(start);
+                return change;
+            } finally {
+                session.unlock();
+            }
+        } catch (NoItemInventoryException | InsufficientFundsException | RuntimeException ex) {
+            cartSales.failed(start, ex);
+            throw ex;
+        }
+    }
+    
+    private Change transactItemsLocked(VendingSession session, Cart cart) throws
+        NoItemInventoryException,
+        InsufficientFundsException {
+        
+        long fundsCents = session.getCreditCents();
+        String description = cart.describe();
+        
+        // a price update landing between two lines would mix the old costs
+        // with the new ones, so the cart is priced again until none does
+        long totalCents;
+        long priceVersion;
+        do {
+            priceVersion = getPriceVersion();
+            totalCents = priceCart(session, cart, description, fundsCents);
+        } while (getPriceVersion() != priceVersion);
+        
+        if (totalCents > fundsCents) {
+            auditDao.appendEvent(AuditEventType.CART_REFUSED, description, fundsCents);
             throw new InsufficientFundsException(
-                "Not enough funds have been provided to purchase this item "
-                + "(Item cost: $" + item.getCost().toString() 
-                + ", Funds available: $" + fundsAvailable.toString() + ")"
+                "Not enough funds have been provided to purchase this cart "
+                + "(Cart cost: $" + Money.format(totalCents) 
+                + ", Funds available: $" + Money.format(fundsCents) + ")"
             );
         }
         
-        if (dao.removeOneOfItem(item.getName()).isEmpty()) {
-            auditDao.appendRecord("Transaction failed - no such item");
+        // units reserved for the session are sold first, and the rest are
+        // removed from the inventory all at once
+        List<Reservation> reservedFrom = new ArrayList<>();
+        List<Long> reservedUnits = new ArrayList<>();
+        Map<String, Long> fromInventory = new HashMap<>();
+        for (Map.Entry<String, Long> line : cart.getQuantities().entrySet()) {
+            long needed = line.getValue();
+            Reservation reservation;
+            while (needed > 0 && (reservation = session.findReservation(line.getKey())) != null) {
+                long taken = reservation.takeUnits(needed);
+                if (taken > 0) {
+                    reservedFrom.add(reservation);
+                    reservedUnits.add(taken);
+                    needed -= taken;
+                }
+            }
+            if (needed > 0) {
+                fromInventory.put(line.getKey(), needed);
+            }
+        }
+        Optional<String> missing = fromInventory.isEmpty()
+            ? Optional.empty()
+            : removeUnitsOfItems(fromInventory);
+        if (missing.isPresent()) {
+            putBackReserved(reservedFrom, reservedUnits);
+            auditDao.appendEvent(AuditEventType.CART_REFUSED, description, fundsCents);
             throw new NoItemInventoryException(
-                "The vending machine has run out of this item"
+                "The vending machine has run out of " + missing.get()
             );
         }
-        BigDecimal change = fundsAvailable.subtract(item.getCost());
-        auditDao.appendRecord("Transaction successful, returned $" + change + " in change");
-        fundsAvailable = BigDecimal.ZERO;
+        
+        long changeCents = fundsCents - totalCents;
+        Change change = coins.settle(session.getCoinsPaid(), changeCents);
+        if (change == null) {
+            putBackReserved(reservedFrom, reservedUnits);
+            fromInventory.forEach(dao::returnUnitsOfItem);
+            auditDao.appendEvent(AuditEventType.CART_REFUSED, description, fundsCents);
+            throw new ExactChangeRequiredException(
+                "The vending machine cannot give $" + Money.format(changeCents)
+                + " in change, please pay with exact change"
+            );
+        }
+        for (int i = 0; i < reservedFrom.size(); i++) {
+            sellHeldUnitsOfItem(reservedFrom.get(i).getItemName(), reservedUnits.get(i));
+        }
+        auditDao.appendEvent(AuditEventType.CART_SOLD, description, changeCents);
+        publishEvent(DomainEventType.CART_SOLD, session.getId(), description, totalCents, changeCents, null);
+        spendCredit(session);
         return change;
     }
     
     /**
-     * Frees all resources associated with this Service Layer
+     * Checks that every item of a cart exists and holds enough units,
+     * counting those reserved for the session
+     * 
+     * @return The total cost of the cart, in cents
+     */
+    private long priceCart(
+        VendingSession session,
+        Cart cart,
+        String description,
+        long fundsCents) throws
+        NoItemInventoryException {
+        
+        long totalCents = 0;
+        for (Map.Entry<String, Long> line : cart.getQuantities().entrySet()) {
+            Optional<VendingMachineItem> item = dao.getItemByName(line.getKey());
+            if (item.isEmpty()) {
+                auditDao.appendEvent(AuditEventType.CART_REFUSED, description, fundsCents);
+                throw new NoItemInventoryException(
+                    "The vending machine does not have " + line.getKey()
+                );
+            }
+            long available = Money.add(
+                item.get().getQuantity().longValue(),
+                session.unitsReserved(line.getKey())
+            );
+            if (available < line.getValue()) {
+                auditDao.appendEvent(AuditEventType.CART_REFUSED, description, fundsCents);
+                throw new NoItemInventoryException(
+                    "The vending machine does not have " + line.getValue()
+                    + " of " + line.getKey()
+                );
+            }
+            totalCents = Money.add(
+                totalCents,
+                Money.multiply(Money.centsAtLeast(item.get().getCost()), line.getValue())
+            );
+        }
+        return totalCents;
+    }
+    
+    /**
+     * Puts back the units taken from reservations for a cart which was not
+     * sold, restocking those of reservations which ended in the meantime
+     */
+    private void putBackReserved(List<Reservation> reservedFrom, List<Long> reservedUnits) {
+        for (int i = 0; i < reservedFrom.size(); i++) {
+            Reservation reservation = reservedFrom.get(i);
+            if (!reservation.putBackUnits(reservedUnits.get(i))) {
+                releaseUnitsOfItem(reservation.getItemName(), reservedUnits.get(i));
+            }
+        }
+    }
+    
+    private void publishEvent(
+        DomainEventType type,
+        long sessionId,
+        String item,
+        long amountCents,
+        long changeCents,
+        String reason) {
+        
+        if (events != null) {
+            events.publish(type, sessionId, item, amountCents, changeCents, reason);
+        }
+    }
+    
+    /**
+     * Empties the credit of a session, which must be locked
+     */
+    private void spendCredit(VendingSession session) {
+        creditHeldCents.add(-session.getCreditCents());
+        session.clearCredit();
+    }
+    
+    /**
+     * The stock of the catalog as of one snapshot
+     */
+    private static final class StockTally {
+        private final long takenNanos;
+        private int itemCount;
+        private long unitsInStock;
+        private int itemsOutOfStock;
+        
+        private StockTally(long takenNanos) {
+            this.takenNanos = takenNanos;
+        }
+    }
+    
+    /**
+     * Reads the gauges of this service whenever they are asked for. The
+     * stock gauges are read straight from the DAO doing the work, so
+     * monitoring never shows up in the metrics of a metered DAO.
+     */
+    private final class Gauges implements VendingMachineGaugesMXBean {
+        private final VendingMachineDao source = VendingMachineDaoMeteredImpl.unmetered(dao);
+        private volatile StockTally tally;
+        
+        @Override
+        public int getItemCount() {
+            return tally().itemCount;
+        }
+        
+        @Override
+        public long getUnitsInStock() {
+            return tally().unitsInStock;
+        }
+        
+        @Override
+        public int getItemsOutOfStock() {
+            return tally().itemsOutOfStock;
+        }
+        
+        /**
+         * @return The stock gauges from a single pass over a snapshot of the
+         *         catalog, taken again once GAUGE_REFRESH has passed
+         */
+        private StockTally tally() {
+            StockTally last = tally;
+            long now = System.nanoTime();
+            if (last != null && now - last.takenNanos < GAUGE_REFRESH.toNanos()) {
+                return last;
+            }
+            StockTally fresh = new StockTally(now);
+            try (CatalogSnapshot snapshot = source.getCatalogSnapshot()) {
+                for (VendingMachineItem item : snapshot) {
+                    fresh.itemCount++;
+                    fresh.unitsInStock = Money.add(fresh.unitsInStock, item.getQuantity().longValue());
+                    if (item.getQuantity().signum() == 0) {
+                        fresh.itemsOutOfStock++;
+                    }
+                }
+            }
+            tally = fresh;
+            return fresh;
+        }
+        
+        @Override
+        public long getCoinInventoryCents() {
+            return coins.getTotalCents();
+        }
+        
+        @Override
+        public long getCreditHeldCents() {
+            return creditHeldCents.sum();
+        }
+        
+        @Override
+        public int getOpenReservations() {
+            return reservations.size();
+        }
+        
+        @Override
+        public boolean isExactChangeOnly() {
+            return coins.isExactChangeOnly();
+        }
+    }
+    
+    /**
+     * Frees all resources associated with this Service Layer, releasing
+     * every reservation still open first
      */
     public void close() {
+        releaseReservations();
+        if (events != null) {
+            events.close();
+        }
+        dao.close();
         auditDao.close();
     }
 }
@@ -0,0 +1,152 @@
+package com.bm.vendingmachine.service;
+
+import com.bm.vendingmachine.dto.Money;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A handle on the credit of one customer of a Vending Machine
+ *
+ * Sessions are opened by the service and passed back to it on every
+ * operation. The credit of a session is guarded by its own lock, so
+ * customers in different sessions never wait for one another, while the
+ * operations of a single session happen one at a time. The credit is held
+ * in whole cents, along with the coins it was paid in, which the machine
+ * keeps apart until they are spent and hands back as they are otherwise.
+ * The reservations made for a session are kept with it, under the same
+ * lock.
+ *
+ * @author agent
+ * email: agent@local
+ * date: Oct 17, 2026
+ */
+public class VendingSession {
+    private final long id;
+    private final ReentrantLock lock;
+    private long creditCents;
+    private final long[] coinsPaid;
+    private final List<Reservation> reservations;
+    private boolean closed;
+    
+    VendingSession(long id) {
+        this.id = id;
+        this.lock = new ReentrantLock();
+        this.coinsPaid = new long[Coin.values().length];
+        this.reservations = new ArrayList<>();
+    }
+    
+    /**
+     * @return The number identifying this session within its service
+     */
+    public long getId() {
+        return id;
+    }
+    
+    /**
+     * Takes the lock of this session, which must be held to read or change
+     * its credit
+     *
+     * @throws IllegalStateException If the session has been closed
+     */
+    void lock() {
+        lock.lock();
+        if (closed) {
+            lock.unlock();
+            throw new IllegalStateException("Session " + id + " has been closed");
+        }
+    }
+    
+    void unlock() {
+        lock.unlock();
+    }
+    
+    long getCreditCents() {
+        return creditCents;
+    }
+    
+    /**
+     * Adds coins to the credit
+     *
+     * @throws ArithmeticException If the credit would overflow, in which
+     *         case nothing changes
+     */
+    void pay(Coin coin, long quantity, long valueCents) {
+        long credit = Money.add(creditCents, valueCents);
+        coinsPaid[coin.ordinal()] = Money.add(coinsPaid[coin.ordinal()], quantity);
+        creditCents = credit;
+    }
+    
+    /**
+     * @return The number of coins paid of every kind, by ordinal
+     */
+    long[] getCoinsPaid() {
+        return coinsPaid;
+    }
+    
+    /**
+     * Empties the credit, once it has been spent or handed back
+     */
+    void clearCredit() {
+        creditCents = 0;
+        Arrays.fill(coinsPaid, 0);
+    }
+    
+    void addReservation(Reservation reservation) {
+        reservations.add(reservation);
+    }
+    
+    /**
+     * Finds a reservation of an item still holding units, forgetting those
+     * which have ended along the way
+     *
+     * @return The reservation, or null if there is none
+     */
+    Reservation findReservation(String itemName) {
+        Iterator<Reservation> it = reservations.iterator();
+        while (it.hasNext()) {
+            Reservation reservation = it.next();
+            if (!reservation.isActive()) {
+                it.remove();
+            } else if (reservation.getUnitsHeld() > 0
+                && reservation.getItemName().equals(itemName)) {
+                return reservation;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * @return The units of an item held by the active reservations of this
+     *         session
+     */
+    long unitsReserved(String itemName) {
+        long held = 0;
+        for (Reservation reservation : reservations) {
+            if (reservation.getItemName().equals(itemName)) {
+                held += reservation.getUnitsHeld();
+            }
+        }
+        return held;
+    }
+    
+    /**
+     * @return Every reservation made for this session, which it forgets
+     */
+    List<Reservation> takeReservations() {
+        List<Reservation> taken = new ArrayList<>(reservations);
+        reservations.clear();
+        return taken;
+    }
+    
+    void markClosed() {
+        closed = true;
+    }
+    
+    @Override
+    public String toString() {
+        return "VendingSession{" + "id=" + id + '}';
+    }
+}
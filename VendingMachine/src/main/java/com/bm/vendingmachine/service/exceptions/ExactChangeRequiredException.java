@@ -0,0 +1,19 @@
+package com.bm.vendingmachine.service.exceptions;
+
+/**
+ * An exception for indicating that the Vending Machine does not hold the
+ * coins needed to give the change of a purchase. The customer can still
+ * buy the item by paying with exact change, which is why this is a kind of
+ * InsufficientFundsException.
+ *
+ * @author agent
+ */
+public class ExactChangeRequiredException extends InsufficientFundsException {
+    public ExactChangeRequiredException(String msg) {
+        super(msg);
+    }
+
+    public ExactChangeRequiredException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,10 +1,10 @@
 package com.bm.vendingmachine.ui;
 
 import com.bm.vendingmachine.dto.VendingMachineItem;
+import com.bm.vendingmachine.service.Change;
 import com.bm.vendingmachine.service.Coin;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.List;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -67,7 +67,7 @@ public class VendingMachineView {
      * Displays the vending items to the user
      * @param items 
      */
-    public void displayVendingItems(List<VendingMachineItem> items) {
+    public void displayVendingItems(Iterable<VendingMachineItem> items) {
         this.userIo.displayInformationalLine("Featured Vending Items");
         items.forEach(item -> {
             this.userIo.displayAroundContents(
@@ -82,29 +82,15 @@ public class VendingMachineView {
     
     /**
      * Displays the change to the user
-     * @param change 
+     * @param change The coins handed back, as counted out by the service
      */
-    public void displayChange(BigDecimal change) {
-        BigInteger pennies = change.multiply(new BigDecimal("100")).toBigInteger();
-        
-        BigInteger quarters = pennies.divide(Coin.QUARTER.getCentValue());
-        pennies = pennies.remainder(Coin.QUARTER.getCentValue());
-        
-        BigInteger dimes = pennies.divide(Coin.DIME.getCentValue());
-        pennies = pennies.remainder(Coin.DIME.getCentValue());
-        
-        BigInteger nickels = pennies.divide(Coin.NICKEL.getCentValue());
-        pennies = pennies.remainder(Coin.NICKEL.getCentValue());
-        
-        userIo.displayAroundContents(
-            "Change returned",
-            new String[] {
-                "Quarters: " + quarters.toString(),
-                "Dimes: " + dimes.toString(),
-                "Nickels: " + nickels.toString(),
-                "Pennies: " + pennies.toString()
-            }
-        );
+    public void displayChange(Change change) {
+        Coin[] coins = Coin.values();
+        String[] lines = new String[coins.length];
+        for (int i = 0; i < coins.length; i++) {
+            lines[i] = coins[i].repPluralName() + ": " + change.getCount(coins[i]);
+        }
+        userIo.displayAroundContents("Change returned", lines);
     }
     
     /**
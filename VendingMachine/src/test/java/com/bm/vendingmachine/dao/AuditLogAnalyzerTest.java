@@ -0,0 +1,156 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.AuditEvent;
+import com.bm.vendingmachine.dto.AuditEventType;
+import com.bm.vendingmachine.dto.AuditReport;
+import com.bm.vendingmachine.dto.Cart;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class AuditLogAnalyzerTest {
+    private static final String AUDIT_ANALYTICS = "audit_sim_analytics";
+    
+    public AuditLogAnalyzerTest() {
+    }
+    
+    @Test
+    public void testReportMatchesEvents() throws Exception {
+        deleteLog(AUDIT_ANALYTICS);
+        VendingMachineAuditDaoFileImpl auditDao = newAuditDao();
+        simulateSales(auditDao, 0, 3_000);
+        auditDao.close();
+        
+        // a second run whose segment is still being written
+        auditDao = newAuditDao();
+        simulateSales(auditDao, 3_000, 500);
+        
+        AuditLog log = auditDao.getLog();
+        List<AuditEvent> events = new ArrayList<>();
+        log.readAll(events::add);
+        assertEquals(
+            AuditLogAnalyzer.analyze(log, Long.MIN_VALUE, Long.MAX_VALUE).toString(),
+            reportOf(events, Long.MIN_VALUE, Long.MAX_VALUE).toString(),
+            "The whole log should add up to its events"
+        );
+        
+        long from = events.get(2_000).getTimestampNanos();
+        long to = events.get(8_000).getTimestampNanos();
+        AuditReport report = AuditLogAnalyzer.analyze(log, from, to);
+        assertEquals(
+            report.toString(),
+            reportOf(events, from, to).toString(),
+            "A time range should add up to the events within it"
+        );
+        assertTrue(report.getSalesByItem().containsKey("Item 3"), "Sales are counted per item");
+        assertTrue(
+            report.getFailureRate(AuditEventType.TRANSACTION_FAILED_INSUFFICIENT_FUNDS) > 0,
+            "Failures are counted per reason"
+        );
+        
+        auditDao.close();
+        deleteLog(AUDIT_ANALYTICS);
+    }
+    
+    @Test
+    public void testSummariesCountTheirEventsOnly() throws Exception {
+        deleteLog(AUDIT_ANALYTICS);
+        VendingMachineAuditDaoFileImpl auditDao = newAuditDao();
+        auditDao.appendEvent(AuditEventType.FUNDS_QUERIED, null, 0);
+        auditDao.appendEvent(AuditEventType.FUNDS_QUERIED, null, 0);
+        auditDao.appendEvent(AuditEventType.SUMMARY, AuditEventType.FUNDS_QUERIED.name(), 5);
+        
+        AuditReport report = AuditLogAnalyzer.analyze(auditDao.getLog(), Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(report.getEventCount(), 7L, "The summary stands for five events, not six");
+        assertEquals(
+            report.getCount(AuditEventType.FUNDS_QUERIED),
+            7L,
+            "The summarized events should be counted under their own type"
+        );
+        assertEquals(
+            report.getCount(AuditEventType.SUMMARY),
+            0L,
+            "The summary itself is not an event"
+        );
+        
+        auditDao.close();
+        deleteLog(AUDIT_ANALYTICS);
+    }
+    
+    private VendingMachineAuditDaoFileImpl newAuditDao() {
+        return new VendingMachineAuditDaoFileImpl(AUDIT_ANALYTICS, null, 0, 4096, Duration.ofDays(1));
+    }
+    
+    private void simulateSales(VendingMachineAuditDaoFileImpl auditDao, int first, int count) {
+        for (int i = first; i < first + count; i++) {
+            if (i % 3 == 0) {
+                auditDao.appendEvent(AuditEventType.COINS_ADDED, i % 2 == 0 ? "QUARTER" : "DIME", 25);
+            }
+            String item = "Item " + (i % 7);
+            auditDao.appendEvent(AuditEventType.TRANSACTION_ATTEMPTED, item, 0);
+            if (i % 10 == 0) {
+                auditDao.appendEvent(AuditEventType.TRANSACTION_FAILED_INSUFFICIENT_FUNDS, item, 150);
+            } else if (i % 10 == 1) {
+                auditDao.appendEvent(AuditEventType.TRANSACTION_FAILED_NO_SUCH_ITEM, item, 0);
+            } else {
+                auditDao.appendEvent(AuditEventType.TRANSACTION_SUCCEEDED, item, 10);
+            }
+            if (i % 50 == 5) {
+                Cart cart = new Cart().add(item, 2).add("Item " + ((i + 1) % 7), 1);
+                auditDao.appendEvent(AuditEventType.CART_SOLD, cart.describe(), 0);
+            }
+        }
+    }
+    
+    /**
+     * Aggregates the events one at a time, the slow way
+     */
+    private AuditReport reportOf(List<AuditEvent> events, long fromNanos, long toNanos) {
+        Map<AuditEventType, Long> counts = new HashMap<>();
+        Map<String, Long> sales = new HashMap<>();
+        Map<String, Long> deposits = new HashMap<>();
+        long eventCount = 0;
+        for (AuditEvent event : events) {
+            if (event.getTimestampNanos() < fromNanos || event.getTimestampNanos() > toNanos) {
+                continue;
+            }
+            eventCount++;
+            counts.merge(event.getType(), 1L, Long::sum);
+            if (event.getType() == AuditEventType.TRANSACTION_SUCCEEDED) {
+                sales.merge(event.getItem(), 1L, Long::sum);
+            } else if (event.getType() == AuditEventType.CART_SOLD) {
+                Cart.parse(event.getItem()).getQuantities().forEach((item, quantity) -> {
+                    sales.merge(item, quantity, Long::sum);
+                });
+            } else if (event.getType() == AuditEventType.COINS_ADDED) {
+                deposits.merge(event.getItem(), event.getAmount(), Long::sum);
+            }
+        }
+        return new AuditReport(fromNanos, toNanos, eventCount, counts, sales, deposits);
+    }
+    
+    private void deleteLog(String directory) throws IOException {
+        if (Files.notExists(Path.of(directory))) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(Path.of(directory))) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+}
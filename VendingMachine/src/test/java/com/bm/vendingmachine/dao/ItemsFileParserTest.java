@@ -0,0 +1,119 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.MalformedItemsFileException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ItemsFileParserTest {
+    private static final String ITEMS_PARSE = "items_sim_parse.txt";
+    private static final String ITEMS_MALFORMED = "items_sim_malformed.txt";
+    private static final String ITEMS_PARALLEL = "items_sim_parallel.txt";
+    
+    @TempDir
+    Path directory;
+    
+    public ItemsFileParserTest() {
+    }
+    
+    @Test
+    public void testParseRows() throws IOException, FailedLoadOfVendingItemsException {
+        Files.writeString(
+            directory.resolve(ITEMS_PARSE),
+            "Pepsi::4.99::10\n\nM&Ms::2::-3\r\nReese's: Cups::.5::0"
+        );
+        
+        List<String> rows = new ArrayList<>();
+        ItemsFileParser.parse(directory.resolve(ITEMS_PARSE), (name, unscaledCost, costScale, quantity) -> {
+            rows.add(name + "|" + BigDecimal.valueOf(unscaledCost, costScale) + "|" + quantity);
+        });
+        
+        assertEquals(
+            rows,
+            List.of("Pepsi|4.99|10", "M&Ms|2|-3", "Reese's: Cups|0.5|0"),
+            "Every row should be parsed, and the blank line skipped"
+        );
+    }
+    
+    @Test
+    public void testMalformedRowReportsLineAndColumn() throws IOException {
+        Files.writeString(
+            directory.resolve(ITEMS_MALFORMED),
+            "Pepsi::4.99::10\nDoritos::3.x9::200\n"
+        );
+        
+        MalformedItemsFileException ex = assertThrows(
+            MalformedItemsFileException.class,
+            () -> ItemsFileParser.parse(directory.resolve(ITEMS_MALFORMED), (name, unscaledCost, costScale, quantity) -> {})
+        );
+        assertEquals(ex.getLine(), 2, "The second line is malformed");
+        assertEquals(ex.getColumn(), 12, "The cost stops being a number at column 12");
+        
+        Files.writeString(directory.resolve(ITEMS_MALFORMED), "Pepsi::4.99\n");
+        ex = assertThrows(
+            MalformedItemsFileException.class,
+            () -> ItemsFileParser.parse(directory.resolve(ITEMS_MALFORMED), (name, unscaledCost, costScale, quantity) -> {})
+        );
+        assertEquals(ex.getLine(), 1, "The first line is missing its quantity");
+        assertEquals(ex.getColumn(), 12, "The quantity should start at column 12");
+        
+        Files.writeString(directory.resolve(ITEMS_MALFORMED), "Café crème::4.x9::10\n");
+        ex = assertThrows(
+            MalformedItemsFileException.class,
+            () -> ItemsFileParser.parse(directory.resolve(ITEMS_MALFORMED), (name, unscaledCost, costScale, quantity) -> {})
+        );
+        assertEquals(ex.getColumn(), 15, "Columns should count characters rather than bytes");
+    }
+    
+    @Test
+    public void testParallelParseMatchesSequential() throws IOException, FailedLoadOfVendingItemsException {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            contents.append("Item ").append(i).append("::").append(i % 500).append(".25::").append(i).append('\n');
+        }
+        contents.append("Broken::1.00\n");
+        Files.writeString(directory.resolve(ITEMS_PARALLEL), contents.substring(0, contents.length() - "Broken::1.00\n".length()));
+        
+        Map<String, Long> sequential = new ConcurrentHashMap<>();
+        ItemsFileParser.parse(directory.resolve(ITEMS_PARALLEL), (name, unscaledCost, costScale, quantity) -> {
+            sequential.put(name, quantity);
+        });
+        Map<String, Long> parallel = new ConcurrentHashMap<>();
+        ItemsFileParser.parseInParallel(directory.resolve(ITEMS_PARALLEL), 7, (name, unscaledCost, costScale, quantity) -> {
+            parallel.put(name, quantity);
+        });
+        assertEquals(sequential.size(), 10_000, "Every row should be parsed");
+        assertEquals(parallel, sequential, "Both parses should see the same rows");
+        
+        // a name listed twice keeps its last row, whichever chunk it is in
+        Files.writeString(directory.resolve(ITEMS_PARALLEL), "Pepsi::4.99::1\n" + contents.substring(0, contents.length() - "Broken::1.00\n".length()) + "Pepsi::4.99::2\n");
+        List<Long> pepsis = new ArrayList<>();
+        ItemsFileParser.parseInParallel(directory.resolve(ITEMS_PARALLEL), 7, (name, unscaledCost, costScale, quantity) -> {
+            if (name.equals("Pepsi")) {
+                pepsis.add(quantity);
+            }
+        });
+        assertEquals(pepsis, List.of(1L, 2L), "Rows should be handed over in file order");
+        
+        // the line of a malformed row must account for the earlier chunks
+        Files.writeString(directory.resolve(ITEMS_PARALLEL), contents);
+        MalformedItemsFileException ex = assertThrows(
+            MalformedItemsFileException.class,
+            () -> ItemsFileParser.parseInParallel(directory.resolve(ITEMS_PARALLEL), 7, (name, unscaledCost, costScale, quantity) -> {})
+        );
+        assertEquals(ex.getLine(), 10_001, "The last line is malformed");
+    }
+}
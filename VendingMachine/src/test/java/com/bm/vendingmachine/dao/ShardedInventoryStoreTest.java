@@ -0,0 +1,151 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ShardedInventoryStoreTest {
+    
+    public ShardedInventoryStoreTest() {
+    }
+    
+    @Test
+    public void testMachinesLoadLazilyAndPersist()
+        throws IOException, FailedLoadOfVendingItemsException, FailedSaveOfVendingItemsException {
+        
+        Path directory = Files.createTempDirectory("shards");
+        ShardedInventoryStore store = new ShardedInventoryStore(directory.toString(), 8, null);
+        
+        // seed one machine through its items file
+        Path lobby = directory.resolve(String.format("shard-%02d", store.shardOf("lobby")));
+        Files.createDirectories(lobby);
+        Files.write(lobby.resolve("lobby.txt"), List.of("Pepsi::2.99::3"));
+        
+        assertFalse(store.isLoaded("lobby"), "Nothing is loaded before it is asked for");
+        VendingMachineDao machine = store.getMachine("lobby");
+        assertTrue(store.isLoaded("lobby"), "The machine should be loaded once asked for");
+        assertSame(machine, store.getMachine("lobby"), "A machine should only be loaded once");
+        assertTrue(machine.removeOneOfItem("Pepsi").isPresent(), "A removal should've occured");
+        
+        assertTrue(
+            store.getMachine("garage").getAllItems().isEmpty(),
+            "A machine that was never saved starts out empty"
+        );
+        assertFalse(store.isLoaded("cafeteria"), "Other machines should stay unloaded");
+        assertThrows(IllegalArgumentException.class, () -> store.getMachine("../escape"));
+        
+        store.saveAll();
+        store.close();
+        
+        ShardedInventoryStore reopened = new ShardedInventoryStore(directory.toString(), 8, null);
+        assertEquals(
+            reopened.getMachine("lobby").getItemByName("Pepsi").get().getQuantity(),
+            new BigInteger("2"),
+            "The removal should have been saved"
+        );
+        reopened.close();
+    }
+    
+    @Test
+    public void testMachinesAreIndependent() throws Exception {
+        Path directory = Files.createTempDirectory("shards");
+        ShardedInventoryStore store = new ShardedInventoryStore(directory.toString(), 4, null);
+        
+        int machines = 200;
+        for (int i = 0; i < machines; i++) {
+            Path shard = directory.resolve(String.format("shard-%02d", store.shardOf("m" + i)));
+            Files.createDirectories(shard);
+            Files.write(shard.resolve("m" + i + ".txt"), List.of("Water::0.99::50"));
+        }
+        
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < machines; i++) {
+            String machineId = "m" + i;
+            pool.submit(() -> {
+                for (int j = 0; j < 10; j++) {
+                    store.getMachine(machineId).removeOneOfItem("Water");
+                }
+                return null;
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        
+        for (int i = 0; i < machines; i++) {
+            assertEquals(
+                store.getMachine("m" + i).getItemByName("Water").get().getQuantity(),
+                new BigInteger("40"),
+                "Every machine should have sold exactly its own ten units"
+            );
+        }
+        store.close();
+    }
+    
+    @Test
+    public void testJournaledMachinesShareThreads() throws Exception {
+        Path directory = Files.createTempDirectory("shards");
+        ShardedInventoryStore store = new ShardedInventoryStore(
+            directory.toString(),
+            2,
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        
+        int writersBefore = countThreads("inventory-journal-writer");
+        int machines = 40;
+        for (int i = 0; i < machines; i++) {
+            Path shard = directory.resolve(String.format("shard-%02d", store.shardOf("m" + i)));
+            Files.createDirectories(shard);
+            Files.write(shard.resolve("m" + i + ".txt"), List.of("Water::0.99::5"));
+            store.getMachine("m" + i).removeOneOfItem("Water");
+        }
+        assertEquals(
+            countThreads("inventory-journal-writer") - writersBefore,
+            2,
+            "The machines of a shard should share one journal writer"
+        );
+        store.close();
+        assertEquals(
+            countThreads("inventory-journal-writer"),
+            writersBefore,
+            "Closing the store should stop the journal writers"
+        );
+        
+        // the removals were journaled, though never saved
+        ShardedInventoryStore reopened = new ShardedInventoryStore(
+            directory.toString(),
+            2,
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        for (int i = 0; i < machines; i++) {
+            assertEquals(
+                reopened.getMachine("m" + i).getItemByName("Water").get().getQuantity(),
+                new BigInteger("4"),
+                "Every machine should replay its own removal"
+            );
+        }
+        reopened.close();
+    }
+    
+    private static int countThreads(String name) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name) && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,229 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.AuditEvent;
+import com.bm.vendingmachine.dto.AuditEventType;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class VendingMachineAuditDaoFileImplTest {
+    private static final String AUDIT_BLOCK = "audit_sim_block";
+    private static final String AUDIT_DROP = "audit_sim_drop";
+    private static final String AUDIT_EVENTS = "audit_sim_events";
+    private static final String AUDIT_SEGMENTS = "audit_sim_segments";
+    
+    public VendingMachineAuditDaoFileImplTest() {
+    }
+    
+    @Test
+    public void testBlockingPolicyKeepsEveryRecord() throws Exception {
+        deleteLog(AUDIT_BLOCK);
+        VendingMachineAuditDaoFileImpl auditDao = new VendingMachineAuditDaoFileImpl(
+            AUDIT_BLOCK,
+            VendingMachineAuditDaoFileImpl.OverflowPolicy.BLOCK,
+            64
+        );
+        appendConcurrently(auditDao, 4, 5_000);
+        auditDao.close();
+        
+        List<AuditEvent> events = readEvents(AUDIT_BLOCK);
+        assertEquals(events.size(), 20_000, "Every record should be written by close");
+        assertTrue(events.get(0).toString().endsWith(": Record"), "Records keep the timestamp prefix");
+        assertEquals(auditDao.getDroppedRecords(), 0, "Nothing should be dropped");
+        
+        deleteLog(AUDIT_BLOCK);
+    }
+    
+    @Test
+    public void testDroppingPolicyAccountsForEveryRecord() throws Exception {
+        deleteLog(AUDIT_DROP);
+        VendingMachineAuditDaoFileImpl auditDao = new VendingMachineAuditDaoFileImpl(
+            AUDIT_DROP,
+            VendingMachineAuditDaoFileImpl.OverflowPolicy.DROP,
+            4
+        );
+        appendConcurrently(auditDao, 4, 5_000);
+        auditDao.close();
+        auditDao.appendRecord("Too late");
+        
+        long written = 0;
+        long reportedDrops = 0;
+        for (AuditEvent event : readEvents(AUDIT_DROP)) {
+            if (event.getType() == AuditEventType.RECORDS_DROPPED) {
+                reportedDrops += event.getAmount();
+            } else {
+                written++;
+            }
+        }
+        assertEquals(
+            written + auditDao.getDroppedRecords(),
+            20_000,
+            "Every record should be either written or dropped"
+        );
+        assertEquals(reportedDrops, auditDao.getDroppedRecords(), "Every drop should be reported");
+        
+        deleteLog(AUDIT_DROP);
+    }
+    
+    @Test
+    public void testEventsAreStoredAndRenderedLazily() throws Exception {
+        deleteLog(AUDIT_EVENTS);
+        
+        // one synchronous and one asynchronous DAO appending to the same log
+        VendingMachineAuditDaoFileImpl auditDao = new VendingMachineAuditDaoFileImpl(AUDIT_EVENTS);
+        auditDao.appendEvent(AuditEventType.COINS_ADDED, "QUARTER", 75);
+        auditDao.appendEvent(AuditEventType.TRANSACTION_ATTEMPTED, "Chips", 0);
+        auditDao.close();
+        auditDao = new VendingMachineAuditDaoFileImpl(
+            AUDIT_EVENTS,
+            VendingMachineAuditDaoFileImpl.OverflowPolicy.BLOCK,
+            16
+        );
+        auditDao.appendEvent(AuditEventType.TRANSACTION_ATTEMPTED, "Soda", 0);
+        auditDao.appendEvent(AuditEventType.TRANSACTION_SUCCEEDED, "Soda", 5);
+        auditDao.appendEvent(AuditEventType.FUNDS_QUERIED, null, 0);
+        auditDao.appendRecord("Free-form text");
+        auditDao.close();
+        
+        List<AuditEvent> events = readEvents(AUDIT_EVENTS);
+        List<String> texts = new ArrayList<>();
+        for (AuditEvent event : events) {
+            texts.add(event.getText());
+        }
+        assertEquals(texts, List.of(
+            "Added $0.75 in QUARTER(s)",
+            "Transaction attempted for Chips",
+            "Transaction attempted for Soda",
+            "Transaction successful, returned $0.05 in change",
+            "Vending machine funds queried",
+            "Free-form text"
+        ), "Events should be read back in order");
+        assertEquals(events.get(3).getItem(), "Soda", "Item ids should resolve to names");
+        assertEquals(events.get(3).getAmount(), 5, "Amounts should be kept in cents");
+        
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(
+                events.get(i).getTimestampNanos() >= events.get(i - 1).getTimestampNanos(),
+                "Timestamps should not go back"
+            );
+        }
+        
+        deleteLog(AUDIT_EVENTS);
+    }
+    
+    @Test
+    public void testSegmentsRollCompressAndIndex() throws Exception {
+        deleteLog(AUDIT_SEGMENTS);
+        VendingMachineAuditDaoFileImpl auditDao = new VendingMachineAuditDaoFileImpl(
+            AUDIT_SEGMENTS,
+            null,
+            0,
+            4096,
+            Duration.ofDays(1)
+        );
+        for (int i = 0; i < 2_000; i++) {
+            auditDao.appendEvent(AuditEventType.TRANSACTION_SUCCEEDED, "Item " + (i % 10), i);
+        }
+        auditDao.close();
+        
+        AuditLog log = auditDao.getLog();
+        List<AuditLog.Segment> segments = log.getSegments();
+        assertTrue(segments.size() >= 10, "The log should roll over by size");
+        for (AuditLog.Segment segment : segments) {
+            assertTrue(segment.isCompressed(), "Closed segments should be compressed");
+        }
+        try (Stream<Path> files = Files.list(Path.of(AUDIT_SEGMENTS))) {
+            assertEquals(
+                files.filter(file -> file.toString().endsWith(AuditLog.SEGMENT_SUFFIX)).count(),
+                0L,
+                "Uncompressed segments should be deleted"
+            );
+        }
+        
+        List<AuditEvent> events = readEvents(AUDIT_SEGMENTS);
+        assertEquals(events.size(), 2_000, "Every event should survive compression");
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(events.get(i).getAmount(), (long) i, "Events should stay in order");
+            assertEquals(events.get(i).getItem(), "Item " + (i % 10), "Items should resolve");
+        }
+        
+        // a window in the middle of the log
+        long from = events.get(900).getTimestampNanos();
+        long to = events.get(1_100).getTimestampNanos();
+        List<AuditEvent> window = new ArrayList<>();
+        log.read(from, to, window::add);
+        List<AuditEvent> expected = events.stream()
+            .filter(event -> event.getTimestampNanos() >= from && event.getTimestampNanos() <= to)
+            .collect(Collectors.toList());
+        assertEquals(
+            window.stream().map(AuditEvent::getAmount).collect(Collectors.toList()),
+            expected.stream().map(AuditEvent::getAmount).collect(Collectors.toList()),
+            "A window should hold exactly the events within it"
+        );
+        assertTrue(
+            log.findSegments(from, to).size() < segments.size() / 2,
+            "A window should only touch the segments covering it"
+        );
+        
+        // reopening picks up where the log left off
+        auditDao = new VendingMachineAuditDaoFileImpl(AUDIT_SEGMENTS, null, 0, 4096, Duration.ofNanos(1));
+        auditDao.appendRecord("First");
+        auditDao.appendRecord("Second");
+        auditDao.close();
+        events = readEvents(AUDIT_SEGMENTS);
+        assertEquals(events.size(), 2_002, "Reopening should keep the earlier events");
+        assertEquals(events.get(2_001).getText(), "Second", "New events should come last");
+        assertEquals(log.getSegments().size(), segments.size() + 2, "The log should roll over by age");
+        
+        deleteLog(AUDIT_SEGMENTS);
+    }
+    
+    private List<AuditEvent> readEvents(String directory) throws IOException {
+        List<AuditEvent> events = new ArrayList<>();
+        new AuditLog(Path.of(directory)).readAll(events::add);
+        return events;
+    }
+    
+    private void deleteLog(String directory) throws IOException {
+        if (Files.notExists(Path.of(directory))) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(Path.of(directory))) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+    
+    private void appendConcurrently(
+        VendingMachineAuditDao auditDao,
+        int threads,
+        int recordsPerThread) throws InterruptedException, IOException {
+        
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            pool.submit(() -> {
+                for (int j = 0; j < recordsPerThread; j++) {
+                    auditDao.appendRecord("Record");
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,123 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dto.AuditEventType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class VendingMachineAuditDaoSummarizingImplTest {
+    
+    public VendingMachineAuditDaoSummarizingImplTest() {
+    }
+    
+    @Test
+    public void testReadEventsAreSummarized() throws Exception {
+        RecordingAuditDao recorder = new RecordingAuditDao();
+        VendingMachineAuditDao auditDao = new VendingMachineAuditDaoSummarizingImpl(recorder);
+        
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            pool.submit(() -> {
+                for (int j = 0; j < 2_500; j++) {
+                    auditDao.appendEvent(AuditEventType.FUNDS_QUERIED, null, 0);
+                }
+                auditDao.appendEvent(AuditEventType.COINS_ADDED, "QUARTER", 25);
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        auditDao.appendEvent(AuditEventType.ITEMS_LISTED, null, 0);
+        
+        assertEquals(
+            recorder.events,
+            Collections.nCopies(4, "COINS_ADDED QUARTER 25"),
+            "State-changing events should be recorded right away"
+        );
+        
+        auditDao.close();
+        assertTrue(recorder.closed, "Closing should close the underlying DAO");
+        assertTrue(
+            recorder.events.contains("SUMMARY FUNDS_QUERIED 10000"),
+            "Every read should be counted: " + recorder.events
+        );
+        assertTrue(
+            recorder.events.contains("SUMMARY ITEMS_LISTED 1"),
+            "Every read-only type should be summarized: " + recorder.events
+        );
+    }
+    
+    @Test
+    public void testSummariesArePeriodic() throws Exception {
+        RecordingAuditDao recorder = new RecordingAuditDao();
+        VendingMachineAuditDao auditDao = new VendingMachineAuditDaoSummarizingImpl(
+            recorder,
+            VendingMachineAuditDaoSummarizingImpl.readOnlyTypes(),
+            Duration.ofMillis(20)
+        );
+        
+        auditDao.appendEvent(AuditEventType.FUNDS_QUERIED, null, 0);
+        auditDao.appendEvent(AuditEventType.FUNDS_QUERIED, null, 0);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (summarizedCount(recorder) < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(
+            summarizedCount(recorder),
+            2L,
+            "Summaries should be recorded without waiting for close"
+        );
+        
+        int summaries = recorder.events.size();
+        auditDao.appendEvent(AuditEventType.FUNDS_QUERIED, null, 0);
+        auditDao.close();
+        assertEquals(
+            recorder.events.get(recorder.events.size() - 1),
+            "SUMMARY FUNDS_QUERIED 1",
+            "A summary should only count what happened since the last one"
+        );
+        assertEquals(recorder.events.size(), summaries + 1, "Nothing new means no summary");
+    }
+    
+    private long summarizedCount(RecordingAuditDao recorder) {
+        long count = 0;
+        synchronized (recorder.events) {
+            for (String event : recorder.events) {
+                count += Long.parseLong(event.substring(event.lastIndexOf(' ') + 1));
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Keeps every event it is given as type, item and amount
+     */
+    private static class RecordingAuditDao implements VendingMachineAuditDao {
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        private boolean closed;
+        
+        @Override
+        public void appendRecord(String s) {
+            events.add(s);
+        }
+        
+        @Override
+        public void appendEvent(AuditEventType type, String item, long amountCents) {
+            events.add(type + " " + item + " " + amountCents);
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class VendingMachineCoinDaoFileImplTest {
+
+    @TempDir
+    Path directory;
+
+    public VendingMachineCoinDaoFileImplTest() {
+    }
+
+    @Test
+    public void testSavedCoinsLoadedBack() throws Exception {
+        Path coinsFile = directory.resolve(VendingMachineCoinDaoFileImpl.DEFAULT_COINS_FILE);
+        VendingMachineCoinDao coinDao = new VendingMachineCoinDaoFileImpl(coinsFile.toString());
+        assertEquals(coinDao.loadCoins(), Optional.empty(), "Nothing has been saved yet");
+
+        coinDao.saveCoins(Map.of("QUARTER", 40L, "PENNY", 0L));
+        coinDao.saveCoins(Map.of("QUARTER", 38L, "DIME", 3L));
+        assertEquals(
+            new VendingMachineCoinDaoFileImpl(coinsFile.toString()).loadCoins(),
+            Optional.of(Map.of("QUARTER", 38L, "DIME", 3L)),
+            "The latest counts should replace those saved before"
+        );
+        assertTrue(
+            Files.exists(directory.resolve("coins.txt.bak")),
+            "The previous generation should be kept"
+        );
+
+        Files.writeString(coinsFile, "QUARTER::many\n");
+        assertThrows(
+            FailedLoadOfVendingItemsException.class,
+            coinDao::loadCoins,
+            "A count which is not a number cannot be loaded"
+        );
+    }
+}
@@ -0,0 +1,314 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class VendingMachineDaoCompactImplTest {
+    private static final String ITEMS_COMPACT = "items_sim_compact.txt";
+
+    @TempDir
+    Path directory;
+
+    private VendingMachineDaoCompactImpl dao;
+
+    public VendingMachineDaoCompactImplTest() {
+    }
+
+    @Test
+    public void testViewsEqualItems() throws IOException, FailedLoadOfVendingItemsException {
+        Files.write(
+            itemsFile(),
+            List.of("Pepsi::4.99::10", "Doritos::3.99::200", "Café::1.5::3")
+        );
+
+        dao = new VendingMachineDaoCompactImpl(itemsFile().toString());
+        dao.loadItems();
+
+        List<VendingMachineItem> allItems = dao.getAllItems();
+        assertEquals(allItems.size(), 3, "There should be three items in the list");
+        assertTrue(
+            allItems.contains(
+                new VendingMachineItem(
+                    "Pepsi",
+                    new BigDecimal("4.99"),
+                    new BigInteger("10")
+                )
+            )
+        );
+        assertEquals(
+            new VendingMachineItem("Doritos", new BigDecimal("3.99"), new BigInteger("200")),
+            dao.getItemByName("Doritos").get(),
+            "A view should equal the item it stands for"
+        );
+        assertEquals(
+            dao.getItemByName("Café").get().getCost(),
+            new BigDecimal("1.50"),
+            "Costs are kept in cents"
+        );
+        assertTrue(
+            dao.getItemByName("Cafe").isEmpty(),
+            "This item is not in the vending machine"
+        );
+    }
+
+    @Test
+    public void testUpdatePricesSwitchesAtOnce()
+        throws IOException, FailedLoadOfVendingItemsException, FailedSaveOfVendingItemsException {
+
+        Files.write(
+            itemsFile(),
+            List.of("Pepsi::2.99::10", "Doritos::3.99::200", "Water::0.99::5")
+        );
+
+        dao = new VendingMachineDaoCompactImpl(itemsFile().toString());
+        dao.loadItems();
+        VendingMachineItem pepsi = dao.getItemByName("Pepsi").get();
+
+        try (CatalogSnapshot before = dao.getCatalogSnapshot()) {
+            dao.updatePrices(Map.of("Pepsi", new BigDecimal("1.99"), "Water", new BigDecimal("2.50")));
+            for (VendingMachineItem item : before) {
+                assertNotEquals(
+                    item.getCost(),
+                    new BigDecimal("1.99"),
+                    "A snapshot should keep the costs it was taken with"
+                );
+            }
+        }
+        assertEquals(pepsi.getCost(), new BigDecimal("1.99"), "A view should report the new cost");
+        assertEquals(
+            names(dao.getCheapestItems(3)),
+            List.of("Pepsi", "Water", "Doritos"),
+            "The price index should follow the new costs"
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> dao.updatePrices(Map.of("Water", new BigDecimal("-1"))),
+            "A negative cost should be refused"
+        );
+        dao.saveItems();
+
+        VendingMachineDao textDao = new VendingMachineDaoFileImpl(itemsFile().toString());
+        textDao.loadItems();
+        assertEquals(
+            textDao.getItemByName("Water").get().getCost(),
+            new BigDecimal("2.50"),
+            "The new costs should be saved"
+        );
+    }
+
+    @Test
+    public void testRemoveAndSave()
+        throws IOException, FailedLoadOfVendingItemsException, FailedSaveOfVendingItemsException {
+
+        StringBuilder contents = new StringBuilder("Pepsi::2.99::2\n");
+        for (int i = 0; i < 1_000; i++) {
+            contents.append("Item ").append(i).append("::1.00::").append(i).append('\n');
+        }
+        Files.writeString(itemsFile(), contents);
+
+        dao = new VendingMachineDaoCompactImpl(itemsFile().toString());
+        dao.loadItems();
+        assertEquals(dao.getAllItems().size(), 1_001, "Every row should be loaded");
+
+        VendingMachineItem pepsi = dao.getItemByName("Pepsi").get();
+        assertTrue(dao.removeOneOfItem("Pepsi").isPresent(), "A removal should've occured");
+        assertEquals(
+            pepsi.getQuantity(),
+            BigInteger.ONE,
+            "A view should reflect the removal"
+        );
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.98")).getStatus(),
+            ItemRemoval.Status.INSUFFICIENT_FUNDS,
+            "A Pepsi costs $2.99, so $2.98 should not be enough"
+        );
+        assertTrue(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.99")).isRemoved(),
+            "Exact funds should be enough for a Pepsi"
+        );
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.99")).getStatus(),
+            ItemRemoval.Status.OUT_OF_STOCK,
+            "There is no more pepsi to remove"
+        );
+        assertEquals(
+            dao.getCheapestItems(1).get(0).getName(),
+            "Item 1",
+            "Item 0 has no stock, so Item 1 is the cheapest in stock"
+        );
+        assertEquals(
+            dao.getAffordableItems(new BigDecimal("5.00")).size(),
+            999,
+            "Pepsi and Item 0 are out of stock"
+        );
+        assertTrue(
+            dao.getItemsInPriceRange(new BigDecimal("1.01"), new BigDecimal("10")).isEmpty(),
+            "The only item above $1.00 is out of stock"
+        );
+        dao.removeOneOfItem("Item 999");
+        dao.saveItems();
+
+        // the saved file should be readable by the original DAO
+        VendingMachineDao textDao = new VendingMachineDaoFileImpl(itemsFile().toString());
+        textDao.loadItems();
+        assertEquals(
+            textDao.getItemByName("Pepsi").get(),
+            new VendingMachineItem("Pepsi", new BigDecimal("2.99"), BigInteger.ZERO),
+            "There should be no pepsi left"
+        );
+        assertEquals(
+            textDao.getItemByName("Item 999").get().getQuantity(),
+            new BigInteger("998"),
+            "One unit of the last item was removed"
+        );
+    }
+
+    @Test
+    public void testRemoveUnitsOfItemsAllOrNone()
+        throws IOException, FailedLoadOfVendingItemsException {
+
+        Files.write(
+            itemsFile(),
+            List.of("Pepsi::2.99::2", "Doritos::3.99::200", "Water::0.99::1")
+        );
+
+        dao = new VendingMachineDaoCompactImpl(itemsFile().toString());
+        dao.loadItems();
+        assertEquals(
+            dao.removeUnitsOfItems(Map.of("Doritos", 5L, "Water", 2L)),
+            Optional.of("Water"),
+            "There is only one water"
+        );
+        assertEquals(
+            dao.removeUnitsOfItems(Map.of("Doritos", 5L, "ex nihilo", 1L)),
+            Optional.of("ex nihilo"),
+            "This item is not in the vending machine"
+        );
+        assertEquals(
+            dao.getItemByName("Doritos").get().getQuantity(),
+            new BigInteger("200"),
+            "No Doritos should be removed when the other item cannot be"
+        );
+        assertEquals(
+            dao.removeUnitsOfItems(Map.of("Pepsi", 2L, "Water", 1L, "Doritos", 5L)),
+            Optional.empty(),
+            "Every item holds enough units"
+        );
+        assertEquals(
+            names(dao.getAffordableItems(new BigDecimal("5.00"))),
+            List.of("Doritos"),
+            "The Pepsi and the water have sold out"
+        );
+        assertEquals(
+            dao.getItemByName("Doritos").get().getQuantity(),
+            new BigInteger("195"),
+            "Five Doritos should be removed"
+        );
+    }
+
+    @Test
+    public void testNegativeQuantityIsNotAHold()
+        throws IOException, FailedLoadOfVendingItemsException {
+
+        Files.write(itemsFile(), List.of("Neg::1.00::-1", "Pepsi::2.99::2"));
+
+        dao = new VendingMachineDaoCompactImpl(itemsFile().toString());
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Neg").get().getQuantity(),
+            BigInteger.valueOf(-1),
+            "The quantity should be reported as loaded"
+        );
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(5),
+            () -> assertTrue(dao.removeOneOfItem("Neg").isEmpty(), "There is nothing to remove")
+        );
+        assertEquals(
+            dao.removeUnitsOfItems(Map.of("Pepsi", 1L, "Neg", 1L)),
+            Optional.of("Neg"),
+            "The cart cannot take a unit of the item"
+        );
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            new BigInteger("2"),
+            "No Pepsi should be removed when the other item cannot be"
+        );
+    }
+
+    @Test
+    public void testSnapshotIsNotTornByCarts()
+        throws IOException, FailedLoadOfVendingItemsException, InterruptedException {
+
+        Files.write(itemsFile(), List.of("Pepsi::2.99::100000", "Doritos::3.99::100100"));
+
+        dao = new VendingMachineDaoCompactImpl(itemsFile().toString());
+        dao.loadItems();
+        Thread buyer = new Thread(() -> {
+            while (dao.removeUnitsOfItems(Map.of("Pepsi", 1L, "Doritos", 1L)).isEmpty()) {
+                // every cart takes one of each
+            }
+        });
+        buyer.start();
+        while (buyer.isAlive()) {
+            try (CatalogSnapshot snapshot = dao.getCatalogSnapshot()) {
+                assertEquals(
+                    snapshot.get(1).getQuantity().subtract(snapshot.get(0).getQuantity()),
+                    new BigInteger("100"),
+                    "A snapshot should never hold only part of a cart"
+                );
+            }
+        }
+        buyer.join();
+    }
+
+    @Test
+    public void testReturnUnitsDoesNotOverflow()
+        throws IOException, FailedLoadOfVendingItemsException {
+
+        Files.write(itemsFile(), List.of("Pepsi::2.99::" + (Integer.MAX_VALUE - 1)));
+
+        dao = new VendingMachineDaoCompactImpl(itemsFile().toString());
+        dao.loadItems();
+        assertTrue(dao.returnUnitsOfItem("Pepsi", 1), "One more unit still fits");
+        assertThrows(
+            ArithmeticException.class,
+            () -> dao.returnUnitsOfItem("Pepsi", 1),
+            "No more units fit in the catalog"
+        );
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            BigInteger.valueOf(Integer.MAX_VALUE),
+            "No unit should be lost or made up"
+        );
+    }
+
+    private Path itemsFile() {
+        return directory.resolve(ITEMS_COMPACT);
+    }
+
+    private static List<String> names(List<VendingMachineItem> items) {
+        List<String> names = new ArrayList<>();
+        items.forEach(item -> names.add(item.getName()));
+        return names;
+    }
+}
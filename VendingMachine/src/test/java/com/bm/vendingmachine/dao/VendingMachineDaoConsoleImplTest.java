@@ -2,15 +2,29 @@ package com.bm.vendingmachine.dao;
 
 import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
 import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
 import com.bm.vendingmachine.dto.VendingMachineItem;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -24,8 +38,23 @@ public class VendingMachineDaoConsoleImplTest {
     private static final String ITEMS_LOAD_SAVE = "items_sim_load_save.txt";
     private static final String ITEMS_GET_REMOVE = "items_sim_get_remove.txt";
     private static final String ITEMS_GET_REMOVE_SAVE = "items_sim_get_remove_save.txt";
+    private static final String ITEMS_REMOVE_AFFORDABLE = "items_sim_remove_affordable.txt";
+    private static final String ITEMS_CONCURRENT = "items_sim_concurrent.txt";
+    private static final String ITEMS_JOURNAL = "items_sim_journal.txt";
+    private static final String ITEMS_COMPACTION = "items_sim_compaction.txt";
+    private static final String ITEMS_ATOMIC_SAVE = "items_sim_atomic_save.txt";
+    private static final String ITEMS_SNAPSHOT = "items_sim_snapshot.txt";
+    private static final String ITEMS_PRICE_QUERIES = "items_sim_price_queries.txt";
+    private static final String ITEMS_RETURN = "items_sim_return.txt";
+    private static final String ITEMS_PRICE_UPDATE = "items_sim_price_update.txt";
+    private static final String ITEMS_TORN_JOURNAL = "items_sim_torn_journal.txt";
+    private static final String ITEMS_CART = "items_sim_cart.txt";
+    private static final String ITEMS_HOLD = "items_sim_hold.txt";
     
-    private VendingMachineDao dao;
+    @TempDir
+    Path directory;
+    
+    private VendingMachineDaoFileImpl dao;
     
     public VendingMachineDaoConsoleImplTest() {
     }
@@ -146,9 +175,9 @@ public class VendingMachineDaoConsoleImplTest {
     
     @Test
     public void testLoadAndSave() {
-        fileSetup(ITEMS_LOAD_SAVE, "Pepsi::3.99::5", "Snickers::2.99::4");
+        fileSetup(inDirectory(ITEMS_LOAD_SAVE), "Pepsi::3.99::5", "Snickers::2.99::4");
         
-        dao = new VendingMachineDaoFileImpl(ITEMS_LOAD_SAVE);
+        dao = new VendingMachineDaoFileImpl(inDirectory(ITEMS_LOAD_SAVE));
         
         try {
             dao.loadItems();
@@ -330,6 +359,592 @@ public class VendingMachineDaoConsoleImplTest {
         }
     }
     
+    @Test
+    public void testRemoveIfAffordable() throws FailedLoadOfVendingItemsException {
+        fileSetup(ITEMS_REMOVE_AFFORDABLE, "Pepsi::2.99::1", "Water::0.99::0");
+        
+        dao = new VendingMachineDaoFileImpl(ITEMS_REMOVE_AFFORDABLE);
+        dao.loadItems();
+        
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("ex nihilo", new BigDecimal("10.00")).getStatus(),
+            ItemRemoval.Status.NO_SUCH_ITEM,
+            "This item is not in the vending machine"
+        );
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.98")).getStatus(),
+            ItemRemoval.Status.INSUFFICIENT_FUNDS,
+            "A Pepsi costs $2.99, so $2.98 should not be enough"
+        );
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Water", new BigDecimal("1.00")).getStatus(),
+            ItemRemoval.Status.OUT_OF_STOCK,
+            "There is no water left"
+        );
+        
+        ItemRemoval removal = dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.99"));
+        assertTrue(removal.isRemoved(), "Exact funds should be enough for a Pepsi");
+        assertEquals(
+            removal.getItem().getQuantity(), 
+            BigInteger.ZERO, 
+            "There should be no pepsi left"
+        );
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.99")).getStatus(),
+            ItemRemoval.Status.OUT_OF_STOCK,
+            "The only Pepsi has already been removed"
+        );
+    }
+    
+    @Test
+    public void testConcurrentRemovalsDoNotOversell() throws Exception {
+        fileSetup(ITEMS_CONCURRENT, "Pepsi::2.99::1000");
+        
+        dao = new VendingMachineDaoFileImpl(ITEMS_CONCURRENT);
+        dao.loadItems();
+        
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            pool.submit(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if (dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("3.00")).isRemoved()) {
+                        sold.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        
+        assertEquals(sold.get(), 1000, "Exactly the thousand Pepsis in stock should be sold");
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(), 
+            BigInteger.ZERO, 
+            "There should be no pepsi left"
+        );
+    }
+    
+    @Test
+    public void testSnapshotIsolatedFromSales() throws Exception {
+        fileSetup(ITEMS_SNAPSHOT, "Pepsi::2.99::1000", "Doritos::3.99::1000", "Water::0.99::5");
+        
+        dao = new VendingMachineDaoFileImpl(ITEMS_SNAPSHOT);
+        dao.loadItems();
+        
+        try (CatalogSnapshot before = dao.getCatalogSnapshot()) {
+            assertEquals(before.size(), 3, "There should be three items in the snapshot");
+            assertEquals(
+                before.getPage(0, 2).get(0).getName(),
+                "Doritos",
+                "Snapshots should list the items by name"
+            );
+            assertEquals(before.getPage(2, 10).size(), 1, "The last page holds only Water");
+            
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < 4; i++) {
+                pool.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        dao.removeOneOfItem("Pepsi");
+                        dao.removeOneOfItem("Doritos");
+                    }
+                });
+            }
+            
+            // every snapshot taken during the sales must stay the same
+            // however many times it is read
+            for (int i = 0; i < 50; i++) {
+                try (CatalogSnapshot during = dao.getCatalogSnapshot()) {
+                    List<VendingMachineItem> first = during.getPage(0, 3);
+                    List<VendingMachineItem> second = during.getPage(0, 3);
+                    for (int j = 0; j < 3; j++) {
+                        assertEquals(
+                            first.get(j).getQuantity(),
+                            second.get(j).getQuantity(),
+                            "A snapshot should not change while it is read"
+                        );
+                    }
+                }
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+            
+            for (VendingMachineItem item : before) {
+                assertEquals(
+                    item.getQuantity(),
+                    item.getName().equals("Water") ? new BigInteger("5") : new BigInteger("1000"),
+                    "The first snapshot should not see any of the sales"
+                );
+            }
+        }
+        
+        try (CatalogSnapshot after = dao.getCatalogSnapshot()) {
+            assertEquals(
+                after.get(1).getQuantity(),
+                new BigInteger("200"),
+                "A new snapshot should see all 800 Pepsis sold"
+            );
+        }
+    }
+    
+    @Test
+    public void testPriceQueriesFollowStock() throws FailedLoadOfVendingItemsException {
+        fileSetup(
+            ITEMS_PRICE_QUERIES,
+            "Pepsi::2.99::1",
+            "Doritos::3.99::200",
+            "Water::0.99::0",
+            "Gum::0.50::3",
+            "Candy::1.25::7"
+        );
+        
+        dao = new VendingMachineDaoFileImpl(ITEMS_PRICE_QUERIES);
+        dao.loadItems();
+        
+        assertEquals(
+            names(dao.getAffordableItems(new BigDecimal("3.00"))),
+            List.of("Gum", "Candy", "Pepsi"),
+            "Water is out of stock and Doritos cost too much"
+        );
+        assertEquals(
+            names(dao.getCheapestItems(2)),
+            List.of("Gum", "Candy"),
+            "Gum and Candy are the cheapest items in stock"
+        );
+        assertEquals(
+            names(dao.getItemsInPriceRange(new BigDecimal("1.25"), new BigDecimal("3.99"))),
+            List.of("Candy", "Pepsi", "Doritos"),
+            "Both bounds of the range are inclusive"
+        );
+        
+        // draining the only Pepsi should drop it from every query
+        assertTrue(dao.removeOneOfItem("Pepsi").isPresent(), "A removal should've occured");
+        assertEquals(
+            names(dao.getAffordableItems(new BigDecimal("3.00"))),
+            List.of("Gum", "Candy"),
+            "Pepsi is now out of stock"
+        );
+        assertEquals(
+            names(dao.getCheapestItems(10)),
+            List.of("Gum", "Candy", "Doritos"),
+            "Only three items are left in stock"
+        );
+    }
+    
+    @Test
+    public void testCartRemovedAllOrNone() throws Exception {
+        fileSetup(ITEMS_CART, "Pepsi::2.99::1000", "Coke::2.99::1000", "Water::0.99::0");
+        journalCleanup(ITEMS_CART);
+        
+        dao = new VendingMachineDaoFileImpl(ITEMS_CART, InventoryJournal.SyncPolicy.NEVER);
+        dao.loadItems();
+        assertEquals(
+            dao.removeUnitsOfItems(Map.of("Pepsi", 1L, "Water", 1L)),
+            Optional.of("Water"),
+            "There is no water left"
+        );
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            new BigInteger("1000"),
+            "No Pepsi should be removed when the water cannot be"
+        );
+        
+        // every cart takes a Pepsi and a Coke, so no snapshot should ever
+        // see a different number of each
+        AtomicInteger sold = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicBoolean mixed = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        pool.submit(() -> {
+            while (!done.get()) {
+                try (CatalogSnapshot snapshot = dao.getCatalogSnapshot()) {
+                    Map<String, BigInteger> quantities = new HashMap<>();
+                    snapshot.forEach(item -> quantities.put(item.getName(), item.getQuantity()));
+                    if (!quantities.get("Pepsi").equals(quantities.get("Coke"))) {
+                        mixed.set(true);
+                    }
+                }
+            }
+        });
+        List<Future<?>> buyers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            buyers.add(pool.submit(() -> {
+                for (int j = 0; j < 300; j++) {
+                    if (dao.removeUnitsOfItems(Map.of("Pepsi", 1L, "Coke", 1L)).isEmpty()) {
+                        sold.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> buyer : buyers) {
+            buyer.get(30, TimeUnit.SECONDS);
+        }
+        done.set(true);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        
+        assertFalse(mixed.get(), "A snapshot should see every cart whole or not at all");
+        assertEquals(sold.get(), 1000, "Exactly the thousand pairs in stock should be sold");
+        dao.close();
+        
+        dao = new VendingMachineDaoFileImpl(ITEMS_CART, InventoryJournal.SyncPolicy.NEVER);
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Coke").get().getQuantity(),
+            BigInteger.ZERO,
+            "Every cart should be replayed from the journal"
+        );
+        dao.close();
+        journalCleanup(ITEMS_CART);
+    }
+    
+    @Test
+    public void testJournalReplayedOnLoad() throws Exception {
+        fileSetup(ITEMS_JOURNAL, "Pepsi::2.99::10");
+        journalCleanup(ITEMS_JOURNAL);
+        
+        dao = new VendingMachineDaoFileImpl(
+            ITEMS_JOURNAL, 
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        dao.loadItems();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(dao.removeOneOfItem("Pepsi").isPresent(), "A removal should've occured");
+        }
+        // simulate a crash, the items file is never saved
+        dao.close();
+        
+        dao = new VendingMachineDaoFileImpl(
+            ITEMS_JOURNAL, 
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(), 
+            new BigInteger("7"),
+            "The three removals should be replayed from the journal"
+        );
+        
+        dao.saveItems();
+        dao.close();
+        
+        // the snapshot alone should now hold every removal
+        assertEquals(
+            InventoryJournal.generations(Path.of(ITEMS_JOURNAL)).size(), 
+            1,
+            "Only the empty generation opened after the save should remain"
+        );
+        dao = new VendingMachineDaoFileImpl(ITEMS_JOURNAL);
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(), 
+            new BigInteger("7"),
+            "The saved items file should reflect the three removals"
+        );
+        journalCleanup(ITEMS_JOURNAL);
+    }
+    
+    @Test
+    public void testTornJournalRecordDropped() throws Exception {
+        fileSetup(ITEMS_TORN_JOURNAL, "Pepsi::2.99::100");
+        journalCleanup(ITEMS_TORN_JOURNAL);
+        
+        // a crash cut "Pepsi::-15" short, leaving a record that still parses
+        Path generation = InventoryJournal.pathOf(Path.of(ITEMS_TORN_JOURNAL), 1);
+        Files.writeString(generation, "Pepsi::-1\nPepsi::-1");
+        
+        dao = new VendingMachineDaoFileImpl(
+            ITEMS_TORN_JOURNAL, 
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(), 
+            new BigInteger("99"),
+            "Only the record ended by a newline should be replayed"
+        );
+        assertEquals(
+            Files.readString(generation),
+            "Pepsi::-1\n",
+            "The torn record should be cut off the generation"
+        );
+        dao.close();
+        
+        Files.writeString(generation, "Pepsi::-1\nPepsi::-x\n");
+        dao = new VendingMachineDaoFileImpl(
+            ITEMS_TORN_JOURNAL, 
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        assertThrows(
+            FailedLoadOfVendingItemsException.class,
+            () -> dao.loadItems(),
+            "A complete record that does not parse is corruption, not a crash"
+        );
+        dao.close();
+        journalCleanup(ITEMS_TORN_JOURNAL);
+    }
+    
+    @Test
+    public void testReturnedUnitsJournaled() throws Exception {
+        fileSetup(ITEMS_RETURN, "Pepsi::2.99::1");
+        journalCleanup(ITEMS_RETURN);
+        
+        dao = new VendingMachineDaoFileImpl(
+            ITEMS_RETURN, 
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        dao.loadItems();
+        assertTrue(dao.removeOneOfItem("Pepsi").isPresent(), "A removal should've occured");
+        assertTrue(dao.getAffordableItems(new BigDecimal("5.00")).isEmpty(), "Pepsi sold out");
+        assertTrue(dao.returnUnitsOfItem("Pepsi", 2), "Pepsi should be returned");
+        assertFalse(dao.returnUnitsOfItem("Coke", 1), "There is no Coke to return");
+        assertEquals(
+            names(dao.getAffordableItems(new BigDecimal("5.00"))),
+            List.of("Pepsi"),
+            "Returned units should put Pepsi back in stock"
+        );
+        dao.close();
+        
+        dao = new VendingMachineDaoFileImpl(
+            ITEMS_RETURN, 
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(), 
+            new BigInteger("2"),
+            "The removal and the return should be replayed from the journal"
+        );
+        dao.close();
+        journalCleanup(ITEMS_RETURN);
+    }
+    
+    @Test
+    public void testHeldUnitsNotJournaledUntilSold() throws Exception {
+        String itemsFile = inDirectory(ITEMS_HOLD);
+        fileSetup(itemsFile, "Pepsi::2.99::5");
+        
+        dao = new VendingMachineDaoFileImpl(
+            itemsFile, 
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        dao.loadItems();
+        assertEquals(
+            dao.holdUnitsOfItem("Pepsi", 3).get().getQuantity(),
+            new BigInteger("2"),
+            "Held units should leave the stock"
+        );
+        assertTrue(dao.holdUnitsOfItem("Pepsi", 3).isEmpty(), "Only two Pepsis are left to hold");
+        assertTrue(dao.removeUnitsOfItem("Pepsi", 2).isPresent(), "The two unheld Pepsis can be sold");
+        // simulate a crash while the three units are still held
+        dao.close();
+        
+        dao = new VendingMachineDaoFileImpl(
+            itemsFile, 
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            new BigInteger("3"),
+            "Only the sale should be replayed, the held units are back in stock"
+        );
+        
+        dao.holdUnitsOfItem("Pepsi", 2);
+        dao.saveItems();
+        assertTrue(dao.sellHeldUnitsOfItem("Pepsi", 1), "A held Pepsi should be sold");
+        assertTrue(dao.releaseUnitsOfItem("Pepsi", 1), "The other should be released");
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            new BigInteger("2"),
+            "The released unit should be back in stock"
+        );
+        dao.close();
+        
+        dao = new VendingMachineDaoFileImpl(
+            itemsFile, 
+            InventoryJournal.SyncPolicy.EVERY_COMMIT
+        );
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            new BigInteger("2"),
+            "The snapshot should count the held units, and the journal the sale"
+        );
+        dao.close();
+    }
+    
+    @Test
+    public void testJournalCompactedInBackground() throws Exception {
+        fileSetup(ITEMS_COMPACTION, "Pepsi::2.99::100");
+        journalCleanup(ITEMS_COMPACTION);
+        
+        dao = new VendingMachineDaoFileImpl(
+            ITEMS_COMPACTION, 
+            InventoryJournal.SyncPolicy.NEVER,
+            10
+        );
+        dao.loadItems();
+        for (int i = 0; i < 25; i++) {
+            dao.removeOneOfItem("Pepsi");
+        }
+        
+        // wait for the compactor to rewrite the items file
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (Files.readString(Path.of(ITEMS_COMPACTION)).startsWith("Pepsi::2.99::100")
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(
+            Files.readString(Path.of(ITEMS_COMPACTION)).startsWith("Pepsi::2.99::100"),
+            "The items file should have been compacted at least once"
+        );
+        dao.close();
+        
+        dao = new VendingMachineDaoFileImpl(
+            ITEMS_COMPACTION, 
+            InventoryJournal.SyncPolicy.NEVER
+        );
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(), 
+            new BigInteger("75"),
+            "Compaction should neither lose nor repeat any removal"
+        );
+        dao.saveItems();
+        dao.close();
+        journalCleanup(ITEMS_COMPACTION);
+    }
+    
+    @Test
+    public void testSaveKeepsPreviousGeneration() throws Exception {
+        fileSetup(ITEMS_ATOMIC_SAVE, "Pepsi::3.99::10");
+        
+        dao = new VendingMachineDaoFileImpl(ITEMS_ATOMIC_SAVE);
+        dao.loadItems();
+        dao.removeOneOfItem("Pepsi");
+        dao.saveItems();
+        
+        assertEquals(
+            Files.readAllLines(Path.of(ITEMS_ATOMIC_SAVE)),
+            List.of("Pepsi::3.99::9"),
+            "The items file should hold the new quantity"
+        );
+        assertEquals(
+            Files.readAllLines(Path.of(ITEMS_ATOMIC_SAVE + ".bak")),
+            List.of("Pepsi::3.99::10"),
+            "The previous generation should be kept for rollback"
+        );
+        assertFalse(
+            Files.exists(Path.of(ITEMS_ATOMIC_SAVE + ".tmp")),
+            "No temporary file should be left behind"
+        );
+        
+        VendingMachineDao unwritable = new VendingMachineDaoFileImpl(
+            "no_such_directory/" + ITEMS_ATOMIC_SAVE
+        );
+        assertThrows(
+            FailedSaveOfVendingItemsException.class, 
+            unwritable::saveItems,
+            "A failed write should surface as a FailedSaveOfVendingItemsException"
+        );
+    }
+    
+    @Test
+    public void testPriceUpdateSwitchesAtOnce() throws Exception {
+        String[] rows = new String[100];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = "Item" + i + "::1.00::1000000";
+        }
+        fileSetup(inDirectory(ITEMS_PRICE_UPDATE), rows);
+        
+        dao = new VendingMachineDaoFileImpl(
+            inDirectory(ITEMS_PRICE_UPDATE), 
+            InventoryJournal.SyncPolicy.NEVER
+        );
+        dao.loadItems();
+        
+        // readers must see a single cost across the whole catalog, whichever
+        // price list it comes from, while sales go on
+        AtomicBoolean updating = new AtomicBoolean(true);
+        AtomicInteger mixed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            pool.submit(() -> {
+                while (updating.get()) {
+                    dao.removeOneOfItemIfAffordable("Item7", new BigDecimal("5.00"));
+                    List<VendingMachineItem> items = dao.getAllItems();
+                    BigDecimal cost = items.get(0).getCost();
+                    for (VendingMachineItem item : items) {
+                        if (item.getCost().compareTo(cost) != 0) {
+                            mixed.incrementAndGet();
+                            break;
+                        }
+                    }
+                }
+            });
+        }
+        for (int update = 2; update <= 50; update++) {
+            Map<String, BigDecimal> costs = new HashMap<>();
+            for (int i = 0; i < rows.length; i++) {
+                costs.put("Item" + i, BigDecimal.valueOf(update));
+            }
+            dao.updatePrices(costs);
+        }
+        updating.set(false);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        
+        assertEquals(mixed.get(), 0, "No reader should see costs from two price lists");
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Item3", new BigDecimal("49.99")).getStatus(),
+            ItemRemoval.Status.INSUFFICIENT_FUNDS,
+            "Sales should be charged the latest costs"
+        );
+        assertTrue(
+            dao.getAffordableItems(new BigDecimal("49.99")).isEmpty(),
+            "Price queries should follow the latest costs"
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> dao.updatePrices(Map.of("Item1", BigDecimal.ONE, "Coke", BigDecimal.ONE)),
+            "A price list naming an unknown item should be refused"
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> dao.updatePrices(Map.of("Item1", new BigDecimal("0.999"))),
+            "A cost with a fraction of a cent should be refused"
+        );
+        assertEquals(
+            dao.getItemByName("Item1").get().getCost(),
+            new BigDecimal("50.00"),
+            "A refused price list should change no cost, and costs are kept in cents"
+        );
+        // simulate a crash, the items file is never saved
+        dao.close();
+        
+        dao = new VendingMachineDaoFileImpl(
+            inDirectory(ITEMS_PRICE_UPDATE), 
+            InventoryJournal.SyncPolicy.NEVER
+        );
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Item1").get().getCost(),
+            new BigDecimal("50.00"),
+            "The journal records quantities alone, so the new costs should be in the snapshot"
+        );
+        dao.saveItems();
+        dao.close();
+    }
+    
+    /**
+     * @return The path of the file within the temporary directory of the
+     *         test, for tests which write their items file back
+     */
+    private String inDirectory(String filename) {
+        return directory.resolve(filename).toString();
+    }
+    
     private void fileSetup(String filename, String... contents) {
         try {
             PrintWriter writer = new PrintWriter(new FileWriter(filename));
@@ -342,4 +957,16 @@ public class VendingMachineDaoConsoleImplTest {
             fail(filename + " could not be constructed, aborting test");
         }
     }
+    
+    private void journalCleanup(String filename) throws IOException {
+        for (long generation : InventoryJournal.generations(Path.of(filename))) {
+            Files.delete(InventoryJournal.pathOf(Path.of(filename), generation));
+        }
+    }
+    
+    private static List<String> names(List<VendingMachineItem> items) {
+        List<String> names = new ArrayList<>();
+        items.forEach(item -> names.add(item.getName()));
+        return names;
+    }
 }
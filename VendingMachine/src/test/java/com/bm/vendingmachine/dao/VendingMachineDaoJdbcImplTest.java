@@ -0,0 +1,229 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class VendingMachineDaoJdbcImplTest {
+    private static final String ITEMS_SEED = "items_sim_jdbc.txt";
+    private static final String DATABASE = "items_sim_jdbc";
+
+    @TempDir
+    Path directory;
+
+    private VendingMachineDaoJdbcImpl dao;
+
+    public VendingMachineDaoJdbcImplTest() {
+    }
+
+    @Test
+    public void testSeedRemoveAndReopen()
+        throws IOException, FailedLoadOfVendingItemsException, FailedSaveOfVendingItemsException {
+
+        databaseSetup("Pepsi::2.99::2", "Doritos::3.99::200", "Water::0.99::0");
+
+        dao = new VendingMachineDaoJdbcImpl(url(), seedFile().toString());
+        dao.loadItems();
+        assertEquals(dao.getAllItems().size(), 3, "The seed file should be loaded");
+
+        assertTrue(dao.removeOneOfItem("Pepsi").isPresent(), "A removal should've occured");
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.98")).getStatus(),
+            ItemRemoval.Status.INSUFFICIENT_FUNDS,
+            "A Pepsi costs $2.99, so $2.98 should not be enough"
+        );
+        ItemRemoval removal = dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.99"));
+        assertTrue(removal.isRemoved(), "Exact funds should be enough for a Pepsi");
+        assertEquals(removal.getItem().getQuantity(), BigInteger.ZERO, "There should be no pepsi left");
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.99")).getStatus(),
+            ItemRemoval.Status.OUT_OF_STOCK,
+            "There is no more pepsi to remove"
+        );
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("ex nihilo", BigDecimal.TEN).getStatus(),
+            ItemRemoval.Status.NO_SUCH_ITEM,
+            "This item is not in the vending machine"
+        );
+        assertTrue(dao.removeOneOfItem("Water").isEmpty(), "There is no water to remove");
+        dao.saveItems();
+        dao.close();
+
+        // the database is not seeded again once it holds items
+        Files.write(seedFile(), List.of("Pepsi::2.99::50"));
+        dao = new VendingMachineDaoJdbcImpl(url(), seedFile().toString());
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get(),
+            new VendingMachineItem("Pepsi", new BigDecimal("2.99"), BigInteger.ZERO),
+            "The removals should have been stored"
+        );
+        assertEquals(
+            dao.getAffordableItems(new BigDecimal("5.00")).size(),
+            1,
+            "Only the Doritos are in stock"
+        );
+        dao.close();
+    }
+
+    @Test
+    public void testConcurrentRemovalsAndSnapshot() throws Exception {
+        databaseSetup("Pepsi::2.99::500");
+
+        VendingMachineDaoJdbcImpl jdbcDao = new VendingMachineDaoJdbcImpl(url(), seedFile().toString());
+        jdbcDao.loadItems();
+        List<VendingMachineItem> extra = new ArrayList<>();
+        for (int i = 0; i < 2_500; i++) {
+            extra.add(new VendingMachineItem("Item " + i, new BigDecimal("1.00"), BigInteger.TEN));
+        }
+        jdbcDao.putItems(extra);
+        dao = jdbcDao;
+
+        try (CatalogSnapshot before = dao.getCatalogSnapshot()) {
+            AtomicInteger sold = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < 4; i++) {
+                pool.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        if (dao.removeOneOfItem("Pepsi").isPresent()) {
+                            sold.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+            assertEquals(sold.get(), 500, "Exactly the 500 Pepsis in stock should be sold");
+
+            List<String> names = new ArrayList<>();
+            int count = 0;
+            for (VendingMachineItem item : before) {
+                names.add(item.getName());
+                if (item.getName().equals("Pepsi")) {
+                    assertEquals(
+                        item.getQuantity(),
+                        new BigInteger("500"),
+                        "The snapshot should not see any of the sales"
+                    );
+                }
+                count++;
+            }
+            assertEquals(count, 2_501, "The snapshot should hold every item");
+            assertEquals(
+                before.get(300).getName(),
+                names.get(300),
+                "Jumping back should find the same item as reading in order"
+            );
+        }
+        dao.close();
+    }
+
+    @Test
+    public void testUpdatePricesInOneTransaction()
+        throws IOException, FailedLoadOfVendingItemsException, FailedSaveOfVendingItemsException {
+
+        databaseSetup("Pepsi::2.99::2", "Doritos::3.99::200");
+
+        dao = new VendingMachineDaoJdbcImpl(url(), seedFile().toString());
+        dao.loadItems();
+        long version = dao.getPriceVersion();
+
+        Map<String, BigDecimal> refused = new LinkedHashMap<>();
+        refused.put("Pepsi", new BigDecimal("1.00"));
+        refused.put("ex nihilo", new BigDecimal("1.00"));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> dao.updatePrices(refused),
+            "This item is not in the vending machine"
+        );
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getCost(),
+            new BigDecimal("2.99"),
+            "The whole price list should have been rolled back"
+        );
+        assertEquals(dao.getPriceVersion(), version, "A refused price list is no new version");
+
+        dao.updatePrices(Map.of("Pepsi", new BigDecimal("1.00"), "Doritos", new BigDecimal("4.25")));
+        assertEquals(dao.getPriceVersion(), version + 1, "The price version should move on");
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Doritos", new BigDecimal("3.99")).getStatus(),
+            ItemRemoval.Status.INSUFFICIENT_FUNDS,
+            "Doritos now cost $4.25"
+        );
+        assertEquals(
+            dao.getAffordableItems(new BigDecimal("1.00")).size(),
+            1,
+            "Only the Pepsi costs a dollar"
+        );
+        dao.close();
+    }
+
+    @Test
+    public void testRemoveUnitsOfItemsInOneTransaction()
+        throws IOException, FailedLoadOfVendingItemsException {
+
+        databaseSetup("Pepsi::2.99::2", "Doritos::3.99::200", "Water::0.99::1");
+
+        dao = new VendingMachineDaoJdbcImpl(url(), seedFile().toString());
+        dao.loadItems();
+        Map<String, Long> refused = new LinkedHashMap<>();
+        refused.put("Doritos", 5L);
+        refused.put("Water", 2L);
+        assertEquals(
+            dao.removeUnitsOfItems(refused),
+            Optional.of("Water"),
+            "There is only one water"
+        );
+        assertEquals(
+            dao.getItemByName("Doritos").get().getQuantity(),
+            new BigInteger("200"),
+            "The removal of the Doritos should have been rolled back"
+        );
+        assertEquals(
+            dao.removeUnitsOfItems(Map.of("Pepsi", 2L, "Water", 1L)),
+            Optional.empty(),
+            "Both items hold enough units"
+        );
+        assertEquals(
+            dao.getAffordableItems(new BigDecimal("5.00")).size(),
+            1,
+            "Only the Doritos are in stock"
+        );
+        dao.close();
+    }
+
+    private void databaseSetup(String... contents) throws IOException {
+        Files.write(seedFile(), List.of(contents));
+    }
+
+    private Path seedFile() {
+        return directory.resolve(ITEMS_SEED);
+    }
+
+    private String url() {
+        return "jdbc:h2:" + directory.resolve(DATABASE).toAbsolutePath();
+    }
+}
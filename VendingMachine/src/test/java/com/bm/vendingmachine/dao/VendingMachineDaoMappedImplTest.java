@@ -0,0 +1,296 @@
+package com.bm.vendingmachine.dao;
+
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.VendingMachineItem;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class VendingMachineDaoMappedImplTest {
+    private static final String ITEMS_TEXT = "items_sim_mapped.txt";
+    private static final String ITEMS_BINARY = "items_sim_mapped.bin";
+    private static final String ITEMS_ROUND_TRIP = "items_sim_mapped_round_trip.txt";
+
+    @TempDir
+    Path directory;
+
+    private VendingMachineDaoMappedImpl dao;
+
+    public VendingMachineDaoMappedImplTest() {
+    }
+
+    @Test
+    public void testLoadAndGetAll() throws IOException, FailedLoadOfVendingItemsException {
+        fileSetup("Pepsi::4.99::10", "Doritos::3.99::200");
+
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+
+        List<VendingMachineItem> allItems = dao.getAllItems();
+        assertEquals(allItems.size(), 2, "There should be two items in the list");
+        assertTrue(
+            allItems.contains(
+                new VendingMachineItem(
+                    "Pepsi",
+                    new BigDecimal("4.99"),
+                    new BigInteger("10")
+                )
+            )
+        );
+        assertEquals(
+            dao.getItemByName("Doritos").get().getCost(),
+            new BigDecimal("3.99"),
+            "Doritos should cost $3.99"
+        );
+        assertTrue(
+            dao.getItemByName("ex nihilo").isEmpty(),
+            "This item is not in the vending machine"
+        );
+        dao.close();
+    }
+
+    @Test
+    public void testRemoveInPlaceAndConvertBack()
+        throws IOException, FailedLoadOfVendingItemsException, FailedSaveOfVendingItemsException {
+
+        fileSetup("Pepsi::2.99::2", "Doritos::3.99::200");
+
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+
+        assertTrue(dao.removeOneOfItem("Pepsi").isPresent(), "A removal should've occured");
+        assertEquals(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.98")).getStatus(),
+            ItemRemoval.Status.INSUFFICIENT_FUNDS,
+            "A Pepsi costs $2.99, so $2.98 should not be enough"
+        );
+        assertTrue(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("2.99")).isRemoved(),
+            "Exact funds should be enough for a Pepsi"
+        );
+        assertTrue(
+            dao.removeOneOfItem("Pepsi").isEmpty(),
+            "There is no more pepsi to remove"
+        );
+        dao.saveItems();
+        dao.close();
+
+        // the removals were written in place, so a fresh mapping sees them
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            BigInteger.ZERO,
+            "There should be no pepsi left"
+        );
+        dao.close();
+
+        MappedItemsFormat.toText(inDirectory(ITEMS_BINARY), inDirectory(ITEMS_ROUND_TRIP));
+        VendingMachineDao textDao = new VendingMachineDaoFileImpl(inDirectory(ITEMS_ROUND_TRIP).toString());
+        textDao.loadItems();
+        assertTrue(
+            textDao.getAllItems().contains(
+                new VendingMachineItem(
+                    "Pepsi",
+                    new BigDecimal("2.99"),
+                    BigInteger.ZERO
+                )
+            )
+        );
+        assertEquals(
+            textDao.getItemByName("Doritos").get().getQuantity(),
+            new BigInteger("200"),
+            "The Doritos should be untouched"
+        );
+    }
+
+    @Test
+    public void testUpdatePricesInPlace()
+        throws IOException, FailedLoadOfVendingItemsException, FailedSaveOfVendingItemsException {
+
+        fileSetup("Pepsi::2.99::2", "Doritos::3.99::200", "Water::0.99::0");
+
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        long version = dao.getPriceVersion();
+
+        dao.updatePrices(Map.of("Pepsi", new BigDecimal("1.50"), "Water", new BigDecimal("1.25")));
+        assertEquals(dao.getPriceVersion(), version + 1, "The price version should move on");
+        assertTrue(
+            dao.removeOneOfItemIfAffordable("Pepsi", new BigDecimal("1.50")).isRemoved(),
+            "A Pepsi now costs $1.50"
+        );
+        assertEquals(
+            dao.getCheapestItems(1).get(0).getName(),
+            "Pepsi",
+            "The price index should follow the new costs"
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> dao.updatePrices(Map.of("Coke", BigDecimal.ONE)),
+            "There is no Coke to reprice"
+        );
+        dao.close();
+
+        // the new costs were written into the mapped file
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Water").get().getCost(),
+            new BigDecimal("1.25"),
+            "Water should still cost $1.25 once mapped again"
+        );
+        assertEquals(
+            dao.getItemByName("Doritos").get().getCost(),
+            new BigDecimal("3.99"),
+            "Doritos were left out of the price list"
+        );
+        dao.close();
+    }
+
+    @Test
+    public void testRemoveUnitsOfItemsAllOrNone()
+        throws IOException, FailedLoadOfVendingItemsException {
+
+        fileSetup("Pepsi::2.99::2", "Doritos::3.99::200", "Water::0.99::1");
+
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        assertEquals(
+            dao.removeUnitsOfItems(Map.of("Doritos", 5L, "Water", 2L)),
+            Optional.of("Water"),
+            "There is only one water"
+        );
+        assertEquals(
+            dao.getItemByName("Doritos").get().getQuantity(),
+            new BigInteger("200"),
+            "No Doritos should be removed when the water cannot be"
+        );
+        assertEquals(
+            dao.removeUnitsOfItems(Map.of("Pepsi", 2L, "Water", 1L)),
+            Optional.empty(),
+            "Both items hold enough units"
+        );
+        assertTrue(
+            dao.getAffordableItems(new BigDecimal("5.00")).stream()
+                .allMatch(item -> item.getName().equals("Doritos")),
+            "The Pepsi and the water have sold out"
+        );
+        dao.close();
+
+        // the removals were made in place in the mapped file
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            BigInteger.ZERO,
+            "There should be no pepsi left once mapped again"
+        );
+        dao.close();
+    }
+
+    @Test
+    public void testNegativeQuantityIsNotAHold()
+        throws IOException, FailedLoadOfVendingItemsException {
+
+        fileSetup("Neg::1.00::-5", "Pepsi::2.99::2");
+
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(5),
+            () -> assertTrue(dao.removeOneOfItem("Neg").isEmpty(), "There is nothing to remove")
+        );
+        assertEquals(
+            dao.removeUnitsOfItems(Map.of("Pepsi", 1L, "Neg", 1L)),
+            Optional.of("Neg"),
+            "The cart cannot take a unit of the item"
+        );
+        dao.close();
+
+        // loading again should leave the quantities as they were
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Neg").get().getQuantity(),
+            BigInteger.valueOf(-5),
+            "The quantity should be reported as stored"
+        );
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            new BigInteger("2"),
+            "No Pepsi should be removed when the other item cannot be"
+        );
+        dao.close();
+    }
+
+    @Test
+    public void testLoadFinishesACommittedBatch()
+        throws IOException, FailedLoadOfVendingItemsException {
+
+        fileSetup("Pepsi::2.99::2", "Doritos::3.99::200");
+
+        // a batch committed to the redo log before a crash, of which only
+        // the first write reached the items file
+        ByteBuffer batch = ByteBuffer.allocate(8 + 2 * 16);
+        batch.putLong(2);
+        batch.putLong(MappedItemsFormat.slotOf(0) + MappedItemsFormat.QUANTITY_OFFSET);
+        batch.putLong(1);
+        batch.putLong(MappedItemsFormat.slotOf(1) + MappedItemsFormat.QUANTITY_OFFSET);
+        batch.putLong(195);
+        Files.write(MappedRedoLog.fileOf(inDirectory(ITEMS_BINARY)), batch.array());
+
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            BigInteger.ONE,
+            "The batch should be applied on load"
+        );
+        assertEquals(
+            dao.getItemByName("Doritos").get().getQuantity(),
+            new BigInteger("195"),
+            "The batch should be applied on load"
+        );
+        dao.close();
+
+        // the batch is applied only once
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        dao.returnUnitsOfItem("Pepsi", 1);
+        dao.close();
+        dao = new VendingMachineDaoMappedImpl(inDirectory(ITEMS_BINARY).toString());
+        dao.loadItems();
+        assertEquals(
+            dao.getItemByName("Pepsi").get().getQuantity(),
+            new BigInteger("2"),
+            "The batch should be cleared once applied"
+        );
+        dao.close();
+    }
+
+    private Path inDirectory(String file) {
+        return directory.resolve(file);
+    }
+
+    private void fileSetup(String... contents) throws IOException {
+        Files.write(inDirectory(ITEMS_TEXT), List.of(contents));
+        MappedItemsFormat.fromText(inDirectory(ITEMS_TEXT), inDirectory(ITEMS_BINARY));
+    }
+}
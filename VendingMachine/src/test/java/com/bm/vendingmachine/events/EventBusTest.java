@@ -0,0 +1,116 @@
+package com.bm.vendingmachine.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class EventBusTest {
+
+    public EventBusTest() {
+    }
+
+    @Test
+    public void testEverySubscriberSeesEveryEventInOrder() throws Exception {
+        EventBus bus = new EventBus(64, EventBus.OverflowPolicy.BLOCK);
+        int producers = 4;
+        int perProducer = 20_000;
+        long[][] lastSeen = new long[3][producers];
+        long[] counts = new long[3];
+        boolean[] inOrder = {true, true, true};
+        for (int s = 0; s < 3; s++) {
+            int subscriber = s;
+            Arrays.fill(lastSeen[subscriber], -1);
+            bus.subscribe("test-" + s, event -> {
+                int producer = (int) event.getSessionId();
+                // the events of one producer arrive in the order published
+                if (event.getAmountCents() != lastSeen[subscriber][producer] + 1) {
+                    inOrder[subscriber] = false;
+                }
+                lastSeen[subscriber][producer] = event.getAmountCents();
+                counts[subscriber]++;
+                if (subscriber == 2 && event.getAmountCents() % 1000 == 0) {
+                    // a slow subscriber holds the others back only when the
+                    // ring is full
+                    Thread.yield();
+                }
+            });
+        }
+        bus.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        assertTrue(
+                            bus.publish(DomainEventType.COINS_ADDED, producer, "QUARTER", i, 0, null),
+                            "A blocking bus should never drop"
+                        );
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        bus.close();
+
+        for (int s = 0; s < 3; s++) {
+            assertEquals(counts[s], (long) producers * perProducer, "Every event should reach subscriber " + s);
+            assertTrue(inOrder[s], "Subscriber " + s + " should see each producer's events in order");
+        }
+        assertEquals(bus.getDroppedCount(), 0L, "Nothing should be dropped");
+        assertEquals(bus.getBacklog(), 0L, "Closing should wait for every subscriber");
+    }
+
+    @Test
+    public void testDropPolicyAndErrors() throws Exception {
+        EventBus bus = new EventBus(8, EventBus.OverflowPolicy.DROP);
+        assertFalse(
+            bus.publish(DomainEventType.ITEMS_LOADED, -1, null, 0, 0, null),
+            "Events published before the start should be dropped"
+        );
+        CountDownLatch release = new CountDownLatch(1);
+        long[] handled = new long[1];
+        bus.subscribe("stalled", event -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            handled[0]++;
+            if (event.getSequence() == 3) {
+                throw new IllegalStateException("Subscriber failure");
+            }
+        });
+        bus.start();
+
+        int accepted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (bus.publish(DomainEventType.COINS_ADDED, 0, "DIME", 10, 0, null)) {
+                accepted++;
+            }
+        }
+        assertEquals(accepted, 8, "A stalled subscriber should leave room for one ring of events");
+        assertEquals(bus.getDroppedCount(), 13L, "The rest should be dropped and counted");
+
+        release.countDown();
+        bus.close();
+        assertEquals(handled[0], 8L, "Every accepted event should be handled");
+        assertEquals(bus.getSubscriberErrorCount(), 1L, "The failure should be counted and skipped");
+    }
+}
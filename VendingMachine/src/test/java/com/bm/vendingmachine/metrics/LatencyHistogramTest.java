@@ -0,0 +1,84 @@
+package com.bm.vendingmachine.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class LatencyHistogramTest {
+
+    public LatencyHistogramTest() {
+    }
+
+    @Test
+    public void testQuantilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(22);
+        long[] durations = new long[100_000];
+        for (int i = 0; i < durations.length; i++) {
+            // log-uniform from a nanosecond to about a minute
+            durations[i] = (long) Math.exp(random.nextDouble() * 25);
+            histogram.record(durations[i]);
+        }
+        Arrays.sort(durations);
+        assertEquals(histogram.getCount(), (long) durations.length, "Every duration should be counted");
+        assertEquals(histogram.getMaxNanos(), durations[durations.length - 1], "The maximum is exact");
+
+        for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999, 1.0}) {
+            long exact = durations[(int) Math.ceil(quantile * durations.length) - 1];
+            long estimate = histogram.getValueAtQuantile(quantile);
+            assertTrue(estimate >= exact, "A quantile should never be understated: " + quantile);
+            assertTrue(estimate <= exact + exact / 32 + 1, "A quantile should be within its bucket: " + quantile);
+        }
+    }
+
+    @Test
+    public void testBucketsCoverEveryDuration() {
+        int previous = -1;
+        for (long nanos : new long[] {0, 1, 31, 32, 33, 63, 64, 65, 1_000_000, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(nanos);
+            assertTrue(bucket >= previous, "Longer durations should never go into earlier buckets");
+            assertTrue(LatencyHistogram.highestInBucket(bucket) >= nanos, "A bucket should hold its durations");
+            previous = bucket;
+        }
+        for (int bucket = 1; bucket < LatencyHistogram.bucketOf(Long.MAX_VALUE); bucket++) {
+            assertEquals(
+                LatencyHistogram.bucketOf(LatencyHistogram.highestInBucket(bucket - 1) + 1),
+                bucket,
+                "Buckets should follow one another without gaps"
+            );
+        }
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        histogram.record(i % 1000);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(histogram.getCount(), 200_000L, "No recording should be lost");
+        assertEquals(histogram.getTotalNanos(), 4L * 50 * (999 * 1000 / 2), "No duration should be lost");
+    }
+}
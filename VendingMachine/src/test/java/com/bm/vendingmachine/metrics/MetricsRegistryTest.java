@@ -0,0 +1,54 @@
+package com.bm.vendingmachine.metrics;
+
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class MetricsRegistryTest {
+
+    public MetricsRegistryTest() {
+    }
+
+    @Test
+    public void testOperationsReadableOverJmx() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry metrics = new MetricsRegistry();
+        OperationMetrics before = metrics.operation("test.before");
+        metrics.registerMBeans(server);
+        OperationMetrics after = metrics.operation("test.after");
+        assertSame(metrics.operation("test.after"), after, "An operation should be created once");
+
+        before.succeeded(System.nanoTime());
+        after.succeeded(System.nanoTime());
+        after.failed(System.nanoTime(), new IllegalStateException());
+        after.failed(System.nanoTime(), new IllegalStateException());
+
+        ObjectName name = new ObjectName(MetricsRegistry.DOMAIN + ":type=Operation,name=test.after");
+        assertEquals(server.getAttribute(name, "Count"), 3L, "Every operation should be counted");
+        assertEquals(server.getAttribute(name, "Successes"), 1L, "One operation succeeded");
+        TabularData failures = (TabularData) server.getAttribute(name, "FailuresByType");
+        CompositeData row = failures.get(new Object[] {"IllegalStateException"});
+        assertEquals(row.get("value"), 2L, "Failures should be counted by exception type");
+        assertEquals(
+            server.getAttribute(
+                new ObjectName(MetricsRegistry.DOMAIN + ":type=Operation,name=test.before"),
+                "Successes"
+            ),
+            1L,
+            "Operations created before registering should be published too"
+        );
+        assertEquals(after.getFailuresByType(), Map.of("IllegalStateException", 2L), "The same counts locally");
+
+        metrics.unregisterMBeans();
+        assertFalse(server.isRegistered(name), "Unregistering should withdraw every MBean");
+    }
+}
@@ -0,0 +1,92 @@
+package com.bm.vendingmachine.service;
+
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class CoinInventoryTest {
+
+    public CoinInventoryTest() {
+    }
+
+    @Test
+    public void testPlanMatchesExhaustiveSearch() {
+        Random random = new Random(17);
+        Coin[] coins = Coin.values();
+        for (int trial = 0; trial < 300; trial++) {
+            long[] available = new long[coins.length];
+            for (int i = 0; i < coins.length; i++) {
+                available[i] = random.nextInt(8);
+            }
+            for (long cents = 0; cents <= 150; cents++) {
+                long[] plan = CoinInventory.plan(cents, available);
+                long fewest = fewestCoins(cents, available);
+                if (fewest < 0) {
+                    assertNull(plan, "No change should be planned for " + cents);
+                    continue;
+                }
+                assertNotNull(plan, "Change should be planned for " + cents);
+                long value = 0;
+                long used = 0;
+                for (int i = 0; i < coins.length; i++) {
+                    assertTrue(plan[i] <= available[i], "The plan should only use coins in stock");
+                    value += plan[i] * coins[i].getCents();
+                    used += plan[i];
+                }
+                assertEquals(value, cents, "The plan should be worth the change");
+                assertEquals(used, fewest, "The plan should use the fewest coins");
+            }
+        }
+    }
+
+    @Test
+    public void testSettleTakesPaymentAndGivesChange() {
+        CoinInventory inventory = new CoinInventory(Map.of(Coin.DIME, 3L));
+        assertTrue(inventory.isExactChangeOnly(), "Three dimes cannot make every amount");
+
+        long[] paid = new long[Coin.values().length];
+        paid[Coin.QUARTER.ordinal()] = 4;
+
+        // $1.00 paid for a $0.70 item; greedy would look for a nickel
+        Change change = inventory.settle(paid, 30);
+        assertNotNull(change, "Three dimes should make the change");
+        assertEquals(change.getCount(Coin.DIME), 3L, "The change should be three dimes");
+        assertEquals(inventory.getCount(Coin.DIME), 0L, "The dimes should be gone");
+        assertEquals(inventory.getCount(Coin.QUARTER), 4L, "The quarters paid should be kept");
+
+        assertNull(inventory.settle(paid, 5), "There is nothing to make a nickel from");
+        assertEquals(inventory.getCount(Coin.QUARTER), 4L, "A refused sale should keep nothing");
+
+        change = inventory.settle(paid, 50);
+        assertEquals(change.getCount(Coin.QUARTER), 2L, "Paid coins may be given as change");
+        assertEquals(inventory.getCount(Coin.QUARTER), 6L, "Four paid in, two given back");
+    }
+
+    /**
+     * @return The fewest coins worth the amount, found by trying every
+     *         combination, or -1 if there is none
+     */
+    private static long fewestCoins(long cents, long[] available) {
+        long fewest = -1;
+        for (long q = 0; q <= available[0]; q++) {
+            for (long d = 0; d <= available[1]; d++) {
+                for (long n = 0; n <= available[2]; n++) {
+                    long pennies = cents - 25 * q - 10 * d - 5 * n;
+                    if (pennies < 0 || pennies > available[3]) {
+                        continue;
+                    }
+                    long used = q + d + n + pennies;
+                    if (fewest < 0 || used < fewest) {
+                        fewest = used;
+                    }
+                }
+            }
+        }
+        return fewest;
+    }
+}
@@ -0,0 +1,77 @@
+package com.bm.vendingmachine.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author agent
+ */
+public class TimerWheelTest {
+
+    public TimerWheelTest() {
+    }
+
+    @Test
+    public void testTimeoutsFireWithinATickOfTheirDeadline() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(8, 10, 1_000);
+        Random random = new Random(20);
+        long[] deadlines = new long[500];
+        List<TimerWheel.Timeout<Integer>> timeouts = new ArrayList<>();
+        for (int i = 0; i < deadlines.length; i++) {
+            // deadlines spread over many turns of the wheel
+            deadlines[i] = 1_000 + random.nextInt(2_000);
+            timeouts.add(wheel.schedule(i, deadlines[i]));
+        }
+        Set<Integer> cancelled = new HashSet<>();
+        for (int i = 0; i < timeouts.size(); i += 7) {
+            assertTrue(timeouts.get(i).cancel(), "A pending timeout can be cancelled");
+            cancelled.add(i);
+        }
+        assertEquals(wheel.size(), deadlines.length - cancelled.size(), "Cancelled timeouts leave the wheel");
+
+        Set<Integer> fired = new HashSet<>();
+        long previous = 1_000;
+        long now = 1_000;
+        while (now < 3_100) {
+            // steps of uneven length, some longer than a whole turn
+            now += 1 + random.nextInt(random.nextInt(10) == 0 ? 200 : 15);
+            for (int i : wheel.advance(now)) {
+                assertFalse(cancelled.contains(i), "A cancelled timeout should never fire");
+                assertTrue(deadlines[i] <= now, "A timeout should never fire early");
+                assertTrue(deadlines[i] > previous - 10, "A timeout should fire once it is due");
+                assertTrue(fired.add(i), "A timeout should fire once");
+            }
+            previous = now;
+        }
+        assertEquals(fired.size(), deadlines.length - cancelled.size(), "Every timeout should have fired");
+        assertEquals(wheel.size(), 0, "Nothing should be left on the wheel");
+        assertFalse(timeouts.get(1).cancel(), "A fired timeout cannot be cancelled");
+    }
+
+    @Test
+    public void testPastDeadlineFiresOnNextAdvance() {
+        TimerWheel<String> wheel = new TimerWheel<>(4, 10, 0);
+        assertEquals(wheel.advance(95), List.of(), "Nothing is scheduled yet");
+        wheel.schedule("late", 20);
+        assertEquals(wheel.advance(96), List.of(), "The tick has already been passed");
+        assertEquals(wheel.advance(100), List.of("late"), "A past deadline fires on the next tick");
+    }
+
+    @Test
+    public void testDrainCancelsEveryPendingTimeout() {
+        TimerWheel<String> wheel = new TimerWheel<>(4, 10, 0);
+        wheel.schedule("soon", 10);
+        TimerWheel.Timeout<String> later = wheel.schedule("later", 1_000);
+        wheel.schedule("cancelled", 30).cancel();
+        assertEquals(new HashSet<>(wheel.drain()), Set.of("soon", "later"), "Both pending timeouts are drained");
+        assertEquals(wheel.size(), 0, "Nothing should be left on the wheel");
+        assertFalse(later.cancel(), "A drained timeout cannot be cancelled");
+        assertEquals(wheel.advance(2_000), List.of(), "A drained timeout never fires");
+    }
+}
@@ -1,6 +1,7 @@
 package com.bm.vendingmachine.service;
 
 import com.bm.vendingmachine.dao.VendingMachineAuditDao;
+import com.bm.vendingmachine.dto.AuditEventType;
 
 /**
  * A stub implementation of the 
@@ -16,6 +17,10 @@ public class VendingMachineAuditDaoStubImpl implements VendingMachineAuditDao {
     public void appendRecord(String s) {
     }
 
+    @Override
+    public void appendEvent(AuditEventType type, String item, long amountCents) {
+    }
+
     @Override
     public void close() {
     }
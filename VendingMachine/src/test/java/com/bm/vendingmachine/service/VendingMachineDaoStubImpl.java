@@ -6,12 +6,17 @@
 
 package com.bm.vendingmachine.service;
 
-import com.bm.vendingmachine.dao.VendingMachineDao;
+import com.bm.vendingmachine.dao.VendingMachineCartDao;
+import com.bm.vendingmachine.dao.VendingMachinePriceDao;
 import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
 import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
+import com.bm.vendingmachine.dto.ItemRemoval;
+import com.bm.vendingmachine.dto.Money;
 import com.bm.vendingmachine.dto.VendingMachineItem;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,8 +31,9 @@ import java.util.Optional;
  * email: driver396@gmail.com
  * date: Aug 1, 2021
  */
-public class VendingMachineDaoStubImpl implements VendingMachineDao {
-    private Map<String, VendingMachineItem> itemsMap;
+public class VendingMachineDaoStubImpl implements VendingMachinePriceDao, VendingMachineCartDao {
+    private volatile Map<String, VendingMachineItem> itemsMap;
+    private volatile long priceVersion;
 
     public VendingMachineDaoStubImpl() {
         itemsMap = new HashMap<>();
@@ -58,6 +64,54 @@ public class VendingMachineDaoStubImpl implements VendingMachineDao {
         return new LinkedList<>(itemsMap.values());
     }
 
+    @Override
+    public CatalogSnapshot getCatalogSnapshot() {
+        List<VendingMachineItem> items = new ArrayList<>();
+        itemsMap.values().forEach(item -> items.add(
+            new VendingMachineItem(item.getName(), item.getCost(), item.getQuantity())
+        ));
+        return new CatalogSnapshot(0) {
+            @Override
+            public int size() {
+                return items.size();
+            }
+
+            @Override
+            public VendingMachineItem get(int index) {
+                return items.get(index);
+            }
+        };
+    }
+
+    @Override
+    public List<VendingMachineItem> getAffordableItems(BigDecimal funds) {
+        return getItemsInPriceRange(BigDecimal.ZERO, funds);
+    }
+
+    @Override
+    public List<VendingMachineItem> getCheapestItems(int count) {
+        List<VendingMachineItem> items = getItemsInPriceRange(
+            BigDecimal.ZERO,
+            BigDecimal.valueOf(Long.MAX_VALUE)
+        );
+        return items.subList(0, Math.min(count, items.size()));
+    }
+
+    @Override
+    public List<VendingMachineItem> getItemsInPriceRange(BigDecimal minimum, BigDecimal maximum) {
+        List<VendingMachineItem> items = new ArrayList<>();
+        itemsMap.values().forEach(item -> {
+            if (item.getQuantity().signum() > 0
+                && item.getCost().compareTo(minimum) >= 0
+                && item.getCost().compareTo(maximum) <= 0) {
+
+                items.add(item);
+            }
+        });
+        items.sort((a, b) -> a.getCost().compareTo(b.getCost()));
+        return items;
+    }
+
     @Override
     public Optional<VendingMachineItem> getItemByName(String name) {
         VendingMachineItem item = itemsMap.get(name);
@@ -68,7 +122,7 @@ public class VendingMachineDaoStubImpl implements VendingMachineDao {
     }
 
     @Override
-    public Optional<VendingMachineItem> removeOneOfItem(String name) {
+    public synchronized Optional<VendingMachineItem> removeOneOfItem(String name) {
         VendingMachineItem item = itemsMap.get(name);
         if (item == null || item.getQuantity().signum() <= 0) {
             return Optional.empty();
@@ -77,7 +131,91 @@ public class VendingMachineDaoStubImpl implements VendingMachineDao {
         return Optional.of(item);
     }
 
+    @Override
+    public synchronized Optional<VendingMachineItem> removeUnitsOfItem(String name, long quantity) {
+        VendingMachineItem item = itemsMap.get(name);
+        BigInteger units = BigInteger.valueOf(quantity);
+        if (item == null || item.getQuantity().compareTo(units) < 0) {
+            return Optional.empty();
+        }
+        item.setQuantity(item.getQuantity().subtract(units));
+        return Optional.of(item);
+    }
+
+    @Override
+    public synchronized Optional<String> removeUnitsOfItems(Map<String, Long> quantities) {
+        for (Map.Entry<String, Long> line : quantities.entrySet()) {
+            VendingMachineItem item = itemsMap.get(line.getKey());
+            if (item == null || item.getQuantity().compareTo(BigInteger.valueOf(line.getValue())) < 0) {
+                return Optional.of(line.getKey());
+            }
+        }
+        quantities.forEach((name, quantity) -> {
+            VendingMachineItem item = itemsMap.get(name);
+            item.setQuantity(item.getQuantity().subtract(BigInteger.valueOf(quantity)));
+        });
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized ItemRemoval removeOneOfItemIfAffordable(String name, BigDecimal funds) {
+        VendingMachineItem item = itemsMap.get(name);
+        if (item == null) {
+            return new ItemRemoval(ItemRemoval.Status.NO_SUCH_ITEM, null);
+        }
+        if (funds.compareTo(item.getCost()) < 0) {
+            return new ItemRemoval(ItemRemoval.Status.INSUFFICIENT_FUNDS, item);
+        }
+        if (item.getQuantity().signum() <= 0) {
+            return new ItemRemoval(ItemRemoval.Status.OUT_OF_STOCK, item);
+        }
+        item.setQuantity(item.getQuantity().subtract(BigInteger.ONE));
+        return new ItemRemoval(ItemRemoval.Status.REMOVED, item);
+    }
+
+    @Override
+    public ItemRemoval removeOneOfItemIfAffordable(String name, long fundsCents) {
+        return removeOneOfItemIfAffordable(name, Money.toDollars(fundsCents));
+    }
+
+    @Override
+    public synchronized boolean returnUnitsOfItem(String name, long quantity) {
+        VendingMachineItem item = itemsMap.get(name);
+        if (item == null) {
+            return false;
+        }
+        item.setQuantity(item.getQuantity().add(BigInteger.valueOf(quantity)));
+        return true;
+    }
+
+    @Override
+    public synchronized void updatePrices(Map<String, BigDecimal> costs) {
+        Map<String, VendingMachineItem> repriced = new HashMap<>();
+        itemsMap.values().forEach(item -> repriced.put(
+            item.getName(),
+            new VendingMachineItem(item.getName(), item.getCost(), item.getQuantity())
+        ));
+        costs.forEach((name, cost) -> {
+            VendingMachineItem item = repriced.get(name);
+            if (item == null) {
+                throw new IllegalArgumentException("No such item: " + name);
+            }
+            repriced.put(name, new VendingMachineItem(name, cost, item.getQuantity()));
+        });
+        itemsMap = repriced;
+        priceVersion++;
+    }
+
+    @Override
+    public long getPriceVersion() {
+        return priceVersion;
+    }
+
     @Override
     public void saveItems() throws FailedSaveOfVendingItemsException {
     }
+
+    @Override
+    public void close() {
+    }
 }
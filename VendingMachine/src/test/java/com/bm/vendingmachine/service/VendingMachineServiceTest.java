@@ -5,14 +5,46 @@
  */
 package com.bm.vendingmachine.service;
 
+import com.bm.vendingmachine.dao.InventoryJournal;
+import com.bm.vendingmachine.dao.VendingMachineCoinDaoFileImpl;
+import com.bm.vendingmachine.dao.VendingMachineDao;
+import com.bm.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.bm.vendingmachine.dao.VendingMachineDaoMeteredImpl;
+import com.bm.vendingmachine.dao.exceptions.FailedLoadOfVendingItemsException;
+import com.bm.vendingmachine.dao.exceptions.FailedSaveOfVendingItemsException;
+import com.bm.vendingmachine.dto.Cart;
+import com.bm.vendingmachine.dto.CatalogSnapshot;
 import com.bm.vendingmachine.dto.VendingMachineItem;
+import com.bm.vendingmachine.events.EventBus;
+import com.bm.vendingmachine.events.SalesTally;
+import com.bm.vendingmachine.metrics.MetricsRegistry;
+import com.bm.vendingmachine.metrics.OperationMetrics;
+import com.bm.vendingmachine.service.exceptions.ExactChangeRequiredException;
 import com.bm.vendingmachine.service.exceptions.InsufficientFundsException;
 import com.bm.vendingmachine.service.exceptions.NoItemInventoryException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -23,6 +55,9 @@ public class VendingMachineServiceTest {
     
     private VendingMachineService service;
     
+    @TempDir
+    Path directory;
+    
     public VendingMachineServiceTest() {
     }
 
@@ -68,7 +103,7 @@ public class VendingMachineServiceTest {
     public void testGetFundsAndAddCoins() {
         assertEquals(
             service.getFundsAvailable(), 
-            BigDecimal.ZERO,
+            new BigDecimal("0.00"),
             "Services should start off with no funds"
         );
         
@@ -90,7 +125,7 @@ public class VendingMachineServiceTest {
     public void testGetFundsAddCoinsGetAllAndTransactItem() {
         assertEquals(
             service.getFundsAvailable(), 
-            BigDecimal.ZERO, 
+            new BigDecimal("0.00"), 
             "Services should start with no funds"
         );
         
@@ -155,7 +190,7 @@ public class VendingMachineServiceTest {
         }        
         assertEquals(
             service.getFundsAvailable(), 
-            BigDecimal.ZERO, 
+            new BigDecimal("0.00"), 
             "All the funds should be depleted from the machine after a purchase"
         );
         
@@ -178,7 +213,7 @@ public class VendingMachineServiceTest {
         }        
         assertEquals(
             service.getFundsAvailable(), 
-            BigDecimal.ZERO, 
+            new BigDecimal("0.00"), 
             "All the funds should be depleted from the machine after a purchase"
         );
         
@@ -220,4 +255,632 @@ public class VendingMachineServiceTest {
             fail("Should've thrown NoItemInventoryException");
         }
     }
+    
+    @Test
+    public void testConcurrentSessionsShareInventory() throws Exception {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        List<Future<Boolean>> purchases = new ArrayList<>();
+        List<VendingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            VendingSession session = service.openSession();
+            sessions.add(session);
+            purchases.add(pool.submit(() -> {
+                service.addCoins(session, Coin.QUARTER, new BigInteger("12"));
+                try {
+                    BigDecimal change = service.transactItem(session, "Pepsi");
+                    assertEquals(change, new BigDecimal("0.01"), "Each session pays for itself");
+                    return true;
+                } catch (NoItemInventoryException ex) {
+                    return false;
+                }
+            }));
+        }
+        
+        int succeeded = 0;
+        for (Future<Boolean> purchase : purchases) {
+            if (purchase.get()) {
+                succeeded++;
+            }
+        }
+        pool.shutdown();
+        assertEquals(succeeded, 10, "Only the ten Pepsis in stock can be sold");
+        
+        BigDecimal refunded = BigDecimal.ZERO;
+        for (VendingSession session : sessions) {
+            refunded = refunded.add(service.closeSession(session));
+        }
+        assertEquals(
+            refunded,
+            new BigDecimal("570.00"),
+            "Every session that bought nothing keeps its $3.00"
+        );
+        assertEquals(
+            service.getFundsAvailable(),
+            new BigDecimal("0.00"),
+            "Sessions should not touch the funds of the machine"
+        );
+        
+        try {
+            service.addCoins(sessions.get(0), Coin.DIME, BigInteger.ONE);
+            fail("A closed session should not accept coins");
+        } catch (IllegalStateException ex) {
+        }
+    }
+    
+    @Test
+    public void testTransactItemInCents() throws Exception {
+        VendingSession session = service.openSession();
+        service.addCoins(session, Coin.QUARTER, 11L);
+        service.addCoins(session, Coin.NICKEL, 5L);
+        assertEquals(service.getCreditCents(session), 300L, "Eleven quarters and five nickels make 300 cents");
+        assertEquals(
+            service.transactItemCents(session, "Pepsi"),
+            1L,
+            "A $2.99 Pepsi bought with $3.00 leaves one cent of change"
+        );
+        assertEquals(service.getCreditCents(session), 0L, "The credit is spent on a purchase");
+        
+        service.addCoins(session, Coin.PENNY, Long.MAX_VALUE);
+        try {
+            service.addCoins(session, Coin.PENNY, 1L);
+            fail("Overflowing the credit should fail rather than wrap around");
+        } catch (ArithmeticException ex) {
+        }
+        try {
+            service.addCoins(session, Coin.QUARTER, Long.MAX_VALUE / 10);
+            fail("Overflowing the value of the coins should fail as well");
+        } catch (ArithmeticException ex) {
+        }
+        assertEquals(
+            service.getCreditCents(session),
+            Long.MAX_VALUE,
+            "A failed deposit should leave the credit alone"
+        );
+    }
+    
+    @Test
+    public void testSaleRefusedWithoutChange() throws Exception {
+        VendingMachineService limited = new VendingMachineService(
+            new VendingMachineDaoStubImpl(),
+            new VendingMachineAuditDaoStubImpl(),
+            new CoinInventory()
+        );
+        assertTrue(limited.isExactChangeOnly(), "An empty coin box needs exact change");
+        
+        limited.addCoins(Coin.QUARTER, new BigInteger("12"));
+        try {
+            limited.transactItem("Pepsi");
+            fail("A penny of change cannot be given from an empty coin box");
+        } catch (ExactChangeRequiredException ex) {
+        }
+        assertEquals(
+            limited.getFundsAvailable(),
+            new BigDecimal("3.00"),
+            "A refused sale should keep the funds"
+        );
+        
+        // a single penny is all the change needed
+        limited.getCoinInventory().deposit(Coin.PENNY, 1);
+        Change change = limited.transactItemForChange("Pepsi");
+        assertEquals(change.getCount(Coin.PENNY), 1L, "The change should be a penny");
+        assertEquals(
+            limited.getCoinInventory().getCount(Coin.QUARTER),
+            12L,
+            "The quarters paid should go into the coin box"
+        );
+        assertTrue(
+            limited.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("9"))
+            ),
+            "Only the sale that went through should take a Pepsi"
+        );
+    }
+    
+    @Test
+    public void testTransactItemsAllOrNone() throws Exception {
+        VendingMachineService limited = new VendingMachineService(
+            new VendingMachineDaoStubImpl(),
+            new VendingMachineAuditDaoStubImpl(),
+            new CoinInventory()
+        );
+        
+        // three Pepsis cost $8.97, which $9.00 in quarters does not leave
+        // change for in an empty coin box
+        limited.addCoins(Coin.QUARTER, new BigInteger("36"));
+        try {
+            limited.transactItems(new Cart().add("Pepsi", 3));
+            fail("The three cents of change cannot be given");
+        } catch (ExactChangeRequiredException ex) {
+        }
+        try {
+            limited.transactItems(new Cart().add("Pepsi", 1).add("Coke", 2));
+            fail("There is only one Coke to buy");
+        } catch (NoItemInventoryException ex) {
+        }
+        try {
+            limited.transactItems(new Cart().add("Pepsi", 4));
+            fail("Four Pepsis cost more than $9.00");
+        } catch (InsufficientFundsException ex) {
+        }
+        assertTrue(
+            limited.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("10"))
+            ),
+            "A refused cart should leave every Pepsi in stock"
+        );
+        
+        limited.addCoins(Coin.PENNY, new BigInteger("3"));
+        limited.getCoinInventory().deposit(Coin.NICKEL, 1);
+        Change change = limited.transactItems(new Cart().add("Pepsi", 2).add("Pepsi", 1));
+        assertEquals(change.getTotalCents(), 6L, "$9.03 for three $2.99 Pepsis leaves six cents");
+        assertTrue(
+            limited.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("7"))
+            ),
+            "The cart should sell three Pepsis at once"
+        );
+        assertEquals(limited.getFundsAvailable(), new BigDecimal("0.00"), "The credit is spent on the cart");
+    }
+    
+    @Test
+    public void testReservationsHoldUnitsUntilExpiry() throws Exception {
+        AtomicLong nanos = new AtomicLong();
+        VendingMachineService timed = new VendingMachineService(
+            new VendingMachineDaoStubImpl(),
+            new VendingMachineAuditDaoStubImpl(),
+            CoinInventory.unlimited(),
+            nanos::get
+        );
+        VendingSession holder = timed.openSession();
+        VendingSession other = timed.openSession();
+        
+        // the only Coke is held for the first session
+        Reservation coke = timed.reserveItem(holder, "Coke", 1, Duration.ofSeconds(30));
+        timed.addCoins(other, Coin.QUARTER, 12);
+        try {
+            timed.transactItem(other, "Coke");
+            fail("The reserved Coke should not be sold to another session");
+        } catch (NoItemInventoryException ex) {
+        }
+        try {
+            timed.reserveItem(other, "Coke", 1, Duration.ofSeconds(30));
+            fail("The reserved Coke should not be reserved twice");
+        } catch (NoItemInventoryException ex) {
+        }
+        timed.addCoins(holder, Coin.QUARTER, 12);
+        assertEquals(
+            timed.transactItem(holder, "Coke"),
+            new BigDecimal("0.01"),
+            "The holder should buy the reserved Coke"
+        );
+        assertEquals(coke.getUnitsHeld(), 0L, "The reserved Coke has been sold");
+        
+        // two Pepsis held for ten seconds come back once they expire
+        Reservation pepsis = timed.reserveItem(holder, "Pepsi", 2, Duration.ofSeconds(10));
+        assertTrue(
+            timed.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("8"))
+            ),
+            "Reserved units should leave the inventory"
+        );
+        nanos.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertEquals(timed.expireReservations(), 0, "Nothing should expire early");
+        nanos.addAndGet(Duration.ofSeconds(1).plus(VendingMachineService.RESERVATION_TICK).toNanos());
+        timed.transactItem(other, "Pepsi");
+        assertFalse(pepsis.isActive(), "A purchase should expire the reservations due");
+        assertTrue(
+            timed.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("9"))
+            ),
+            "Expired units should be back in stock, less the one sold"
+        );
+        
+        // units still held are restocked when their session closes
+        timed.reserveItem(holder, "Pepsi", 3, Duration.ofMinutes(5));
+        timed.closeSession(holder);
+        assertTrue(
+            timed.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("9"))
+            ),
+            "Closing a session should release its reservations"
+        );
+    }
+    
+    @Test
+    public void testCartsSellReservedUnits() throws Exception {
+        AtomicLong nanos = new AtomicLong();
+        VendingMachineService timed = new VendingMachineService(
+            new VendingMachineDaoStubImpl(),
+            new VendingMachineAuditDaoStubImpl(),
+            CoinInventory.unlimited(),
+            nanos::get
+        );
+        VendingSession holder = timed.openSession();
+        
+        // the only Coke is reserved, so a cart holding it must use the
+        // reservation rather than the empty inventory
+        Reservation coke = timed.reserveItem(holder, "Coke", 1, Duration.ofSeconds(30));
+        timed.addCoins(holder, Coin.QUARTER, 24);
+        timed.transactItems(holder, new Cart().add("Coke", 1).add("Pepsi", 1));
+        assertEquals(coke.getUnitsHeld(), 0L, "The cart should sell the reserved Coke");
+        assertTrue(
+            timed.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("9"))
+            ),
+            "The Pepsi of the cart comes from the inventory"
+        );
+        
+        // closing the session takes its reservations off the wheel
+        timed.reserveItem(holder, "Pepsi", 2, Duration.ofSeconds(10));
+        timed.closeSession(holder);
+        nanos.addAndGet(Duration.ofSeconds(10).plus(VendingMachineService.RESERVATION_TICK).toNanos());
+        assertEquals(timed.expireReservations(), 0, "A released reservation should never expire");
+        
+        // listing the items restocks expired reservations without a purchase
+        VendingSession other = timed.openSession();
+        timed.reserveItem(other, "Pepsi", 3, Duration.ofSeconds(10));
+        nanos.addAndGet(Duration.ofSeconds(10).plus(VendingMachineService.RESERVATION_TICK).toNanos());
+        assertTrue(
+            timed.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("9"))
+            ),
+            "Listing the items should restock the expired Pepsis"
+        );
+    }
+    
+    @Test
+    public void testOperationsAreMetered() throws Exception {
+        service.addCoins(Coin.QUARTER, new BigInteger("4"));
+        try {
+            service.transactItem("Pepsi");
+            fail("A dollar does not buy a Pepsi");
+        } catch (InsufficientFundsException ex) {
+        }
+        try {
+            service.transactItem("Fanta");
+            fail("There is no Fanta");
+        } catch (NoItemInventoryException ex) {
+        }
+        service.addCoins(Coin.QUARTER, new BigInteger("8"));
+        service.transactItem("Pepsi");
+        
+        OperationMetrics sales = service.getMetrics().getOperations().get("service.transactItem");
+        assertEquals(sales.getSuccesses(), 1L, "One sale went through");
+        assertEquals(
+            sales.getFailuresByType(),
+            Map.of("INSUFFICIENT_FUNDS", 1L, "NO_SUCH_ITEM", 1L),
+            "Failures should be counted by outcome"
+        );
+        assertEquals(sales.getLatencies().getCount(), 3L, "Every sale should be timed");
+        assertEquals(
+            service.getMetrics().getOperations().get("service.addCoins").getSuccesses(),
+            2L,
+            "Both deposits should be counted"
+        );
+        
+        VendingSession session = service.openSession();
+        service.addCoins(session, Coin.DIME, 3);
+        assertEquals(
+            service.getMetrics().getOperations().get("service.addCoins").getCount(),
+            3L,
+            "Deposits into any session should be counted"
+        );
+        service.closeSession(session);
+    }
+    
+    @Test
+    public void testGaugesReadInOnePass() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        VendingMachineService metered = new VendingMachineService(
+            new VendingMachineDaoMeteredImpl(new VendingMachineDaoStubImpl(), metrics),
+            new VendingMachineAuditDaoStubImpl(),
+            CoinInventory.unlimited(),
+            System::nanoTime,
+            metrics
+        );
+        metered.addCoins(Coin.QUARTER, new BigInteger("12"));
+        metered.transactItem("Coke");
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.registerMBeans(server);
+        AttributeList stock = server.getAttributes(
+            new ObjectName("com.bm.vendingmachine:type=Gauges,name=service"),
+            new String[] {"ItemCount", "UnitsInStock", "ItemsOutOfStock"}
+        );
+        assertEquals(
+            stock.asList().stream().map(Attribute::getValue).collect(Collectors.toList()),
+            List.of(2, 10L, 1),
+            "The Coke sold out, leaving ten Pepsis"
+        );
+        assertEquals(
+            metrics.getOperations().get("dao.getCatalogSnapshot").getCount()
+                + metrics.getOperations().get("dao.getAllItems").getCount(),
+            0L,
+            "Reading the gauges should not count as DAO operations"
+        );
+        metrics.unregisterMBeans();
+        metered.close();
+    }
+    
+    @Test
+    public void testPurchaseItemReturnsOutcomes() {
+        PurchaseResult result = service.purchaseItem("Fanta");
+        assertEquals(result.getOutcome(), PurchaseResult.Outcome.NO_SUCH_ITEM, "There is no Fanta");
+        assertSame(service.purchaseItem("Fanta"), result, "Outcomes without details are shared");
+        
+        service.addCoins(Coin.QUARTER, new BigInteger("10"));
+        result = service.purchaseItem("Pepsi");
+        assertEquals(result.getOutcome(), PurchaseResult.Outcome.INSUFFICIENT_FUNDS, "$2.50 is short");
+        assertEquals(result.getCostCents(), 299L, "The cost should be reported");
+        assertEquals(result.getShortfallCents(), 49L, "The shortfall should be reported");
+        assertEquals(result.getChange(), Change.NONE, "No change is given for a refused sale");
+        assertEquals(service.getFundsAvailable(), new BigDecimal("2.50"), "A refused sale keeps the funds");
+        
+        service.addCoins(Coin.QUARTER, new BigInteger("2"));
+        result = service.purchaseItem("Coke");
+        assertTrue(result.isSold(), "$3.00 buys the Coke");
+        assertEquals(result.getChangeCents(), 1L, "The change should be a cent");
+        assertEquals(result.getChange().getCount(Coin.PENNY), 1L, "The change should be a penny");
+        
+        // funds are checked before stock
+        service.addCoins(Coin.QUARTER, new BigInteger("12"));
+        assertEquals(
+            service.purchaseItem("Coke").getOutcome(),
+            PurchaseResult.Outcome.OUT_OF_STOCK,
+            "The only Coke has been sold"
+        );
+        try {
+            service.purchaseItem("Coke").toChange();
+            fail("The exception API should still throw");
+        } catch (NoItemInventoryException ex) {
+        } catch (InsufficientFundsException ex) {
+            fail("A sold out item is not a matter of funds");
+        }
+    }
+    
+    @Test
+    public void testSalesPublishedToSubscribers() throws Exception {
+        EventBus events = new EventBus();
+        SalesTally tally = new SalesTally();
+        events.subscribe("tally", tally);
+        events.start();
+        VendingMachineService published = new VendingMachineService(
+            new VendingMachineDaoStubImpl(),
+            new VendingMachineAuditDaoStubImpl(),
+            CoinInventory.unlimited(),
+            System::nanoTime,
+            new MetricsRegistry(),
+            events
+        );
+        
+        published.addCoins(Coin.QUARTER, new BigInteger("12"));
+        published.transactItem("Pepsi");
+        published.purchaseItem("Pepsi");
+        published.addCoins(Coin.QUARTER, new BigInteger("24"));
+        published.transactItems(new Cart().add("Pepsi", 1).add("Coke", 1));
+        published.close();
+        
+        assertEquals(
+            tally.getUnitsSoldByItem(),
+            Map.of("Pepsi", 2L, "Coke", 1L),
+            "Single sales and carts should both be tallied"
+        );
+        assertEquals(tally.getRevenueCents(), 3 * 299L, "Three items were sold at $2.99");
+        assertEquals(tally.getSalesRejected(), 1L, "The sale without credit was rejected");
+    }
+    
+    @Test
+    public void testCartPricedFromOnePriceList() throws Exception {
+        // the price list changes right after the first line of the cart is
+        // priced, as if an update landed in the middle of the checkout
+        AtomicBoolean updated = new AtomicBoolean();
+        VendingMachineDaoStubImpl dao = new VendingMachineDaoStubImpl() {
+            @Override
+            public Optional<VendingMachineItem> getItemByName(String name) {
+                Optional<VendingMachineItem> item = super.getItemByName(name);
+                if (updated.compareAndSet(false, true)) {
+                    updatePrices(Map.of("Pepsi", new BigDecimal("2.00"), "Coke", new BigDecimal("2.00")));
+                }
+                return item;
+            }
+        };
+        VendingMachineService repriced = new VendingMachineService(
+            dao,
+            new VendingMachineAuditDaoStubImpl()
+        );
+        
+        repriced.updatePrices(Map.of("Pepsi", new BigDecimal("1.00"), "Coke", new BigDecimal("1.00")));
+        repriced.addCoins(Coin.QUARTER, new BigInteger("16"));
+        Change change = repriced.transactItems(new Cart().add("Pepsi", 1).add("Coke", 1));
+        assertEquals(
+            change.getTotalCents(),
+            0L,
+            "Both items should be charged the $2.00 of the latest price list"
+        );
+        
+        repriced.addCoins(Coin.QUARTER, new BigInteger("8"));
+        assertEquals(
+            repriced.transactItem("Pepsi"),
+            new BigDecimal("0.00"),
+            "A single sale should be charged the latest cost"
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> repriced.updatePrices(Map.of("Fanta", BigDecimal.ONE)),
+            "There is no Fanta to reprice"
+        );
+        OperationMetrics updates = repriced.getMetrics().getOperations().get("service.updatePrices");
+        assertEquals(updates.getSuccesses(), 1L, "One price list was applied");
+        assertEquals(updates.getCount(), 2L, "The refused price list should be counted too");
+    }
+    
+    @Test
+    public void testReservationsReleasedOnClose() throws Exception {
+        Path itemsFile = directory.resolve("items.txt");
+        Files.writeString(itemsFile, "Pepsi::2.99::10\n");
+        VendingMachineService journaled = journaledService(itemsFile);
+        
+        VendingSession session = journaled.openSession();
+        journaled.reserveItem(session, "Pepsi", 4, Duration.ofHours(1));
+        journaled.addCoins(session, Coin.QUARTER, 12);
+        journaled.transactItem(session, "Pepsi");
+        journaled.reserveItem(session, "Pepsi", 2, Duration.ofHours(1));
+        journaled.close();
+        
+        VendingMachineService reloaded = journaledService(itemsFile);
+        assertTrue(
+            reloaded.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("9"))
+            ),
+            "Only the Pepsi sold should be gone, the units still reserved should be back in stock"
+        );
+        reloaded.close();
+    }
+    
+    @Test
+    public void testCoinsSavedWithItems() throws Exception {
+        Path itemsFile = directory.resolve("items.txt");
+        Files.writeString(itemsFile, "Pepsi::2.99::10\n");
+        String coinsFile = directory.resolve("coins.txt").toString();
+        VendingMachineService stocked = new VendingMachineService(
+            new VendingMachineDaoFileImpl(itemsFile.toString()),
+            new VendingMachineAuditDaoStubImpl(),
+            new CoinInventory(Map.of(Coin.PENNY, 5L)),
+            new VendingMachineCoinDaoFileImpl(coinsFile),
+            System::nanoTime,
+            new MetricsRegistry(),
+            null
+        );
+        stocked.loadItems();
+        stocked.addCoins(Coin.QUARTER, new BigInteger("12"));
+        assertEquals(stocked.transactItem("Pepsi"), new BigDecimal("0.01"), "A penny is owed");
+        stocked.saveItems();
+        stocked.close();
+        
+        // the starting coins only apply until the machine has saved its own
+        CoinInventory restarted = new CoinInventory(Map.of(Coin.PENNY, 5L));
+        VendingMachineService reloaded = new VendingMachineService(
+            new VendingMachineDaoFileImpl(itemsFile.toString()),
+            new VendingMachineAuditDaoStubImpl(),
+            restarted,
+            new VendingMachineCoinDaoFileImpl(coinsFile),
+            System::nanoTime,
+            new MetricsRegistry(),
+            null
+        );
+        reloaded.loadItems();
+        assertEquals(restarted.getCount(Coin.QUARTER), 12L, "The quarters paid should be kept");
+        assertEquals(restarted.getCount(Coin.PENNY), 4L, "The penny given as change should be gone");
+        reloaded.close();
+    }
+    
+    private static VendingMachineService journaledService(Path itemsFile) throws Exception {
+        VendingMachineService journaled = new VendingMachineService(
+            new VendingMachineDaoFileImpl(
+                itemsFile.toString(),
+                InventoryJournal.SyncPolicy.EVERY_COMMIT
+            ),
+            new VendingMachineAuditDaoStubImpl()
+        );
+        journaled.loadItems();
+        return journaled;
+    }
+    
+    @Test
+    public void testDaoWithCoreOperationsOnly() throws Exception {
+        VendingMachineService core = new VendingMachineService(
+            new CoreDao(new VendingMachineDaoStubImpl()),
+            new VendingMachineAuditDaoStubImpl()
+        );
+        
+        core.addCoins(Coin.QUARTER, new BigInteger("10"));
+        assertEquals(
+            core.purchaseItem("Pepsi").getOutcome(),
+            PurchaseResult.Outcome.INSUFFICIENT_FUNDS,
+            "$2.50 is short of a Pepsi without the price operations too"
+        );
+        core.addCoins(Coin.QUARTER, new BigInteger("2"));
+        assertEquals(core.transactItem("Coke"), new BigDecimal("0.01"), "The only Coke sells");
+        
+        core.addCoins(Coin.QUARTER, new BigInteger("24"));
+        assertThrows(
+            NoItemInventoryException.class,
+            () -> core.transactItems(new Cart().add("Pepsi", 2).add("Coke", 1)),
+            "The Coke is sold out"
+        );
+        assertTrue(
+            core.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("10"))
+            ),
+            "A refused cart should put back any Pepsi taken before the Coke ran short"
+        );
+        core.transactItems(new Cart().add("Pepsi", 2));
+        assertTrue(
+            core.getAllItems().contains(
+                new VendingMachineItem("Pepsi", new BigDecimal("2.99"), new BigInteger("8"))
+            ),
+            "The cart should sell two Pepsis"
+        );
+        assertThrows(
+            UnsupportedOperationException.class,
+            () -> core.updatePrices(Map.of("Pepsi", BigDecimal.ONE)),
+            "The prices of this DAO are fixed"
+        );
+    }
+    
+    /**
+     * A DAO offering only the core operations, none of the price or cart
+     * ones
+     */
+    private static class CoreDao implements VendingMachineDao {
+        private final VendingMachineDao delegate;
+        
+        CoreDao(VendingMachineDao delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public void loadItems() throws FailedLoadOfVendingItemsException {
+            delegate.loadItems();
+        }
+        
+        @Override
+        public List<VendingMachineItem> getAllItems() {
+            return delegate.getAllItems();
+        }
+        
+        @Override
+        public CatalogSnapshot getCatalogSnapshot() {
+            return delegate.getCatalogSnapshot();
+        }
+        
+        @Override
+        public Optional<VendingMachineItem> getItemByName(String name) {
+            return delegate.getItemByName(name);
+        }
+        
+        @Override
+        public Optional<VendingMachineItem> removeOneOfItem(String name) {
+            return delegate.removeOneOfItem(name);
+        }
+        
+        @Override
+        public Optional<VendingMachineItem> removeUnitsOfItem(String name, long quantity) {
+            return delegate.removeUnitsOfItem(name, quantity);
+        }
+        
+        @Override
+        public boolean returnUnitsOfItem(String name, long quantity) {
+            return delegate.returnUnitsOfItem(name, quantity);
+        }
+        
+        @Override
+        public void saveItems() throws FailedSaveOfVendingItemsException {
+            delegate.saveItems();
+        }
+        
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
 }